@@ -0,0 +1,26 @@
+package com.eroelf.javaxsx.benchmarks.trie;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cycles every thread through the queries independently, so threads do not share a counter.
+ * 
+ * @author weikun.zhong
+ */
+@State(Scope.Thread)
+public class Cursor
+{
+	private int idx=0;
+
+	/**
+	 * Returns the next query.
+	 * 
+	 * @param queries the queries, whose length must be a power of 2.
+	 * @return the next query.
+	 */
+	public String next(String[] queries)
+	{
+		return queries[idx++&(queries.length-1)];
+	}
+}
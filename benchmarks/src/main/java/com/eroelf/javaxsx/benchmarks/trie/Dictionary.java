@@ -0,0 +1,186 @@
+package com.eroelf.javaxsx.benchmarks.trie;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Reproducible dictionaries for the Trie benchmarks.
+ * The words of a dictionary depend only on its kind and size, so results of different runs and machines are comparable.
+ * 
+ * @author weikun.zhong
+ */
+public enum Dictionary
+{
+	/**
+	 * Lower case ASCII words of 3 to 12 characters, with skewed character frequencies similar to English text.
+	 */
+	SYNTHETIC
+	{
+		@Override
+		protected String nextWord(Random random, StringBuilder sb)
+		{
+			int length=3+random.nextInt(10);
+			for(int i=0; i<length; i++)
+			{
+				sb.append(skewed(random, "etaoinshrdlcumwfgypbvkjxqz"));
+			}
+			return sb.toString();
+		}
+	},
+	/**
+	 * Words of 2 to 6 common CJK ideographs with skewed frequencies, occasionally mixed with ASCII letters and digits, similar to Chinese query logs.
+	 */
+	CJK
+	{
+		@Override
+		protected String nextWord(Random random, StringBuilder sb)
+		{
+			int length=2+random.nextInt(5);
+			for(int i=0; i<length; i++)
+			{
+				if(random.nextInt(20)==0)
+					sb.append(skewed(random, "0123456789abcdefghijklmnopqrstuvwxyz"));
+				else
+					sb.append((char)(CJK_BEGIN+(int)(CJK_RANGE*Math.pow(random.nextDouble(), 2))));
+			}
+			return sb.toString();
+		}
+	};
+
+	private static final char CJK_BEGIN='\u4E00';
+	private static final int CJK_RANGE=3500;
+	private static final long SEED=0x6A617661787378L;
+	private static final int QUERY_NUM=1<<12;
+
+	protected abstract String nextWord(Random random, StringBuilder sb);
+
+	private static char skewed(Random random, String alphabet)
+	{
+		return alphabet.charAt((int)(alphabet.length()*Math.pow(random.nextDouble(), 2)));
+	}
+
+	private Random newRandom(int size, int salt)
+	{
+		return new Random(SEED^((long)ordinal()<<48)^((long)salt<<32)^size);
+	}
+
+	/**
+	 * Generates the distinct words of this dictionary in the natural order of {@link String}.
+	 * 
+	 * @param size the number of words.
+	 * @return the sorted words.
+	 */
+	public String[] words(int size)
+	{
+		Random random=newRandom(size, 0);
+		Set<String> set=new HashSet<>(size*4/3+1);
+		StringBuilder sb=new StringBuilder();
+		while(set.size()<size)
+		{
+			sb.setLength(0);
+			set.add(nextWord(random, sb));
+		}
+		String[] words=set.toArray(new String[set.size()]);
+		Arrays.sort(words);
+		return words;
+	}
+
+	/**
+	 * Generates lookup queries, half of which are words of the dictionary and half of which are absent.
+	 * 
+	 * @param words the sorted words of this dictionary.
+	 * @return the queries.
+	 */
+	public String[] queries(String[] words)
+	{
+		Random random=newRandom(words.length, 1);
+		String[] queries=new String[QUERY_NUM];
+		StringBuilder sb=new StringBuilder();
+		for(int i=0; i<queries.length; i++)
+		{
+			String word=words[random.nextInt(words.length)];
+			if(i%2==0)
+				queries[i]=word;
+			else
+			{
+				do
+				{
+					sb.setLength(0);
+					sb.append(word, 0, word.length()-1);
+					nextWord(random, sb);
+				}
+				while(Arrays.binarySearch(words, sb.toString())>=0);
+				queries[i]=sb.toString();
+			}
+		}
+		return queries;
+	}
+
+	/**
+	 * Generates prefix queries of 1 to 3 characters taken from the words of the dictionary.
+	 * 
+	 * @param words the sorted words of this dictionary.
+	 * @return the prefixes.
+	 */
+	public String[] prefixes(String[] words)
+	{
+		Random random=newRandom(words.length, 2);
+		String[] prefixes=new String[QUERY_NUM];
+		for(int i=0; i<prefixes.length; i++)
+		{
+			String word=words[random.nextInt(words.length)];
+			prefixes[i]=word.substring(0, Math.min(word.length(), 1+random.nextInt(3)));
+		}
+		return prefixes;
+	}
+
+	/**
+	 * Generates texts whose prefixes are to be found, each of which is a word of the dictionary followed by random characters.
+	 * 
+	 * @param words the sorted words of this dictionary.
+	 * @return the texts.
+	 */
+	public String[] texts(String[] words)
+	{
+		Random random=newRandom(words.length, 3);
+		String[] texts=new String[QUERY_NUM];
+		StringBuilder sb=new StringBuilder();
+		for(int i=0; i<texts.length; i++)
+		{
+			sb.setLength(0);
+			sb.append(words[random.nextInt(words.length)]);
+			texts[i]=nextWord(random, sb);
+		}
+		return texts;
+	}
+
+	/**
+	 * Writes the sorted words into a temporary file, one word per line, as the input of {@link com.eroelf.javaxsx.util.trie.IndexedTrie}.
+	 * The file is deleted on exit.
+	 * 
+	 * @param words the sorted words of this dictionary.
+	 * @return the file.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public File writeToFile(String[] words) throws IOException
+	{
+		File file=File.createTempFile("javaxsx-"+name().toLowerCase()+"-"+words.length+"-", ".txt");
+		file.deleteOnExit();
+		try(BufferedWriter bw=Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))
+		{
+			for(String word : words)
+			{
+				bw.write(word);
+				bw.newLine();
+			}
+		}
+		return file;
+	}
+}
@@ -0,0 +1,73 @@
+package com.eroelf.javaxsx.benchmarks.trie;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to build a whole Trie from the dictionary, and to save it into and load it from a file.
+ * The insert throughput is {@code size} divided by the build time.
+ * Saving and loading use the fastest way supported by each kind, see {@link TrieKind#save(TrieKind.Subject, File)}.
+ * 
+ * @author weikun.zhong
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=2)
+@Measurement(iterations=5)
+@Fork(1)
+public class TrieBuildBenchmark
+{
+	@State(Scope.Benchmark)
+	public static class SavedTrie
+	{
+		public File saved;
+		public File target;
+
+		@Setup(Level.Trial)
+		public void setUp(TrieState state) throws Exception
+		{
+			saved=File.createTempFile("javaxsx-saved-", ".dat");
+			target=File.createTempFile("javaxsx-target-", ".dat");
+			state.kind.save(state.trie, saved);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown()
+		{
+			saved.delete();
+			target.delete();
+		}
+	}
+
+	@Benchmark
+	public TrieKind.Subject build(TrieState state) throws Exception
+	{
+		return state.kind.build(state.words, state.file);
+	}
+
+	@Benchmark
+	public File save(TrieState state, SavedTrie savedTrie) throws Exception
+	{
+		state.kind.save(state.trie, savedTrie.target);
+		return savedTrie.target;
+	}
+
+	@Benchmark
+	public TrieKind.Subject load(TrieState state, SavedTrie savedTrie) throws Exception
+	{
+		return state.kind.load(savedTrie.saved);
+	}
+}
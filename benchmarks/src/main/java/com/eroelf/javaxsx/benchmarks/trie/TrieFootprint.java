@@ -0,0 +1,88 @@
+package com.eroelf.javaxsx.benchmarks.trie;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.ref.Reference;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.GsonBuilder;
+
+/**
+ * Measures the retained heap per key of every Trie kind, and writes the results as JSON like the results of JMH.
+ * The heap is measured before and after building after full garbage collections, so the JVM should be started with a fixed heap size and without other load.
+ * Memory-mapped data of {@link TrieKind#STATIC_DOUBLE_ARRAY} loaded by {@link TrieKind#load(File)} is not in the heap and is not measured here, while the built Tries are.
+ * 
+ * <p>Usage: {@code java -cp benchmarks.jar com.eroelf.javaxsx.benchmarks.trie.TrieFootprint [output.json] [sizes] [kinds] [dictionaries]}, where the last three are comma-separated lists, all kinds and dictionaries and sizes of 10000 and 1000000 by default.
+ * 
+ * @author weikun.zhong
+ */
+public class TrieFootprint
+{
+	private static final int GC_ROUNDS=5;
+
+	private static long usedHeap() throws InterruptedException
+	{
+		MemoryMXBean memoryMXBean=ManagementFactory.getMemoryMXBean();
+		for(int i=0; i<GC_ROUNDS; i++)
+		{
+			System.gc();
+			Thread.sleep(100);
+		}
+		return memoryMXBean.getHeapMemoryUsage().getUsed();
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		String output=args.length>0 ? args[0] : "footprint.json";
+		String[] sizes=(args.length>1 ? args[1] : "10000,1000000").split(",");
+		String[] kinds=(args.length>2 ? args[2] : "HASH_MAP,DOUBLE_ARRAY,STATIC_DOUBLE_ARRAY,INDEXED_DOUBLE_ARRAY,INDEXED_STATIC_DOUBLE_ARRAY").split(",");
+		String[] dictionaries=(args.length>3 ? args[3] : "SYNTHETIC,CJK").split(",");
+
+		List<Map<String, Object>> results=new ArrayList<>();
+		for(String dictionaryName : dictionaries)
+		{
+			Dictionary dictionary=Dictionary.valueOf(dictionaryName);
+			for(String sizeString : sizes)
+			{
+				String[] words=dictionary.words(Integer.parseInt(sizeString));
+				File file=dictionary.writeToFile(words);
+				long keyChars=0;
+				for(String word : words)
+				{
+					keyChars+=word.length();
+				}
+				for(String kindName : kinds)
+				{
+					TrieKind kind=TrieKind.valueOf(kindName);
+					long before=usedHeap();
+					TrieKind.Subject trie=kind.build(words, file);
+					long after=usedHeap();
+					Map<String, Object> result=new LinkedHashMap<>();
+					result.put("benchmark", TrieFootprint.class.getName());
+					Map<String, Object> params=new LinkedHashMap<>();
+					params.put("kind", kind.name());
+					params.put("dictionary", dictionary.name());
+					params.put("size", String.valueOf(words.length));
+					result.put("params", params);
+					result.put("retainedBytes", after-before);
+					result.put("bytesPerKey", (double)(after-before)/words.length);
+					result.put("bytesPerKeyChar", (double)(after-before)/keyChars);
+					results.add(result);
+					System.out.println(kind+" "+dictionary+" "+words.length+": "+(after-before)/words.length+" bytes/key");
+					Reference.reachabilityFence(trie);
+				}
+				file.delete();
+			}
+		}
+		try(PrintStream ps=new PrintStream(output, StandardCharsets.UTF_8))
+		{
+			ps.println(new GsonBuilder().setPrettyPrinting().create().toJson(results));
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package com.eroelf.javaxsx.benchmarks.trie;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.function.BiConsumer;
+
+import com.eroelf.javaxsx.util.trie.DoubleArrayTrie;
+import com.eroelf.javaxsx.util.trie.HashMapTrie;
+import com.eroelf.javaxsx.util.trie.IndexedTrie;
+import com.eroelf.javaxsx.util.trie.StaticDoubleArrayTrie;
+import com.eroelf.javaxsx.util.trie.Trie;
+import com.eroelf.javaxsx.util.trie.TrieVisitor;
+
+/**
+ * The benchmarked Trie implementations, adapted to one set of read operations.
+ * 
+ * @author weikun.zhong
+ */
+public enum TrieKind
+{
+	HASH_MAP
+	{
+		@Override
+		public Subject build(String[] words, File file)
+		{
+			return insertAll(new HashMapTrie(), words);
+		}
+	},
+	DOUBLE_ARRAY
+	{
+		@Override
+		public Subject build(String[] words, File file)
+		{
+			return insertAll(new DoubleArrayTrie(), words);
+		}
+	},
+	STATIC_DOUBLE_ARRAY
+	{
+		@Override
+		public Subject build(String[] words, File file)
+		{
+			return new TrieSubject(StaticDoubleArrayTrie.build(words));
+		}
+
+		@Override
+		public void save(Subject subject, File file) throws IOException
+		{
+			((StaticDoubleArrayTrie)((TrieSubject)subject).trie).saveToFile(file.getPath());
+		}
+
+		@Override
+		public Subject load(File file) throws IOException
+		{
+			return new TrieSubject(StaticDoubleArrayTrie.mapFromFile(file.getPath()));
+		}
+	},
+	INDEXED_DOUBLE_ARRAY
+	{
+		@Override
+		public Subject build(String[] words, File file) throws Exception
+		{
+			IndexedTrie indexedTrie=new IndexedTrie(DoubleArrayTrie.class, trieNum(words), LOGGER);
+			indexedTrie.batchAdd(file.getPath(), -1, 0);
+			return new IndexedSubject(indexedTrie);
+		}
+
+		@Override
+		public void save(Subject subject, File file)
+		{
+			((IndexedSubject)subject).indexedTrie.saveToFile(file.getPath());
+		}
+
+		@Override
+		public Subject load(File file)
+		{
+			return new IndexedSubject(IndexedTrie.readFromFile(file.getPath(), LOGGER));
+		}
+	},
+	INDEXED_STATIC_DOUBLE_ARRAY
+	{
+		@Override
+		public Subject build(String[] words, File file) throws Exception
+		{
+			// the empty Tries are replaced by batchBuild
+			IndexedTrie indexedTrie=new IndexedTrie(HashMapTrie.class, trieNum(words), LOGGER);
+			indexedTrie.batchBuild(file.getPath(), -1, -1, 0);
+			return new IndexedSubject(indexedTrie);
+		}
+
+		@Override
+		public void save(Subject subject, File file) throws IOException
+		{
+			((IndexedSubject)subject).indexedTrie.saveToMappedFile(file.getPath());
+		}
+
+		@Override
+		public Subject load(File file) throws IOException
+		{
+			return new IndexedSubject(IndexedTrie.readFromMappedFile(file.getPath(), LOGGER));
+		}
+	};
+
+	private static final int WORDS_PER_TRIE=1<<16;
+	private static final BiConsumer<Exception, String> LOGGER=(e, msg) -> {
+		if(e!=null)
+			throw new IllegalStateException(e);
+	};
+
+	/**
+	 * The read operations shared by all benchmarked implementations.
+	 */
+	public static interface Subject
+	{
+		public boolean contains(String word);
+		public boolean matchPrefix(CharSequence prefix, int limit, TrieVisitor visitor);
+		public boolean getPrefixes(CharSequence word, TrieVisitor visitor);
+	}
+
+	private static class TrieSubject implements Subject
+	{
+		private final Trie trie;
+
+		private TrieSubject(Trie trie)
+		{
+			this.trie=trie;
+		}
+
+		@Override
+		public boolean contains(String word)
+		{
+			return trie.contains(word);
+		}
+
+		@Override
+		public boolean matchPrefix(CharSequence prefix, int limit, TrieVisitor visitor)
+		{
+			return trie.matchPrefix(prefix, limit, visitor);
+		}
+
+		@Override
+		public boolean getPrefixes(CharSequence word, TrieVisitor visitor)
+		{
+			return trie.getPrefixes(word, visitor);
+		}
+	}
+
+	private static class IndexedSubject implements Subject
+	{
+		private final IndexedTrie indexedTrie;
+
+		private IndexedSubject(IndexedTrie indexedTrie)
+		{
+			this.indexedTrie=indexedTrie;
+		}
+
+		@Override
+		public boolean contains(String word)
+		{
+			return indexedTrie.contains(word);
+		}
+
+		@Override
+		public boolean matchPrefix(CharSequence prefix, int limit, TrieVisitor visitor)
+		{
+			return indexedTrie.matchPrefix(prefix, limit, visitor);
+		}
+
+		@Override
+		public boolean getPrefixes(CharSequence word, TrieVisitor visitor)
+		{
+			return indexedTrie.getPrefixes(word, visitor);
+		}
+	}
+
+	private static Subject insertAll(Trie trie, String[] words)
+	{
+		for(String word : words)
+		{
+			trie.insert(word);
+		}
+		return new TrieSubject(trie);
+	}
+
+	private static int trieNum(String[] words)
+	{
+		return Math.max(1, words.length/WORDS_PER_TRIE);
+	}
+
+	/**
+	 * Builds the Trie of this kind.
+	 * 
+	 * @param words the sorted words.
+	 * @param file the file which holds the same words one per line, as written by {@link Dictionary#writeToFile(String[])}.
+	 * @return the built Trie.
+	 * @throws Exception if the Trie can not be built.
+	 */
+	public abstract Subject build(String[] words, File file) throws Exception;
+
+	/**
+	 * Saves the Trie into a file in the fastest way supported by this kind, the default way is the Java serialization.
+	 * 
+	 * @param subject the Trie built by {@link #build(String[], File)}.
+	 * @param file the file to be written.
+	 * @throws Exception if the Trie can not be saved.
+	 */
+	public void save(Subject subject, File file) throws Exception
+	{
+		try(ObjectOutputStream oos=new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file))))
+		{
+			oos.writeObject(((TrieSubject)subject).trie);
+		}
+	}
+
+	/**
+	 * Loads the Trie saved by {@link #save(Subject, File)}.
+	 * 
+	 * @param file the saved file.
+	 * @return the loaded Trie.
+	 * @throws Exception if the Trie can not be loaded.
+	 */
+	public Subject load(File file) throws Exception
+	{
+		try(ObjectInputStream ois=new ObjectInputStream(new BufferedInputStream(new FileInputStream(file))))
+		{
+			return new TrieSubject((Trie)ois.readObject());
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package com.eroelf.javaxsx.benchmarks.trie;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Single-threaded latency of the read operations.
+ * Half of the {@code contains} queries are absent, {@code matchPrefix} visits at most {@value #PREFIX_LIMIT} words of a prefix of 1 to 3 characters, and {@code getPrefixes} visits all dictionary words which start a text.
+ * 
+ * @author weikun.zhong
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=3, time=2)
+@Measurement(iterations=5, time=2)
+@Fork(1)
+public class TrieReadBenchmark
+{
+	public static final int PREFIX_LIMIT=10;
+
+	@Benchmark
+	public boolean contains(TrieState state, Cursor cursor)
+	{
+		return state.trie.contains(cursor.next(state.queries));
+	}
+
+	@Benchmark
+	public boolean matchPrefix(TrieState state, Cursor cursor, Blackhole blackhole)
+	{
+		return state.trie.matchPrefix(cursor.next(state.prefixes), PREFIX_LIMIT, word -> {
+			blackhole.consume(word.length());
+			return true;
+		});
+	}
+
+	@Benchmark
+	public boolean getPrefixes(TrieState state, Cursor cursor, Blackhole blackhole)
+	{
+		return state.trie.getPrefixes(cursor.next(state.texts), word -> {
+			blackhole.consume(word.length());
+			return true;
+		});
+	}
+}
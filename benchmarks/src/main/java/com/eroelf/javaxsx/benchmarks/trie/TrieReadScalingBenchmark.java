@@ -0,0 +1,54 @@
+package com.eroelf.javaxsx.benchmarks.trie;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of concurrent {@code contains} on one shared Trie with 1, 2, 4 and 8 reader threads.
+ * The throughput reported by JMH is the total of all threads, so ideal scaling doubles it with the threads.
+ * 
+ * @author weikun.zhong
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3, time=2)
+@Measurement(iterations=5, time=2)
+@Fork(1)
+public class TrieReadScalingBenchmark
+{
+	@Benchmark
+	@Threads(1)
+	public boolean contains1(TrieState state, Cursor cursor)
+	{
+		return state.trie.contains(cursor.next(state.queries));
+	}
+
+	@Benchmark
+	@Threads(2)
+	public boolean contains2(TrieState state, Cursor cursor)
+	{
+		return state.trie.contains(cursor.next(state.queries));
+	}
+
+	@Benchmark
+	@Threads(4)
+	public boolean contains4(TrieState state, Cursor cursor)
+	{
+		return state.trie.contains(cursor.next(state.queries));
+	}
+
+	@Benchmark
+	@Threads(8)
+	public boolean contains8(TrieState state, Cursor cursor)
+	{
+		return state.trie.contains(cursor.next(state.queries));
+	}
+}
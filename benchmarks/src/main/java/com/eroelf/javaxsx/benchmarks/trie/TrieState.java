@@ -0,0 +1,52 @@
+package com.eroelf.javaxsx.benchmarks.trie;
+
+import java.io.File;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The dictionary and the Trie shared by all threads of a benchmark trial.
+ * 
+ * @author weikun.zhong
+ */
+@State(Scope.Benchmark)
+public class TrieState
+{
+	@Param({"HASH_MAP", "DOUBLE_ARRAY", "STATIC_DOUBLE_ARRAY", "INDEXED_DOUBLE_ARRAY", "INDEXED_STATIC_DOUBLE_ARRAY"})
+	public TrieKind kind;
+
+	@Param({"SYNTHETIC", "CJK"})
+	public Dictionary dictionary;
+
+	@Param({"10000", "1000000", "10000000"})
+	public int size;
+
+	public String[] words;
+	public File file;
+	public TrieKind.Subject trie;
+	public String[] queries;
+	public String[] prefixes;
+	public String[] texts;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		words=dictionary.words(size);
+		file=dictionary.writeToFile(words);
+		trie=kind.build(words, file);
+		queries=dictionary.queries(words);
+		prefixes=dictionary.prefixes(words);
+		texts=dictionary.texts(words);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		file.delete();
+	}
+}
@@ -3,6 +3,7 @@ package com.eroelf.javaxsx.util;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.ListIterator;
 
@@ -147,15 +148,13 @@ public class NumBytes
 	public static int base128UVarlongToBytes(long value, byte[] des, int start)
 	{
 		byte b;
-		int digit=7;
 		do
 		{
 			b=(byte)(value & 0x7f);
-			value>>>=digit;
+			value>>>=7;
 			if(value!=0)
 				b|=0x80;
 			des[start++]=b;
-			digit+=7;
 		}while(value!=0);
 		return start;
 	}
@@ -168,7 +167,6 @@ public class NumBytes
 	public static int base128VarlongToBytes(long value, byte[] des, int start)
 	{
 		byte b;
-		int digit=6;
 		boolean first=true;
 		byte isNegative=0;
 		if(value<0)
@@ -182,20 +180,18 @@ public class NumBytes
 			{
 				first=false;
 				b=(byte)((value & 0x3f) | isNegative);
-				value>>>=digit;
+				value>>>=6;
 				if(value!=0)
 					b|=0x80;
 				des[start++]=b;
-				digit+=6;
 			}
 			else
 			{
 				b=(byte)(value & 0x7f);
-				value>>>=digit;
+				value>>>=7;
 				if(value!=0)
 					b|=0x80;
 				des[start++]=b;
-				digit+=7;
 			}
 		}while(value!=0);
 		return start;
@@ -512,7 +508,7 @@ public class NumBytes
 		do
 		{
 			b=src[start++];
-			v|=(b & 0x7f)<<digit;
+			v|=(long)(b & 0x7f)<<digit;
 			digit+=7;
 		}while((b & 0x80)!=0);
 		return Pair.of(v, start);
@@ -538,14 +534,14 @@ public class NumBytes
 			{
 				first=false;
 				b=src[start++];
-				v|=(b & 0x3f)<<digit;
+				v|=(long)(b & 0x3f)<<digit;
 				negative=(b & 0x40)!=0;
 				digit+=6;
 			}
 			else
 			{
 				b=src[start++];
-				v|=(b & 0x7f)<<digit;
+				v|=(long)(b & 0x7f)<<digit;
 				digit+=7;
 			}
 		}while((b & 0x80)!=0);
@@ -613,6 +609,34 @@ public class NumBytes
 		return srcStart;
 	}
 
+	/**
+	 * Decodes base 128 unsigned varints at the absolute positions of the buffer without changing its position, so a shared read-only buffer can be decoded concurrently.
+	 * 
+	 * @param src the source buffer.
+	 * @param des the destination array.
+	 * @param srcStart the position of the first byte in the buffer.
+	 * @param desStart the first index of the destination array.
+	 * @param size the number of values to decode.
+	 * @return the position after the last decoded byte.
+	 */
+	public static int bytesToBase128UVarintArray(ByteBuffer src, int[] des, int srcStart, int desStart, int size)
+	{
+		for(int i=desStart; i<desStart+size; i++)
+		{
+			int v=0;
+			int digit=0;
+			byte b;
+			do
+			{
+				b=src.get(srcStart++);
+				v|=(b & 0x7f)<<digit;
+				digit+=7;
+			}while((b & 0x80)!=0);
+			des[i]=v;
+		}
+		return srcStart;
+	}
+
 	public static int bytesToBase128SVarintArray(byte[] src, int[] des, int srcStart, int desStart, int size)
 	{
 		for(int i=desStart; i<desStart+size; i++)
@@ -901,15 +925,13 @@ public class NumBytes
 	public static void writeBase128UVarlong(DataOutput out, long value) throws IOException
 	{
 		byte b;
-		int digit=7;
 		do
 		{
 			b=(byte)(value & 0x7f);
-			value>>>=digit;
+			value>>>=7;
 			if(value!=0)
 				b|=0x80;
 			out.writeByte(b);
-			digit+=7;
 		}while(value!=0);
 	}
 
@@ -921,7 +943,6 @@ public class NumBytes
 	public static void writeBase128Varlong(DataOutput out, long value) throws IOException
 	{
 		byte b;
-		int digit=6;
 		boolean first=true;
 		byte isNegative=0;
 		if(value<0)
@@ -935,20 +956,18 @@ public class NumBytes
 			{
 				first=false;
 				b=(byte)((value & 0x3f) | isNegative);
-				value>>>=digit;
+				value>>>=6;
 				if(value!=0)
 					b|=0x80;
 				out.writeByte(b);
-				digit+=6;
 			}
 			else
 			{
 				b=(byte)(value & 0x7f);
-				value>>>=digit;
+				value>>>=7;
 				if(value!=0)
 					b|=0x80;
 				out.writeByte(b);
-				digit+=7;
 			}
 		}while(value!=0);
 	}
@@ -977,7 +996,7 @@ public class NumBytes
 		do
 		{
 			b=in.readByte();
-			v|=(b & 0x7f)<<digit;
+			v|=(long)(b & 0x7f)<<digit;
 			digit+=7;
 		}while((b & 0x80)!=0);
 		return v;
@@ -1002,14 +1021,14 @@ public class NumBytes
 			{
 				first=false;
 				b=in.readByte();
-				v|=(b & 0x3f)<<digit;
+				v|=(long)(b & 0x3f)<<digit;
 				negative=(b & 0x40)!=0;
 				digit+=6;
 			}
 			else
 			{
 				b=in.readByte();
-				v|=(b & 0x7f)<<digit;
+				v|=(long)(b & 0x7f)<<digit;
 				digit+=7;
 			}
 		}while((b & 0x80)!=0);
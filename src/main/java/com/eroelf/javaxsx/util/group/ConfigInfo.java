@@ -16,4 +16,12 @@ public class ConfigInfo
 	public String groupStr;
 	public String sections;
 	public Date updateTime;
+	/**
+	 * The version of the facet configuration, a change is applied by {@link GroupingUtil#applyChanges} only if its version is greater than the current one.
+	 */
+	public long version;
+	/**
+	 * Marks the facet as removed in a change.
+	 */
+	public boolean deleted;
 }
@@ -0,0 +1,39 @@
+package com.eroelf.javaxsx.util.group;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A domain of a {@link LayeredGrouping} hierarchy.
+ * All layers of a domain are applied in order to the traffic reaching the domain.
+ * A domain can be restricted to the identifiers assigned to some groups of a prior facet, so the facets in it only apply to that traffic.
+ * 
+ * @author weikun.zhong
+ */
+public class Domain
+{
+	final List<Layer> layers=new ArrayList<>();
+	String conditionFacetName;
+	String[] conditionGroupNames;
+
+	public Domain addLayer(Layer layer)
+	{
+		layers.add(layer);
+		return this;
+	}
+
+	/**
+	 * Restricts this domain to the identifiers assigned to one of the groups of the facet.
+	 * If the facet is placed in the hierarchy, only the group resolved before entering this domain counts, otherwise the facet is evaluated directly.
+	 * 
+	 * @param facetName the name of the facet.
+	 * @param groupNames the names of the groups.
+	 * @return {@code this}.
+	 */
+	public Domain when(String facetName, String... groupNames)
+	{
+		conditionFacetName=facetName;
+		conditionGroupNames=groupNames.clone();
+		return this;
+	}
+}
@@ -1,15 +1,17 @@
 package com.eroelf.javaxsx.util.group;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import com.eroelf.javaxsx.util.StdLoggers;
@@ -44,7 +46,7 @@ public final class GroupingUtil
 
 		private final String facetName;
 		private final String groupName;
-		private transient GroupTask groupTask=GroupingUtil.IDLE;
+		private transient volatile GroupTask groupTask=GroupingUtil.IDLE;
 
 		private Group(String facetName, String groupName)
 		{
@@ -114,98 +116,106 @@ public final class GroupingUtil
 
 	/**
 	 * Manage all groups of a specified grouping facet.
+	 * A facet is an immutable snapshot of its suffix, groups and sections, so {@link #grouping(String)} needs no lock.
+	 * Re-configuring a facet publishes a new {@link Facet} instance which shares the {@link Group} instances of the same names with the old one.
 	 * 
 	 * @author weikun.zhong
 	 */
 	public static final class Facet
 	{
 		private final String facetName;
-		private final Map<String, Group> groupMap=new HashMap<>();
-		private String suffix;
-		private Group[] groups;
-		private double[] sections;
+		private final Map<String, Group> groupMap;
+		private final String suffix;
+		private final Group[] groups;
+		private final double[] sections;
+		private final boolean sortedSections;
+		private final long version;
 
-		private IdentifierValidator identifierValidator;
-		private HashGetter hashGetter;
+		private final IdentifierValidator identifierValidator;
+		private final HashGetter hashGetter;
 
-		private ReadWriteLock lock=new ReentrantReadWriteLock(true);
-
-		private Facet(String facetName, String suffix, Group[] groups, double[] sections, IdentifierValidator identifierValidator, HashGetter hashGetter, GroupTask... tasks)
-		{
-			this.facetName=facetName;
-			this.suffix=suffix;
-			this.identifierValidator=identifierValidator;
-			this.hashGetter=hashGetter;
-			setGroup(groups, sections, tasks);
-		}
-
-		private Facet(String facetName, String suffix, String[] groupNames, double[] sections, IdentifierValidator identifierValidator, HashGetter hashGetter, GroupTask... tasks)
+		private Facet(String facetName, String suffix, Group[] groups, double[] sections, IdentifierValidator identifierValidator, HashGetter hashGetter, long version)
 		{
+			if(sections.length>=groups.length)
+				throw new IllegalArgumentException("Facet::setSections: the length of sections must be smaller than group number!");
 			this.facetName=facetName;
 			this.suffix=suffix;
-			this.identifierValidator=identifierValidator;
-			this.hashGetter=hashGetter;
-			setGroup(groupNames, sections, tasks);
-		}
-
-		private final void setGroup(Group[] groups, double[] sections, GroupTask... tasks)
-		{
-			lock.writeLock().lock();
-			try
+			this.groups=groups;
+			this.sections=sections;
+			boolean sortedSections=true;
+			for(int i=1; i<sections.length && sortedSections; i++)
 			{
-				setSections(groups, sections);
-				this.groups=groups;
-				groupMap.clear();
-				for(Group group : groups)
-				{
-					groupMap.put(group.groupName, group);
-				}
+				sortedSections=sections[i-1]<=sections[i];
 			}
-			finally
+			this.sortedSections=sortedSections;
+			this.version=version;
+			this.identifierValidator=identifierValidator;
+			this.hashGetter=hashGetter;
+			Map<String, Group> groupMap=new HashMap<>();
+			for(Group group : groups)
 			{
-				lock.writeLock().unlock();
+				groupMap.put(group.groupName, group);
 			}
-			setTasks(tasks);
+			this.groupMap=groupMap;
 		}
 
-		private final void setGroup(String[] groupNames, double[] sections, GroupTask... tasks)
+		private static Facet create(Facet oldFacet, String facetName, String suffix, String[] groupNames, double[] sections, IdentifierValidator identifierValidator, HashGetter hashGetter, long version, GroupTask... tasks)
 		{
 			Group[] groups=new Group[groupNames.length];
 			for(int i=0; i<groups.length; i++)
 			{
 				String name=groupNames[i];
-				Group oldGroup=groupMap.get(name);
+				Group oldGroup=oldFacet!=null ? oldFacet.groupMap.get(name) : null;
 				if(oldGroup!=null)
 					groups[i]=oldGroup;
 				else
 					groups[i]=new Group(facetName, name);
 			}
-			setGroup(groups, sections, tasks);
+			Facet facet;
+			if(oldFacet!=null)
+				facet=new Facet(facetName, suffix, groups, sections, oldFacet.identifierValidator, oldFacet.hashGetter, version);
+			else
+				facet=new Facet(facetName, suffix, groups, sections, identifierValidator, hashGetter, version);
+			facet.setTasks(tasks);
+			return facet;
 		}
 
-		private final void setSections(Group[] groups, double[] sections)
+		private Facet withSections(double[] sections)
 		{
-			lock.writeLock().lock();
-			try
-			{
-				if(sections.length>=groups.length)
-					throw new IllegalArgumentException("Facet::setSections: the length of sections must be smaller than group number!");
-				this.sections=sections;
-			}
-			finally
-			{
-				lock.writeLock().unlock();
-			}
+			return new Facet(facetName, suffix, groups, Arrays.copyOf(sections, sections.length), identifierValidator, hashGetter, version);
 		}
 
+		private Facet withSuffix(String suffix)
+		{
+			return new Facet(facetName, suffix, groups, sections, identifierValidator, hashGetter, version);
+		}
+
+		/**
+		 * Replaces the facet registered with the name of {@code this} facet by a copy with the new sections.
+		 * {@code this} instance is immutable and stays unchanged.
+		 * 
+		 * @param sections the new sections.
+		 * 
+		 * @deprecated use {@link GroupingUtil#setFacetSections(String, double[])} instead.
+		 */
+		@Deprecated
 		public final void setSections(double[] sections)
 		{
-			setSections(groups, sections);
+			GroupingUtil.setFacetSections(facetName, sections);
 		}
 
+		/**
+		 * Replaces the facet registered with the name of {@code this} facet by a copy with the new suffix.
+		 * {@code this} instance is immutable and stays unchanged.
+		 * 
+		 * @param suffix the new suffix.
+		 * 
+		 * @deprecated use {@link GroupingUtil#setFacetSuffix(String, String)} instead.
+		 */
+		@Deprecated
 		public final void setSuffix(String suffix)
 		{
-			this.suffix=suffix;
+			GroupingUtil.setFacetSuffix(facetName, suffix);
 		}
 
 		/**
@@ -232,35 +242,44 @@ public final class GroupingUtil
 		{
 			if(identifierValidator.isValidIdentifier(identifier))
 			{
-				double hash=hashGetter.hash(identifier+suffix);
+				double hash=hashGetter.hash(identifier, suffix);
 				if(hash>=0 && hash<1)
-				{
-					lock.readLock().lock();
-					try
-					{
-						int len=Math.min(sections.length, groups.length);
-						int i=0;
-						for(i=0; i<len; i++)
-						{
-							if(hash<sections[i])
-								return groups[i];
-						}
-						return groups[i];
-					}
-					finally
-					{
-						lock.readLock().unlock();
-					}
-				}
+					return groups[section(hash)];
 			}
-			lock.readLock().lock();
-			try
+			return groups[groups.length-1];
+		}
+
+		/**
+		 * Finds the first section greater than the {@code hash}, by binary search if the sections are sorted.
+		 * 
+		 * @param hash the hash.
+		 * @return the index of the group.
+		 */
+		private int section(double hash)
+		{
+			if(sortedSections)
 			{
-				return groups[groups.length-1];
+				int low=0;
+				int high=sections.length;
+				while(low<high)
+				{
+					int mid=(low+high)>>>1;
+					if(hash<sections[mid])
+						high=mid;
+					else
+						low=mid+1;
+				}
+				return low;
 			}
-			finally
+			else
 			{
-				lock.readLock().unlock();
+				int i=0;
+				for(i=0; i<sections.length; i++)
+				{
+					if(hash<sections[i])
+						return i;
+				}
+				return i;
 			}
 		}
 
@@ -291,46 +310,39 @@ public final class GroupingUtil
 			return group!=null ? group : GroupingUtil.NA;
 		}
 
+		public String getFacetName()
+		{
+			return facetName;
+		}
+
+		public String getSuffix()
+		{
+			return suffix;
+		}
+
+		/**
+		 * Returns the version of the configuration of this facet, which is {@code 0} if not configured by a versioned {@link ConfigInfo}.
+		 * 
+		 * @return the version.
+		 */
+		public long getVersion()
+		{
+			return version;
+		}
+
 		public Group[] getAllGroup()
 		{
-			lock.readLock().lock();
-			try
-			{
-				return Arrays.copyOf(groups, groups.length);
-			}
-			finally
-			{
-				lock.readLock().unlock();
-			}
+			return Arrays.copyOf(groups, groups.length);
 		}
 
 		public double[] getSections()
 		{
-			lock.readLock().lock();
-			try
-			{
-				return Arrays.copyOf(sections, sections.length);
-			}
-			finally
-			{
-				lock.readLock().unlock();
-			}
+			return Arrays.copyOf(sections, sections.length);
 		}
 
 		public double[] getProportions()
 		{
-			double[] sections;
-			int length;
-			lock.readLock().lock();
-			try
-			{
-				sections=getSections();
-				length=groups.length;
-			}
-			finally
-			{
-				lock.readLock().unlock();
-			}
+			int length=groups.length;
 			double[] proportions=new double[length];
 			double cut=0;
 			for(int i=0; i<length; i++)
@@ -351,18 +363,7 @@ public final class GroupingUtil
 
 		public Map<Group, Double> getProportionMap()
 		{
-			Group[] groups;
-			double[] proportions;
-			lock.readLock().lock();
-			try
-			{
-				groups=getAllGroup();
-				proportions=getProportions();
-			}
-			finally
-			{
-				lock.readLock().unlock();
-			}
+			double[] proportions=getProportions();
 			Map<Group, Double> res=new LinkedHashMap<>();
 			for(int i=0; i<groups.length; i++)
 			{
@@ -376,22 +377,14 @@ public final class GroupingUtil
 		{
 			StringBuilder stringBuilder=new StringBuilder(facetName).append(":");
 			StringBuilder stringBuilder2=new StringBuilder(":");
-			lock.readLock().lock();
-			try
+			stringBuilder.append(suffix).append(":");
+			for(Group group : groups)
 			{
-				stringBuilder.append(suffix).append(":");
-				for(Group group : groups)
-				{
-					stringBuilder.append(group.groupName).append(",");
-				}
-				for(double d : sections)
-				{
-					stringBuilder2.append(d).append(",");
-				}
+				stringBuilder.append(group.groupName).append(",");
 			}
-			finally
+			for(double d : sections)
 			{
-				lock.readLock().unlock();
+				stringBuilder2.append(d).append(",");
 			}
 			if(stringBuilder.length()>0 && stringBuilder.charAt(stringBuilder.length()-1)==',')
 				stringBuilder.deleteCharAt(stringBuilder.length()-1);
@@ -415,8 +408,55 @@ public final class GroupingUtil
 			return null;
 		}
 	};
-	private static final Map<String, Facet> FACET_MAP=new HashMap<>();
-	private static final ReadWriteLock LOCK=new ReentrantReadWriteLock(true);
+	private static final Object LOCK=new Object();
+	private static volatile Map<String, Facet> facetMap=Collections.emptyMap();
+	// the versions of the changes which deleted facets, guarded by LOCK
+	private static Map<String, Long> deletedVersions=new HashMap<>();
+
+	/**
+	 * Applies the {@code modifier} to a copy of the facet map and publishes the copy as a whole, so readers always see a consistent set of facets without locking.
+	 * Nothing is published if the {@code modifier} throws.
+	 * 
+	 * @param modifier the modification to the copy.
+	 */
+	private static void publish(Consumer<Map<String, Facet>> modifier)
+	{
+		synchronized(LOCK)
+		{
+			Map<String, Facet> map=new HashMap<>(facetMap);
+			modifier.accept(map);
+			commit(map, deletedVersions);
+		}
+	}
+
+	/**
+	 * Publishes the facets and the versions of deleted facets together. The versions of the facets configured again are dropped.
+	 */
+	private static void commit(Map<String, Facet> map, Map<String, Long> tombstones)
+	{
+		tombstones.keySet().removeIf(map::containsKey);
+		deletedVersions=tombstones;
+		facetMap=Collections.unmodifiableMap(map);
+	}
+
+	private static Facet requireFacet(Map<String, Facet> map, String facetName, String methodName)
+	{
+		Facet facet=map.get(facetName);
+		if(facet!=null)
+			return facet;
+		else
+			throw new IllegalArgumentException("GroupingUtil::"+methodName+": no facet with facetName='"+facetName+"' found!");
+	}
+
+	/**
+	 * Returns the current snapshot of all facets, which is replaced by a new instance on every change.
+	 * 
+	 * @return the unmodifiable facet map.
+	 */
+	static Map<String, Facet> snapshot()
+	{
+		return facetMap;
+	}
 
 	/**
 	 * Get the user group of the grouping facet specified by the {@code facetName} via the user identifier.
@@ -427,10 +467,119 @@ public final class GroupingUtil
 	 */
 	public static Group getGroupFromIdentifier(String facetName, String identifier)
 	{
-		Facet facet=FACET_MAP.get(facetName);
+		Facet facet=facetMap.get(facetName);
 		return facet!=null ? facet.grouping(identifier) : NA;
 	}
 
+	/**
+	 * Get the user groups of many grouping facets via the user identifier.
+	 * All facets are read from the same snapshot, and the identifier is encoded only once if the facets use the hash getters in the package {@code hashgetterimpl}.
+	 * 
+	 * @param identifier the user identifier.
+	 * @param facetNames the grouping facet names.
+	 * @param out receives the group of each facet at the same index, or {@link GroupingUtil#NA} if the facet is not found.
+	 */
+	public static void groupAll(String identifier, String[] facetNames, Group[] out)
+	{
+		if(out.length<facetNames.length)
+			throw new IllegalArgumentException("GroupingUtil::groupAll: the length of out must not be smaller than the number of facets!");
+		Map<String, Facet> facetMap=GroupingUtil.facetMap;
+		for(int i=0; i<facetNames.length; i++)
+		{
+			Facet facet=facetMap.get(facetNames[i]);
+			out[i]=facet!=null ? facet.grouping(identifier) : NA;
+		}
+	}
+
+	/**
+	 * Get the user groups of the grouping facet specified by the {@code facetName} for many identifiers, in the order of the identifiers.
+	 * All identifiers are grouped by the same snapshot of the facet.
+	 * 
+	 * @param facetName the grouping facet name.
+	 * @param identifiers the user identifiers.
+	 * @param consumer receives the group of each identifier, which is {@link GroupingUtil#NA} if the facet is not found.
+	 */
+	public static void groupMany(String facetName, Iterable<String> identifiers, Consumer<Group> consumer)
+	{
+		Facet facet=facetMap.get(facetName);
+		for(String identifier : identifiers)
+		{
+			consumer.accept(facet!=null ? facet.grouping(identifier) : NA);
+		}
+	}
+
+	/**
+	 * Get the user groups of the grouping facet specified by the {@code facetName} for many identifiers in parallel, by the common {@link ForkJoinPool}.
+	 * 
+	 * @param facetName the grouping facet name.
+	 * @param identifiers the user identifiers.
+	 * @param out receives the group of each identifier at the same index, which is {@link GroupingUtil#NA} if the facet is not found.
+	 * 
+	 * @see #groupMany(String, String[], Group[], ForkJoinPool)
+	 */
+	public static void groupMany(String facetName, String[] identifiers, Group[] out)
+	{
+		groupMany(facetName, identifiers, out, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Get the user groups of the grouping facet specified by the {@code facetName} for many identifiers in parallel.
+	 * All identifiers are grouped by the same snapshot of the facet.
+	 * 
+	 * @param facetName the grouping facet name.
+	 * @param identifiers the user identifiers.
+	 * @param out receives the group of each identifier at the same index, which is {@link GroupingUtil#NA} if the facet is not found.
+	 * @param pool the {@link ForkJoinPool} to run the grouping.
+	 */
+	public static void groupMany(String facetName, String[] identifiers, Group[] out, ForkJoinPool pool)
+	{
+		if(out.length<identifiers.length)
+			throw new IllegalArgumentException("GroupingUtil::groupMany: the length of out must not be smaller than the number of identifiers!");
+		Facet facet=facetMap.get(facetName);
+		if(facet!=null)
+			pool.invoke(new BatchGrouping(facet, identifiers, out, 0, identifiers.length));
+		else
+			Arrays.fill(out, 0, identifiers.length, NA);
+	}
+
+	private static final class BatchGrouping extends RecursiveAction
+	{
+		private static final long serialVersionUID=1L;
+		private static final int THRESHOLD=1<<12;
+
+		private final Facet facet;
+		private final String[] identifiers;
+		private final Group[] out;
+		private final int from;
+		private final int to;
+
+		public BatchGrouping(Facet facet, String[] identifiers, Group[] out, int from, int to)
+		{
+			this.facet=facet;
+			this.identifiers=identifiers;
+			this.out=out;
+			this.from=from;
+			this.to=to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to-from<=THRESHOLD)
+			{
+				for(int i=from; i<to; i++)
+				{
+					out[i]=facet.grouping(identifiers[i]);
+				}
+			}
+			else
+			{
+				int mid=(from+to)>>>1;
+				invokeAll(new BatchGrouping(facet, identifiers, out, from, mid), new BatchGrouping(facet, identifiers, out, mid, to));
+			}
+		}
+	}
+
 	/**
 	 * Check if the specified group is the group with the given {@code name} in the facet represented by {@code facetName}.
 	 * 
@@ -444,13 +593,13 @@ public final class GroupingUtil
 	 */
 	public static boolean is(Group group, String facetName, String name)
 	{
-		Facet facet=FACET_MAP.get(facetName);
+		Facet facet=facetMap.get(facetName);
 		return facet!=null ? facet.is(group, name) : false;
 	}
 
 	public static Facet getFacet(String facetName)
 	{
-		return FACET_MAP.get(facetName);
+		return facetMap.get(facetName);
 	}
 
 	/**
@@ -462,50 +611,42 @@ public final class GroupingUtil
 	 */
 	public static Group getGroup(String facetName, String groupName)
 	{
-		Facet facet=FACET_MAP.get(facetName);
+		Facet facet=facetMap.get(facetName);
 		return facet!=null ? facet.getGroup(groupName) : NA;
 	}
 
 	public static Group[] getAllGroup(String facetName)
 	{
-		Facet facet=FACET_MAP.get(facetName);
+		Facet facet=facetMap.get(facetName);
 		return facet!=null ? facet.getAllGroup() : null;
 	}
 
 	public static double[] getSections(String facetName)
 	{
-		Facet facet=FACET_MAP.get(facetName);
+		Facet facet=facetMap.get(facetName);
 		return facet!=null ? facet.getSections() : null;
 	}
 
 	public static double[] getProportions(String facetName)
 	{
-		Facet facet=FACET_MAP.get(facetName);
+		Facet facet=facetMap.get(facetName);
 		return facet!=null ? facet.getProportions() : null;
 	}
 
 	public static Map<Group, Double> getProportionMap(String facetName)
 	{
-		Facet facet=FACET_MAP.get(facetName);
+		Facet facet=facetMap.get(facetName);
 		return facet!=null ? facet.getProportionMap() : null;
 	}
 
 	public static void setFacetSections(String facetName, double[] sections)
 	{
-		Facet facet=FACET_MAP.get(facetName);
-		if(facet!=null)
-			facet.setSections(sections);
-		else
-			throw new IllegalArgumentException("GroupingUtil::setFacetSections: no facet with facetName='"+facetName+"' found!");
+		publish(map -> map.put(facetName, requireFacet(map, facetName, "setFacetSections").withSections(sections)));
 	}
 
 	public static void setFacetSuffix(String facetName, String suffix)
 	{
-		Facet facet=FACET_MAP.get(facetName);
-		if(facet!=null)
-			facet.setSuffix(suffix);
-		else
-			throw new IllegalArgumentException("GroupingUtil::setFacetSuffix: no facet with facetName='"+facetName+"' found!");
+		publish(map -> map.put(facetName, requireFacet(map, facetName, "setFacetSuffix").withSuffix(suffix)));
 	}
 
 	/**
@@ -516,7 +657,7 @@ public final class GroupingUtil
 	 */
 	public static void setFacetTask(String facetName, GroupTask... tasks)
 	{
-		Facet facet=FACET_MAP.get(facetName);
+		Facet facet=facetMap.get(facetName);
 		if(facet!=null)
 			facet.setTasks(tasks);
 		else
@@ -536,14 +677,23 @@ public final class GroupingUtil
 	 */
 	public static void configFacet(String facetName, String suffix, String[] groupNames, double[] sections, IdentifierValidator identifierValidator, HashGetter hashGetter, GroupTask... tasks)
 	{
-		Facet facet=FACET_MAP.get(facetName);
-		if(facet!=null)
+		publish(map -> putFacet(map, facetName, suffix, groupNames, sections, identifierValidator, hashGetter, tasks));
+	}
+
+	private static void putFacet(Map<String, Facet> map, String facetName, String suffix, String[] groupNames, double[] sections, IdentifierValidator identifierValidator, HashGetter hashGetter, GroupTask... tasks)
+	{
+		Facet oldFacet=map.get(facetName);
+		map.put(facetName, Facet.create(oldFacet, facetName, suffix, groupNames, sections, identifierValidator, hashGetter, oldFacet!=null ? oldFacet.version : 0, tasks));
+	}
+
+	private static double[] toSections(String[] sectionStrs)
+	{
+		double[] sections=new double[sectionStrs.length];
+		for(int i=0; i<sections.length; i++)
 		{
-			facet.suffix=suffix;
-			facet.setGroup(groupNames, sections, tasks);
+			sections[i]=Double.parseDouble(sectionStrs[i]);
 		}
-		else
-			FACET_MAP.put(facetName, new Facet(facetName, suffix, groupNames, sections, identifierValidator, hashGetter, tasks));
+		return sections;
 	}
 
 	/**
@@ -559,12 +709,7 @@ public final class GroupingUtil
 	 */
 	public static void configFacet(String facetName, String suffix, String[] groupNames, String[] sectionStrs, IdentifierValidator identifierValidator, HashGetter hashGetter, GroupTask... tasks)
 	{
-		double[] sections=new double[sectionStrs.length];
-		for(int i=0; i<sections.length; i++)
-		{
-			sections[i]=Double.parseDouble(sectionStrs[i]);
-		}
-		configFacet(facetName, suffix, groupNames, sections, identifierValidator, hashGetter, tasks);
+		configFacet(facetName, suffix, groupNames, toSections(sectionStrs), identifierValidator, hashGetter, tasks);
 	}
 
 	/**
@@ -610,7 +755,8 @@ public final class GroupingUtil
 	}
 
 	/**
-	 * Configure all facets represented by {@code facetConfigs}.
+	 * Configure all facets represented by {@code facetConfigs}, and publish them at once.
+	 * Invalid configuration strings are logged and skipped.
 	 * 
 	 * @param loggerFunc a {@link BiConsumer} instance to process {@link Exception}s and error messages.
 	 * @param identifierValidator define {@link IdentifierValidator} to validate identifiers.
@@ -619,22 +765,24 @@ public final class GroupingUtil
 	 */
 	public static void config(BiConsumer<? super Exception, String> loggerFunc, IdentifierValidator identifierValidator, HashGetter hashGetter, String... facetConfigs)
 	{
-		for(String onefacetStr : facetConfigs)
-		{
-			try
+		publish(map -> {
+			for(String onefacetStr : facetConfigs)
 			{
-				String[] items=onefacetStr.split(":");
-				String facetName=items[0];
-				String suffix=items[1];
-				String[] groupNames=items[2].split(",");
-				String[] sectionStrs=items[3].split(",");
-				configFacet(facetName, suffix, groupNames, sectionStrs, identifierValidator, hashGetter);
-			}
-			catch(Exception e)
-			{
-				loggerFunc.accept(e, "GroupingUtil::config: error detected in ####"+onefacetStr+"#### !");
+				try
+				{
+					String[] items=onefacetStr.split(":");
+					String facetName=items[0];
+					String suffix=items[1];
+					String[] groupNames=items[2].split(",");
+					String[] sectionStrs=items[3].split(",");
+					putFacet(map, facetName, suffix, groupNames, toSections(sectionStrs), identifierValidator, hashGetter);
+				}
+				catch(Exception e)
+				{
+					loggerFunc.accept(e, "GroupingUtil::config: error detected in ####"+onefacetStr+"#### !");
+				}
 			}
-		}
+		});
 		loggerFunc.accept(null, "GroupingUtil::config: update finished.");
 	}
 
@@ -668,7 +816,8 @@ public final class GroupingUtil
 	}
 
 	/**
-	 * Configure all facets represented by {@code configInfos}.
+	 * Configure all facets represented by {@code configInfos}, and publish them at once.
+	 * If any {@link ConfigInfo} is invalid, an exception is thrown and nothing is changed.
 	 * 
 	 * @param identifierValidator define {@link IdentifierValidator} to validate identifiers.
 	 * @param hashGetter define the {@link HashGetter} object to calculate hashes.
@@ -676,14 +825,12 @@ public final class GroupingUtil
 	 */
 	public static void config(IdentifierValidator identifierValidator, HashGetter hashGetter, ConfigInfo... configInfos)
 	{
-		for(ConfigInfo configInfo : configInfos)
-		{
-			configFacet(configInfo, identifierValidator, hashGetter);
-		}
+		config(identifierValidator, hashGetter, Arrays.asList(configInfos));
 	}
 
 	/**
-	 * Configure all facets represented by {@code configInfos}.
+	 * Configure all facets represented by {@code configInfos}, and publish them at once.
+	 * If any {@link ConfigInfo} is invalid, an exception is thrown and nothing is changed.
 	 * 
 	 * @param identifierValidator define {@link IdentifierValidator} to validate identifiers.
 	 * @param hashGetter define the {@link HashGetter} object to calculate hashes.
@@ -691,12 +838,118 @@ public final class GroupingUtil
 	 */
 	public static void config(IdentifierValidator identifierValidator, HashGetter hashGetter, Iterable<ConfigInfo> configInfos)
 	{
-		for(ConfigInfo configInfo : configInfos)
+		publish(map -> {
+			for(ConfigInfo configInfo : configInfos)
+			{
+				putFacet(map, configInfo.facetName, configInfo.suffix, configInfo.groupStr.split(","), toSections(configInfo.sections.split(",")), identifierValidator, hashGetter);
+			}
+		});
+	}
+
+	/**
+	 * Configure all facets represented by {@code configInfos} and remove the facets not retained, then publish all changes at once,
+	 * so readers never see a partially updated set of facets.
+	 * If any {@link ConfigInfo} is invalid, an exception is thrown and nothing is changed.
+	 * 
+	 * @param configInfos {@link Iterable} object stores {@link ConfigInfo} objects which stores the group information, refer to {@link #configFacet(String, String, String, String, IdentifierValidator, HashGetter, GroupTask...)} for detail.
+	 * @param identifierValidators gives the {@link IdentifierValidator} of a new facet by its name.
+	 * @param hashGetters gives the {@link HashGetter} of a new facet by its name.
+	 * @param retainedFacetNames names of facets to keep besides the configured ones, all others will be removed. If {@code null}, no facet will be removed.
+	 */
+	public static void configFacets(Iterable<ConfigInfo> configInfos, Function<String, IdentifierValidator> identifierValidators, Function<String, HashGetter> hashGetters, Set<String> retainedFacetNames)
+	{
+		publish(map -> {
+			Set<String> configuredFacetNames=new HashSet<>();
+			for(ConfigInfo configInfo : configInfos)
+			{
+				configuredFacetNames.add(configInfo.facetName);
+				map.put(configInfo.facetName, createFacet(map.get(configInfo.facetName), configInfo, identifierValidators, hashGetters));
+			}
+			if(retainedFacetNames!=null)
+				map.keySet().removeIf(facetName -> !configuredFacetNames.contains(facetName) && !retainedFacetNames.contains(facetName));
+		});
+	}
+
+	/**
+	 * Applies incremental changes of facets and publishes them at once.
+	 * Logs will be printed to stderr.
+	 * 
+	 * @param changes the changes.
+	 * @param identifierValidators gives the {@link IdentifierValidator} of a new facet by its name.
+	 * @param hashGetters gives the {@link HashGetter} of a new facet by its name.
+	 * @return the number of changes applied.
+	 * @see #applyChanges(BiConsumer, Iterable, Function, Function)
+	 */
+	public static int applyChanges(Iterable<ConfigInfo> changes, Function<String, IdentifierValidator> identifierValidators, Function<String, HashGetter> hashGetters)
+	{
+		return applyChanges(StdLoggers.STD_ERR_EXCEPTION_MSG_LOGGER, changes, identifierValidators, hashGetters);
+	}
+
+	/**
+	 * Applies incremental changes of facets and publishes them at once.
+	 * A change is skipped if the facet exists and its version is not less than {@link ConfigInfo#version} of the change, or if the facet has been deleted by a change with a version not less than it,
+	 * so changes delivered more than once or out of order are harmless.
+	 * A change with {@link ConfigInfo#deleted} set removes the facet, and its version is kept until the facet is configured again.
+	 * Invalid changes are logged and skipped, and the other changes are still applied, since the sources do not deliver a batch again once it is read.
+	 * 
+	 * @param loggerFunc a {@link BiConsumer} instance to process {@link Exception}s and error messages.
+	 * @param changes the changes.
+	 * @param identifierValidators gives the {@link IdentifierValidator} of a new facet by its name.
+	 * @param hashGetters gives the {@link HashGetter} of a new facet by its name.
+	 * @return the number of changes applied.
+	 */
+	public static int applyChanges(BiConsumer<? super Exception, String> loggerFunc, Iterable<ConfigInfo> changes, Function<String, IdentifierValidator> identifierValidators, Function<String, HashGetter> hashGetters)
+	{
+		synchronized(LOCK)
 		{
-			configFacet(configInfo, identifierValidator, hashGetter);
+			Map<String, Facet> map=new HashMap<>(facetMap);
+			Map<String, Long> tombstones=new HashMap<>(deletedVersions);
+			int applied=0;
+			for(ConfigInfo change : changes)
+			{
+				try
+				{
+					Facet oldFacet=map.get(change.facetName);
+					long version=oldFacet!=null ? oldFacet.version : tombstones.getOrDefault(change.facetName, Long.MIN_VALUE);
+					if(change.version<=version)
+						continue;
+					if(change.deleted)
+					{
+						if(oldFacet!=null)
+						{
+							map.remove(change.facetName);
+							++applied;
+						}
+						tombstones.put(change.facetName, change.version);
+					}
+					else
+					{
+						map.put(change.facetName, createFacet(oldFacet, change, identifierValidators, hashGetters));
+						++applied;
+					}
+				}
+				catch(Exception e)
+				{
+					loggerFunc.accept(e, "GroupingUtil::applyChanges: error detected in ####"+change.facetName+":"+change.suffix+":"+change.groupStr+":"+change.sections+"#### of version "+change.version+"!");
+				}
+			}
+			if(applied>0)
+				commit(map, tombstones);
+			else
+				deletedVersions=tombstones;
+			return applied;
 		}
 	}
 
+	private static Facet createFacet(Facet oldFacet, ConfigInfo configInfo, Function<String, IdentifierValidator> identifierValidators, Function<String, HashGetter> hashGetters)
+	{
+		String facetName=configInfo.facetName;
+		double[] sections=toSections(configInfo.sections.split(","));
+		IdentifierValidator identifierValidator=oldFacet!=null ? null : identifierValidators.apply(facetName);
+		HashGetter hashGetter=oldFacet!=null ? null : hashGetters.apply(facetName);
+		return Facet.create(oldFacet, facetName, configInfo.suffix, configInfo.groupStr.split(","), sections, identifierValidator, hashGetter, configInfo.version);
+	}
+
 	/**
 	 * Get the configuration string of all facets.
 	 * 
@@ -706,17 +959,9 @@ public final class GroupingUtil
 	public static String getConfig()
 	{
 		StringBuilder stringBuilder=new StringBuilder();
-		LOCK.readLock().lock();
-		try
+		for(Facet facet : facetMap.values())
 		{
-			for(Facet facet : FACET_MAP.values())
-			{
-				stringBuilder.append(facet.toString()).append("#");
-			}
-		}
-		finally
-		{
-			LOCK.readLock().unlock();
+			stringBuilder.append(facet.toString()).append("#");
 		}
 		if(stringBuilder.length()>0 && stringBuilder.charAt(stringBuilder.length()-1)=='#')
 			stringBuilder.deleteCharAt(stringBuilder.length()-1);
@@ -725,44 +970,22 @@ public final class GroupingUtil
 
 	public static Set<String> getAllFacetName()
 	{
-		LOCK.readLock().lock();
-		try
-		{
-			return new HashSet<>(FACET_MAP.keySet());
-		}
-		finally
-		{
-			LOCK.readLock().unlock();
-		}
+		return new HashSet<>(facetMap.keySet());
 	}
 
 	public static void removeFacet(String facetName)
 	{
-		LOCK.writeLock().lock();
-		try
-		{
-			FACET_MAP.remove(facetName);
-		}
-		finally
-		{
-			LOCK.writeLock().unlock();
-		}
+		publish(map -> map.remove(facetName));
 	}
 
 	public static void removeFacets(Iterable<String> facetNames)
 	{
-		LOCK.writeLock().lock();
-		try
-		{
+		publish(map -> {
 			for(String facetName : facetNames)
 			{
-				FACET_MAP.remove(facetName);
+				map.remove(facetName);
 			}
-		}
-		finally
-		{
-			LOCK.writeLock().unlock();
-		}
+		});
 	}
 
 	/**
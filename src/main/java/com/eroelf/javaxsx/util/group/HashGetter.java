@@ -12,6 +12,19 @@ public interface HashGetter extends ToDoubleFunction<String>
 {
 	public double hash(String identifier);
 
+	/**
+	 * Calculates the hash of the concatenation of the identifier and the suffix, which equals {@code hash(identifier+suffix)}.
+	 * Implementations can override it to hash the two parts as a virtual concatenation without building a new string.
+	 * 
+	 * @param identifier the identifier.
+	 * @param suffix the suffix.
+	 * @return the hash.
+	 */
+	default double hash(String identifier, String suffix)
+	{
+		return hash(identifier+suffix);
+	}
+
 	default double applyAsDouble(String identifier)
 	{
 		return hash(identifier);
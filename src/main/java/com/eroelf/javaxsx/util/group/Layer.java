@@ -0,0 +1,81 @@
+package com.eroelf.javaxsx.util.group;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A layer of a {@link LayeredGrouping} hierarchy.
+ * A layer splits the traffic reaching it into disjoint ranges by its own hash, and each range belongs to one facet or one nested {@link Domain}, so the facets in a layer are mutually exclusive,
+ * while the facets in different layers of the same domain overlap independently.
+ * An identifier which falls in no range of a layer gets no group from it.
+ * 
+ * @author weikun.zhong
+ */
+public class Layer
+{
+	static final class Segment
+	{
+		final double from;
+		final double to;
+		final String facetName;
+		final Domain domain;
+
+		private Segment(double from, double to, String facetName, Domain domain)
+		{
+			this.from=from;
+			this.to=to;
+			this.facetName=facetName;
+			this.domain=domain;
+		}
+	}
+
+	final String name;
+	final String suffix;
+	final HashGetter hashGetter;
+	final List<Segment> segments=new ArrayList<>();
+
+	/**
+	 * @param name the name of the layer.
+	 * @param suffix the suffix add to the user identifier before hashing, which must differ from the suffixes of other layers and facets to keep them independent.
+	 * @param hashGetter the {@link HashGetter} object to calculate hashes of the layer.
+	 */
+	public Layer(String name, String suffix, HashGetter hashGetter)
+	{
+		this.name=name;
+		this.suffix=suffix;
+		this.hashGetter=hashGetter;
+	}
+
+	/**
+	 * Assigns the traffic in {@code [from, to)} of this layer to the facet, which then groups the identifiers by its own sections.
+	 * 
+	 * @param facetName the name of the facet configured in {@link GroupingUtil}.
+	 * @param from the start of the range, inclusive.
+	 * @param to the end of the range, exclusive.
+	 * @return {@code this}.
+	 */
+	public Layer addFacet(String facetName, double from, double to)
+	{
+		segments.add(new Segment(from, to, facetName, null));
+		return this;
+	}
+
+	/**
+	 * Assigns the traffic in {@code [from, to)} of this layer to a nested domain.
+	 * 
+	 * @param domain the nested domain.
+	 * @param from the start of the range, inclusive.
+	 * @param to the end of the range, exclusive.
+	 * @return {@code this}.
+	 */
+	public Layer addDomain(Domain domain, double from, double to)
+	{
+		segments.add(new Segment(from, to, null, domain));
+		return this;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+}
@@ -0,0 +1,263 @@
+package com.eroelf.javaxsx.util.group;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.eroelf.javaxsx.util.group.GroupingUtil.Facet;
+import com.eroelf.javaxsx.util.group.GroupingUtil.Group;
+
+/**
+ * Resolves the groups of an identifier in a hierarchy of {@link Domain}s and {@link Layer}s by walking it once.
+ * In each layer, only the facet or nested domain owning the hash range of the identifier is evaluated, so the cost grows with the depth of the hierarchy rather than the number of facets.
+ * <p>
+ * The structure is compiled on construction, and later changes to the {@link Domain} and {@link Layer} objects have no effect.
+ * The facets are looked up from {@link GroupingUtil} by name, and the bindings are cached until the facets are re-configured.
+ * Facets not configured are skipped.
+ * 
+ * @author weikun.zhong
+ */
+public class LayeredGrouping
+{
+	private static final class DomainNode
+	{
+		private final int conditionFacet;
+		private final String[] conditionGroupNames;
+		private final LayerNode[] layers;
+
+		private DomainNode(int conditionFacet, String[] conditionGroupNames, LayerNode[] layers)
+		{
+			this.conditionFacet=conditionFacet;
+			this.conditionGroupNames=conditionGroupNames;
+			this.layers=layers;
+		}
+	}
+
+	private static final class LayerNode
+	{
+		private final String suffix;
+		private final HashGetter hashGetter;
+		private final double[] from;
+		private final double[] to;
+		private final int[] facets;
+		private final DomainNode[] domains;
+
+		private LayerNode(String suffix, HashGetter hashGetter, double[] from, double[] to, int[] facets, DomainNode[] domains)
+		{
+			this.suffix=suffix;
+			this.hashGetter=hashGetter;
+			this.from=from;
+			this.to=to;
+			this.facets=facets;
+			this.domains=domains;
+		}
+
+		private int find(double hash)
+		{
+			int low=0;
+			int high=from.length;
+			while(low<high)
+			{
+				int mid=(low+high)>>>1;
+				if(hash<from[mid])
+					high=mid;
+				else
+					low=mid+1;
+			}
+			return low>0 && hash<to[low-1] ? low-1 : -1;
+		}
+	}
+
+	private static final class Binding
+	{
+		private final Map<String, Facet> facetMap;
+		private final Facet[] facets;
+
+		private Binding(Map<String, Facet> facetMap, Facet[] facets)
+		{
+			this.facetMap=facetMap;
+			this.facets=facets;
+		}
+	}
+
+	private final List<String> facetNames=new ArrayList<>();
+	private final Map<String, Integer> facetOrdinals=new HashMap<>();
+	private final List<Boolean> placed=new ArrayList<>();
+	private final boolean[] placedFacets;
+	private final DomainNode root;
+	private volatile Binding binding;
+
+	/**
+	 * @param root the root domain of the hierarchy.
+	 * @throws IllegalArgumentException if any range is out of {@code [0, 1]} or overlaps another one in the same layer, if a facet is placed more than once, or if a domain contains itself.
+	 */
+	public LayeredGrouping(Domain root)
+	{
+		this.root=compile(root, Collections.newSetFromMap(new IdentityHashMap<>()));
+		placedFacets=new boolean[placed.size()];
+		for(int i=0; i<placedFacets.length; i++)
+		{
+			placedFacets[i]=placed.get(i);
+		}
+	}
+
+	private int ordinal(String facetName)
+	{
+		Integer ordinal=facetOrdinals.get(facetName);
+		if(ordinal==null)
+		{
+			ordinal=facetNames.size();
+			facetNames.add(facetName);
+			facetOrdinals.put(facetName, ordinal);
+			placed.add(false);
+		}
+		return ordinal;
+	}
+
+	private DomainNode compile(Domain domain, Set<Domain> path)
+	{
+		if(!path.add(domain))
+			throw new IllegalArgumentException("LayeredGrouping::compile: a domain must not contain itself!");
+		int conditionFacet=domain.conditionFacetName!=null ? ordinal(domain.conditionFacetName) : -1;
+		LayerNode[] layers=new LayerNode[domain.layers.size()];
+		for(int i=0; i<layers.length; i++)
+		{
+			layers[i]=compile(domain.layers.get(i), path);
+		}
+		path.remove(domain);
+		return new DomainNode(conditionFacet, domain.conditionGroupNames, layers);
+	}
+
+	private LayerNode compile(Layer layer, Set<Domain> path)
+	{
+		List<Layer.Segment> segments=new ArrayList<>(layer.segments);
+		segments.sort(Comparator.comparingDouble(segment -> segment.from));
+		int size=segments.size();
+		double[] from=new double[size];
+		double[] to=new double[size];
+		int[] facets=new int[size];
+		DomainNode[] domains=new DomainNode[size];
+		for(int i=0; i<size; i++)
+		{
+			Layer.Segment segment=segments.get(i);
+			if(!(segment.from>=0 && segment.from<segment.to && segment.to<=1))
+				throw new IllegalArgumentException(String.format("LayeredGrouping::compile: invalid range [%s, %s) in layer '%s'!", segment.from, segment.to, layer.name));
+			if(i>0 && segment.from<to[i-1])
+				throw new IllegalArgumentException(String.format("LayeredGrouping::compile: overlapped ranges in layer '%s'!", layer.name));
+			from[i]=segment.from;
+			to[i]=segment.to;
+			if(segment.facetName!=null)
+			{
+				int ordinal=ordinal(segment.facetName);
+				if(placed.get(ordinal))
+					throw new IllegalArgumentException("LayeredGrouping::compile: facet '"+segment.facetName+"' is placed more than once!");
+				placed.set(ordinal, true);
+				facets[i]=ordinal;
+			}
+			else
+			{
+				facets[i]=-1;
+				domains[i]=compile(segment.domain, path);
+			}
+		}
+		return new LayerNode(layer.suffix, layer.hashGetter, from, to, facets, domains);
+	}
+
+	private Binding bind()
+	{
+		Map<String, Facet> facetMap=GroupingUtil.snapshot();
+		Binding binding=this.binding;
+		if(binding==null || binding.facetMap!=facetMap)
+		{
+			Facet[] facets=new Facet[facetNames.size()];
+			for(int i=0; i<facets.length; i++)
+			{
+				facets[i]=facetMap.get(facetNames.get(i));
+			}
+			binding=new Binding(facetMap, facets);
+			this.binding=binding;
+		}
+		return binding;
+	}
+
+	/**
+	 * Resolves the groups of the identifier in the hierarchy.
+	 * 
+	 * @param identifier the user identifier.
+	 * @param consumer receives the group of each facet reached, in the order of walking the hierarchy.
+	 */
+	public void resolve(String identifier, Consumer<Group> consumer)
+	{
+		Facet[] facets=bind().facets;
+		resolve(root, identifier, facets, new Group[facets.length], consumer);
+	}
+
+	/**
+	 * Resolves the groups of the identifier in the hierarchy.
+	 * 
+	 * @param identifier the user identifier.
+	 * @return the groups of the facets reached, keyed by the facet names in the order of walking the hierarchy.
+	 */
+	public Map<String, Group> resolve(String identifier)
+	{
+		Map<String, Group> res=new LinkedHashMap<>();
+		resolve(identifier, group -> res.put(group.getFacetName(), group));
+		return res;
+	}
+
+	private void resolve(DomainNode domain, String identifier, Facet[] facets, Group[] assigned, Consumer<Group> consumer)
+	{
+		if(!accept(domain, identifier, facets, assigned))
+			return;
+		for(LayerNode layer : domain.layers)
+		{
+			double hash=layer.hashGetter.hash(identifier, layer.suffix);
+			int i=layer.find(hash);
+			if(i>=0)
+			{
+				int ordinal=layer.facets[i];
+				if(ordinal>=0)
+				{
+					Facet facet=facets[ordinal];
+					if(facet!=null)
+					{
+						Group group=facet.grouping(identifier);
+						assigned[ordinal]=group;
+						consumer.accept(group);
+					}
+				}
+				else
+					resolve(layer.domains[i], identifier, facets, assigned, consumer);
+			}
+		}
+	}
+
+	private boolean accept(DomainNode domain, String identifier, Facet[] facets, Group[] assigned)
+	{
+		int ordinal=domain.conditionFacet;
+		if(ordinal<0)
+			return true;
+		Group group=assigned[ordinal];
+		if(group==null && !placedFacets[ordinal] && facets[ordinal]!=null)
+		{
+			group=facets[ordinal].grouping(identifier);
+			assigned[ordinal]=group;
+		}
+		if(group!=null)
+		{
+			for(String groupName : domain.conditionGroupNames)
+			{
+				if(groupName.equals(group.getGroupName()))
+					return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,53 @@
+package com.eroelf.javaxsx.util.group.hashgetterimpl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+import com.eroelf.javaxsx.util.group.HashGetter;
+
+/**
+ * The base of {@link HashGetter} sub-classes based on 64-bit non-cryptographic hashes of the UTF-8 bytes of identifiers.
+ * The identifier and the suffix are encoded into a per-thread buffer as a virtual concatenation, so no string or array is created per call,
+ * and the highest 53 bits of the hash are mapped to a double in {@code [0, 1)}.
+ * 
+ * @author weikun.zhong
+ */
+public abstract class AbstractHash64Getter implements HashGetter
+{
+	private static final VarHandle LONG=MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INT=MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * Calculates the 64-bit hash of the bytes.
+	 * 
+	 * @param data the bytes.
+	 * @param offset the first byte to hash.
+	 * @param length the number of bytes to hash.
+	 * @return the hash.
+	 */
+	public abstract long hash64(byte[] data, int offset, int length);
+
+	@Override
+	public double hash(String identifier)
+	{
+		return hash(identifier, "");
+	}
+
+	@Override
+	public double hash(String identifier, String suffix)
+	{
+		Utf8Buffer buffer=Utf8Buffer.of(String.valueOf(identifier), String.valueOf(suffix));
+		return (hash64(buffer.bytes, 0, buffer.length)>>>11)*0x1.0p-53;
+	}
+
+	protected static long getLong(byte[] data, int offset)
+	{
+		return (long)LONG.get(data, offset);
+	}
+
+	protected static long getUnsignedInt(byte[] data, int offset)
+	{
+		return (int)INT.get(data, offset) & 0xffffffffL;
+	}
+}
@@ -1,6 +1,6 @@
 package com.eroelf.javaxsx.util.group.hashgetterimpl;
 
-import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -8,28 +8,36 @@ import com.eroelf.javaxsx.util.group.HashGetter;
 
 /**
  * The {@link HashGetter} sub-class which use a specified digest to generate hashes.
+ * Each thread uses its own {@link MessageDigest} and buffers, and the identifier and the suffix are digested as a virtual concatenation,
+ * so the results are the same as digesting {@code identifier+suffix} without building the string.
  * 
  * @author weikun.zhong
  */
 public class DigestHashGetter implements HashGetter
 {
 	private String algorithm;
-	private MessageDigest md;
+	private ThreadLocal<State> state;
+	private int digestLen;
 	private int bytes;
 	private double maxValue;
 
-	public DigestHashGetter(String algorithm, int bytes)
+	private static class State
 	{
-		this.algorithm=algorithm;
-		try
-		{
-			md=MessageDigest.getInstance(this.algorithm);
-		}
-		catch(NoSuchAlgorithmException e)
+		private final MessageDigest md;
+		private final byte[] digest;
+
+		public State(MessageDigest md)
 		{
-			throw new InternalError(String.format("Algorithm `%s` is not supported", algorithm));
+			this.md=md;
+			digest=new byte[md.getDigestLength()];
 		}
-		int digestLen=md.getDigestLength();
+	}
+
+	public DigestHashGetter(String algorithm, int bytes)
+	{
+		this.algorithm=algorithm;
+		MessageDigest md=newDigest(algorithm);
+		digestLen=md.getDigestLength();
 		if(digestLen<=0)
 			throw new IllegalArgumentException(String.format("Cannot get the digest length for algorithm `%s`", algorithm));
 		if(bytes>0 && bytes<=digestLen && bytes<=8)
@@ -39,22 +47,47 @@ public class DigestHashGetter implements HashGetter
 		}
 		else
 			throw new IllegalArgumentException(String.format("bytes must be within (0, %d]!", Math.min(digestLen, 8)));
+		state=ThreadLocal.withInitial(() -> new State(newDigest(this.algorithm)));
+	}
+
+	private static MessageDigest newDigest(String algorithm)
+	{
+		try
+		{
+			return MessageDigest.getInstance(algorithm);
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			throw new InternalError(String.format("Algorithm `%s` is not supported", algorithm));
+		}
 	}
 
 	@Override
 	public double hash(String identifier)
 	{
-		byte[] digest=this.md.digest(identifier.getBytes(StandardCharsets.UTF_8));
-		if(digest.length>=bytes)
+		return hash(identifier, "");
+	}
+
+	@Override
+	public double hash(String identifier, String suffix)
+	{
+		State state=this.state.get();
+		Utf8Buffer buffer=Utf8Buffer.of(String.valueOf(identifier), String.valueOf(suffix));
+		state.md.update(buffer.bytes, 0, buffer.length);
+		try
 		{
-			long value=0;
-			for(int i=digest.length-bytes; i<digest.length; i++)
-			{
-				value=(value<<8) | (((long)digest[i]) & 0xff);
-			}
-			return value/maxValue;
+			state.md.digest(state.digest, 0, digestLen);
 		}
-		else
-			return 1;
+		catch(DigestException e)
+		{
+			state.md.reset();
+			throw new IllegalStateException(String.format("DigestHashGetter::hash: failed to digest with algorithm `%s`!", algorithm), e);
+		}
+		long value=0;
+		for(int i=digestLen-bytes; i<digestLen; i++)
+		{
+			value=(value<<8) | (((long)state.digest[i]) & 0xff);
+		}
+		return value/maxValue;
 	}
 }
@@ -0,0 +1,94 @@
+package com.eroelf.javaxsx.util.group.hashgetterimpl;
+
+/**
+ * The {@link com.eroelf.javaxsx.util.group.HashGetter HashGetter} sub-class which uses the first 64 bits of MurmurHash3 x64 128 with a seed.
+ * 
+ * @author weikun.zhong
+ */
+public class Murmur3HashGetter extends AbstractHash64Getter
+{
+	private static final long C1=0x87c37b91114253d5L;
+	private static final long C2=0x4cf5ad432745937fL;
+
+	private final long seed;
+
+	public Murmur3HashGetter(int seed)
+	{
+		this.seed=seed & 0xffffffffL;
+	}
+
+	public Murmur3HashGetter()
+	{
+		this(0);
+	}
+
+	private static long fmix(long k)
+	{
+		k^=k>>>33;
+		k*=0xff51afd7ed558ccdL;
+		k^=k>>>33;
+		k*=0xc4ceb9fe1a85ec53L;
+		k^=k>>>33;
+		return k;
+	}
+
+	@Override
+	public long hash64(byte[] data, int offset, int length)
+	{
+		long h1=seed;
+		long h2=seed;
+		int end=offset+(length & ~15);
+		for(int i=offset; i<end; i+=16)
+		{
+			long k1=getLong(data, i);
+			long k2=getLong(data, i+8);
+			k1*=C1;
+			k1=Long.rotateLeft(k1, 31);
+			k1*=C2;
+			h1^=k1;
+			h1=Long.rotateLeft(h1, 27);
+			h1+=h2;
+			h1=h1*5+0x52dce729;
+			k2*=C2;
+			k2=Long.rotateLeft(k2, 33);
+			k2*=C1;
+			h2^=k2;
+			h2=Long.rotateLeft(h2, 31);
+			h2+=h1;
+			h2=h2*5+0x38495ab5;
+		}
+		int rest=length & 15;
+		if(rest>8)
+		{
+			long k2=0;
+			for(int i=rest-1; i>=8; i--)
+			{
+				k2=k2<<8 | data[end+i] & 0xff;
+			}
+			k2*=C2;
+			k2=Long.rotateLeft(k2, 33);
+			k2*=C1;
+			h2^=k2;
+		}
+		if(rest>0)
+		{
+			long k1=0;
+			for(int i=Math.min(rest, 8)-1; i>=0; i--)
+			{
+				k1=k1<<8 | data[end+i] & 0xff;
+			}
+			k1*=C1;
+			k1=Long.rotateLeft(k1, 31);
+			k1*=C2;
+			h1^=k1;
+		}
+		h1^=length;
+		h2^=length;
+		h1+=h2;
+		h2+=h1;
+		h1=fmix(h1);
+		h2=fmix(h2);
+		h1+=h2;
+		return h1;
+	}
+}
@@ -0,0 +1,86 @@
+package com.eroelf.javaxsx.util.group.hashgetterimpl;
+
+/**
+ * The {@link com.eroelf.javaxsx.util.group.HashGetter HashGetter} sub-class which uses SipHash-2-4 with a 128-bit key,
+ * so the assignments can not be predicted or manipulated by anyone who does not know the key.
+ * 
+ * @author weikun.zhong
+ */
+public class SipHashGetter extends AbstractHash64Getter
+{
+	private final long k0;
+	private final long k1;
+
+	/**
+	 * @param k0 the lower 64 bits of the key, as read from the key bytes in little-endian order.
+	 * @param k1 the higher 64 bits of the key.
+	 */
+	public SipHashGetter(long k0, long k1)
+	{
+		this.k0=k0;
+		this.k1=k1;
+	}
+
+	@Override
+	public long hash64(byte[] data, int offset, int length)
+	{
+		long v0=k0 ^ 0x736f6d6570736575L;
+		long v1=k1 ^ 0x646f72616e646f6dL;
+		long v2=k0 ^ 0x6c7967656e657261L;
+		long v3=k1 ^ 0x7465646279746573L;
+		int end=offset+(length & ~7);
+		long m;
+		for(int i=offset; i<=end; i+=8)
+		{
+			if(i<end)
+				m=getLong(data, i);
+			else
+			{
+				// the last block holds the remaining bytes and the length
+				m=(long)length<<56;
+				for(int j=(length & 7)-1; j>=0; j--)
+				{
+					m|=(long)(data[end+j] & 0xff)<<(j*8);
+				}
+			}
+			v3^=m;
+			for(int r=0; r<2; r++)
+			{
+				v0+=v1;
+				v1=Long.rotateLeft(v1, 13);
+				v1^=v0;
+				v0=Long.rotateLeft(v0, 32);
+				v2+=v3;
+				v3=Long.rotateLeft(v3, 16);
+				v3^=v2;
+				v0+=v3;
+				v3=Long.rotateLeft(v3, 21);
+				v3^=v0;
+				v2+=v1;
+				v1=Long.rotateLeft(v1, 17);
+				v1^=v2;
+				v2=Long.rotateLeft(v2, 32);
+			}
+			v0^=m;
+		}
+		v2^=0xff;
+		for(int r=0; r<4; r++)
+		{
+			v0+=v1;
+			v1=Long.rotateLeft(v1, 13);
+			v1^=v0;
+			v0=Long.rotateLeft(v0, 32);
+			v2+=v3;
+			v3=Long.rotateLeft(v3, 16);
+			v3^=v2;
+			v0+=v3;
+			v3=Long.rotateLeft(v3, 21);
+			v3^=v0;
+			v2+=v1;
+			v1=Long.rotateLeft(v1, 17);
+			v1^=v2;
+			v2=Long.rotateLeft(v2, 32);
+		}
+		return v0 ^ v1 ^ v2 ^ v3;
+	}
+}
@@ -0,0 +1,95 @@
+package com.eroelf.javaxsx.util.group.hashgetterimpl;
+
+import java.util.Arrays;
+
+/**
+ * A per-thread buffer holding the UTF-8 bytes of two strings as if they were concatenated, so hashes are calculated without building new strings or arrays.
+ * The bytes are the same as {@code (first+second).getBytes(StandardCharsets.UTF_8)}, where unpaired surrogates are encoded as {@code '?'}.
+ * The bytes of the last first string are kept, so hashing one identifier with the suffixes of many facets encodes the identifier only once.
+ * 
+ * @author weikun.zhong
+ */
+final class Utf8Buffer
+{
+	private static final ThreadLocal<Utf8Buffer> BUFFER=ThreadLocal.withInitial(Utf8Buffer::new);
+
+	byte[] bytes=new byte[64];
+	int length;
+	private String prefix;
+	private int prefixLength;
+
+	/**
+	 * Encodes the strings into the buffer of the current thread, which stays valid until the next call from the same thread.
+	 * 
+	 * @param first the first string.
+	 * @param second the second string.
+	 * @return the buffer.
+	 */
+	static Utf8Buffer of(String first, String second)
+	{
+		Utf8Buffer buffer=BUFFER.get();
+		buffer.encode(first, second);
+		return buffer;
+	}
+
+	private void encode(String first, String second)
+	{
+		int firstLength=first.length();
+		int n=firstLength+second.length();
+		if(bytes.length<n*3)
+			bytes=Arrays.copyOf(bytes, Math.max(n*3, bytes.length*2));
+		if(first!=prefix)
+		{
+			prefix=null;
+			// a trailing high surrogate may pair with the second string, so such a prefix is not cached
+			if(firstLength==0 || !Character.isHighSurrogate(first.charAt(firstLength-1)))
+			{
+				prefixLength=encode(first, "", 0, 0);
+				prefix=first;
+			}
+		}
+		if(prefix!=null)
+			length=encode(first, second, firstLength, prefixLength);
+		else
+			length=encode(first, second, 0, 0);
+	}
+
+	private int encode(String first, String second, int start, int k)
+	{
+		int firstLength=first.length();
+		int n=firstLength+second.length();
+		for(int i=start; i<n; i++)
+		{
+			char c=i<firstLength ? first.charAt(i) : second.charAt(i-firstLength);
+			if(c<0x80)
+				bytes[k++]=(byte)c;
+			else if(c<0x800)
+			{
+				bytes[k++]=(byte)(0xc0 | c>>6);
+				bytes[k++]=(byte)(0x80 | c & 0x3f);
+			}
+			else if(Character.isSurrogate(c))
+			{
+				char low=i+1<n ? (i+1<firstLength ? first.charAt(i+1) : second.charAt(i+1-firstLength)) : 0;
+				if(Character.isHighSurrogate(c) && Character.isLowSurrogate(low))
+				{
+					int codePoint=Character.toCodePoint(c, low);
+					bytes[k++]=(byte)(0xf0 | codePoint>>18);
+					bytes[k++]=(byte)(0x80 | codePoint>>12 & 0x3f);
+					bytes[k++]=(byte)(0x80 | codePoint>>6 & 0x3f);
+					bytes[k++]=(byte)(0x80 | codePoint & 0x3f);
+					++i;
+				}
+				else
+					bytes[k++]='?';
+			}
+			else
+			{
+				bytes[k++]=(byte)(0xe0 | c>>12);
+				bytes[k++]=(byte)(0x80 | c>>6 & 0x3f);
+				bytes[k++]=(byte)(0x80 | c & 0x3f);
+			}
+		}
+		return k;
+	}
+}
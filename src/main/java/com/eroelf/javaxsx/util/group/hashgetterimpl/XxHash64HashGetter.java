@@ -0,0 +1,92 @@
+package com.eroelf.javaxsx.util.group.hashgetterimpl;
+
+/**
+ * The {@link com.eroelf.javaxsx.util.group.HashGetter HashGetter} sub-class which uses xxHash64 with a seed.
+ * 
+ * @author weikun.zhong
+ */
+public class XxHash64HashGetter extends AbstractHash64Getter
+{
+	private static final long P1=0x9e3779b185ebca87L;
+	private static final long P2=0xc2b2ae3d27d4eb4fL;
+	private static final long P3=0x165667b19e3779f9L;
+	private static final long P4=0x85ebca77c2b2ae63L;
+	private static final long P5=0x27d4eb2f165667c5L;
+
+	private final long seed;
+
+	public XxHash64HashGetter(long seed)
+	{
+		this.seed=seed;
+	}
+
+	public XxHash64HashGetter()
+	{
+		this(0);
+	}
+
+	private static long round(long acc, long input)
+	{
+		acc+=input*P2;
+		acc=Long.rotateLeft(acc, 31);
+		return acc*P1;
+	}
+
+	private static long mergeRound(long acc, long value)
+	{
+		acc^=round(0, value);
+		return acc*P1+P4;
+	}
+
+	@Override
+	public long hash64(byte[] data, int offset, int length)
+	{
+		int end=offset+length;
+		int i=offset;
+		long h;
+		if(length>=32)
+		{
+			long v1=seed+P1+P2;
+			long v2=seed+P2;
+			long v3=seed;
+			long v4=seed-P1;
+			for(; i<=end-32; i+=32)
+			{
+				v1=round(v1, getLong(data, i));
+				v2=round(v2, getLong(data, i+8));
+				v3=round(v3, getLong(data, i+16));
+				v4=round(v4, getLong(data, i+24));
+			}
+			h=Long.rotateLeft(v1, 1)+Long.rotateLeft(v2, 7)+Long.rotateLeft(v3, 12)+Long.rotateLeft(v4, 18);
+			h=mergeRound(h, v1);
+			h=mergeRound(h, v2);
+			h=mergeRound(h, v3);
+			h=mergeRound(h, v4);
+		}
+		else
+			h=seed+P5;
+		h+=length;
+		for(; i<=end-8; i+=8)
+		{
+			h^=round(0, getLong(data, i));
+			h=Long.rotateLeft(h, 27)*P1+P4;
+		}
+		if(i<=end-4)
+		{
+			h^=getUnsignedInt(data, i)*P1;
+			h=Long.rotateLeft(h, 23)*P2+P3;
+			i+=4;
+		}
+		for(; i<end; i++)
+		{
+			h^=(data[i] & 0xff)*P5;
+			h=Long.rotateLeft(h, 11)*P1;
+		}
+		h^=h>>>33;
+		h*=P2;
+		h^=h>>>29;
+		h*=P3;
+		h^=h>>>32;
+		return h;
+	}
+}
@@ -3,22 +3,41 @@ package com.eroelf.javaxsx.util.group.updater;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import com.eroelf.javaxsx.util.db.DoDb;
 import com.eroelf.javaxsx.util.group.ConfigInfo;
 
 /**
  * The abstract class for dealing with grouping information stored in a simple database.
+ * It is also a {@link GroupingChangeSource}, which queries the rows with {@code update_time} not before the last seen one, so only the changed facets are read.
+ * The version of a facet is the milliseconds of its {@code update_time}, or one more than the last version delivered if that is not greater, since {@code update_time} may be of low precision.
+ * Facets removed from the table are found by querying the facet names, which is done only when the number of rows is less than the number of facets seen,
+ * so rows inserted with an {@code update_time} before the last seen one are not supported.
  * 
  * @author weikun.zhong
  */
-public abstract class AbstractSimpleDbGroupingInfoSource implements GroupingInfoSource
+public abstract class AbstractSimpleDbGroupingInfoSource implements GroupingInfoSource, GroupingChangeSource
 {
 	protected DoDb doDb=new DoDb();
 	protected Date lastModifiedTime=new Date(0);
+	protected long pollInterval=500;
+
+	private DoDb changeDb;
+	private Timestamp watermark=new Timestamp(0);
+	private Map<String, ConfigInfo> seen=new HashMap<>();
+	private Map<String, Long> versions=new HashMap<>();
 	
 	protected abstract Connection getDbConn() throws ClassNotFoundException, SQLException;
 	protected abstract String lastModifiedTimeSql();
@@ -64,9 +83,113 @@ public abstract class AbstractSimpleDbGroupingInfoSource implements GroupingInfo
 			return doDb.fromQuery(ConfigInfo.class, false, true, String.format("select facet_name, suffix, group_str, sections, update_time from %s", groupingTableName()));
 	}
 
+	/**
+	 * Sets the interval between two queries when waiting for changes.
+	 * 
+	 * @param pollInterval the interval in milliseconds.
+	 */
+	public void setPollInterval(long pollInterval)
+	{
+		this.pollInterval=pollInterval;
+	}
+
+	@Override
+	public List<ConfigInfo> poll(long timeout, TimeUnit unit) throws ClassNotFoundException, SQLException, InterruptedException
+	{
+		long deadline=System.nanoTime()+unit.toNanos(timeout);
+		while(true)
+		{
+			List<ConfigInfo> changes=queryChanges();
+			long remaining=TimeUnit.NANOSECONDS.toMillis(deadline-System.nanoTime());
+			if(!changes.isEmpty() || remaining<=0)
+				return changes;
+			Thread.sleep(Math.min(pollInterval, remaining));
+		}
+	}
+
+	private List<ConfigInfo> queryChanges() throws ClassNotFoundException, SQLException
+	{
+		if(changeDb==null)
+			changeDb=new DoDb(getDbConn());
+		try
+		{
+			// the state is updated only after all queries succeed, so a failed poll reads the same changes again
+			Map<String, ConfigInfo> newSeen=new HashMap<>(seen);
+			Map<String, Long> newVersions=new HashMap<>(versions);
+			Timestamp newWatermark=watermark;
+			List<ConfigInfo> changes=new ArrayList<>();
+			// rows with the same update_time as the watermark are read again and skipped by their versions, so rows committed later within the same time are not lost
+			for(ConfigInfo configInfo : changeDb.fromQuery(ConfigInfo.class, false, true, String.format("select facet_name, suffix, group_str, sections, update_time from %s where update_time>=?", groupingTableName()), watermark))
+			{
+				long time=updateTime(configInfo);
+				ConfigInfo old=newSeen.get(configInfo.facetName);
+				// whether a row is new is decided by the update_time and the content of the row seen, the version is only for the changes delivered
+				if(old!=null && (time<updateTime(old) || time==updateTime(old) && !isModified(old, configInfo)))
+					continue;
+				configInfo.version=nextVersion(newVersions, configInfo.facetName, time);
+				newSeen.put(configInfo.facetName, configInfo);
+				changes.add(configInfo);
+				if(time>newWatermark.getTime())
+					newWatermark=new Timestamp(time);
+			}
+			int count=changeDb.fromQuery(Number.class, false, true, String.format("select count(*) from %s", groupingTableName())).get(0).intValue();
+			if(count<newSeen.size())
+			{
+				Set<String> facetNames=new HashSet<>(changeDb.fromQuery(String.class, false, true, String.format("select facet_name from %s", groupingTableName())));
+				for(Iterator<String> iter=newSeen.keySet().iterator(); iter.hasNext();)
+				{
+					String facetName=iter.next();
+					if(!facetNames.contains(facetName))
+					{
+						ConfigInfo removed=new ConfigInfo();
+						removed.facetName=facetName;
+						removed.version=nextVersion(newVersions, facetName, 0);
+						removed.deleted=true;
+						changes.add(removed);
+						iter.remove();
+					}
+				}
+			}
+			seen=newSeen;
+			versions=newVersions;
+			watermark=newWatermark;
+			return changes;
+		}
+		catch(SQLException e)
+		{
+			// reconnects on the next poll
+			changeDb.close();
+			changeDb=null;
+			throw e;
+		}
+	}
+
+	private static long nextVersion(Map<String, Long> versions, String facetName, long time)
+	{
+		Long last=versions.get(facetName);
+		long version=last!=null ? Math.max(time, last+1) : time;
+		versions.put(facetName, version);
+		return version;
+	}
+
+	private static long updateTime(ConfigInfo configInfo)
+	{
+		return configInfo.updateTime!=null ? configInfo.updateTime.getTime() : 0;
+	}
+
+	private static boolean isModified(ConfigInfo old, ConfigInfo configInfo)
+	{
+		return !Objects.equals(old.suffix, configInfo.suffix) || !Objects.equals(old.groupStr, configInfo.groupStr) || !Objects.equals(old.sections, configInfo.sections);
+	}
+
 	@Override
 	public void close() throws SQLException
 	{
 		doDb.close();
+		if(changeDb!=null)
+		{
+			changeDb.close();
+			changeDb=null;
+		}
 	}
 }
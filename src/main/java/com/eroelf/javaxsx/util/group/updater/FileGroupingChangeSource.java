@@ -0,0 +1,183 @@
+package com.eroelf.javaxsx.util.group.updater;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import com.eroelf.javaxsx.util.group.ConfigInfo;
+import com.eroelf.javaxsx.util.group.GroupingUtil;
+import com.eroelf.javaxsx.util.group.GroupingUtil.Facet;
+import com.google.gson.Gson;
+
+/**
+ * The {@link GroupingChangeSource} watching a local configuration file by a {@link WatchService}, so changes are delivered as soon as the file is written.
+ * The file holds all facets, and only the facets added, modified or removed since the last read are delivered.
+ * <p>
+ * A file with the extension {@code .json} holds an array of {@link ConfigInfo} objects, e.g. {@code [{"facetName": "F", "suffix": "_f", "groupStr": "A,B", "sections": "0.5", "version": 3}]}.
+ * Any other file holds one facet per line, as tab separated {@code facetName, suffix, groupStr, sections} and an optional {@code version}. Empty lines and lines start with '#' are ignored.
+ * If no version is given, a modified facet gets the last modified time of the file in milliseconds as its version,
+ * or a greater one if the facet already has a greater version, e.g., given by another source, so the modification is never skipped by {@link GroupingUtil#applyChanges}.
+ * The file should be replaced atomically, e.g., written to a temporary file and then moved, otherwise a partially written file may be read.
+ * 
+ * @author weikun.zhong
+ */
+public class FileGroupingChangeSource implements GroupingChangeSource
+{
+	private static final Gson GSON=new Gson();
+	private static final long DEBOUNCE_MILLIS=50;
+
+	private final Path file;
+	private final WatchService watchService;
+	private Map<String, ConfigInfo> current=new HashMap<>();
+	private boolean first=true;
+
+	public FileGroupingChangeSource(Path file) throws IOException
+	{
+		this.file=file.toAbsolutePath();
+		watchService=FileSystems.getDefault().newWatchService();
+		this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+	}
+
+	@Override
+	public List<ConfigInfo> poll(long timeout, TimeUnit unit) throws IOException, InterruptedException
+	{
+		if(first)
+		{
+			first=false;
+			return read();
+		}
+		WatchKey key=watchService.poll(timeout, unit);
+		if(key==null)
+			return Collections.emptyList();
+		boolean modified=false;
+		// events of one write often come in several batches, waits until the file is quiet
+		while(key!=null)
+		{
+			modified|=isModified(key);
+			key=watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+		}
+		return modified ? read() : Collections.emptyList();
+	}
+
+	private boolean isModified(WatchKey key)
+	{
+		boolean modified=false;
+		for(WatchEvent<?> event : key.pollEvents())
+		{
+			if(event.kind()==StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context()))
+				modified=true;
+		}
+		key.reset();
+		return modified;
+	}
+
+	private List<ConfigInfo> read() throws IOException
+	{
+		// a missing or empty file is taken as being rewritten rather than removing all facets
+		if(!Files.exists(file) || Files.size(file)==0)
+			return Collections.emptyList();
+		long modifiedMillis=Files.getLastModifiedTime(file).toMillis();
+		List<ConfigInfo> configInfos=parse();
+		Map<String, ConfigInfo> next=new LinkedHashMap<>();
+		List<ConfigInfo> changes=new ArrayList<>();
+		for(ConfigInfo configInfo : configInfos)
+		{
+			if(configInfo.facetName==null || configInfo.suffix==null || configInfo.groupStr==null || configInfo.sections==null)
+				throw new IOException("FileGroupingChangeSource::read: incomplete facet config in file '"+file+"'!");
+			ConfigInfo old=current.get(configInfo.facetName);
+			boolean changed=old==null || !Objects.equals(old.suffix, configInfo.suffix) || !Objects.equals(old.groupStr, configInfo.groupStr) || !Objects.equals(old.sections, configInfo.sections);
+			if(configInfo.version<=0)
+				configInfo.version=changed ? nextVersion(configInfo.facetName, old, modifiedMillis) : old.version;
+			else if(old!=null && configInfo.version!=old.version)
+				changed=true;
+			next.put(configInfo.facetName, configInfo);
+			if(changed)
+				changes.add(configInfo);
+		}
+		for(ConfigInfo old : current.values())
+		{
+			if(!next.containsKey(old.facetName))
+			{
+				ConfigInfo removed=new ConfigInfo();
+				removed.facetName=old.facetName;
+				removed.version=nextVersion(old.facetName, old, modifiedMillis);
+				removed.deleted=true;
+				changes.add(removed);
+			}
+		}
+		current=next;
+		return changes;
+	}
+
+	private static long nextVersion(String facetName, ConfigInfo old, long modifiedMillis)
+	{
+		long version=modifiedMillis;
+		if(old!=null)
+			version=Math.max(version, old.version+1);
+		Facet facet=GroupingUtil.getFacet(facetName);
+		if(facet!=null)
+			version=Math.max(version, facet.getVersion()+1);
+		return version;
+	}
+
+	private List<ConfigInfo> parse() throws IOException
+	{
+		if(file.getFileName().toString().endsWith(".json"))
+		{
+			try(Reader reader=Files.newBufferedReader(file, StandardCharsets.UTF_8))
+			{
+				ConfigInfo[] configInfos=GSON.fromJson(reader, ConfigInfo[].class);
+				List<ConfigInfo> res=new ArrayList<>();
+				if(configInfos!=null)
+					Collections.addAll(res, configInfos);
+				return res;
+			}
+			catch(RuntimeException e)
+			{
+				throw new IOException("FileGroupingChangeSource::parse: invalid json file '"+file+"'!", e);
+			}
+		}
+		else
+		{
+			List<ConfigInfo> res=new ArrayList<>();
+			for(String line : Files.readAllLines(file, StandardCharsets.UTF_8))
+			{
+				if(line.isBlank() || line.startsWith("#"))
+					continue;
+				String[] items=line.split("\t");
+				if(items.length<4)
+					throw new IOException("FileGroupingChangeSource::parse: invalid line '"+line+"' in file '"+file+"'!");
+				ConfigInfo configInfo=new ConfigInfo();
+				configInfo.facetName=items[0].trim();
+				configInfo.suffix=items[1].trim();
+				configInfo.groupStr=items[2].trim();
+				configInfo.sections=items[3].trim();
+				if(items.length>4)
+					configInfo.version=Long.parseLong(items[4].trim());
+				res.add(configInfo);
+			}
+			return res;
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		watchService.close();
+	}
+}
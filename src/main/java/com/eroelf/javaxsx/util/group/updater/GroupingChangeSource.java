@@ -0,0 +1,30 @@
+package com.eroelf.javaxsx.util.group.updater;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.eroelf.javaxsx.util.group.ConfigInfo;
+import com.eroelf.javaxsx.util.group.GroupingUtil;
+
+/**
+ * The interface for sources delivering incremental changes of grouping information.
+ * Each change is a {@link ConfigInfo} with its {@link ConfigInfo#version}, and removed facets are marked by {@link ConfigInfo#deleted}.
+ * 
+ * @author weikun.zhong
+ * 
+ * @see GroupingUpdater#watch(GroupingChangeSource)
+ * @see GroupingUtil#applyChanges
+ */
+public interface GroupingChangeSource extends AutoCloseable
+{
+	/**
+	 * Waits for the changes since the last call, the first call returns all facets of the source.
+	 * 
+	 * @param timeout the maximum time to wait.
+	 * @param unit the time unit of the {@code timeout}.
+	 * @return the changes, or an empty list if nothing changed before the timeout.
+	 * @throws InterruptedException if interrupted while waiting.
+	 * @throws Exception the type of {@link Exception} depends on the data source.
+	 */
+	public List<ConfigInfo> poll(long timeout, TimeUnit unit) throws Exception;
+}
@@ -1,5 +1,6 @@
 package com.eroelf.javaxsx.util.group.updater;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -26,6 +27,7 @@ public final class GroupingUpdater
 	private static GroupingInfoSource source;
 	private static IdentifierValidatorFactory identifierValidatorFactory;
 	private static HashGetterFactory hashGetterFactory;
+	private static Thread watcher;
 
 	public static void config(GroupingInfoSource source, IdentifierValidatorFactory identifierValidatorFactory, HashGetterFactory hashGetterFactory)
 	{
@@ -50,14 +52,21 @@ public final class GroupingUpdater
 	}
 
 	public static Set<String> updateGroupingConfig(List<ConfigInfo> configInfoList, Date oldModifiedTime)
+	{
+		return updateGroupingConfig(configInfoList, oldModifiedTime, false);
+	}
+
+	private static Set<String> updateGroupingConfig(List<ConfigInfo> configInfoList, Date oldModifiedTime, boolean needDelete)
 	{
 		Set<String> facetNameSet=new HashSet<>();
+		List<ConfigInfo> modifiedList=new ArrayList<>();
 		for(ConfigInfo configInfo : configInfoList)
 		{
 			facetNameSet.add(configInfo.facetName);
 			if(configInfo.updateTime.after(oldModifiedTime))
-				GroupingUtil.configFacet(configInfo, identifierValidatorFactory.create(configInfo.facetName), hashGetterFactory.create(configInfo.facetName));
+				modifiedList.add(configInfo);
 		}
+		GroupingUtil.configFacets(modifiedList, identifierValidatorFactory::create, hashGetterFactory::create, needDelete ? facetNameSet : null);
 		return facetNameSet;
 	}
 
@@ -87,13 +96,7 @@ public final class GroupingUpdater
 		}
 		if(configInfoList!=null)
 		{
-			Set<String> updatedSet=updateGroupingConfig(configInfoList, oldModifiedTime);
-			if(needDelete)
-			{
-				Set<String> removeSet=GroupingUtil.getAllFacetName();
-				removeSet.removeAll(updatedSet);
-				GroupingUtil.removeFacets(removeSet);
-			}
+			updateGroupingConfig(configInfoList, oldModifiedTime, needDelete);
 			return true;
 		}
 		return false;
@@ -176,6 +179,108 @@ public final class GroupingUpdater
 		}, initialDelay, period, timeUnit);
 	}
 
+	/**
+	 * Watch the changes from a {@link GroupingChangeSource} and apply them as soon as they are delivered, instead of reloading all facets periodically.
+	 * Logs will be printed to stderr.
+	 * 
+	 * @param changeSource the source of changes.
+	 * 
+	 * @see #watch(BiConsumer, GroupingChangeSource)
+	 */
+	public static void watch(GroupingChangeSource changeSource)
+	{
+		watch(StdLoggers.STD_ERR_EXCEPTION_MSG_LOGGER, changeSource);
+	}
+
+	/**
+	 * Watch the changes from a {@link GroupingChangeSource} in a daemon thread, and apply each batch of changes at once by {@link GroupingUtil#applyChanges}.
+	 * Any previous watching is stopped. The source will be closed when the watching is stopped.
+	 * The {@link IdentifierValidatorFactory} and the {@link HashGetterFactory} configured at the time of calling are used.
+	 * 
+	 * @param loggerFunc a {@link BiConsumer} instance to process {@link Exception}s and error messages.
+	 * @param changeSource the source of changes.
+	 * @throws IllegalStateException if the {@link IdentifierValidatorFactory} or the {@link HashGetterFactory} is not configured.
+	 */
+	public static synchronized void watch(BiConsumer<? super Exception, String> loggerFunc, GroupingChangeSource changeSource)
+	{
+		IdentifierValidatorFactory identifierValidatorFactory=GroupingUpdater.identifierValidatorFactory;
+		HashGetterFactory hashGetterFactory=GroupingUpdater.hashGetterFactory;
+		if(identifierValidatorFactory==null)
+			throw new IllegalStateException("GroupingUpdater::watch: the IdentifierValidatorFactory must be configured!");
+		if(hashGetterFactory==null)
+			throw new IllegalStateException("GroupingUpdater::watch: the HashGetterFactory must be configured!");
+		stopWatching();
+		watcher=new Thread(() -> {
+			try
+			{
+				while(!Thread.currentThread().isInterrupted())
+				{
+					try
+					{
+						List<ConfigInfo> changes=changeSource.poll(1, TimeUnit.SECONDS);
+						if(!changes.isEmpty())
+						{
+							int applied=GroupingUtil.applyChanges(loggerFunc, changes, identifierValidatorFactory::create, hashGetterFactory::create);
+							loggerFunc.accept(null, "GroupingUpdater::watch: "+applied+" of "+changes.size()+" grouping config changes applied.");
+						}
+					}
+					catch(InterruptedException e)
+					{
+						break;
+					}
+					catch(Exception e)
+					{
+						loggerFunc.accept(e, "GroupingUpdater::watch: grouping config update failed!");
+						Thread.sleep(1000);
+					}
+				}
+			}
+			catch(InterruptedException e)
+			{}
+			finally
+			{
+				try
+				{
+					changeSource.close();
+				}
+				catch(Exception e)
+				{
+					loggerFunc.accept(e, "GroupingUpdater::watch: failed to close the change source!");
+				}
+			}
+		}, "GroupingUpdater-watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	/**
+	 * Stop watching the changes, and wait until the watching thread ends and the source is closed.
+	 * If the current thread is interrupted while waiting, it returns at once with the interrupt status set.
+	 * 
+	 * @see #watch(GroupingChangeSource)
+	 */
+	public static synchronized void stopWatching()
+	{
+		if(watcher!=null)
+		{
+			Thread thread=watcher;
+			watcher=null;
+			thread.interrupt();
+			// e.g. called by the logger in the watching thread, which then ends by itself
+			if(thread!=Thread.currentThread())
+			{
+				try
+				{
+					thread.join();
+				}
+				catch(InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
 	/**
 	 * Stop the scheduled update task.
 	 * 
@@ -186,6 +291,7 @@ public final class GroupingUpdater
 	public static void stop()
 	{
 		SES.shutdownNow();
+		stopWatching();
 	}
 
 	private GroupingUpdater()
@@ -0,0 +1,274 @@
+package com.eroelf.javaxsx.util.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A {@link Container} of at most {@link Container#ARRAY_MAX_SIZE} values kept in a sorted array.
+ * 
+ * @author weikun.zhong
+ */
+final class ArrayContainer extends Container
+{
+	private static final long serialVersionUID=3419264719218863547L;
+
+	char[] content;
+	int cardinality;
+
+	ArrayContainer()
+	{
+		content=new char[4];
+	}
+
+	ArrayContainer(char[] content, int cardinality)
+	{
+		this.content=content;
+		this.cardinality=cardinality;
+	}
+
+	static int sizeInBytes(int cardinality)
+	{
+		return cardinality*2;
+	}
+
+	@Override
+	int cardinality()
+	{
+		return cardinality;
+	}
+
+	@Override
+	boolean contains(char x)
+	{
+		return Arrays.binarySearch(content, 0, cardinality, x)>=0;
+	}
+
+	@Override
+	Container add(char x)
+	{
+		int idx=Arrays.binarySearch(content, 0, cardinality, x);
+		if(idx>=0)
+			return this;
+		if(cardinality>=ARRAY_MAX_SIZE)
+			return toBitmapContainer().add(x);
+		if(cardinality==content.length)
+			content=Arrays.copyOf(content, Math.min(ARRAY_MAX_SIZE, Math.max(4, cardinality*2)));
+		idx=-idx-1;
+		System.arraycopy(content, idx, content, idx+1, cardinality-idx);
+		content[idx]=x;
+		++cardinality;
+		return this;
+	}
+
+	@Override
+	Container remove(char x)
+	{
+		int idx=Arrays.binarySearch(content, 0, cardinality, x);
+		if(idx>=0)
+		{
+			System.arraycopy(content, idx+1, content, idx, cardinality-idx-1);
+			--cardinality;
+		}
+		return this;
+	}
+
+	/**
+	 * Returns the first index in {@code [from, to)} whose value is not less than {@code min}, or {@code to} if none, by an exponential search from {@code from}.
+	 * The same as {@link SortedInts#advance(int[], int, int, int)} for {@code char} values.
+	 */
+	static int advance(char[] array, int from, int to, char min)
+	{
+		if(from>=to || array[from]>=min)
+			return from;
+		int lower=from;
+		int span=1;
+		while(lower+span<to && array[lower+span]<min)
+		{
+			lower+=span;
+			span<<=1;
+		}
+		int idx=Arrays.binarySearch(array, lower+1, Math.min(lower+span, to), min);
+		return idx>=0 ? idx : -idx-1;
+	}
+
+	@Override
+	Container iand(Container other)
+	{
+		int k=0;
+		if(other instanceof ArrayContainer)
+		{
+			ArrayContainer that=(ArrayContainer)other;
+			// the result is written to the front of this array, which is never ahead of the reading position
+			if(cardinality>that.cardinality*SortedInts.GALLOP_RATIO)
+			{
+				int i=0;
+				for(int j=0; j<that.cardinality && i<cardinality; j++)
+				{
+					i=advance(content, i, cardinality, that.content[j]);
+					if(i<cardinality && content[i]==that.content[j])
+						content[k++]=content[i++];
+				}
+			}
+			else if(that.cardinality>cardinality*SortedInts.GALLOP_RATIO)
+			{
+				int j=0;
+				for(int i=0; i<cardinality && j<that.cardinality; i++)
+				{
+					j=advance(that.content, j, that.cardinality, content[i]);
+					if(j<that.cardinality && that.content[j]==content[i])
+						content[k++]=content[i];
+				}
+			}
+			else
+			{
+				int i=0;
+				int j=0;
+				while(i<cardinality && j<that.cardinality)
+				{
+					if(content[i]<that.content[j])
+						++i;
+					else if(content[i]>that.content[j])
+						++j;
+					else
+					{
+						content[k++]=content[i];
+						++i;
+						++j;
+					}
+				}
+			}
+		}
+		else
+		{
+			for(int i=0; i<cardinality; i++)
+			{
+				if(other.contains(content[i]))
+					content[k++]=content[i];
+			}
+		}
+		cardinality=k;
+		return this;
+	}
+
+	@Override
+	Container ior(Container other)
+	{
+		if(other instanceof ArrayContainer && cardinality+other.cardinality()<=ARRAY_MAX_SIZE)
+		{
+			ArrayContainer that=(ArrayContainer)other;
+			char[] merged=new char[cardinality+that.cardinality];
+			int i=0;
+			int j=0;
+			int k=0;
+			while(i<cardinality && j<that.cardinality)
+			{
+				if(content[i]<that.content[j])
+					merged[k++]=content[i++];
+				else if(content[i]>that.content[j])
+					merged[k++]=that.content[j++];
+				else
+				{
+					merged[k++]=content[i++];
+					++j;
+				}
+			}
+			while(i<cardinality)
+			{
+				merged[k++]=content[i++];
+			}
+			while(j<that.cardinality)
+			{
+				merged[k++]=that.content[j++];
+			}
+			content=merged;
+			cardinality=k;
+			return this;
+		}
+		return toBitmapContainer().ior(other);
+	}
+
+	@Override
+	Container iandNot(Container other)
+	{
+		int k=0;
+		if(other instanceof ArrayContainer)
+		{
+			ArrayContainer that=(ArrayContainer)other;
+			int j=0;
+			for(int i=0; i<cardinality; i++)
+			{
+				j=advance(that.content, j, that.cardinality, content[i]);
+				if(j>=that.cardinality || that.content[j]!=content[i])
+					content[k++]=content[i];
+			}
+		}
+		else
+		{
+			for(int i=0; i<cardinality; i++)
+			{
+				if(!other.contains(content[i]))
+					content[k++]=content[i];
+			}
+		}
+		cardinality=k;
+		return this;
+	}
+
+	@Override
+	Container copy()
+	{
+		return new ArrayContainer(Arrays.copyOf(content, cardinality), cardinality);
+	}
+
+	@Override
+	ArrayContainer toArrayContainer()
+	{
+		return this;
+	}
+
+	@Override
+	BitmapContainer toBitmapContainer()
+	{
+		BitmapContainer bitmap=new BitmapContainer();
+		for(int i=0; i<cardinality; i++)
+		{
+			bitmap.words[content[i]>>>6]|=1L<<content[i];
+		}
+		bitmap.cardinality=cardinality;
+		return bitmap;
+	}
+
+	@Override
+	void forEach(int high, IntConsumer consumer)
+	{
+		for(int i=0; i<cardinality; i++)
+		{
+			consumer.accept(high | content[i]);
+		}
+	}
+
+	@Override
+	int nextValue(char x)
+	{
+		int idx=advance(content, 0, cardinality, x);
+		return idx<cardinality ? content[idx] : -1;
+	}
+
+	@Override
+	int numberOfRuns()
+	{
+		int runs=0;
+		for(int i=0; i<cardinality; i++)
+		{
+			if(i==0 || content[i]!=content[i-1]+1)
+				++runs;
+		}
+		return runs;
+	}
+
+	@Override
+	int sizeInBytes()
+	{
+		return sizeInBytes(content.length);
+	}
+}
@@ -0,0 +1,285 @@
+package com.eroelf.javaxsx.util.index;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A {@link Container} of more than {@link Container#ARRAY_MAX_SIZE} values kept in a bitmap of {@code 65536} bits.
+ * The operations with other bitmaps work on whole words. An operation which leaves too few values returns an {@link ArrayContainer}.
+ * 
+ * @author weikun.zhong
+ */
+final class BitmapContainer extends Container
+{
+	private static final long serialVersionUID=-3805128926183046275L;
+
+	static final int WORDS=1024;
+	static final int SIZE_IN_BYTES=WORDS*8;
+
+	final long[] words;
+	int cardinality;
+
+	BitmapContainer()
+	{
+		words=new long[WORDS];
+	}
+
+	private BitmapContainer(long[] words, int cardinality)
+	{
+		this.words=words;
+		this.cardinality=cardinality;
+	}
+
+	@Override
+	int cardinality()
+	{
+		return cardinality;
+	}
+
+	@Override
+	boolean contains(char x)
+	{
+		return (words[x>>>6] & 1L<<x)!=0;
+	}
+
+	@Override
+	Container add(char x)
+	{
+		long word=words[x>>>6];
+		long newWord=word | 1L<<x;
+		if(newWord!=word)
+		{
+			words[x>>>6]=newWord;
+			++cardinality;
+		}
+		return this;
+	}
+
+	@Override
+	Container remove(char x)
+	{
+		long word=words[x>>>6];
+		long newWord=word & ~(1L<<x);
+		if(newWord!=word)
+		{
+			words[x>>>6]=newWord;
+			--cardinality;
+		}
+		return normalized();
+	}
+
+	private void recount()
+	{
+		int count=0;
+		for(long word : words)
+		{
+			count+=Long.bitCount(word);
+		}
+		cardinality=count;
+	}
+
+	private Container normalized()
+	{
+		return cardinality<=ARRAY_MAX_SIZE ? toArrayContainer() : this;
+	}
+
+	/**
+	 * Sets the bits of {@code [begin, end)}.
+	 */
+	void setRange(int begin, int end)
+	{
+		if(begin>=end)
+			return;
+		int first=begin>>>6;
+		int last=(end-1)>>>6;
+		long firstMask=-1L<<begin;
+		long lastMask=-1L>>>-end;
+		if(first==last)
+			words[first]|=firstMask & lastMask;
+		else
+		{
+			words[first]|=firstMask;
+			for(int i=first+1; i<last; i++)
+			{
+				words[i]=-1L;
+			}
+			words[last]|=lastMask;
+		}
+	}
+
+	/**
+	 * Clears the bits of {@code [begin, end)}.
+	 */
+	private void clearRange(int begin, int end)
+	{
+		if(begin>=end)
+			return;
+		int first=begin>>>6;
+		int last=(end-1)>>>6;
+		long firstMask=-1L<<begin;
+		long lastMask=-1L>>>-end;
+		if(first==last)
+			words[first]&=~(firstMask & lastMask);
+		else
+		{
+			words[first]&=~firstMask;
+			for(int i=first+1; i<last; i++)
+			{
+				words[i]=0;
+			}
+			words[last]&=~lastMask;
+		}
+	}
+
+	@Override
+	Container iand(Container other)
+	{
+		if(other instanceof ArrayContainer)
+			return other.copy().iand(this);
+		long[] otherWords=other instanceof BitmapContainer ? ((BitmapContainer)other).words : other.toBitmapContainer().words;
+		for(int i=0; i<WORDS; i++)
+		{
+			words[i]&=otherWords[i];
+		}
+		recount();
+		return normalized();
+	}
+
+	@Override
+	Container ior(Container other)
+	{
+		if(other instanceof BitmapContainer)
+		{
+			long[] otherWords=((BitmapContainer)other).words;
+			for(int i=0; i<WORDS; i++)
+			{
+				words[i]|=otherWords[i];
+			}
+		}
+		else if(other instanceof ArrayContainer)
+		{
+			ArrayContainer that=(ArrayContainer)other;
+			for(int i=0; i<that.cardinality; i++)
+			{
+				words[that.content[i]>>>6]|=1L<<that.content[i];
+			}
+		}
+		else
+		{
+			RunContainer that=(RunContainer)other;
+			for(int r=0; r<that.runCount; r++)
+			{
+				setRange(that.start(r), that.end(r));
+			}
+		}
+		recount();
+		return normalized();
+	}
+
+	@Override
+	Container iandNot(Container other)
+	{
+		if(other instanceof BitmapContainer)
+		{
+			long[] otherWords=((BitmapContainer)other).words;
+			for(int i=0; i<WORDS; i++)
+			{
+				words[i]&=~otherWords[i];
+			}
+		}
+		else if(other instanceof ArrayContainer)
+		{
+			ArrayContainer that=(ArrayContainer)other;
+			for(int i=0; i<that.cardinality; i++)
+			{
+				words[that.content[i]>>>6]&=~(1L<<that.content[i]);
+			}
+		}
+		else
+		{
+			RunContainer that=(RunContainer)other;
+			for(int r=0; r<that.runCount; r++)
+			{
+				clearRange(that.start(r), that.end(r));
+			}
+		}
+		recount();
+		return normalized();
+	}
+
+	@Override
+	Container copy()
+	{
+		return new BitmapContainer(words.clone(), cardinality);
+	}
+
+	@Override
+	ArrayContainer toArrayContainer()
+	{
+		char[] content=new char[cardinality];
+		int k=0;
+		for(int i=0; i<WORDS; i++)
+		{
+			long word=words[i];
+			while(word!=0)
+			{
+				content[k++]=(char)((i<<6)+Long.numberOfTrailingZeros(word));
+				word&=word-1;
+			}
+		}
+		return new ArrayContainer(content, cardinality);
+	}
+
+	@Override
+	BitmapContainer toBitmapContainer()
+	{
+		return new BitmapContainer(words.clone(), cardinality);
+	}
+
+	@Override
+	void forEach(int high, IntConsumer consumer)
+	{
+		for(int i=0; i<WORDS; i++)
+		{
+			long word=words[i];
+			while(word!=0)
+			{
+				consumer.accept(high | (i<<6)+Long.numberOfTrailingZeros(word));
+				word&=word-1;
+			}
+		}
+	}
+
+	@Override
+	int nextValue(char x)
+	{
+		int i=x>>>6;
+		long word=words[i] & -1L<<x;
+		while(word==0)
+		{
+			if(++i==WORDS)
+				return -1;
+			word=words[i];
+		}
+		return (i<<6)+Long.numberOfTrailingZeros(word);
+	}
+
+	@Override
+	int numberOfRuns()
+	{
+		int runs=0;
+		long carry=0;
+		for(long word : words)
+		{
+			// a run starts at every set bit whose lower neighbour is not set
+			runs+=Long.bitCount(word & ~(word<<1 | carry));
+			carry=word>>>63;
+		}
+		return runs;
+	}
+
+	@Override
+	int sizeInBytes()
+	{
+		return SIZE_IN_BYTES;
+	}
+}
@@ -0,0 +1,82 @@
+package com.eroelf.javaxsx.util.index;
+
+import java.io.Serializable;
+import java.util.function.IntConsumer;
+
+/**
+ * Holds the lower 16 bits of the values of an {@link IntBitmap} which share the same higher 16 bits.
+ * Sparse values are held by an {@link ArrayContainer}, dense values by a {@link BitmapContainer}, and values in long consecutive ranges by a {@link RunContainer}.
+ * 
+ * <p>The in-place operations may modify this container and return it, or return a new container of another type, and never modify the other container.
+ * 
+ * @author weikun.zhong
+ */
+abstract class Container implements Serializable
+{
+	private static final long serialVersionUID=-7160863203593926604L;
+
+	/**
+	 * The maximum cardinality of an {@link ArrayContainer}, above which a {@link BitmapContainer} is smaller.
+	 */
+	static final int ARRAY_MAX_SIZE=4096;
+
+	abstract int cardinality();
+
+	abstract boolean contains(char x);
+
+	abstract Container add(char x);
+
+	abstract Container remove(char x);
+
+	abstract Container iand(Container other);
+
+	abstract Container ior(Container other);
+
+	abstract Container iandNot(Container other);
+
+	/**
+	 * Returns a container which holds the same values and can be modified independently.
+	 */
+	abstract Container copy();
+
+	/**
+	 * Returns the values as an {@link ArrayContainer}, which is this container itself if it is already one.
+	 */
+	abstract ArrayContainer toArrayContainer();
+
+	/**
+	 * Returns the values as a new {@link BitmapContainer}.
+	 */
+	abstract BitmapContainer toBitmapContainer();
+
+	/**
+	 * Passes every value, combined with the higher bits, to the consumer in ascending order.
+	 */
+	abstract void forEach(int high, IntConsumer consumer);
+
+	/**
+	 * Returns the smallest value which is not less than {@code x}, or {@code -1} if none.
+	 */
+	abstract int nextValue(char x);
+
+	/**
+	 * Returns the number of runs of consecutive values.
+	 */
+	abstract int numberOfRuns();
+
+	abstract int sizeInBytes();
+
+	/**
+	 * Returns the smallest container which holds the same values.
+	 */
+	Container runOptimize()
+	{
+		int runs=numberOfRuns();
+		int cardinality=cardinality();
+		if(RunContainer.sizeInBytes(runs)<Math.min(ArrayContainer.sizeInBytes(cardinality), BitmapContainer.SIZE_IN_BYTES))
+			return this instanceof RunContainer ? this : RunContainer.of(this, runs);
+		if(cardinality<=ARRAY_MAX_SIZE)
+			return toArrayContainer();
+		return this instanceof BitmapContainer ? this : toBitmapContainer();
+	}
+}
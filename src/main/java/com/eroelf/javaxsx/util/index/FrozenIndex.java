@@ -0,0 +1,213 @@
+package com.eroelf.javaxsx.util.index;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * An immutable snapshot of an {@link Index}, made by {@link Index#freeze()}.
+ * Every object is given a dense ordinal, and the objects under every key are kept as a sorted array of ordinals,
+ * so queries merge or gallop over primitive arrays instead of probing hash sets, and readers take no locks.
+ * 
+ * <p>Query results are new sorted arrays of ordinals, which can be passed to further queries and be mapped back to the objects by {@link #toItems(int[])} or {@link #toSet(int[])}.
+ * The arrays returned by {@link #getOrdinals(Object)} are shared and must not be modified.
+ * 
+ * <p>An index which is rebuilt periodically and read concurrently can be frozen by the writer and published through a {@code volatile} or {@link java.util.concurrent.atomic.AtomicReference} field, so readers always see a complete snapshot.
+ * 
+ * @author weikun.zhong
+ *
+ * @param <K> the object type of the index key.
+ * @param <V> the object type of the index value.
+ */
+public final class FrozenIndex<K, V> implements Serializable
+{
+	private static final long serialVersionUID=-3542839426006574219L;
+
+	private final Ordinals<V> ordinals;
+	private final Map<K, int[]> postings;
+
+	FrozenIndex(Map<K, Set<V>> indexMap, Ordinals<V> ordinals)
+	{
+		this.ordinals=ordinals;
+		Map<K, int[]> postings=new HashMap<>((int)(indexMap.size()/0.75)+1);
+		for(Entry<K, Set<V>> entry : indexMap.entrySet())
+		{
+			int[] posting=ordinals.ordinalsOf(entry.getValue());
+			if(posting.length>0)
+				postings.put(entry.getKey(), posting);
+		}
+		this.postings=postings;
+	}
+
+	static <K, V> FrozenIndex<K, V> of(Map<K, Set<V>> indexMap)
+	{
+		Ordinals<V> ordinals=new Ordinals<>();
+		for(Set<V> set : indexMap.values())
+		{
+			ordinals.addAll(set);
+		}
+		return new FrozenIndex<>(indexMap, ordinals);
+	}
+
+	Ordinals<V> ordinals()
+	{
+		return ordinals;
+	}
+
+	public boolean isEmpty()
+	{
+		return postings.isEmpty();
+	}
+
+	public Set<K> getKeys()
+	{
+		return Collections.unmodifiableSet(postings.keySet());
+	}
+
+	/**
+	 * Returns the sorted ordinals of the objects under the key. The returned array is shared and must not be modified.
+	 * 
+	 * @param key the key.
+	 * @return the ordinals, empty if the key is not indexed.
+	 */
+	public int[] getOrdinals(K key)
+	{
+		int[] posting=postings.get(key);
+		return posting!=null ? posting : SortedInts.EMPTY;
+	}
+
+	public int cardinality(K key)
+	{
+		return getOrdinals(key).length;
+	}
+
+	public boolean contains(K key, V item)
+	{
+		int ordinal=ordinals.ordinalOf(item);
+		return ordinal>=0 && SortedInts.contains(getOrdinals(key), ordinal);
+	}
+
+	/**
+	 * Returns the ordinal of the object.
+	 * 
+	 * @param item the object.
+	 * @return the ordinal, or {@code -1} if the object is not in this snapshot.
+	 */
+	public int ordinalOf(V item)
+	{
+		return ordinals.ordinalOf(item);
+	}
+
+	public V getItem(int ordinal)
+	{
+		return ordinals.getItem(ordinal);
+	}
+
+	public List<V> toItems(int[] ordinals)
+	{
+		return this.ordinals.toItems(ordinals);
+	}
+
+	public Set<V> toSet(int[] ordinals)
+	{
+		return this.ordinals.toSet(ordinals);
+	}
+
+	private List<int[]> postingsOf(Iterable<K> keyIter, K[] keys)
+	{
+		List<int[]> res=new ArrayList<>();
+		if(keyIter!=null)
+		{
+			for(K key : keyIter)
+			{
+				int[] posting=postings.get(key);
+				if(posting!=null)
+					res.add(posting);
+			}
+		}
+		for(K key : keys)
+		{
+			int[] posting=postings.get(key);
+			if(posting!=null)
+				res.add(posting);
+		}
+		return res;
+	}
+
+	/**
+	 * Returns the sorted ordinals of the objects under any of the keys.
+	 * 
+	 * @param keyIter the keys, can be {@code null}.
+	 * @param keys more keys.
+	 * @return the ordinals.
+	 */
+	public int[] get(Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		return SortedInts.union(postingsOf(keyIter, keys), ordinals.size());
+	}
+
+	/**
+	 * Returns the ordinals of {@code res} which are under all the keys. Keys which are not indexed are ignored, as {@link Index#intersect(Set, Iterable, Object...)} does.
+	 * The postings are intersected from the shortest to the longest, and the intersection stops once the result is empty.
+	 * 
+	 * @param res sorted ordinals.
+	 * @param keyIter the keys, can be {@code null}.
+	 * @param keys more keys.
+	 * @return the sorted ordinals.
+	 */
+	public int[] intersect(int[] res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		List<int[]> list=postingsOf(keyIter, keys);
+		list.sort(Comparator.comparingInt((int[] posting) -> posting.length));
+		for(int[] posting : list)
+		{
+			if(res.length==0)
+				break;
+			res=SortedInts.intersect(res, posting);
+		}
+		return res;
+	}
+
+	public int[] union(int[] res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		List<int[]> list=postingsOf(keyIter, keys);
+		list.add(res);
+		return SortedInts.union(list, Math.max(ordinals.size(), res.length>0 ? res[res.length-1]+1 : 0));
+	}
+
+	public int[] intersectUnion(int[] res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		return res.length>0 && !isEmpty() ? SortedInts.intersect(res, get(keyIter, keys)) : res;
+	}
+
+	public int[] subtract(int[] res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		for(int[] posting : postingsOf(keyIter, keys))
+		{
+			if(res.length==0)
+				break;
+			res=SortedInts.subtract(res, posting);
+		}
+		return res;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb=new StringBuilder("{");
+		for(Entry<K, int[]> entry : postings.entrySet())
+		{
+			if(sb.length()>1)
+				sb.append(", ");
+			sb.append(entry.getKey()).append("=").append(Arrays.toString(entry.getValue()));
+		}
+		return sb.append("}").toString();
+	}
+}
@@ -0,0 +1,124 @@
+package com.eroelf.javaxsx.util.index;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * An immutable snapshot of an {@link IndexGroup}, made by {@link IndexGroup#freeze()}.
+ * All indices of the group share the same ordinals of the objects, so the results of different indices can be combined directly.
+ * 
+ * @author weikun.zhong
+ *
+ * @param <V> the object type of the index value.
+ *
+ * @see FrozenIndex
+ */
+public final class FrozenIndexGroup<V> implements Serializable
+{
+	private static final long serialVersionUID=6652306413713924930L;
+
+	private final Ordinals<V> ordinals;
+	private final Map<String, FrozenIndex<?, V>> groupMap;
+	private final FrozenIndex<?, V> idleIndex;
+
+	FrozenIndexGroup(Map<String, Index<?, V>> groupMap)
+	{
+		ordinals=new Ordinals<>();
+		for(Index<?, V> index : groupMap.values())
+		{
+			for(Set<V> set : index.indexMap.values())
+			{
+				ordinals.addAll(set);
+			}
+		}
+		Map<String, FrozenIndex<?, V>> frozenMap=new HashMap<>((int)(groupMap.size()/0.75)+1);
+		for(Entry<String, Index<?, V>> entry : groupMap.entrySet())
+		{
+			frozenMap.put(entry.getKey(), freeze(entry.getValue()));
+		}
+		this.groupMap=frozenMap;
+		idleIndex=new FrozenIndex<>(Collections.emptyMap(), ordinals);
+	}
+
+	private <K> FrozenIndex<K, V> freeze(Index<K, V> index)
+	{
+		return new FrozenIndex<>(index.indexMap, ordinals);
+	}
+
+	Ordinals<V> ordinals()
+	{
+		return ordinals;
+	}
+
+	public Set<String> getGroupNames()
+	{
+		return Collections.unmodifiableSet(groupMap.keySet());
+	}
+
+	@SuppressWarnings("unchecked")
+	public <K> FrozenIndex<K, V> getIndex(String groupName)
+	{
+		return (FrozenIndex<K, V>)groupMap.get(groupName);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected <K> FrozenIndex<K, V> getNotNullIdx(String groupName)
+	{
+		return (FrozenIndex<K, V>)groupMap.getOrDefault(groupName, idleIndex);
+	}
+
+	public int ordinalOf(V item)
+	{
+		return ordinals.ordinalOf(item);
+	}
+
+	public V getItem(int ordinal)
+	{
+		return ordinals.getItem(ordinal);
+	}
+
+	public List<V> toItems(int[] ordinals)
+	{
+		return this.ordinals.toItems(ordinals);
+	}
+
+	public Set<V> toSet(int[] ordinals)
+	{
+		return this.ordinals.toSet(ordinals);
+	}
+
+	public <K> int[] get(String groupName, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		FrozenIndex<K, V> index=getNotNullIdx(groupName);
+		return index.get(keyIter, keys);
+	}
+
+	public <K> int[] intersect(int[] res, String groupName, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		FrozenIndex<K, V> index=getNotNullIdx(groupName);
+		return index.intersect(res, keyIter, keys);
+	}
+
+	public <K> int[] union(int[] res, String groupName, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		FrozenIndex<K, V> index=getNotNullIdx(groupName);
+		return index.union(res, keyIter, keys);
+	}
+
+	public <K> int[] intersectUnion(int[] res, String groupName, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		FrozenIndex<K, V> index=getNotNullIdx(groupName);
+		return index.intersectUnion(res, keyIter, keys);
+	}
+
+	public <K> int[] subtract(int[] res, String groupName, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		FrozenIndex<K, V> index=getNotNullIdx(groupName);
+		return index.subtract(res, keyIter, keys);
+	}
+}
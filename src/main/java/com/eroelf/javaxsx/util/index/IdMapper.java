@@ -0,0 +1,105 @@
+package com.eroelf.javaxsx.util.index;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Assigns dense {@code int} ids to objects in the order they are first seen, so that the objects can be indexed by an {@link IntIndex} and the ids of the results can be mapped back.
+ * Ids are never reused. This class is not thread-safe.
+ * 
+ * @author weikun.zhong
+ *
+ * @param <V> the object type.
+ */
+public class IdMapper<V> implements Serializable
+{
+	private static final long serialVersionUID=-1297604416702386563L;
+
+	private final Map<V, Integer> idMap=new HashMap<>();
+	private final List<V> items=new ArrayList<>();
+
+	/**
+	 * Returns the id of the object, assigning the next id to it if it has none.
+	 * 
+	 * @param item the object.
+	 * @return the id of the object.
+	 */
+	public int getOrAssign(V item)
+	{
+		Integer id=idMap.get(item);
+		if(id==null)
+		{
+			id=items.size();
+			idMap.put(item, id);
+			items.add(item);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the id of the object.
+	 * 
+	 * @param item the object.
+	 * @return the id of the object, or {@code -1} if it has none.
+	 */
+	public int getId(V item)
+	{
+		Integer id=idMap.get(item);
+		return id!=null ? id : -1;
+	}
+
+	public V getItem(int id)
+	{
+		return items.get(id);
+	}
+
+	public int size()
+	{
+		return items.size();
+	}
+
+	/**
+	 * Returns the ids of the objects. Objects without ids are skipped.
+	 * 
+	 * @param items the objects.
+	 * @return the ids.
+	 */
+	public IntBitmap toIds(Iterable<V> items)
+	{
+		IntBitmap ids=new IntBitmap();
+		for(V item : items)
+		{
+			int id=getId(item);
+			if(id>=0)
+				ids.add(id);
+		}
+		return ids;
+	}
+
+	/**
+	 * Adds the objects of the ids to the collection.
+	 * 
+	 * @param <C> the collection type.
+	 * @param ids the ids.
+	 * @param res the collection to receive the objects.
+	 * @return {@code res}.
+	 */
+	public <C extends Collection<? super V>> C toItems(IntBitmap ids, C res)
+	{
+		ids.forEach(id -> {
+			res.add(items.get(id));
+		});
+		return res;
+	}
+
+	public Set<V> toSet(IntBitmap ids)
+	{
+		return toItems(ids, new HashSet<V>((int)Math.min(ids.cardinality()*4/3+1, Integer.MAX_VALUE)));
+	}
+}
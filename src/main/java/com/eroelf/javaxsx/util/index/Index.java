@@ -1,11 +1,15 @@
 package com.eroelf.javaxsx.util.index;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -137,6 +141,11 @@ public class Index<K, V> implements Serializable
 		}
 	}
 
+	/**
+	 * Removes the object from every key, which scans all the keys. See {@link SegmentedIndex} for removals which cost {@code O(keys of the object)}.
+	 * 
+	 * @param item the object.
+	 */
 	public void removeItem(V item)
 	{
 		Iterator<Entry<K, Set<V>>> entryIter=indexMap.entrySet().iterator();
@@ -159,6 +168,33 @@ public class Index<K, V> implements Serializable
 		return new HashSet<>(indexMap.keySet());
 	}
 
+	/**
+	 * Makes an immutable snapshot of this index with sorted arrays of object ordinals, which serves lock-free readers.
+	 * The index can be modified or rebuilt afterwards without affecting the snapshot. For a concurrent index, objects added during the freezing may be missed.
+	 * 
+	 * @return the snapshot.
+	 */
+	public FrozenIndex<K, V> freeze()
+	{
+		return FrozenIndex.of(indexMap);
+	}
+
+	/**
+	 * Saves a snapshot of this index to a binary file which can be mapped by {@link MappedIndex#readFromMappedFile(String, Function, Function)}.
+	 * Keys and objects are saved as their string forms, and keys of the same string form are not allowed.
+	 * 
+	 * @param fileName the target file name.
+	 * @param keyEncoder converts keys to string forms.
+	 * @param itemEncoder converts objects to string forms.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@SuppressWarnings("unchecked")
+	public void saveToMappedFile(String fileName, Function<? super K, String> keyEncoder, Function<? super V, String> itemEncoder) throws IOException
+	{
+		FrozenIndex<K, V> frozen=freeze();
+		MappedIndexGroup.save(fileName, Collections.<String, FrozenIndex<?, V>>singletonMap("", frozen), frozen.ordinals(), key -> keyEncoder.apply((K)key), itemEncoder);
+	}
+
 	public Set<V> get(Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
 	{
 		Set<V> res=new HashSet<>();
@@ -172,27 +208,98 @@ public class Index<K, V> implements Serializable
 		return res;
 	}
 
+	/**
+	 * Returns the number of objects under the key.
+	 * 
+	 * @param key the key.
+	 * @return the number of objects, {@code 0} if the key is not indexed.
+	 */
+	public int cardinality(K key)
+	{
+		Set<V> set=indexMap.get(key);
+		return set!=null ? set.size() : 0;
+	}
+
+	public boolean contains(K key, V item)
+	{
+		Set<V> set=indexMap.get(key);
+		return set!=null && set.contains(item);
+	}
+
+	/**
+	 * Keeps only the objects of {@code res} which are under all the given keys. Keys which are not indexed are ignored.
+	 * The keys of both {@code keyIter} and {@code keys} are planned together, see {@link #_intersect(Set, Iterable)}.
+	 * 
+	 * @param res the objects to be filtered.
+	 * @param keyIter the keys, can be {@code null}.
+	 * @param keys more keys.
+	 * @return {@code res}.
+	 */
 	public Set<V> intersect(Set<V> res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
 	{
 		if(!indexMap.isEmpty())
 		{
-			if(keyIter!=null)
+			if(keyIter!=null && keys.length>0)
+			{
+				List<K> keyList=new ArrayList<>(Arrays.asList(keys));
+				for(K key : keyIter)
+				{
+					keyList.add(key);
+				}
+				_intersect(res, keyList);
+			}
+			else if(keyIter!=null)
 				_intersect(res, keyIter);
-			if(keys.length>0)
+			else if(keys.length>0)
 				_intersect(res, Arrays.asList(keys));
 		}
 		return res;
 	}
 
+	/**
+	 * Intersects the sets of the keys from the smallest to the largest, so the result shrinks as early as possible, and stops once the result is empty.
+	 */
 	protected Set<V> _intersect(Set<V> res, Iterable<K> keyIter)
 	{
+		List<Set<V>> sets=new ArrayList<>();
 		for(K key : keyIter)
 		{
-			if(res.isEmpty())
-				break;
 			Set<V> temp=indexMap.get(key);
 			if(temp!=null)
-				res.retainAll(temp);
+				sets.add(temp);
+		}
+		sets.sort(Comparator.comparingInt(Set::size));
+		for(Set<V> temp : sets)
+		{
+			if(res.isEmpty())
+				break;
+			retain(res, temp);
+		}
+		return res;
+	}
+
+	/**
+	 * Keeps only the objects of {@code res} which are also in {@code set}. The smaller set is iterated and the larger one is probed.
+	 * 
+	 * @param <V> the object type.
+	 * @param res the objects to be filtered.
+	 * @param set the objects to be kept.
+	 * @return {@code res}.
+	 */
+	protected static <V> Set<V> retain(Set<V> res, Set<V> set)
+	{
+		if(res.size()<=set.size())
+			res.removeIf(item -> !set.contains(item));
+		else
+		{
+			List<V> kept=new ArrayList<>();
+			for(V item : set)
+			{
+				if(res.contains(item))
+					kept.add(item);
+			}
+			res.clear();
+			res.addAll(kept);
 		}
 		return res;
 	}
@@ -223,7 +330,7 @@ public class Index<K, V> implements Serializable
 	public Set<V> intersectUnion(Set<V> res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
 	{
 		if(!res.isEmpty() && !indexMap.isEmpty())
-			res.retainAll(union(new HashSet<>(), keyIter, keys));
+			retain(res, union(new HashSet<>(), keyIter, keys));
 		return res;
 	}
 
@@ -1,5 +1,6 @@
 package com.eroelf.javaxsx.util.index;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -198,6 +199,38 @@ public class IndexGroup<V> implements Serializable
 		return new HashSet<>(groupMap.keySet());
 	}
 
+	/**
+	 * Makes an immutable snapshot of all indices of this group, in which all indices share the same object ordinals.
+	 * 
+	 * @return the snapshot.
+	 * 
+	 * @see Index#freeze()
+	 */
+	public FrozenIndexGroup<V> freeze()
+	{
+		return new FrozenIndexGroup<>(groupMap);
+	}
+
+	/**
+	 * Saves a snapshot of this group to a binary file which can be mapped by {@link MappedIndexGroup#readFromMappedFile(String, Function, Function)}.
+	 * Keys and objects are saved as their string forms, and keys of the same string form in an index are not allowed.
+	 * 
+	 * @param fileName the target file name.
+	 * @param keyEncoder converts keys of all indices to string forms.
+	 * @param itemEncoder converts objects to string forms.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void saveToMappedFile(String fileName, Function<Object, String> keyEncoder, Function<? super V, String> itemEncoder) throws IOException
+	{
+		FrozenIndexGroup<V> frozen=freeze();
+		Map<String, FrozenIndex<?, V>> indices=new HashMap<>();
+		for(String groupName : frozen.getGroupNames())
+		{
+			indices.put(groupName, frozen.getIndex(groupName));
+		}
+		MappedIndexGroup.save(fileName, indices, frozen.ordinals(), keyEncoder, itemEncoder);
+	}
+
 	public <K> Set<K> getIndexKeys(String groupName)
 	{
 		Index<K, V> index=getNotNullIdx(groupName);
@@ -240,6 +273,30 @@ public class IndexGroup<V> implements Serializable
 		return index.subtract(res, keyIter, keys);
 	}
 
+	/**
+	 * Evaluates a query across the indices of this group, see {@link IndexQuery} for how it is planned.
+	 * 
+	 * @param query the query.
+	 * @return a new set of the matched objects.
+	 * @throws UnsupportedOperationException if the query selects objects by exclusion only.
+	 */
+	public Set<V> query(IndexQuery query)
+	{
+		return query.evaluate(this);
+	}
+
+	/**
+	 * Tests whether an object is matched by a query across the indices of this group.
+	 * 
+	 * @param query the query.
+	 * @param item the object.
+	 * @return {@code true} if the object is matched.
+	 */
+	public boolean matches(IndexQuery query, V item)
+	{
+		return query.matches(this, item);
+	}
+
 	@SuppressWarnings("unchecked")
 	protected <K> Index<K, V> getNotNullIdx(String groupName)
 	{
@@ -0,0 +1,361 @@
+package com.eroelf.javaxsx.util.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A boolean query over the indices of an {@link IndexGroup}, composed of terms by AND, OR and NOT, and evaluated by {@link IndexGroup#query(IndexQuery)}.
+ * 
+ * <p>The operands of an AND query are planned by their estimated cardinalities: the smallest positive operand is evaluated first,
+ * then every other positive operand either filters the result by probing its indices item by item, or is evaluated and intersected with the result, whichever costs less,
+ * and the NOT operands filter the result at last. The evaluation stops once the result is empty.
+ * 
+ * <p>A NOT query selects objects by exclusion only, so it can be evaluated only as an operand of an AND query which has a positive operand.
+ * Queries are immutable and can be reused on different groups.
+ * 
+ * @author weikun.zhong
+ */
+public abstract class IndexQuery
+{
+	/**
+	 * Matches the objects which are under any of the given keys in the index of the group.
+	 * 
+	 * @param groupName the name of the index.
+	 * @param keys the keys.
+	 * @return the query.
+	 */
+	public static IndexQuery term(String groupName, Object... keys)
+	{
+		return new Term(groupName, Arrays.asList(keys));
+	}
+
+	/**
+	 * Matches the objects which are under any of the given keys in the index of the group.
+	 * 
+	 * @param groupName the name of the index.
+	 * @param keys the keys.
+	 * @return the query.
+	 */
+	public static IndexQuery term(String groupName, Iterable<?> keys)
+	{
+		List<Object> keyList=new ArrayList<>();
+		for(Object key : keys)
+		{
+			keyList.add(key);
+		}
+		return new Term(groupName, keyList);
+	}
+
+	public static IndexQuery and(IndexQuery... queries)
+	{
+		return new And(Arrays.asList(queries));
+	}
+
+	public static IndexQuery or(IndexQuery... queries)
+	{
+		return new Or(Arrays.asList(queries));
+	}
+
+	public static IndexQuery not(IndexQuery query)
+	{
+		return new Not(query);
+	}
+
+	/**
+	 * Estimates the upper bound of the number of matched objects.
+	 */
+	abstract <V> long estimate(IndexGroup<V> group);
+
+	/**
+	 * Estimates the number of set probes to test one object.
+	 */
+	abstract int probeCost();
+
+	/**
+	 * Returns a new mutable set of the matched objects.
+	 */
+	abstract <V> Set<V> evaluate(IndexGroup<V> group);
+
+	/**
+	 * Tests whether the object is matched.
+	 */
+	abstract <V> boolean matches(IndexGroup<V> group, V item);
+
+	private static long saturatedAdd(long a, long b)
+	{
+		long sum=a+b;
+		return sum<0 ? Long.MAX_VALUE : sum;
+	}
+
+	private static final class Term extends IndexQuery
+	{
+		private final String groupName;
+		private final List<Object> keys;
+
+		private Term(String groupName, List<Object> keys)
+		{
+			this.groupName=groupName;
+			this.keys=keys;
+		}
+
+		@Override
+		<V> long estimate(IndexGroup<V> group)
+		{
+			Index<Object, V> index=group.getNotNullIdx(groupName);
+			long estimate=0;
+			for(Object key : keys)
+			{
+				estimate+=index.cardinality(key);
+			}
+			return estimate;
+		}
+
+		@Override
+		int probeCost()
+		{
+			return Math.max(keys.size(), 1);
+		}
+
+		@Override
+		<V> Set<V> evaluate(IndexGroup<V> group)
+		{
+			Index<Object, V> index=group.getNotNullIdx(groupName);
+			return index.union(new HashSet<V>(), keys);
+		}
+
+		@Override
+		<V> boolean matches(IndexGroup<V> group, V item)
+		{
+			Index<Object, V> index=group.getNotNullIdx(groupName);
+			for(Object key : keys)
+			{
+				if(index.contains(key, item))
+					return true;
+			}
+			return false;
+		}
+
+		@Override
+		public String toString()
+		{
+			return groupName+":"+keys;
+		}
+	}
+
+	private static final class And extends IndexQuery
+	{
+		private final List<IndexQuery> positives=new ArrayList<>();
+		private final List<IndexQuery> negatives=new ArrayList<>();
+
+		private And(List<IndexQuery> queries)
+		{
+			for(IndexQuery query : queries)
+			{
+				if(query instanceof Not)
+					negatives.add(((Not)query).query);
+				else
+					positives.add(query);
+			}
+		}
+
+		@Override
+		<V> long estimate(IndexGroup<V> group)
+		{
+			long estimate=Long.MAX_VALUE;
+			for(IndexQuery query : positives)
+			{
+				estimate=Math.min(estimate, query.estimate(group));
+			}
+			return estimate;
+		}
+
+		@Override
+		int probeCost()
+		{
+			int cost=0;
+			for(IndexQuery query : positives)
+			{
+				cost+=query.probeCost();
+			}
+			for(IndexQuery query : negatives)
+			{
+				cost+=query.probeCost();
+			}
+			return cost;
+		}
+
+		@Override
+		<V> Set<V> evaluate(IndexGroup<V> group)
+		{
+			if(positives.isEmpty())
+				throw new UnsupportedOperationException("IndexQuery::evaluate: an AND query without positive operands can not be evaluated!");
+			int n=positives.size();
+			long[] estimates=new long[n];
+			Integer[] order=new Integer[n];
+			for(int i=0; i<n; i++)
+			{
+				estimates[i]=positives.get(i).estimate(group);
+				order[i]=i;
+			}
+			Arrays.sort(order, Comparator.comparingLong((Integer i) -> estimates[i]));
+			Set<V> res=positives.get(order[0]).evaluate(group);
+			for(int i=1; i<n && !res.isEmpty(); i++)
+			{
+				IndexQuery query=positives.get(order[i]);
+				// probing costs a few lookups per remaining object, evaluating costs about one insertion per object of the operand
+				if((double)res.size()*query.probeCost()<=estimates[order[i]])
+					res.removeIf(item -> !query.matches(group, item));
+				else
+					Index.retain(res, query.evaluate(group));
+			}
+			for(IndexQuery query : negatives)
+			{
+				if(res.isEmpty())
+					break;
+				res.removeIf(item -> query.matches(group, item));
+			}
+			return res;
+		}
+
+		@Override
+		<V> boolean matches(IndexGroup<V> group, V item)
+		{
+			for(IndexQuery query : positives)
+			{
+				if(!query.matches(group, item))
+					return false;
+			}
+			for(IndexQuery query : negatives)
+			{
+				if(query.matches(group, item))
+					return false;
+			}
+			return true;
+		}
+
+		@Override
+		public String toString()
+		{
+			List<String> operands=new ArrayList<>();
+			for(IndexQuery query : positives)
+			{
+				operands.add(query.toString());
+			}
+			for(IndexQuery query : negatives)
+			{
+				operands.add("NOT "+query);
+			}
+			return "("+String.join(" AND ", operands)+")";
+		}
+	}
+
+	private static final class Or extends IndexQuery
+	{
+		private final List<IndexQuery> queries;
+
+		private Or(List<IndexQuery> queries)
+		{
+			this.queries=Collections.unmodifiableList(new ArrayList<>(queries));
+		}
+
+		@Override
+		<V> long estimate(IndexGroup<V> group)
+		{
+			long estimate=0;
+			for(IndexQuery query : queries)
+			{
+				estimate=saturatedAdd(estimate, query.estimate(group));
+			}
+			return estimate;
+		}
+
+		@Override
+		int probeCost()
+		{
+			int cost=0;
+			for(IndexQuery query : queries)
+			{
+				cost+=query.probeCost();
+			}
+			return cost;
+		}
+
+		@Override
+		<V> Set<V> evaluate(IndexGroup<V> group)
+		{
+			Set<V> res=new HashSet<>();
+			for(IndexQuery query : queries)
+			{
+				res.addAll(query.evaluate(group));
+			}
+			return res;
+		}
+
+		@Override
+		<V> boolean matches(IndexGroup<V> group, V item)
+		{
+			for(IndexQuery query : queries)
+			{
+				if(query.matches(group, item))
+					return true;
+			}
+			return false;
+		}
+
+		@Override
+		public String toString()
+		{
+			List<String> operands=new ArrayList<>();
+			for(IndexQuery query : queries)
+			{
+				operands.add(query.toString());
+			}
+			return "("+String.join(" OR ", operands)+")";
+		}
+	}
+
+	private static final class Not extends IndexQuery
+	{
+		private final IndexQuery query;
+
+		private Not(IndexQuery query)
+		{
+			this.query=query;
+		}
+
+		@Override
+		<V> long estimate(IndexGroup<V> group)
+		{
+			return Long.MAX_VALUE;
+		}
+
+		@Override
+		int probeCost()
+		{
+			return query.probeCost();
+		}
+
+		@Override
+		<V> Set<V> evaluate(IndexGroup<V> group)
+		{
+			throw new UnsupportedOperationException("IndexQuery::evaluate: a NOT query can only be evaluated as an operand of an AND query with positive operands!");
+		}
+
+		@Override
+		<V> boolean matches(IndexGroup<V> group, V item)
+		{
+			return !query.matches(group, item);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "NOT "+query;
+		}
+	}
+}
@@ -0,0 +1,344 @@
+package com.eroelf.javaxsx.util.index;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed bitmap of {@code int} values in the style of Roaring bitmaps.
+ * Values are partitioned by their higher 16 bits, and the lower 16 bits of each partition are kept by a container:
+ * a sorted array for sparse partitions, a bitmap of {@code 65536} bits for dense partitions, or runs of consecutive values after {@link #runOptimize()}.
+ * So intersections, unions and differences of two bitmaps work on whole words or merge short arrays, and only touch the partitions both bitmaps have.
+ * 
+ * <p>Values are ordered as unsigned integers, so negative values come after all non-negative values.
+ * This class is not thread-safe.
+ * 
+ * @author weikun.zhong
+ */
+public class IntBitmap implements Serializable
+{
+	private static final long serialVersionUID=-4962154722915437780L;
+
+	private char[] keys;
+	private Container[] containers;
+	private int size;
+
+	public IntBitmap()
+	{
+		keys=new char[4];
+		containers=new Container[4];
+	}
+
+	/**
+	 * Constructs a deep copy of the given bitmap.
+	 * 
+	 * @param bitmap the source bitmap.
+	 */
+	public IntBitmap(IntBitmap bitmap)
+	{
+		keys=Arrays.copyOf(bitmap.keys, Math.max(bitmap.size, 4));
+		containers=new Container[keys.length];
+		for(int i=0; i<bitmap.size; i++)
+		{
+			containers[i]=bitmap.containers[i].copy();
+		}
+		size=bitmap.size;
+	}
+
+	public static IntBitmap of(int... values)
+	{
+		IntBitmap bitmap=new IntBitmap();
+		for(int value : values)
+		{
+			bitmap.add(value);
+		}
+		return bitmap;
+	}
+
+	private static char high(int x)
+	{
+		return (char)(x>>>16);
+	}
+
+	private static char low(int x)
+	{
+		return (char)x;
+	}
+
+	private int find(char key)
+	{
+		return Arrays.binarySearch(keys, 0, size, key);
+	}
+
+	public void add(int x)
+	{
+		int idx=find(high(x));
+		if(idx>=0)
+			containers[idx]=containers[idx].add(low(x));
+		else
+		{
+			idx=-idx-1;
+			if(size==keys.length)
+			{
+				keys=Arrays.copyOf(keys, size*2);
+				containers=Arrays.copyOf(containers, size*2);
+			}
+			System.arraycopy(keys, idx, keys, idx+1, size-idx);
+			System.arraycopy(containers, idx, containers, idx+1, size-idx);
+			keys[idx]=high(x);
+			containers[idx]=new ArrayContainer().add(low(x));
+			++size;
+		}
+	}
+
+	public void remove(int x)
+	{
+		int idx=find(high(x));
+		if(idx>=0)
+		{
+			Container container=containers[idx].remove(low(x));
+			if(container.cardinality()>0)
+				containers[idx]=container;
+			else
+			{
+				System.arraycopy(keys, idx+1, keys, idx, size-idx-1);
+				System.arraycopy(containers, idx+1, containers, idx, size-idx-1);
+				containers[--size]=null;
+			}
+		}
+	}
+
+	public boolean contains(int x)
+	{
+		int idx=find(high(x));
+		return idx>=0 && containers[idx].contains(low(x));
+	}
+
+	/**
+	 * Returns the smallest value in this bitmap which is not less than {@code x}, in the unsigned order.
+	 * 
+	 * @param x the lower bound.
+	 * @return the smallest value not less than {@code x}, or {@code -1} if none. Since {@code -1} is also a valid value, use {@link #contains(int)} to tell them apart if needed.
+	 */
+	public int nextValue(int x)
+	{
+		int idx=find(high(x));
+		if(idx>=0)
+		{
+			int value=containers[idx].nextValue(low(x));
+			if(value>=0)
+				return x & 0xFFFF0000 | value;
+			++idx;
+		}
+		else
+			idx=-idx-1;
+		return idx<size ? keys[idx]<<16 | containers[idx].nextValue((char)0) : -1;
+	}
+
+	public long cardinality()
+	{
+		long cardinality=0;
+		for(int i=0; i<size; i++)
+		{
+			cardinality+=containers[i].cardinality();
+		}
+		return cardinality;
+	}
+
+	public boolean isEmpty()
+	{
+		return size==0;
+	}
+
+	public void clear()
+	{
+		Arrays.fill(containers, 0, size, null);
+		size=0;
+	}
+
+	/**
+	 * Keeps only the values which are also in the other bitmap.
+	 * 
+	 * @param other the other bitmap, which is not modified.
+	 * @return this bitmap.
+	 */
+	public IntBitmap and(IntBitmap other)
+	{
+		int k=0;
+		int i=0;
+		int j=0;
+		while(i<size && j<other.size)
+		{
+			if(keys[i]<other.keys[j])
+				++i;
+			else if(keys[i]>other.keys[j])
+				++j;
+			else
+			{
+				Container container=containers[i].iand(other.containers[j]);
+				if(container.cardinality()>0)
+				{
+					keys[k]=keys[i];
+					containers[k++]=container;
+				}
+				++i;
+				++j;
+			}
+		}
+		Arrays.fill(containers, k, size, null);
+		size=k;
+		return this;
+	}
+
+	/**
+	 * Adds all values of the other bitmap.
+	 * 
+	 * @param other the other bitmap, which is not modified.
+	 * @return this bitmap.
+	 */
+	public IntBitmap or(IntBitmap other)
+	{
+		char[] newKeys=new char[Math.max(size+other.size, 4)];
+		Container[] newContainers=new Container[newKeys.length];
+		int k=0;
+		int i=0;
+		int j=0;
+		while(i<size || j<other.size)
+		{
+			if(j==other.size || i<size && keys[i]<other.keys[j])
+			{
+				newKeys[k]=keys[i];
+				newContainers[k++]=containers[i++];
+			}
+			else if(i==size || keys[i]>other.keys[j])
+			{
+				newKeys[k]=other.keys[j];
+				newContainers[k++]=other.containers[j++].copy();
+			}
+			else
+			{
+				newKeys[k]=keys[i];
+				newContainers[k++]=containers[i++].ior(other.containers[j++]);
+			}
+		}
+		keys=newKeys;
+		containers=newContainers;
+		size=k;
+		return this;
+	}
+
+	/**
+	 * Removes all values which are in the other bitmap.
+	 * 
+	 * @param other the other bitmap, which is not modified.
+	 * @return this bitmap.
+	 */
+	public IntBitmap andNot(IntBitmap other)
+	{
+		int k=0;
+		int j=0;
+		for(int i=0; i<size; i++)
+		{
+			while(j<other.size && other.keys[j]<keys[i])
+			{
+				++j;
+			}
+			Container container=j<other.size && other.keys[j]==keys[i] ? containers[i].iandNot(other.containers[j]) : containers[i];
+			if(container.cardinality()>0)
+			{
+				keys[k]=keys[i];
+				containers[k++]=container;
+			}
+		}
+		Arrays.fill(containers, k, size, null);
+		size=k;
+		return this;
+	}
+
+	/**
+	 * Passes every value to the consumer in the unsigned ascending order.
+	 * 
+	 * @param consumer the receiver of the values.
+	 */
+	public void forEach(IntConsumer consumer)
+	{
+		for(int i=0; i<size; i++)
+		{
+			containers[i].forEach(keys[i]<<16, consumer);
+		}
+	}
+
+	/**
+	 * Returns all values in the unsigned ascending order.
+	 * 
+	 * @return the values.
+	 */
+	public int[] toArray()
+	{
+		int[] values=new int[(int)cardinality()];
+		int[] k={0};
+		forEach(value -> {
+			values[k[0]++]=value;
+		});
+		return values;
+	}
+
+	/**
+	 * Converts every container to the smallest representation, including runs of consecutive values.
+	 * Should be called after a bitmap is built and before it is only read.
+	 * 
+	 * @return this bitmap.
+	 */
+	public IntBitmap runOptimize()
+	{
+		for(int i=0; i<size; i++)
+		{
+			containers[i]=containers[i].runOptimize();
+		}
+		return this;
+	}
+
+	/**
+	 * Estimates the memory taken by the values of this bitmap.
+	 * 
+	 * @return the estimated number of bytes.
+	 */
+	public long sizeInBytes()
+	{
+		long bytes=keys.length*2L+containers.length*4L;
+		for(int i=0; i<size; i++)
+		{
+			bytes+=containers[i].sizeInBytes();
+		}
+		return bytes;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if(this==obj)
+			return true;
+		if(!(obj instanceof IntBitmap))
+			return false;
+		IntBitmap other=(IntBitmap)obj;
+		return size==other.size && Arrays.equals(toArray(), other.toArray());
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Arrays.hashCode(toArray());
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb=new StringBuilder("{");
+		forEach(value -> {
+			if(sb.length()>1)
+				sb.append(", ");
+			sb.append(Integer.toUnsignedString(value));
+		});
+		return sb.append("}").toString();
+	}
+}
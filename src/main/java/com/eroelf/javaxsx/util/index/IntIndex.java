@@ -0,0 +1,242 @@
+package com.eroelf.javaxsx.util.index;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Maintains {@code int} ids which are under a given key (the index), and keeps the ids of every key in an {@link IntBitmap}.
+ * Works as {@link Index} does, but queries are bitwise operations on the bitmaps instead of operations on hash sets, and the postings take a few bits per id instead of a hash set entry.
+ * Objects are given dense ids by an {@link IdMapper}, which also maps the ids of the results back to the objects.
+ * 
+ * <p>This class is not thread-safe.
+ * 
+ * @author weikun.zhong
+ *
+ * @param <K> the object type of the index key.
+ */
+public class IntIndex<K> implements Serializable
+{
+	private static final long serialVersionUID=2617725366153349614L;
+
+	protected Map<K, IntBitmap> indexMap=new HashMap<>();
+
+	public void addItem(K key, int id)
+	{
+		IntBitmap bitmap=indexMap.get(key);
+		if(bitmap==null)
+		{
+			bitmap=new IntBitmap();
+			indexMap.put(key, bitmap);
+		}
+		bitmap.add(id);
+	}
+
+	public void addItemToMultiKeys(int id, Iterable<K> keyIter)
+	{
+		for(K key : keyIter)
+		{
+			addItem(key, id);
+		}
+	}
+
+	public void addItems(K key, IntBitmap ids)
+	{
+		IntBitmap bitmap=indexMap.get(key);
+		if(bitmap==null)
+			indexMap.put(key, new IntBitmap(ids));
+		else
+			bitmap.or(ids);
+	}
+
+	public void addAll(IntIndex<K> index)
+	{
+		for(Entry<K, IntBitmap> entry : index.indexMap.entrySet())
+		{
+			addItems(entry.getKey(), entry.getValue());
+		}
+	}
+
+	public IntBitmap putIdx(K key, IntBitmap ids)
+	{
+		return indexMap.put(key, ids!=null ? new IntBitmap(ids) : new IntBitmap());
+	}
+
+	public IntBitmap removeIdx(K key)
+	{
+		return indexMap.remove(key);
+	}
+
+	public void removeFromIdx(K key, int id)
+	{
+		IntBitmap bitmap=indexMap.get(key);
+		if(bitmap!=null)
+		{
+			bitmap.remove(id);
+			if(bitmap.isEmpty())
+				indexMap.remove(key);
+		}
+	}
+
+	public void removeItem(int id)
+	{
+		Iterator<Entry<K, IntBitmap>> entryIter=indexMap.entrySet().iterator();
+		while(entryIter.hasNext())
+		{
+			IntBitmap bitmap=entryIter.next().getValue();
+			bitmap.remove(id);
+			if(bitmap.isEmpty())
+				entryIter.remove();
+		}
+	}
+
+	public boolean isEmpty()
+	{
+		return indexMap.isEmpty();
+	}
+
+	public Set<K> getKeys()
+	{
+		return new HashSet<>(indexMap.keySet());
+	}
+
+	/**
+	 * Returns the number of ids under the key.
+	 * 
+	 * @param key the key.
+	 * @return the number of ids, {@code 0} if the key is not indexed.
+	 */
+	public long cardinality(K key)
+	{
+		IntBitmap bitmap=indexMap.get(key);
+		return bitmap!=null ? bitmap.cardinality() : 0;
+	}
+
+	/**
+	 * Converts every posting to its smallest representation, see {@link IntBitmap#runOptimize()}.
+	 */
+	public void runOptimize()
+	{
+		for(IntBitmap bitmap : indexMap.values())
+		{
+			bitmap.runOptimize();
+		}
+	}
+
+	public IntBitmap get(Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		IntBitmap res=new IntBitmap();
+		if(!indexMap.isEmpty())
+		{
+			if(keyIter!=null)
+				_union(res, keyIter);
+			if(keys.length>0)
+				_union(res, Arrays.asList(keys));
+		}
+		return res;
+	}
+
+	public IntBitmap intersect(IntBitmap res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		if(!indexMap.isEmpty())
+		{
+			if(keyIter!=null && keys.length>0)
+			{
+				List<K> keyList=new ArrayList<>(Arrays.asList(keys));
+				for(K key : keyIter)
+				{
+					keyList.add(key);
+				}
+				_intersect(res, keyList);
+			}
+			else if(keyIter!=null)
+				_intersect(res, keyIter);
+			else if(keys.length>0)
+				_intersect(res, Arrays.asList(keys));
+		}
+		return res;
+	}
+
+	/**
+	 * Intersects the bitmaps of the keys from the smallest to the largest, and stops once the result is empty.
+	 */
+	protected IntBitmap _intersect(IntBitmap res, Iterable<K> keyIter)
+	{
+		List<IntBitmap> bitmaps=new ArrayList<>();
+		for(K key : keyIter)
+		{
+			IntBitmap temp=indexMap.get(key);
+			if(temp!=null)
+				bitmaps.add(temp);
+		}
+		bitmaps.sort(Comparator.comparingLong(IntBitmap::cardinality));
+		for(IntBitmap temp : bitmaps)
+		{
+			if(res.isEmpty())
+				break;
+			res.and(temp);
+		}
+		return res;
+	}
+
+	public IntBitmap union(IntBitmap res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		if(!indexMap.isEmpty())
+		{
+			if(keyIter!=null)
+				_union(res, keyIter);
+			if(keys.length>0)
+				_union(res, Arrays.asList(keys));
+		}
+		return res;
+	}
+
+	protected IntBitmap _union(IntBitmap res, Iterable<K> keyIter)
+	{
+		for(K key : keyIter)
+		{
+			IntBitmap temp=indexMap.get(key);
+			if(temp!=null)
+				res.or(temp);
+		}
+		return res;
+	}
+
+	public IntBitmap intersectUnion(IntBitmap res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		if(!res.isEmpty() && !indexMap.isEmpty())
+			res.and(union(new IntBitmap(), keyIter, keys));
+		return res;
+	}
+
+	public IntBitmap subtract(IntBitmap res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		if(keyIter!=null)
+			_subtract(res, keyIter);
+		if(keys.length>0)
+			_subtract(res, Arrays.asList(keys));
+		return res;
+	}
+
+	protected IntBitmap _subtract(IntBitmap res, Iterable<K> keyIter)
+	{
+		if(!indexMap.isEmpty())
+		{
+			for(K key : keyIter)
+			{
+				IntBitmap temp=indexMap.get(key);
+				if(temp!=null)
+					res.andNot(temp);
+			}
+		}
+		return res;
+	}
+}
@@ -0,0 +1,416 @@
+package com.eroelf.javaxsx.util.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.eroelf.javaxsx.util.NumBytes;
+import com.eroelf.javaxsx.util.io.MappedFileUtil;
+
+/**
+ * A read-only index served straight from a memory-mapped file saved by {@link Index#saveToMappedFile(String, Function, Function)},
+ * which takes no deserialization and keeps nothing on the heap but a few buffer views, so a restarted process serves queries at once and shares the page cache with other processes.
+ *
+ * <p>Objects are identified by ordinals as in {@link FrozenIndex}, and the objects are decoded from their string forms only when asked for.
+ * Keys are found by a binary search over the sorted dictionary of their UTF-8 string forms.
+ * The ordinals under a key are stored either as base 128 varints of the gaps between ascending ordinals, or as a bitmap of all ordinals if it is smaller,
+ * and intersections or differences with a bitmap posting probe its bits without decoding it.
+ * A varint posting of more than {@value #SKIP_INTERVAL} ordinals starts with skip points, the ordinal and the varint position at the start of every further block of {@value #SKIP_INTERVAL} ordinals,
+ * so {@link #contains(Object, int)} binary searches them and decodes one block at most.
+ *
+ * <p>Query results are new sorted arrays of ordinals. Every section of the file is limited to {@code 2GB}.
+ *
+ * @author weikun.zhong
+ *
+ * @param <K> the object type of the index key.
+ * @param <V> the object type of the index value.
+ */
+public final class MappedIndex<K, V>
+{
+	static final byte VARINT=0;
+	static final byte BITMAP=1;
+	static final int SKIP_INTERVAL=128;
+	static final int SKIP_BYTES=2*Integer.BYTES;
+
+	/**
+	 * The objects of a file, shared by all indices of the file.
+	 */
+	static final class Items<V>
+	{
+		private final int count;
+		private final IntBuffer offsets;
+		private final ByteBuffer bytes;
+		private final Function<String, ? extends V> decoder;
+
+		Items(int count, IntBuffer offsets, ByteBuffer bytes, Function<String, ? extends V> decoder)
+		{
+			this.count=count;
+			this.offsets=offsets;
+			this.bytes=bytes;
+			this.decoder=decoder;
+		}
+
+		V getItem(int ordinal)
+		{
+			int start=offsets.get(ordinal);
+			byte[] buf=new byte[offsets.get(ordinal+1)-start];
+			bytes.get(start, buf);
+			return decoder.apply(new String(buf, StandardCharsets.UTF_8));
+		}
+	}
+
+	private final Items<V> items;
+	private final Function<? super K, String> keyEncoder;
+	private final int keyCount;
+	private final IntBuffer keyOffsets;
+	private final ByteBuffer keyBytes;
+	private final IntBuffer counts;
+	private final IntBuffer postingOffsets;
+	private final ByteBuffer kinds;
+	private final ByteBuffer postings;
+
+	MappedIndex(Items<V> items, Function<? super K, String> keyEncoder, int keyCount, IntBuffer keyOffsets, ByteBuffer keyBytes, IntBuffer counts, IntBuffer postingOffsets, ByteBuffer kinds, ByteBuffer postings)
+	{
+		this.items=items;
+		this.keyEncoder=keyEncoder;
+		this.keyCount=keyCount;
+		this.keyOffsets=keyOffsets;
+		this.keyBytes=keyBytes;
+		this.counts=counts;
+		this.postingOffsets=postingOffsets;
+		this.kinds=kinds;
+		this.postings=postings;
+	}
+
+	static <K, V> MappedIndex<K, V> empty(Items<V> items, Function<? super K, String> keyEncoder)
+	{
+		return new MappedIndex<>(items, keyEncoder, 0, IntBuffer.allocate(1), MappedFileUtil.allocate(0), IntBuffer.allocate(0), IntBuffer.allocate(1), MappedFileUtil.allocate(0), MappedFileUtil.allocate(0));
+	}
+
+	/**
+	 * Maps a file saved by {@link Index#saveToMappedFile(String, Function, Function)} as a read-only index.
+	 *
+	 * @param <K> the object type of the index key.
+	 * @param <V> the object type of the index value.
+	 * @param fileName the file name.
+	 * @param keyEncoder converts keys to the string forms they were saved with.
+	 * @param itemDecoder converts the saved string forms back to the objects.
+	 * @return the mapped index.
+	 * @throws IOException if the file is not a valid index file or an I/O error occurs.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K, V> MappedIndex<K, V> readFromMappedFile(String fileName, Function<? super K, String> keyEncoder, Function<String, ? extends V> itemDecoder) throws IOException
+	{
+		MappedIndexGroup<V> group=MappedIndexGroup.readFromMappedFile(fileName, key -> keyEncoder.apply((K)key), itemDecoder);
+		if(group.getGroupNames().size()!=1)
+			throw new IOException("MappedIndex::readFromMappedFile: "+fileName+" is an index group file!");
+		return group.getIndex(group.getGroupNames().iterator().next());
+	}
+
+	public boolean isEmpty()
+	{
+		return keyCount==0;
+	}
+
+	public int keyCount()
+	{
+		return keyCount;
+	}
+
+	/**
+	 * Returns the number of objects of the file, all ordinals are less than it.
+	 *
+	 * @return the number of objects.
+	 */
+	public int itemCount()
+	{
+		return items.count;
+	}
+
+	public V getItem(int ordinal)
+	{
+		return items.getItem(ordinal);
+	}
+
+	public List<V> toItems(int[] ordinals)
+	{
+		List<V> res=new ArrayList<>(ordinals.length);
+		for(int ordinal : ordinals)
+		{
+			res.add(items.getItem(ordinal));
+		}
+		return res;
+	}
+
+	public Set<V> toSet(int[] ordinals)
+	{
+		Set<V> res=new HashSet<>(ordinals.length*4/3+1);
+		for(int ordinal : ordinals)
+		{
+			res.add(items.getItem(ordinal));
+		}
+		return res;
+	}
+
+	private int compareKey(int idx, byte[] target)
+	{
+		int start=keyOffsets.get(idx);
+		int length=keyOffsets.get(idx+1)-start;
+		int n=Math.min(length, target.length);
+		for(int i=0; i<n; i++)
+		{
+			int cmp=(keyBytes.get(start+i) & 0xff)-(target[i] & 0xff);
+			if(cmp!=0)
+				return cmp;
+		}
+		return length-target.length;
+	}
+
+	private int indexOf(K key)
+	{
+		byte[] target=keyEncoder.apply(key).getBytes(StandardCharsets.UTF_8);
+		int low=0;
+		int high=keyCount-1;
+		while(low<=high)
+		{
+			int mid=(low+high)>>>1;
+			int cmp=compareKey(mid, target);
+			if(cmp<0)
+				low=mid+1;
+			else if(cmp>0)
+				high=mid-1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	private boolean isBitmap(int idx)
+	{
+		return kinds.get(idx)==BITMAP;
+	}
+
+	static int skipCount(int count)
+	{
+		return count>0 ? (count-1)/SKIP_INTERVAL : 0;
+	}
+
+	private boolean test(int idx, int ordinal)
+	{
+		return ordinal<items.count && (postings.getLong(postingOffsets.get(idx)+(ordinal>>>6)*Long.BYTES) & 1L<<ordinal)!=0;
+	}
+
+	private int[] decode(int idx)
+	{
+		int count=counts.get(idx);
+		int[] res=new int[count];
+		int offset=postingOffsets.get(idx);
+		if(isBitmap(idx))
+		{
+			int k=0;
+			for(int i=0; k<count; i++)
+			{
+				long word=postings.getLong(offset+i*Long.BYTES);
+				while(word!=0)
+				{
+					res[k++]=(i<<6)+Long.numberOfTrailingZeros(word);
+					word&=word-1;
+				}
+			}
+		}
+		else
+		{
+			NumBytes.bytesToBase128UVarintArray(postings, res, offset+skipCount(count)*SKIP_BYTES, 0, count);
+			for(int i=1; i<count; i++)
+			{
+				res[i]+=res[i-1];
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Finds the ordinal in a varint posting by the last skip point not after it, and decodes the rest of that block only.
+	 */
+	private boolean search(int idx, int ordinal)
+	{
+		int count=counts.get(idx);
+		int offset=postingOffsets.get(idx);
+		int skips=skipCount(count);
+		int low=0;
+		int high=skips-1;
+		int block=-1;
+		while(low<=high)
+		{
+			int mid=(low+high)>>>1;
+			if(postings.getInt(offset+mid*SKIP_BYTES)<=ordinal)
+			{
+				block=mid;
+				low=mid+1;
+			}
+			else
+				high=mid-1;
+		}
+		int data=offset+skips*SKIP_BYTES;
+		int value;
+		int pos;
+		int remaining;
+		if(block<0)
+		{
+			value=0;
+			pos=data;
+			remaining=Math.min(count, SKIP_INTERVAL);
+		}
+		else
+		{
+			value=postings.getInt(offset+block*SKIP_BYTES);
+			if(value==ordinal)
+				return true;
+			pos=data+postings.getInt(offset+block*SKIP_BYTES+Integer.BYTES);
+			remaining=Math.min(count-(block+1)*SKIP_INTERVAL, SKIP_INTERVAL)-1;
+		}
+		while(remaining-->0)
+		{
+			int gap=0;
+			int digit=0;
+			byte b;
+			do
+			{
+				b=postings.get(pos++);
+				gap|=(b & 0x7f)<<digit;
+				digit+=7;
+			}while((b & 0x80)!=0);
+			value+=gap;
+			if(value>=ordinal)
+				return value==ordinal;
+		}
+		return false;
+	}
+
+	private int[] filter(int[] res, int idx, boolean keep)
+	{
+		int[] filtered=new int[res.length];
+		int k=0;
+		for(int ordinal : res)
+		{
+			if(test(idx, ordinal)==keep)
+				filtered[k++]=ordinal;
+		}
+		return k==filtered.length ? filtered : Arrays.copyOf(filtered, k);
+	}
+
+	private List<Integer> indicesOf(Iterable<K> keyIter, K[] keys)
+	{
+		List<Integer> res=new ArrayList<>();
+		if(keyIter!=null)
+		{
+			for(K key : keyIter)
+			{
+				int idx=indexOf(key);
+				if(idx>=0)
+					res.add(idx);
+			}
+		}
+		for(K key : keys)
+		{
+			int idx=indexOf(key);
+			if(idx>=0)
+				res.add(idx);
+		}
+		return res;
+	}
+
+	private List<int[]> postingsOf(Iterable<K> keyIter, K[] keys)
+	{
+		List<int[]> res=new ArrayList<>();
+		for(int idx : indicesOf(keyIter, keys))
+		{
+			res.add(decode(idx));
+		}
+		return res;
+	}
+
+	public int cardinality(K key)
+	{
+		int idx=indexOf(key);
+		return idx>=0 ? counts.get(idx) : 0;
+	}
+
+	public boolean contains(K key, int ordinal)
+	{
+		int idx=indexOf(key);
+		if(idx<0 || ordinal<0)
+			return false;
+		return isBitmap(idx) ? test(idx, ordinal) : search(idx, ordinal);
+	}
+
+	/**
+	 * Returns the sorted ordinals of the objects under the key, decoded into a new array.
+	 *
+	 * @param key the key.
+	 * @return the ordinals, empty if the key is not indexed.
+	 */
+	public int[] getOrdinals(K key)
+	{
+		int idx=indexOf(key);
+		return idx>=0 ? decode(idx) : SortedInts.EMPTY;
+	}
+
+	public int[] get(Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		return SortedInts.union(postingsOf(keyIter, keys), items.count);
+	}
+
+	/**
+	 * Returns the ordinals of {@code res} which are under all the keys. Keys which are not indexed are ignored, as {@link Index#intersect(java.util.Set, Iterable, Object...)} does.
+	 * The postings are applied from the shortest to the longest, and the intersection stops once the result is empty.
+	 *
+	 * @param res sorted ordinals.
+	 * @param keyIter the keys, can be {@code null}.
+	 * @param keys more keys.
+	 * @return the sorted ordinals.
+	 */
+	public int[] intersect(int[] res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		List<Integer> indices=indicesOf(keyIter, keys);
+		indices.sort(Comparator.comparingInt(counts::get));
+		for(int idx : indices)
+		{
+			if(res.length==0)
+				break;
+			res=isBitmap(idx) ? filter(res, idx, true) : SortedInts.intersect(res, decode(idx));
+		}
+		return res;
+	}
+
+	public int[] union(int[] res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		List<int[]> list=postingsOf(keyIter, keys);
+		list.add(res);
+		return SortedInts.union(list, Math.max(items.count, res.length>0 ? res[res.length-1]+1 : 0));
+	}
+
+	public int[] intersectUnion(int[] res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		return res.length>0 && !isEmpty() ? SortedInts.intersect(res, get(keyIter, keys)) : res;
+	}
+
+	public int[] subtract(int[] res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		for(int idx : indicesOf(keyIter, keys))
+		{
+			if(res.length==0)
+				break;
+			res=isBitmap(idx) ? filter(res, idx, false) : SortedInts.subtract(res, decode(idx));
+		}
+		return res;
+	}
+}
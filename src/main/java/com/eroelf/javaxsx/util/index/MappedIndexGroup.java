@@ -0,0 +1,296 @@
+package com.eroelf.javaxsx.util.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import com.eroelf.javaxsx.util.NumBytes;
+import com.eroelf.javaxsx.util.io.MappedFileUtil;
+
+/**
+ * A read-only group of indices served straight from a memory-mapped file saved by {@link IndexGroup#saveToMappedFile(String, Function, Function)}.
+ * All indices of the group share the same ordinals of the objects, so the results of different indices can be combined directly.
+ *
+ * <p>The file starts with a header of the magic number, the version, the number of indices and the number of objects,
+ * followed by the offsets and the UTF-8 string forms of the objects, and then every index as
+ * a header of the lengths of its sections, its name, the offsets and the sorted UTF-8 string forms of its keys,
+ * the number of objects, the offset and the kind of the posting under every key, and the postings.
+ * A varint posting is preceded by its skip points as {@link MappedIndex} describes.
+ * All data are little-endian, and every section is aligned as {@link MappedFileUtil} does.
+ *
+ * @author weikun.zhong
+ *
+ * @param <V> the object type of the index value.
+ *
+ * @see MappedIndex
+ */
+public final class MappedIndexGroup<V>
+{
+	private static final int MAGIC=0x4d494458;
+	private static final int VERSION=2;
+	private static final int HEADER_SIZE=16;
+	private static final int INDEX_HEADER_SIZE=16;
+	private static final Comparator<byte[]> UNSIGNED=Arrays::compareUnsigned;
+
+	private final MappedIndex.Items<V> items;
+	private final Map<String, MappedIndex<?, V>> groupMap;
+	private final MappedIndex<?, V> idleIndex;
+
+	private MappedIndexGroup(MappedIndex.Items<V> items, Map<String, MappedIndex<?, V>> groupMap, Function<Object, String> keyEncoder)
+	{
+		this.items=items;
+		this.groupMap=groupMap;
+		idleIndex=MappedIndex.empty(items, keyEncoder);
+	}
+
+	/**
+	 * Writes the indices at the current position of the channel.
+	 */
+	static <V> void write(FileChannel channel, Map<String, FrozenIndex<?, V>> indices, Ordinals<V> ordinals, Function<Object, String> keyEncoder, Function<? super V, String> itemEncoder) throws IOException
+	{
+		int itemCount=ordinals.size();
+		ByteBuffer header=MappedFileUtil.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).putInt(indices.size()).putInt(itemCount);
+		header.clear();
+		MappedFileUtil.write(channel, header);
+
+		int[] itemOffsets=new int[itemCount+1];
+		ByteArrayOutputStream itemBytes=new ByteArrayOutputStream();
+		for(int i=0; i<itemCount; i++)
+		{
+			itemBytes.writeBytes(itemEncoder.apply(ordinals.getItem(i)).getBytes(StandardCharsets.UTF_8));
+			itemOffsets[i+1]=checkedLength(itemBytes.size());
+		}
+		MappedFileUtil.writeInts(channel, IntBuffer.wrap(itemOffsets));
+		MappedFileUtil.write(channel, ByteBuffer.wrap(itemBytes.toByteArray()));
+
+		for(Entry<String, FrozenIndex<?, V>> entry : indices.entrySet())
+		{
+			writeIndex(channel, entry.getKey(), entry.getValue(), itemCount, keyEncoder);
+		}
+	}
+
+	private static int checkedLength(long length) throws IOException
+	{
+		if(length>Integer.MAX_VALUE)
+			throw new IOException("MappedIndexGroup::write: a section exceeds the maximum mappable size!");
+		return (int)length;
+	}
+
+	private static <K, V> void writeIndex(FileChannel channel, String name, FrozenIndex<K, V> index, int itemCount, Function<Object, String> keyEncoder) throws IOException
+	{
+		Map<byte[], K> keyMap=new TreeMap<>(UNSIGNED);
+		for(K key : index.getKeys())
+		{
+			if(keyMap.put(keyEncoder.apply(key).getBytes(StandardCharsets.UTF_8), key)!=null)
+				throw new IllegalArgumentException("MappedIndexGroup::write: keys of index "+name+" have the same string form "+keyEncoder.apply(key)+"!");
+		}
+		int keyCount=keyMap.size();
+		int[] keyOffsets=new int[keyCount+1];
+		ByteArrayOutputStream keyBytes=new ByteArrayOutputStream();
+		int[] counts=new int[keyCount];
+		int[] postingOffsets=new int[keyCount+1];
+		byte[] kinds=new byte[keyCount];
+		ByteArrayOutputStream postings=new ByteArrayOutputStream();
+		int bitmapLength=(itemCount+63)/64*Long.BYTES;
+		byte[] buf=new byte[5];
+		int i=0;
+		for(Entry<byte[], K> entry : keyMap.entrySet())
+		{
+			keyBytes.writeBytes(entry.getKey());
+			keyOffsets[i+1]=checkedLength(keyBytes.size());
+			int[] posting=index.getOrdinals(entry.getValue());
+			counts[i]=posting.length;
+			ByteArrayOutputStream varints=new ByteArrayOutputStream();
+			ByteBuffer skips=MappedFileUtil.allocate(MappedIndex.skipCount(posting.length)*MappedIndex.SKIP_BYTES);
+			int last=0;
+			for(int j=0; j<posting.length; j++)
+			{
+				int ordinal=posting[j];
+				varints.write(buf, 0, NumBytes.base128UVarintToBytes(ordinal-last, buf, 0));
+				if(j>0 && j%MappedIndex.SKIP_INTERVAL==0)
+					skips.putInt(ordinal).putInt(varints.size());
+				last=ordinal;
+			}
+			if(skips.capacity()+varints.size()>bitmapLength)
+			{
+				kinds[i]=MappedIndex.BITMAP;
+				ByteBuffer bitmap=MappedFileUtil.allocate(bitmapLength);
+				for(int ordinal : posting)
+				{
+					int pos=(ordinal>>>6)*Long.BYTES;
+					bitmap.putLong(pos, bitmap.getLong(pos) | 1L<<ordinal);
+				}
+				postings.writeBytes(bitmap.array());
+			}
+			else
+			{
+				kinds[i]=MappedIndex.VARINT;
+				postings.writeBytes(skips.array());
+				varints.writeTo(postings);
+			}
+			postingOffsets[i+1]=checkedLength(postings.size());
+			++i;
+		}
+
+		byte[] nameBytes=name.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer header=MappedFileUtil.allocate(INDEX_HEADER_SIZE);
+		header.putInt(nameBytes.length).putInt(keyCount).putInt(keyBytes.size()).putInt(postings.size());
+		header.clear();
+		MappedFileUtil.write(channel, header);
+		MappedFileUtil.write(channel, ByteBuffer.wrap(nameBytes));
+		MappedFileUtil.writeInts(channel, IntBuffer.wrap(keyOffsets));
+		MappedFileUtil.write(channel, ByteBuffer.wrap(keyBytes.toByteArray()));
+		MappedFileUtil.writeInts(channel, IntBuffer.wrap(counts));
+		MappedFileUtil.writeInts(channel, IntBuffer.wrap(postingOffsets));
+		MappedFileUtil.write(channel, ByteBuffer.wrap(kinds));
+		MappedFileUtil.write(channel, ByteBuffer.wrap(postings.toByteArray()));
+	}
+
+	static <V> void save(String fileName, Map<String, FrozenIndex<?, V>> indices, Ordinals<V> ordinals, Function<Object, String> keyEncoder, Function<? super V, String> itemEncoder) throws IOException
+	{
+		try(FileChannel channel=FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			write(channel, indices, ordinals, keyEncoder, itemEncoder);
+		}
+	}
+
+	/**
+	 * Maps a file saved by {@link IndexGroup#saveToMappedFile(String, Function, Function)} as a read-only group of indices.
+	 * Nothing is loaded into the heap; all queries run against the mapped file.
+	 *
+	 * @param <V> the object type of the index value.
+	 * @param fileName the file name.
+	 * @param keyEncoder converts keys to the string forms they were saved with.
+	 * @param itemDecoder converts the saved string forms back to the objects.
+	 * @return the mapped group.
+	 * @throws IOException if the file is not a valid index file or an I/O error occurs.
+	 */
+	public static <V> MappedIndexGroup<V> readFromMappedFile(String fileName, Function<Object, String> keyEncoder, Function<String, ? extends V> itemDecoder) throws IOException
+	{
+		try(FileChannel channel=FileChannel.open(Paths.get(fileName), StandardOpenOption.READ))
+		{
+			ByteBuffer header=MappedFileUtil.map(channel, 0, HEADER_SIZE);
+			if(header.getInt()!=MAGIC)
+				throw new IOException("MappedIndexGroup::readFromMappedFile: not an index file!");
+			int version=header.getInt();
+			if(version!=VERSION)
+				throw new IOException("MappedIndexGroup::readFromMappedFile: unsupported version "+version+"!");
+			int groupCount=header.getInt();
+			int itemCount=header.getInt();
+
+			long pos=HEADER_SIZE;
+			IntBuffer itemOffsets=MappedFileUtil.mapInts(channel, pos, itemCount+1);
+			pos+=MappedFileUtil.alignedLength((long)(itemCount+1)*Integer.BYTES);
+			int itemBytesLength=itemOffsets.get(itemCount);
+			ByteBuffer itemBytes=MappedFileUtil.map(channel, pos, itemBytesLength);
+			pos+=MappedFileUtil.alignedLength(itemBytesLength);
+			MappedIndex.Items<V> items=new MappedIndex.Items<>(itemCount, itemOffsets, itemBytes, itemDecoder);
+
+			Map<String, MappedIndex<?, V>> groupMap=new HashMap<>();
+			for(int g=0; g<groupCount; g++)
+			{
+				ByteBuffer indexHeader=MappedFileUtil.map(channel, pos, INDEX_HEADER_SIZE);
+				pos+=INDEX_HEADER_SIZE;
+				int nameLength=indexHeader.getInt();
+				int keyCount=indexHeader.getInt();
+				int keyBytesLength=indexHeader.getInt();
+				int postingBytesLength=indexHeader.getInt();
+				byte[] nameBytes=new byte[nameLength];
+				MappedFileUtil.map(channel, pos, nameLength).get(nameBytes);
+				pos+=MappedFileUtil.alignedLength(nameLength);
+				IntBuffer keyOffsets=MappedFileUtil.mapInts(channel, pos, keyCount+1);
+				pos+=MappedFileUtil.alignedLength((long)(keyCount+1)*Integer.BYTES);
+				ByteBuffer keyBytes=MappedFileUtil.map(channel, pos, keyBytesLength);
+				pos+=MappedFileUtil.alignedLength(keyBytesLength);
+				IntBuffer counts=MappedFileUtil.mapInts(channel, pos, keyCount);
+				pos+=MappedFileUtil.alignedLength((long)keyCount*Integer.BYTES);
+				IntBuffer postingOffsets=MappedFileUtil.mapInts(channel, pos, keyCount+1);
+				pos+=MappedFileUtil.alignedLength((long)(keyCount+1)*Integer.BYTES);
+				ByteBuffer kinds=MappedFileUtil.map(channel, pos, keyCount);
+				pos+=MappedFileUtil.alignedLength(keyCount);
+				ByteBuffer postings=MappedFileUtil.map(channel, pos, postingBytesLength);
+				pos+=MappedFileUtil.alignedLength(postingBytesLength);
+				groupMap.put(new String(nameBytes, StandardCharsets.UTF_8), new MappedIndex<>(items, keyEncoder, keyCount, keyOffsets, keyBytes, counts, postingOffsets, kinds, postings));
+			}
+			return new MappedIndexGroup<>(items, groupMap, keyEncoder);
+		}
+	}
+
+	public Set<String> getGroupNames()
+	{
+		return Collections.unmodifiableSet(groupMap.keySet());
+	}
+
+	@SuppressWarnings("unchecked")
+	public <K> MappedIndex<K, V> getIndex(String groupName)
+	{
+		return (MappedIndex<K, V>)groupMap.get(groupName);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected <K> MappedIndex<K, V> getNotNullIdx(String groupName)
+	{
+		return (MappedIndex<K, V>)groupMap.getOrDefault(groupName, idleIndex);
+	}
+
+	public V getItem(int ordinal)
+	{
+		return items.getItem(ordinal);
+	}
+
+	public List<V> toItems(int[] ordinals)
+	{
+		return idleIndex.toItems(ordinals);
+	}
+
+	public Set<V> toSet(int[] ordinals)
+	{
+		return idleIndex.toSet(ordinals);
+	}
+
+	public <K> int[] get(String groupName, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		MappedIndex<K, V> index=getNotNullIdx(groupName);
+		return index.get(keyIter, keys);
+	}
+
+	public <K> int[] intersect(int[] res, String groupName, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		MappedIndex<K, V> index=getNotNullIdx(groupName);
+		return index.intersect(res, keyIter, keys);
+	}
+
+	public <K> int[] union(int[] res, String groupName, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		MappedIndex<K, V> index=getNotNullIdx(groupName);
+		return index.union(res, keyIter, keys);
+	}
+
+	public <K> int[] intersectUnion(int[] res, String groupName, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		MappedIndex<K, V> index=getNotNullIdx(groupName);
+		return index.intersectUnion(res, keyIter, keys);
+	}
+
+	public <K> int[] subtract(int[] res, String groupName, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		MappedIndex<K, V> index=getNotNullIdx(groupName);
+		return index.subtract(res, keyIter, keys);
+	}
+}
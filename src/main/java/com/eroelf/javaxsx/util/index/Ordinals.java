@@ -0,0 +1,97 @@
+package com.eroelf.javaxsx.util.index;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The dense ordinals of the objects of a frozen index, shared by all indices of a {@link FrozenIndexGroup}.
+ * 
+ * @author weikun.zhong
+ *
+ * @param <V> the object type.
+ */
+final class Ordinals<V> implements Serializable
+{
+	private static final long serialVersionUID=-1053187315069648627L;
+
+	private final Map<V, Integer> ordinalMap=new HashMap<>();
+	private final List<V> items=new ArrayList<>();
+
+	/**
+	 * Assigns ordinals to the objects which have none. Only called before the frozen indices are published.
+	 */
+	void addAll(Collection<V> items)
+	{
+		for(V item : items)
+		{
+			if(!ordinalMap.containsKey(item))
+			{
+				ordinalMap.put(item, this.items.size());
+				this.items.add(item);
+			}
+		}
+	}
+
+	int ordinalOf(V item)
+	{
+		Integer ordinal=ordinalMap.get(item);
+		return ordinal!=null ? ordinal : -1;
+	}
+
+	/**
+	 * Returns the sorted ordinals of the objects.
+	 */
+	int[] ordinalsOf(Collection<V> items)
+	{
+		// a concurrent set may be modified meanwhile, so it is copied first, and the objects added after the ordinals were assigned are skipped
+		Object[] snapshot=items.toArray();
+		int[] ordinals=new int[snapshot.length];
+		int k=0;
+		for(Object item : snapshot)
+		{
+			Integer ordinal=ordinalMap.get(item);
+			if(ordinal!=null)
+				ordinals[k++]=ordinal;
+		}
+		ordinals=k==ordinals.length ? ordinals : Arrays.copyOf(ordinals, k);
+		Arrays.sort(ordinals);
+		return ordinals;
+	}
+
+	V getItem(int ordinal)
+	{
+		return items.get(ordinal);
+	}
+
+	int size()
+	{
+		return items.size();
+	}
+
+	List<V> toItems(int[] ordinals)
+	{
+		List<V> res=new ArrayList<>(ordinals.length);
+		for(int ordinal : ordinals)
+		{
+			res.add(items.get(ordinal));
+		}
+		return res;
+	}
+
+	Set<V> toSet(int[] ordinals)
+	{
+		Set<V> res=new HashSet<>(ordinals.length*4/3+1);
+		for(int ordinal : ordinals)
+		{
+			res.add(items.get(ordinal));
+		}
+		return res;
+	}
+}
@@ -0,0 +1,193 @@
+package com.eroelf.javaxsx.util.index;
+
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable {@link Container} which keeps runs of consecutive values as pairs of the start and the length minus one.
+ * It is only made by {@link Container#runOptimize()}; every modification converts it to an {@link ArrayContainer} or a {@link BitmapContainer}.
+ * 
+ * @author weikun.zhong
+ */
+final class RunContainer extends Container
+{
+	private static final long serialVersionUID=-2170513406838102519L;
+
+	private final char[] runs;
+	final int runCount;
+	private final int cardinality;
+
+	private RunContainer(char[] runs, int runCount, int cardinality)
+	{
+		this.runs=runs;
+		this.runCount=runCount;
+		this.cardinality=cardinality;
+	}
+
+	static RunContainer of(Container container, int runCount)
+	{
+		char[] runs=new char[runCount*2];
+		int[] r={-1};
+		container.forEach(0, value -> {
+			int k=r[0];
+			if(k>=0 && value==runs[2*k]+runs[2*k+1]+1)
+				++runs[2*k+1];
+			else
+			{
+				r[0]=++k;
+				runs[2*k]=(char)value;
+				runs[2*k+1]=0;
+			}
+		});
+		return new RunContainer(runs, runCount, container.cardinality());
+	}
+
+	static int sizeInBytes(int runCount)
+	{
+		return 2+runCount*4;
+	}
+
+	int start(int r)
+	{
+		return runs[2*r];
+	}
+
+	/**
+	 * Returns the end of the run {@code r}, exclusive.
+	 */
+	int end(int r)
+	{
+		return runs[2*r]+runs[2*r+1]+1;
+	}
+
+	/**
+	 * Returns the last run which starts not after {@code x}, or {@code -1} if none.
+	 */
+	private int floorRun(char x)
+	{
+		int low=0;
+		int high=runCount-1;
+		while(low<=high)
+		{
+			int mid=(low+high)>>>1;
+			if(runs[2*mid]<=x)
+				low=mid+1;
+			else
+				high=mid-1;
+		}
+		return high;
+	}
+
+	private Container toEfficientContainer()
+	{
+		return cardinality<=ARRAY_MAX_SIZE ? toArrayContainer() : toBitmapContainer();
+	}
+
+	@Override
+	int cardinality()
+	{
+		return cardinality;
+	}
+
+	@Override
+	boolean contains(char x)
+	{
+		int r=floorRun(x);
+		return r>=0 && x<end(r);
+	}
+
+	@Override
+	Container add(char x)
+	{
+		return contains(x) ? this : toEfficientContainer().add(x);
+	}
+
+	@Override
+	Container remove(char x)
+	{
+		return contains(x) ? toEfficientContainer().remove(x) : this;
+	}
+
+	@Override
+	Container iand(Container other)
+	{
+		return toEfficientContainer().iand(other);
+	}
+
+	@Override
+	Container ior(Container other)
+	{
+		return toBitmapContainer().ior(other);
+	}
+
+	@Override
+	Container iandNot(Container other)
+	{
+		return toEfficientContainer().iandNot(other);
+	}
+
+	@Override
+	Container copy()
+	{
+		return this;
+	}
+
+	@Override
+	ArrayContainer toArrayContainer()
+	{
+		char[] content=new char[cardinality];
+		int k=0;
+		for(int r=0; r<runCount; r++)
+		{
+			for(int x=start(r); x<end(r); x++)
+			{
+				content[k++]=(char)x;
+			}
+		}
+		return new ArrayContainer(content, cardinality);
+	}
+
+	@Override
+	BitmapContainer toBitmapContainer()
+	{
+		BitmapContainer bitmap=new BitmapContainer();
+		for(int r=0; r<runCount; r++)
+		{
+			bitmap.setRange(start(r), end(r));
+		}
+		bitmap.cardinality=cardinality;
+		return bitmap;
+	}
+
+	@Override
+	void forEach(int high, IntConsumer consumer)
+	{
+		for(int r=0; r<runCount; r++)
+		{
+			for(int x=start(r); x<end(r); x++)
+			{
+				consumer.accept(high | x);
+			}
+		}
+	}
+
+	@Override
+	int nextValue(char x)
+	{
+		int r=floorRun(x);
+		if(r>=0 && x<end(r))
+			return x;
+		return r+1<runCount ? start(r+1) : -1;
+	}
+
+	@Override
+	int numberOfRuns()
+	{
+		return runCount;
+	}
+
+	@Override
+	int sizeInBytes()
+	{
+		return sizeInBytes(runCount);
+	}
+}
@@ -0,0 +1,501 @@
+package com.eroelf.javaxsx.util.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.eroelf.javaxsx.util.StdLoggers;
+
+/**
+ * Maintains objects which are under given keys in segments, in the manner of a log-structured merge tree:
+ * an immutable base segment (a {@link FrozenIndex}), a mutable delta segment which receives all additions,
+ * and while a compaction is running, the sealed former delta segment which is being merged into a new base segment.
+ *
+ * <p>The keys of every object are tracked by reverse links, so removing an object costs {@code O(keys of the object)} instead of scanning every key as {@link Index#removeItem(Object)} does.
+ * An object is removed from the delta segment directly, and is marked by a tombstone in an older segment, with its remaining keys moved into the delta segment.
+ * Queries merge the live objects of all segments.
+ *
+ * <p>Once the delta segment has received a given number of additions, a compaction is submitted to the compaction executor,
+ * which merges the live objects of the older segments into a new base segment in the background.
+ * Writers are serialized by a lock but never wait for compactions, and readers take no locks.
+ *
+ * @author weikun.zhong
+ *
+ * @param <K> the object type of the index key.
+ * @param <V> the object type of the index value.
+ */
+public class SegmentedIndex<K, V>
+{
+	public static final int DEFAULT_COMPACTION_THRESHOLD=1<<16;
+
+	private static final ExecutorService DEFAULT_COMPACTOR=Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread=new Thread(runnable, "SegmentedIndex-compactor");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * An immutable view of the segments. The tombstone sets grow as objects are removed.
+	 */
+	private static final class State<K, V>
+	{
+		private final FrozenIndex<K, V> base;
+		private final Set<V> baseDead;
+		private final Index<K, V> sealed;
+		private final Set<V> sealedDead;
+		private final Index<K, V> delta;
+		/**
+		 * The objects retired since the running compaction sealed the delta segment, which are still dead in the new base segment. {@code null} if no compaction is running.
+		 */
+		private final Set<V> compactionDead;
+
+		private State(FrozenIndex<K, V> base, Set<V> baseDead, Index<K, V> sealed, Set<V> sealedDead, Index<K, V> delta, Set<V> compactionDead)
+		{
+			this.base=base;
+			this.baseDead=baseDead;
+			this.sealed=sealed;
+			this.sealedDead=sealedDead;
+			this.delta=delta;
+			this.compactionDead=compactionDead;
+		}
+	}
+
+	private final Object writeLock=new Object();
+	private final ReentrantLock compactionLock=new ReentrantLock();
+	private final Map<V, Set<K>> itemKeys=new ConcurrentHashMap<>();
+	private final int compactionThreshold;
+	private final Executor compactor;
+	private volatile State<K, V> state;
+	private int deltaAdditions;
+	private boolean compactionScheduled;
+
+	public SegmentedIndex()
+	{
+		this(DEFAULT_COMPACTION_THRESHOLD, DEFAULT_COMPACTOR);
+	}
+
+	/**
+	 * @param compactionThreshold the number of additions to the delta segment which triggers a compaction, non-positive to compact only by {@link #compact()}.
+	 * @param compactor the executor to run the compactions.
+	 */
+	public SegmentedIndex(int compactionThreshold, Executor compactor)
+	{
+		this.compactionThreshold=compactionThreshold;
+		this.compactor=compactor;
+		state=new State<>(FrozenIndex.of(Collections.emptyMap()), ConcurrentHashMap.newKeySet(), null, null, new Index<>(true), null);
+	}
+
+	private void addToDelta(State<K, V> s, K key, V item)
+	{
+		s.delta.addItem(key, item);
+		if(++deltaAdditions>=compactionThreshold && compactionThreshold>0 && !compactionScheduled)
+		{
+			compactionScheduled=true;
+			try
+			{
+				compactor.execute(this::compactInBackground);
+			}
+			catch(RuntimeException e)
+			{
+				// the write itself has been applied, so the failure is only logged, and the next addition retries
+				compactionScheduled=false;
+				StdLoggers.STD_ERR_EXCEPTION_MSG_LOGGER.accept(e, "SegmentedIndex::addToDelta: failed to schedule the compaction!");
+			}
+		}
+	}
+
+	public void addItem(K key, V item)
+	{
+		synchronized(writeLock)
+		{
+			if(itemKeys.computeIfAbsent(item, k -> ConcurrentHashMap.newKeySet()).add(key))
+				addToDelta(state, key, item);
+		}
+	}
+
+	public void addItemToMultiKeys(V item, Iterable<K> keyIter)
+	{
+		synchronized(writeLock)
+		{
+			for(K key : keyIter)
+			{
+				addItem(key, item);
+			}
+		}
+	}
+
+	public void addItems(K key, Iterable<V> items)
+	{
+		synchronized(writeLock)
+		{
+			for(V item : items)
+			{
+				addItem(key, item);
+			}
+		}
+	}
+
+	/**
+	 * Marks the object dead in the older segments which hold it, after moving the given remaining keys of it into the delta segment,
+	 * so readers which check the older segments before the delta segment never miss it.
+	 */
+	private void retire(State<K, V> s, V item, Set<K> formerKeys, Set<K> remainingKeys)
+	{
+		boolean inBase=!s.baseDead.contains(item) && s.base.ordinalOf(item)>=0;
+		boolean inSealed=false;
+		if(s.sealed!=null && !s.sealedDead.contains(item))
+		{
+			for(K key : formerKeys)
+			{
+				if(s.sealed.contains(key, item))
+				{
+					inSealed=true;
+					break;
+				}
+			}
+		}
+		if(inBase || inSealed)
+		{
+			for(K key : remainingKeys)
+			{
+				if(!s.delta.contains(key, item))
+					addToDelta(s, key, item);
+			}
+			if(inSealed)
+				s.sealedDead.add(item);
+			if(inBase)
+				s.baseDead.add(item);
+			if(s.compactionDead!=null)
+				s.compactionDead.add(item);
+		}
+	}
+
+	public void removeFromIdx(K key, V item)
+	{
+		synchronized(writeLock)
+		{
+			Set<K> keys=itemKeys.get(item);
+			if(keys!=null && keys.contains(key))
+			{
+				State<K, V> s=state;
+				Set<K> remainingKeys=new HashSet<>(keys);
+				remainingKeys.remove(key);
+				retire(s, item, keys, remainingKeys);
+				s.delta.removeFromIdx(key, item);
+				keys.remove(key);
+				if(keys.isEmpty())
+					itemKeys.remove(item);
+			}
+		}
+	}
+
+	/**
+	 * Removes the object from all its keys, which costs {@code O(keys of the object)}.
+	 *
+	 * @param item the object.
+	 */
+	public void removeItem(V item)
+	{
+		synchronized(writeLock)
+		{
+			Set<K> keys=itemKeys.get(item);
+			if(keys!=null)
+			{
+				State<K, V> s=state;
+				retire(s, item, keys, Collections.emptySet());
+				for(K key : keys)
+				{
+					s.delta.removeFromIdx(key, item);
+				}
+				itemKeys.remove(item);
+			}
+		}
+	}
+
+	public void removeIdx(K key)
+	{
+		synchronized(writeLock)
+		{
+			for(V item : addLive(state, key, new HashSet<>()))
+			{
+				removeFromIdx(key, item);
+			}
+		}
+	}
+
+	/**
+	 * Returns the keys of the object by the reverse links.
+	 *
+	 * @param item the object.
+	 * @return the keys, empty if the object is not indexed.
+	 */
+	public Set<K> getKeys(V item)
+	{
+		Set<K> keys=itemKeys.get(item);
+		return keys!=null ? new HashSet<>(keys) : new HashSet<>();
+	}
+
+	public int size()
+	{
+		return itemKeys.size();
+	}
+
+	public boolean isEmpty()
+	{
+		return itemKeys.isEmpty();
+	}
+
+	private void compactInBackground()
+	{
+		try
+		{
+			compact();
+		}
+		finally
+		{
+			synchronized(writeLock)
+			{
+				compactionScheduled=false;
+			}
+		}
+	}
+
+	/**
+	 * Seals the delta segment and merges it with the base segment into a new base segment. Writers are blocked only while the segments are switched.
+	 * Compactions are serialized, and a compaction which failed is resumed by the next one.
+	 */
+	public void compact()
+	{
+		compactionLock.lock();
+		try
+		{
+			State<K, V> sealedState;
+			synchronized(writeLock)
+			{
+				sealedState=state;
+				if(sealedState.sealed==null)
+				{
+					sealedState=new State<>(sealedState.base, sealedState.baseDead, sealedState.delta, ConcurrentHashMap.newKeySet(), new Index<>(true), ConcurrentHashMap.newKeySet());
+					state=sealedState;
+					deltaAdditions=0;
+				}
+			}
+			FrozenIndex<K, V> base=merge(sealedState);
+			synchronized(writeLock)
+			{
+				State<K, V> s=state;
+				state=new State<>(base, s.compactionDead, null, null, s.delta, null);
+			}
+		}
+		finally
+		{
+			compactionLock.unlock();
+		}
+	}
+
+	/**
+	 * Merges the objects of the base and the sealed segments which are not dead before the sealing.
+	 * Objects retired during the merging may be merged or not, they are marked dead in the new base segment by {@link State#compactionDead} anyway.
+	 */
+	private static <K, V> FrozenIndex<K, V> merge(State<K, V> s)
+	{
+		Map<K, Set<V>> indexMap=new HashMap<>();
+		for(K key : s.base.getKeys())
+		{
+			Set<V> set=new HashSet<>();
+			for(int ordinal : s.base.getOrdinals(key))
+			{
+				V item=s.base.getItem(ordinal);
+				if(!s.baseDead.contains(item))
+					set.add(item);
+			}
+			if(!set.isEmpty())
+				indexMap.put(key, set);
+		}
+		for(Entry<K, Set<V>> entry : s.sealed.indexMap.entrySet())
+		{
+			for(V item : entry.getValue())
+			{
+				if(!s.sealedDead.contains(item))
+					indexMap.computeIfAbsent(entry.getKey(), k -> new HashSet<>()).add(item);
+			}
+		}
+		return FrozenIndex.of(indexMap);
+	}
+
+	private static <K, V> boolean contains(State<K, V> s, K key, V item)
+	{
+		return !s.baseDead.contains(item) && s.base.contains(key, item)
+				|| s.sealed!=null && !s.sealedDead.contains(item) && s.sealed.contains(key, item)
+				|| s.delta.contains(key, item);
+	}
+
+	/**
+	 * Returns the number of objects under the key in all segments including the dead ones, which is an upper bound of the number of live objects.
+	 */
+	private static <K, V> int estimate(State<K, V> s, K key)
+	{
+		return s.base.cardinality(key)+(s.sealed!=null ? s.sealed.cardinality(key) : 0)+s.delta.cardinality(key);
+	}
+
+	/**
+	 * Returns whether any live object is under the key, which usually stops at the first object found.
+	 */
+	private static <K, V> boolean hasLive(State<K, V> s, K key)
+	{
+		if(s.delta.cardinality(key)>0)
+			return true;
+		if(s.sealed!=null)
+		{
+			Set<V> set=s.sealed.indexMap.get(key);
+			if(set!=null)
+			{
+				for(V item : set)
+				{
+					if(!s.sealedDead.contains(item))
+						return true;
+				}
+			}
+		}
+		for(int ordinal : s.base.getOrdinals(key))
+		{
+			if(!s.baseDead.contains(s.base.getItem(ordinal)))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the live objects under the key to {@code res}. The older segments are read first, see {@link #retire(State, Object, Set, Set)}.
+	 */
+	private static <K, V> Set<V> addLive(State<K, V> s, K key, Set<V> res)
+	{
+		for(int ordinal : s.base.getOrdinals(key))
+		{
+			V item=s.base.getItem(ordinal);
+			if(!s.baseDead.contains(item))
+				res.add(item);
+		}
+		if(s.sealed!=null)
+		{
+			Set<V> set=s.sealed.indexMap.get(key);
+			if(set!=null)
+			{
+				for(V item : set)
+				{
+					if(!s.sealedDead.contains(item))
+						res.add(item);
+				}
+			}
+		}
+		Set<V> set=s.delta.indexMap.get(key);
+		if(set!=null)
+			res.addAll(set);
+		return res;
+	}
+
+	public boolean contains(K key, V item)
+	{
+		return contains(state, key, item);
+	}
+
+	public Set<V> get(Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		return union(new HashSet<>(), keyIter, keys);
+	}
+
+	private static <K> List<K> keyList(Iterable<K> keyIter, K[] keys)
+	{
+		List<K> keyList=new ArrayList<>(Arrays.asList(keys));
+		if(keyIter!=null)
+		{
+			for(K key : keyIter)
+			{
+				keyList.add(key);
+			}
+		}
+		return keyList;
+	}
+
+	/**
+	 * Keeps only the objects of {@code res} which are under all the given keys. Keys without live objects are ignored, as {@link Index#intersect(Set, Iterable, Object...)} does.
+	 * The keys are applied from the smallest to the largest, and every key either probes the objects of {@code res} or collects its live objects, whichever is smaller.
+	 *
+	 * @param res the objects to be filtered.
+	 * @param keyIter the keys, can be {@code null}.
+	 * @param keys more keys.
+	 * @return {@code res}.
+	 */
+	public Set<V> intersect(Set<V> res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		State<K, V> s=state;
+		List<K> keyList=keyList(keyIter, keys);
+		Map<K, Integer> estimates=new HashMap<>();
+		for(K key : keyList)
+		{
+			int estimate=estimate(s, key);
+			if(estimate>0)
+				estimates.put(key, estimate);
+		}
+		List<K> plan=new ArrayList<>(estimates.keySet());
+		plan.sort(Comparator.comparingInt(estimates::get));
+		for(K key : plan)
+		{
+			if(res.isEmpty())
+				break;
+			if(res.size()<=estimates.get(key))
+			{
+				if(hasLive(s, key))
+					res.removeIf(item -> !contains(s, key, item));
+			}
+			else
+			{
+				Set<V> set=addLive(s, key, new HashSet<>());
+				if(!set.isEmpty())
+					Index.retain(res, set);
+			}
+		}
+		return res;
+	}
+
+	public Set<V> union(Set<V> res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		State<K, V> s=state;
+		for(K key : keyList(keyIter, keys))
+		{
+			addLive(s, key, res);
+		}
+		return res;
+	}
+
+	public Set<V> intersectUnion(Set<V> res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		if(!res.isEmpty() && !isEmpty())
+			Index.retain(res, get(keyIter, keys));
+		return res;
+	}
+
+	public Set<V> subtract(Set<V> res, Iterable<K> keyIter, @SuppressWarnings("unchecked") K... keys)
+	{
+		State<K, V> s=state;
+		for(K key : keyList(keyIter, keys))
+		{
+			if(res.isEmpty())
+				break;
+			res.removeIf(item -> contains(s, key, item));
+		}
+		return res;
+	}
+}
@@ -0,0 +1,193 @@
+package com.eroelf.javaxsx.util.index;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Set operations on sorted arrays of distinct non-negative {@code int} values. The arguments are never modified.
+ * 
+ * @author weikun.zhong
+ */
+final class SortedInts
+{
+	static final int[] EMPTY=new int[0];
+
+	/**
+	 * Intersections gallop over the larger array if it is this many times larger than the smaller one, and merge otherwise.
+	 * Galloping takes about {@code 2*log2(ratio)} steps per value of the smaller array against {@code ratio} steps of merging, and wins from a ratio of about 8 in measurements.
+	 * Shared by {@link ArrayContainer}, whose arrays have the same access pattern.
+	 */
+	static final int GALLOP_RATIO=8;
+
+	private SortedInts()
+	{}
+
+	/**
+	 * Returns the first index in {@code [from, to)} whose value is not less than {@code min}, or {@code to} if none, by an exponential search from {@code from}.
+	 */
+	static int advance(int[] array, int from, int to, int min)
+	{
+		if(from>=to || array[from]>=min)
+			return from;
+		int lower=from;
+		int span=1;
+		while(lower+span<to && array[lower+span]<min)
+		{
+			lower+=span;
+			span<<=1;
+		}
+		int idx=Arrays.binarySearch(array, lower+1, Math.min(lower+span, to), min);
+		return idx>=0 ? idx : -idx-1;
+	}
+
+	static boolean contains(int[] array, int value)
+	{
+		return Arrays.binarySearch(array, value)>=0;
+	}
+
+	static int[] intersect(int[] a, int[] b)
+	{
+		if(a.length>b.length)
+		{
+			int[] t=a;
+			a=b;
+			b=t;
+		}
+		int[] res=new int[a.length];
+		int k=0;
+		if(b.length>a.length*GALLOP_RATIO)
+		{
+			int j=0;
+			for(int i=0; i<a.length && j<b.length; i++)
+			{
+				j=advance(b, j, b.length, a[i]);
+				if(j<b.length && b[j]==a[i])
+					res[k++]=a[i];
+			}
+		}
+		else
+		{
+			int i=0;
+			int j=0;
+			while(i<a.length && j<b.length)
+			{
+				if(a[i]<b[j])
+					++i;
+				else if(a[i]>b[j])
+					++j;
+				else
+				{
+					res[k++]=a[i];
+					++i;
+					++j;
+				}
+			}
+		}
+		return k==res.length ? res : Arrays.copyOf(res, k);
+	}
+
+	static int[] union(int[] a, int[] b)
+	{
+		int[] res=new int[a.length+b.length];
+		int i=0;
+		int j=0;
+		int k=0;
+		while(i<a.length && j<b.length)
+		{
+			if(a[i]<b[j])
+				res[k++]=a[i++];
+			else if(a[i]>b[j])
+				res[k++]=b[j++];
+			else
+			{
+				res[k++]=a[i++];
+				++j;
+			}
+		}
+		while(i<a.length)
+		{
+			res[k++]=a[i++];
+		}
+		while(j<b.length)
+		{
+			res[k++]=b[j++];
+		}
+		return k==res.length ? res : Arrays.copyOf(res, k);
+	}
+
+	/**
+	 * Returns the union of the arrays, whose values are less than {@code universe}.
+	 * Many arrays are unioned by marking a bitmap of the universe if it is small enough, or by sorting their concatenation otherwise.
+	 */
+	static int[] union(List<int[]> arrays, int universe)
+	{
+		if(arrays.isEmpty())
+			return EMPTY;
+		if(arrays.size()==1)
+			return arrays.get(0).clone();
+		if(arrays.size()==2)
+			return union(arrays.get(0), arrays.get(1));
+		long total=0;
+		for(int[] array : arrays)
+		{
+			total+=array.length;
+		}
+		if(total*8>=universe)
+		{
+			long[] words=new long[(universe+63)>>>6];
+			for(int[] array : arrays)
+			{
+				for(int value : array)
+				{
+					words[value>>>6]|=1L<<value;
+				}
+			}
+			int count=0;
+			for(long word : words)
+			{
+				count+=Long.bitCount(word);
+			}
+			int[] res=new int[count];
+			int k=0;
+			for(int i=0; i<words.length; i++)
+			{
+				long word=words[i];
+				while(word!=0)
+				{
+					res[k++]=(i<<6)+Long.numberOfTrailingZeros(word);
+					word&=word-1;
+				}
+			}
+			return res;
+		}
+		int[] res=new int[(int)total];
+		int k=0;
+		for(int[] array : arrays)
+		{
+			System.arraycopy(array, 0, res, k, array.length);
+			k+=array.length;
+		}
+		Arrays.sort(res);
+		int n=0;
+		for(int i=0; i<res.length; i++)
+		{
+			if(n==0 || res[i]!=res[n-1])
+				res[n++]=res[i];
+		}
+		return n==res.length ? res : Arrays.copyOf(res, n);
+	}
+
+	static int[] subtract(int[] a, int[] b)
+	{
+		int[] res=new int[a.length];
+		int k=0;
+		int j=0;
+		for(int i=0; i<a.length; i++)
+		{
+			j=advance(b, j, b.length, a[i]);
+			if(j>=b.length || b[j]!=a[i])
+				res[k++]=a[i];
+		}
+		return k==res.length ? res : Arrays.copyOf(res, k);
+	}
+}
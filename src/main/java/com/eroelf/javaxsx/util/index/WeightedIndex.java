@@ -0,0 +1,325 @@
+package com.eroelf.javaxsx.util.index;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import com.eroelf.javaxsx.util.ml.feature.score.impl.LRScorer;
+
+/**
+ * Maintains {@code int} ids with weights under given keys, and retrieves the ids of the highest scores for a weighted query,
+ * where the score of an id is the sum of the query weight of every key multiplied by the weight of the id under the key.
+ * 
+ * <p>The top {@code k} ids are retrieved by the block-max WAND algorithm instead of scoring every id under any key:
+ * the upper bound of the contribution of each key is its query weight multiplied by the maximum, or the minimum for a negative query weight, weight of its posting, and of each block of its posting,
+ * and the ids whose bounds can not exceed the score of the current {@code k}-th id are skipped without being scored.
+ * Keys whose contributions are never positive can only lower scores, so they never make candidates and are only probed when a candidate is scored,
+ * thus only the ids under at least one key with a positive upper bound are retrieved.
+ * 
+ * <p>The bounds are kept up to date by every modification, so queries never write and can run concurrently.
+ * This class is not thread-safe if modified concurrently with any other call.
+ * 
+ * @author weikun.zhong
+ *
+ * @param <K> the object type of the index key.
+ */
+public class WeightedIndex<K> implements Serializable
+{
+	private static final long serialVersionUID=-6080719357466313236L;
+
+	private static final int END=Integer.MAX_VALUE;
+	private static final Comparator<Pair<Integer, Double>> WORST_FIRST=Comparator.comparing((Pair<Integer, Double> p) -> p.getRight()).thenComparing(Pair::getLeft, Comparator.reverseOrder());
+
+	protected Map<K, WeightedPosting> indexMap=new HashMap<>();
+
+	/**
+	 * Puts an id with its weight under the key, replacing its former weight under the key if exists.
+	 * 
+	 * @param key the key.
+	 * @param id the id, in {@code [0, Integer.MAX_VALUE)}.
+	 * @param weight the weight.
+	 */
+	public void addItem(K key, int id, double weight)
+	{
+		if(id<0 || id==END)
+			throw new IllegalArgumentException("WeightedIndex::addItem: id should be in [0, Integer.MAX_VALUE)!");
+		WeightedPosting posting=indexMap.get(key);
+		if(posting==null)
+		{
+			posting=new WeightedPosting();
+			indexMap.put(key, posting);
+		}
+		posting.put(id, (float)weight);
+	}
+
+	public void removeIdx(K key)
+	{
+		indexMap.remove(key);
+	}
+
+	public void removeFromIdx(K key, int id)
+	{
+		WeightedPosting posting=indexMap.get(key);
+		if(posting!=null)
+		{
+			posting.remove(id);
+			if(posting.size==0)
+				indexMap.remove(key);
+		}
+	}
+
+	public boolean isEmpty()
+	{
+		return indexMap.isEmpty();
+	}
+
+	public Set<K> getKeys()
+	{
+		return new HashSet<>(indexMap.keySet());
+	}
+
+	public int cardinality(K key)
+	{
+		WeightedPosting posting=indexMap.get(key);
+		return posting!=null ? posting.size : 0;
+	}
+
+	/**
+	 * Returns the weight of the id under the key.
+	 * 
+	 * @param key the key.
+	 * @param id the id.
+	 * @return the weight, or {@code NaN} if the id is not under the key.
+	 */
+	public double getWeight(K key, int id)
+	{
+		WeightedPosting posting=indexMap.get(key);
+		int idx=posting!=null ? posting.find(id) : -1;
+		return idx>=0 ? posting.weights[idx] : Double.NaN;
+	}
+
+	/**
+	 * Iterates a posting in the ascending order of ids.
+	 */
+	private static final class Cursor
+	{
+		private final WeightedPosting posting;
+		private final double queryWeight;
+		private final double upperBound;
+		private int pos;
+		private double blockBound;
+		private int blockLast;
+
+		private Cursor(WeightedPosting posting, double queryWeight)
+		{
+			this.posting=posting;
+			this.queryWeight=queryWeight;
+			upperBound=bound(posting.maxWeight, posting.minWeight);
+		}
+
+		private double bound(float maxWeight, float minWeight)
+		{
+			return queryWeight*(queryWeight>0 ? maxWeight : minWeight);
+		}
+
+		private int doc()
+		{
+			return pos<posting.size ? posting.ids[pos] : END;
+		}
+
+		private double score()
+		{
+			return queryWeight*posting.weights[pos];
+		}
+
+		private void advance(int target)
+		{
+			pos=SortedInts.advance(posting.ids, pos, posting.size, target);
+		}
+
+		/**
+		 * Finds the block which may hold {@code target} without moving, and sets the bound of the contribution to the ids in {@code [target, blockLast]}.
+		 */
+		private void shallowAdvance(int target)
+		{
+			int p=SortedInts.advance(posting.ids, pos, posting.size, target);
+			if(p<posting.size)
+			{
+				int b=p/WeightedPosting.BLOCK_SIZE;
+				// ids of the range which are not in this posting get nothing from it
+				blockBound=Math.max(bound(posting.blockMax[b], posting.blockMin[b]), 0);
+				blockLast=posting.ids[Math.min((b+1)*WeightedPosting.BLOCK_SIZE, posting.size)-1];
+			}
+			else
+			{
+				blockBound=0;
+				blockLast=END;
+			}
+		}
+
+		/**
+		 * Returns the contribution to the id, moving forward to it. Ids must be probed in ascending order.
+		 */
+		private double probe(int id)
+		{
+			advance(id);
+			return doc()==id ? score() : 0;
+		}
+	}
+
+	private static void sortByDoc(Cursor[] cursors)
+	{
+		for(int i=1; i<cursors.length; i++)
+		{
+			Cursor cursor=cursors[i];
+			int doc=cursor.doc();
+			int j=i-1;
+			for(; j>=0 && cursors[j].doc()>doc; j--)
+			{
+				cursors[j+1]=cursors[j];
+			}
+			cursors[j+1]=cursor;
+		}
+	}
+
+	/**
+	 * Finds the {@code k} ids of the highest scores for the query.
+	 * 
+	 * @param queryWeights the query weight of every key, keys which are not indexed are ignored.
+	 * @param k the maximum number of ids to find.
+	 * @return the ids with their scores, ordered by the score descendingly and then by the id.
+	 */
+	public List<Pair<Integer, Double>> topK(Map<K, Double> queryWeights, int k)
+	{
+		List<Cursor> positives=new ArrayList<>();
+		List<Cursor> negatives=new ArrayList<>();
+		for(Entry<K, Double> entry : queryWeights.entrySet())
+		{
+			WeightedPosting posting=indexMap.get(entry.getKey());
+			if(posting!=null && entry.getValue()!=null && entry.getValue()!=0)
+			{
+				Cursor cursor=new Cursor(posting, entry.getValue());
+				if(cursor.upperBound>0)
+					positives.add(cursor);
+				else
+					negatives.add(cursor);
+			}
+		}
+		Cursor[] cursors=positives.toArray(new Cursor[0]);
+		int n=cursors.length;
+		PriorityQueue<Pair<Integer, Double>> heap=new PriorityQueue<>(Math.max(k, 1), WORST_FIRST);
+		double threshold=Double.NEGATIVE_INFINITY;
+		while(k>0)
+		{
+			sortByDoc(cursors);
+			// the pivot is the first cursor where the sum of the bounds exceeds the threshold, all ids before its id can not
+			int p=-1;
+			double bound=0;
+			for(int i=0; i<n && cursors[i].doc()!=END; i++)
+			{
+				bound+=cursors[i].upperBound;
+				if(bound>threshold)
+				{
+					p=i;
+					break;
+				}
+			}
+			if(p<0)
+				break;
+			int pivot=cursors[p].doc();
+			while(p+1<n && cursors[p+1].doc()==pivot)
+			{
+				++p;
+			}
+			double blockBound=0;
+			long next=END;
+			for(int i=0; i<=p; i++)
+			{
+				cursors[i].shallowAdvance(pivot);
+				blockBound+=cursors[i].blockBound;
+				next=Math.min(next, (long)cursors[i].blockLast+1);
+			}
+			if(blockBound>threshold)
+			{
+				if(cursors[0].doc()==pivot)
+				{
+					double score=0;
+					for(int i=0; i<=p; i++)
+					{
+						score+=cursors[i].score();
+					}
+					for(Cursor cursor : negatives)
+					{
+						score+=cursor.probe(pivot);
+					}
+					if(heap.size()<k)
+						heap.add(Pair.of(pivot, score));
+					else if(score>threshold)
+					{
+						heap.poll();
+						heap.add(Pair.of(pivot, score));
+					}
+					if(heap.size()==k)
+						threshold=heap.peek().getRight();
+					for(int i=0; i<=p; i++)
+					{
+						cursors[i].advance(pivot+1);
+					}
+				}
+				else
+				{
+					for(int i=0; i<p && cursors[i].doc()<pivot; i++)
+					{
+						cursors[i].advance(pivot);
+					}
+				}
+			}
+			else
+			{
+				// no id from the pivot to the end of the first ending block can exceed the threshold
+				if(p+1<n)
+					next=Math.min(next, cursors[p+1].doc());
+				int target=(int)Math.max(next, pivot+1L);
+				for(int i=0; i<=p; i++)
+				{
+					if(cursors[i].doc()<target)
+						cursors[i].advance(target);
+				}
+			}
+		}
+		List<Pair<Integer, Double>> resultList=new ArrayList<>(heap);
+		Collections.sort(resultList, WORST_FIRST.reversed());
+		return resultList;
+	}
+
+	/**
+	 * Finds the {@code k} items of the highest scores of a logistic regression model,
+	 * where every item is indexed under the indices of its features with the feature values as the weights, and the query weights are the weights of the model.
+	 * Since the logistic function is increasing, the items of the highest linear scores are the items of the highest probabilities.
+	 * 
+	 * @param index the index from feature indices to item ids.
+	 * @param scorer the model.
+	 * @param k the maximum number of items to find.
+	 * @return the item ids with the scores of the model, ordered by the score descendingly and then by the id.
+	 */
+	public static List<Pair<Integer, Double>> topK(WeightedIndex<Integer> index, LRScorer scorer, int k)
+	{
+		List<Pair<Integer, Double>> resultList=index.topK(scorer.getWeights(), k);
+		for(int i=0; i<resultList.size(); i++)
+		{
+			Pair<Integer, Double> pair=resultList.get(i);
+			resultList.set(i, Pair.of(pair.getLeft(), 1/(1+Math.exp(-pair.getRight()))));
+		}
+		return resultList;
+	}
+}
@@ -0,0 +1,115 @@
+package com.eroelf.javaxsx.util.index;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The ids under a key of a {@link WeightedIndex} in ascending order with their weights,
+ * and the maximum and minimum weights of the whole posting and of every block of {@link #BLOCK_SIZE} ids, which bound the scores in WAND.
+ * 
+ * @author weikun.zhong
+ */
+final class WeightedPosting implements Serializable
+{
+	private static final long serialVersionUID=4430963813416542091L;
+
+	static final int BLOCK_SIZE=64;
+
+	int[] ids=new int[4];
+	float[] weights=new float[4];
+	int size;
+	float maxWeight=Float.NEGATIVE_INFINITY;
+	float minWeight=Float.POSITIVE_INFINITY;
+	float[] blockMax=new float[1];
+	float[] blockMin=new float[1];
+
+	int find(int id)
+	{
+		return Arrays.binarySearch(ids, 0, size, id);
+	}
+
+	void put(int id, float weight)
+	{
+		// ids are usually added in ascending order, which appends
+		int idx=size>0 && ids[size-1]<id ? -size-1 : find(id);
+		if(idx>=0)
+		{
+			weights[idx]=weight;
+			updateBlocks(idx, idx+1);
+			updateBounds();
+		}
+		else
+		{
+			idx=-idx-1;
+			if(size==ids.length)
+			{
+				ids=Arrays.copyOf(ids, size*2);
+				weights=Arrays.copyOf(weights, size*2);
+			}
+			System.arraycopy(ids, idx, ids, idx+1, size-idx);
+			System.arraycopy(weights, idx, weights, idx+1, size-idx);
+			ids[idx]=id;
+			weights[idx]=weight;
+			++size;
+			// the ids after idx are shifted, but no weight is gone
+			updateBlocks(idx, size);
+			maxWeight=Math.max(maxWeight, weight);
+			minWeight=Math.min(minWeight, weight);
+		}
+	}
+
+	void remove(int id)
+	{
+		int idx=find(id);
+		if(idx>=0)
+		{
+			System.arraycopy(ids, idx+1, ids, idx, size-idx-1);
+			System.arraycopy(weights, idx+1, weights, idx, size-idx-1);
+			--size;
+			updateBlocks(idx, size);
+			updateBounds();
+		}
+	}
+
+	/**
+	 * Recomputes the maximum and minimum weights of the blocks which hold the positions {@code [from, to)}.
+	 * The bounds are kept up to date by every modification, so reading a posting never writes to it.
+	 */
+	private void updateBlocks(int from, int to)
+	{
+		int blocks=(size+BLOCK_SIZE-1)/BLOCK_SIZE;
+		if(blocks>blockMax.length)
+		{
+			blockMax=Arrays.copyOf(blockMax, Math.max(blocks, blockMax.length*2));
+			blockMin=Arrays.copyOf(blockMin, blockMax.length);
+		}
+		for(int b=from/BLOCK_SIZE; b<(to+BLOCK_SIZE-1)/BLOCK_SIZE; b++)
+		{
+			float max=Float.NEGATIVE_INFINITY;
+			float min=Float.POSITIVE_INFINITY;
+			for(int i=b*BLOCK_SIZE; i<Math.min((b+1)*BLOCK_SIZE, size); i++)
+			{
+				max=Math.max(max, weights[i]);
+				min=Math.min(min, weights[i]);
+			}
+			blockMax[b]=max;
+			blockMin[b]=min;
+		}
+	}
+
+	/**
+	 * Recomputes the maximum and minimum weights of the whole posting from the blocks, after a weight may be gone.
+	 */
+	private void updateBounds()
+	{
+		float max=Float.NEGATIVE_INFINITY;
+		float min=Float.POSITIVE_INFINITY;
+		for(int b=0, blocks=(size+BLOCK_SIZE-1)/BLOCK_SIZE; b<blocks; b++)
+		{
+			max=Math.max(max, blockMax[b]);
+			min=Math.min(min, blockMin[b]);
+		}
+		maxWeight=max;
+		minWeight=min;
+	}
+}
@@ -0,0 +1,178 @@
+package com.eroelf.javaxsx.util.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Methods to write primitive sections to a {@link FileChannel} and to map them back as read-only buffers.
+ * All data are in little-endian order, and every section is padded to a multiple of {@link #ALIGNMENT} bytes.
+ * 
+ * @author weikun.zhong
+ */
+public class MappedFileUtil
+{
+	public static final ByteOrder ORDER=ByteOrder.LITTLE_ENDIAN;
+	public static final int ALIGNMENT=8;
+
+	private static final int CHUNK_SIZE=1<<20;
+
+	public static ByteBuffer allocate(int capacity)
+	{
+		return ByteBuffer.allocate(capacity).order(ORDER);
+	}
+
+	public static long padding(long length)
+	{
+		return (ALIGNMENT-length%ALIGNMENT)%ALIGNMENT;
+	}
+
+	public static long alignedLength(long length)
+	{
+		return length+padding(length);
+	}
+
+	/**
+	 * Writes all remaining bytes of the given buffer at the current position of the channel, followed by the padding bytes.
+	 * 
+	 * @param channel the target channel.
+	 * @param buffer the bytes to write.
+	 * @return the number of bytes written including the padding.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static long write(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		long len=buffer.remaining();
+		while(buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+		return len+writePadding(channel, len);
+	}
+
+	public static long writeInts(FileChannel channel, IntBuffer src) throws IOException
+	{
+		ByteBuffer chunk=allocate(CHUNK_SIZE);
+		long len=0;
+		for(int i=0; i<src.limit(); i++)
+		{
+			if(chunk.remaining()<Integer.BYTES)
+				len+=flush(channel, chunk);
+			chunk.putInt(src.get(i));
+		}
+		len+=flush(channel, chunk);
+		return len+writePadding(channel, len);
+	}
+
+	public static long writeLongs(FileChannel channel, LongBuffer src) throws IOException
+	{
+		ByteBuffer chunk=allocate(CHUNK_SIZE);
+		long len=0;
+		for(int i=0; i<src.limit(); i++)
+		{
+			if(chunk.remaining()<Long.BYTES)
+				len+=flush(channel, chunk);
+			chunk.putLong(src.get(i));
+		}
+		len+=flush(channel, chunk);
+		return len+writePadding(channel, len);
+	}
+
+	public static long writeChars(FileChannel channel, CharBuffer src) throws IOException
+	{
+		ByteBuffer chunk=allocate(CHUNK_SIZE);
+		long len=0;
+		for(int i=0; i<src.limit(); i++)
+		{
+			if(chunk.remaining()<Character.BYTES)
+				len+=flush(channel, chunk);
+			chunk.putChar(src.get(i));
+		}
+		len+=flush(channel, chunk);
+		return len+writePadding(channel, len);
+	}
+
+	private static long flush(FileChannel channel, ByteBuffer chunk) throws IOException
+	{
+		chunk.flip();
+		long len=chunk.remaining();
+		while(chunk.hasRemaining())
+		{
+			channel.write(chunk);
+		}
+		chunk.clear();
+		return len;
+	}
+
+	private static long writePadding(FileChannel channel, long length) throws IOException
+	{
+		int padding=(int)padding(length);
+		if(padding>0)
+			flush(channel, allocate(padding).position(padding));
+		return padding;
+	}
+
+	/**
+	 * Maps a section of the channel as a read-only buffer.
+	 * 
+	 * @param channel the source channel.
+	 * @param position the start position of the section.
+	 * @param length the number of bytes of the section.
+	 * @return the mapped buffer, or a heap buffer if the section is empty.
+	 * @throws IOException if the section is too large to be mapped or an I/O error occurs.
+	 */
+	public static ByteBuffer map(FileChannel channel, long position, long length) throws IOException
+	{
+		if(length>Integer.MAX_VALUE)
+			throw new IOException("MappedFileUtil::map: section length "+length+" exceeds the maximum mappable size!");
+		if(position+length>channel.size())
+			throw new IOException("MappedFileUtil::map: section ["+position+", "+(position+length)+") exceeds the file size "+channel.size()+"!");
+		if(length==0)
+			return allocate(0);
+		return channel.map(MapMode.READ_ONLY, position, length).order(ORDER);
+	}
+
+	public static IntBuffer mapInts(FileChannel channel, long position, int count) throws IOException
+	{
+		return map(channel, position, (long)count*Integer.BYTES).asIntBuffer();
+	}
+
+	public static LongBuffer mapLongs(FileChannel channel, long position, int count) throws IOException
+	{
+		return map(channel, position, (long)count*Long.BYTES).asLongBuffer();
+	}
+
+	public static CharBuffer mapChars(FileChannel channel, long position, int count) throws IOException
+	{
+		return map(channel, position, (long)count*Character.BYTES).asCharBuffer();
+	}
+
+	public static int[] toArray(IntBuffer buffer)
+	{
+		int[] array=new int[buffer.limit()];
+		buffer.get(0, array);
+		return array;
+	}
+
+	public static long[] toArray(LongBuffer buffer)
+	{
+		long[] array=new long[buffer.limit()];
+		buffer.get(0, array);
+		return array;
+	}
+
+	public static char[] toArray(CharBuffer buffer)
+	{
+		char[] array=new char[buffer.limit()];
+		buffer.get(0, array);
+		return array;
+	}
+
+	private MappedFileUtil()
+	{}
+}
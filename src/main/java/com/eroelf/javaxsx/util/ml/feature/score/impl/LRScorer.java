@@ -1,5 +1,6 @@
 package com.eroelf.javaxsx.util.ml.feature.score.impl;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -33,6 +34,16 @@ public class LRScorer implements Scorer
 		this(new FileIterator(fileName).lines().map(line -> line.trim().split("[\\s=,;:#/]+")).filter(it -> it.length>=2).collect(Collectors.toMap(it -> Integer.parseInt(it[0]), it -> Double.parseDouble(it[1]))));
 	}
 
+	/**
+	 * Returns the weights of this model, indexed by the feature indices.
+	 * 
+	 * @return an unmodifiable view of the weights.
+	 */
+	public Map<Integer, Double> getWeights()
+	{
+		return Collections.unmodifiableMap(weight);
+	}
+
 	@Override
 	public double score(Scoreable scoreable)
 	{
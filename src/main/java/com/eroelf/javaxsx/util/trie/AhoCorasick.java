@@ -0,0 +1,220 @@
+package com.eroelf.javaxsx.util.trie;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * An immutable Aho-Corasick automaton which finds all occurrences of a set of words in a single linear pass over the text.
+ * Words are identified by their ranks in the natural order of {@link String}, which equal the ids assigned by {@link StaticDoubleArrayTrie} to the same set of words.
+ * 
+ * <p>Nodes are numbered in breadth-first order so that the children of each node are contiguous and sorted by label.
+ * Transitions from the root are looked up in a direct table; other transitions are looked up by binary search.
+ * The empty word, if exists, keeps its id but is never reported.
+ * 
+ * @author weikun.zhong
+ */
+public class AhoCorasick implements Serializable
+{
+	private static final long serialVersionUID=2876531209845412873L;
+
+	private static final int ROOT=0;
+	private static final int NO_OUTPUT=-1;
+
+	private final String[] words;
+	/**
+	 * The children of node {@code s} are the nodes {@code childIdx[s]+1} to {@code childIdx[s+1]}, the label of node {@code t} is {@code labels[t-1]}.
+	 */
+	private final int[] childIdx;
+	private final char[] labels;
+	private final int[] fail;
+	/**
+	 * The id of the word which ends at each node, or {@link #NO_OUTPUT}.
+	 */
+	private final int[] output;
+	/**
+	 * The nearest node on the failure chain of each node which has an output, or {@link #ROOT} if none.
+	 */
+	private final int[] dictLink;
+	private final int[] rootNext;
+
+	/**
+	 * Constructs an automaton from all words in the given Trie.
+	 * 
+	 * @param trie the source Trie.
+	 */
+	public AhoCorasick(Trie trie)
+	{
+		this(trie.matchPrefix("", new ArrayList<String>()));
+	}
+
+	/**
+	 * Constructs an automaton from the given words. Duplicated words are merged.
+	 * 
+	 * @param words the words to be matched.
+	 */
+	public AhoCorasick(Collection<String> words)
+	{
+		this.words=new TreeSet<>(words).toArray(new String[0]);
+
+		int maxNodes=1;
+		for(String word : this.words)
+		{
+			maxNodes+=word.length();
+		}
+		int[] childIdx=new int[maxNodes+1];
+		char[] labels=new char[maxNodes];
+		int[] fail=new int[maxNodes];
+		int[] output=new int[maxNodes];
+		int[] dictLink=new int[maxNodes];
+		int[] lo=new int[maxNodes];
+		int[] hi=new int[maxNodes];
+		int[] depth=new int[maxNodes];
+
+		output[ROOT]=NO_OUTPUT;
+		hi[ROOT]=this.words.length;
+		int nodeNum=1;
+		for(int s=0; s<nodeNum; s++)
+		{
+			int l=lo[s];
+			int h=hi[s];
+			int d=depth[s];
+			if(l<h && this.words[l].length()==d)
+				++l;
+			childIdx[s]=nodeNum-1;
+			while(l<h)
+			{
+				char c=this.words[l].charAt(d);
+				int e=l+1;
+				while(e<h && this.words[e].charAt(d)==c)
+				{
+					++e;
+				}
+
+				int t=nodeNum++;
+				labels[t-1]=c;
+				lo[t]=l;
+				hi[t]=e;
+				depth[t]=d+1;
+				output[t]=this.words[l].length()==d+1 ? l : NO_OUTPUT;
+				fail[t]=ROOT;
+				for(int f=s; f!=ROOT; )
+				{
+					f=fail[f];
+					int g=child(childIdx, labels, f, c);
+					if(g>=0)
+					{
+						fail[t]=g;
+						break;
+					}
+				}
+				dictLink[t]=output[fail[t]]!=NO_OUTPUT ? fail[t] : dictLink[fail[t]];
+				l=e;
+			}
+		}
+		childIdx[nodeNum]=nodeNum-1;
+
+		this.childIdx=Arrays.copyOf(childIdx, nodeNum+1);
+		this.labels=Arrays.copyOf(labels, nodeNum-1);
+		this.fail=Arrays.copyOf(fail, nodeNum);
+		this.output=Arrays.copyOf(output, nodeNum);
+		this.dictLink=Arrays.copyOf(dictLink, nodeNum);
+		rootNext=new int[(int)Character.MAX_VALUE+1];
+		for(int t=childIdx[ROOT]+1; t<=childIdx[ROOT+1]; t++)
+		{
+			rootNext[labels[t-1]]=t;
+		}
+	}
+
+	private static int child(int[] childIdx, char[] labels, int s, char c)
+	{
+		int low=childIdx[s];
+		int high=childIdx[s+1]-1;
+		while(low<=high)
+		{
+			int mid=(low+high)>>>1;
+			char label=labels[mid];
+			if(label<c)
+				low=mid+1;
+			else if(label>c)
+				high=mid-1;
+			else
+				return mid+1;
+		}
+		return -1;
+	}
+
+	private int next(int s, char c)
+	{
+		while(s!=ROOT)
+		{
+			int t=child(childIdx, labels, s, c);
+			if(t>=0)
+				return t;
+			s=fail[s];
+		}
+		return rootNext[c];
+	}
+
+	/**
+	 * Reports every occurrence of every word in the text, ordered by the end offset and then by the length descendingly.
+	 * Overlapping occurrences are all reported. No object is allocated during the scan.
+	 * 
+	 * @param text the text to be scanned.
+	 * @param listener the receiver of the matches.
+	 */
+	public void scan(CharSequence text, MatchListener listener)
+	{
+		int s=ROOT;
+		for(int i=0; i<text.length(); i++)
+		{
+			s=next(s, text.charAt(i));
+			for(int t=output[s]!=NO_OUTPUT ? s : dictLink[s]; t!=ROOT; t=dictLink[t])
+			{
+				int id=output[t];
+				listener.onMatch(i+1-words[id].length(), i+1, id);
+			}
+		}
+	}
+
+	/**
+	 * Checks whether any non-empty word occurs in the text. The scan stops at the first occurrence.
+	 * 
+	 * @param text the text to be checked.
+	 * @return {@code true} if any word occurs in the text.
+	 */
+	public boolean containsAny(CharSequence text)
+	{
+		int s=ROOT;
+		for(int i=0; i<text.length(); i++)
+		{
+			s=next(s, text.charAt(i));
+			if(output[s]!=NO_OUTPUT || dictLink[s]!=ROOT)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the word of the given id.
+	 * 
+	 * @param wordId the word id reported by {@link MatchListener#onMatch(int, int, int)}.
+	 * @return the word.
+	 */
+	public String getWord(int wordId)
+	{
+		return words[wordId];
+	}
+
+	/**
+	 * Returns the number of words in this automaton.
+	 * 
+	 * @return the number of words.
+	 */
+	public int size()
+	{
+		return words.length;
+	}
+}
@@ -0,0 +1,139 @@
+package com.eroelf.javaxsx.util.trie;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * A thread-safe Trie wrapper in which readers never block.
+ * Every modification is applied to a private copy of the current Trie, and the modified copy is then published through a {@code volatile} reference, so each read sees one consistent version.
+ * Writers are serialized by the monitor of this object.
+ * 
+ * <p>Since every modification copies the whole Trie, batch modifications should be applied by {@link #update(Consumer)}, or the Trie should be rebuilt outside and published by {@link #replace(Trie)}.
+ * Callers which need several reads on the same version should read from {@link #snapshot()}.
+ * 
+ * @param <T> the type of the wrapped Trie.
+ * 
+ * @author weikun.zhong
+ */
+public class CopyOnWriteTrie<T extends Trie> implements Trie
+{
+	private static final long serialVersionUID=-1543285873219014482L;
+
+	/**
+	 * Makes a deep copy of a Trie.
+	 * 
+	 * @param <T> the type of the Trie.
+	 */
+	@FunctionalInterface
+	public static interface Copier<T extends Trie> extends UnaryOperator<T>, Serializable
+	{}
+
+	private volatile T trie;
+	private final Copier<T> copier;
+
+	public CopyOnWriteTrie(T trie, Copier<T> copier)
+	{
+		this.trie=trie;
+		this.copier=copier;
+	}
+
+	public static CopyOnWriteTrie<DoubleArrayTrie> of(DoubleArrayTrie trie)
+	{
+		return new CopyOnWriteTrie<>(trie, DoubleArrayTrie::new);
+	}
+
+	public static CopyOnWriteTrie<HashMapTrie> of(HashMapTrie trie)
+	{
+		return new CopyOnWriteTrie<>(trie, HashMapTrie::new);
+	}
+
+	/**
+	 * Returns the current version of the Trie. The returned Trie must not be modified.
+	 * 
+	 * @return the current version.
+	 */
+	public T snapshot()
+	{
+		return trie;
+	}
+
+	/**
+	 * Applies a batch of modifications to a copy of the current Trie, and then publishes the copy.
+	 * 
+	 * @param updater the modifications.
+	 */
+	public synchronized void update(Consumer<? super T> updater)
+	{
+		T copy=copier.apply(trie);
+		updater.accept(copy);
+		trie=copy;
+	}
+
+	/**
+	 * Publishes a new Trie. The given Trie must not be modified after published.
+	 * 
+	 * @param trie the new Trie.
+	 */
+	public synchronized void replace(T trie)
+	{
+		this.trie=trie;
+	}
+
+	@Override
+	public void insert(String word)
+	{
+		update(t -> t.insert(word));
+	}
+
+	@Override
+	public void delete(String word)
+	{
+		update(t -> t.delete(word));
+	}
+
+	@Override
+	public boolean contains(String word)
+	{
+		return trie.contains(word);
+	}
+
+	@Override
+	public List<String> matchPrefix(String prefix, List<String> resultList)
+	{
+		return trie.matchPrefix(prefix, resultList);
+	}
+
+	@Override
+	public boolean matchPrefix(CharSequence prefix, TrieVisitor visitor)
+	{
+		return trie.matchPrefix(prefix, visitor);
+	}
+
+	@Override
+	public List<String> getPrefixes(String word, List<String> resultList)
+	{
+		return trie.getPrefixes(word, resultList);
+	}
+
+	@Override
+	public boolean getPrefixes(CharSequence word, TrieVisitor visitor)
+	{
+		return trie.getPrefixes(word, visitor);
+	}
+
+	@Override
+	public List<Pair<String, Integer>> fuzzySearch(String query, int maxEdits, int limit)
+	{
+		return trie.fuzzySearch(query, maxEdits, limit);
+	}
+
+	@Override
+	public List<String> getSubWords(String word, List<String> resultList)
+	{
+		return trie.getSubWords(word, resultList);
+	}
+}
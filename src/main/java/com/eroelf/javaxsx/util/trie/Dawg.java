@@ -0,0 +1,621 @@
+package com.eroelf.javaxsx.util.trie;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import com.eroelf.javaxsx.util.io.MappedFileUtil;
+
+/**
+ * An immutable minimal acyclic automaton (DAWG) of words, which shares common suffixes as well as common prefixes, so it is much smaller than a Trie for words like product names and addresses.
+ * It is built incrementally from sorted words by the algorithm of Daciuk et al., which only keeps the path of the last word unminimized, so words can be streamed from a file.
+ * 
+ * <p>Every state holds the number of words accepted from it, so every word gets a dense id which equals its rank in the natural order of {@link String}, and {@link #getWord(int)} restores a word from its id, i.e. the automaton is a minimal perfect hash of the words.
+ * 
+ * <p>The automaton can be saved to a versioned binary file by {@link #saveToFile(String)}, and be served straight from the memory-mapped file by {@link #mapFromFile(String)}.
+ * 
+ * @author weikun.zhong
+ */
+public class Dawg implements Trie
+{
+	private static final long serialVersionUID=8810284683214170335L;
+
+	private static final int MAGIC=0x44415747;
+	private static final int VERSION=1;
+	private static final int HEADER_SIZE=24;
+
+	/**
+	 * The transitions of state {@code s} are {@code [stateIdx[s], stateIdx[s+1])}.
+	 */
+	private transient IntBuffer stateIdx;
+	/**
+	 * {@code count<<1 | final} of each state, where {@code count} is the number of words accepted from the state.
+	 */
+	private transient IntBuffer counts;
+	/**
+	 * The labels of transitions, ascending for each state.
+	 */
+	private transient CharBuffer labels;
+	private transient IntBuffer targets;
+	/**
+	 * The number of words accepted from the source state of each transition which are ordered before the words through the transition, so the id of a word is the sum of the ranks along its path.
+	 */
+	private transient IntBuffer ranks;
+	/**
+	 * States are numbered in the order they are minimized, so the root is the last one.
+	 */
+	private int root;
+	private int size;
+
+	/**
+	 * Constructs an automaton from the given words.
+	 * 
+	 * @param sortedWords distinct words in the natural order of {@link String}.
+	 * @return the built automaton.
+	 */
+	public static Dawg build(Iterable<? extends CharSequence> sortedWords)
+	{
+		Builder builder=new Builder();
+		for(CharSequence word : sortedWords)
+		{
+			builder.add(word);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Constructs an automaton from the given words.
+	 * 
+	 * @param sortedWords distinct words in the natural order of {@link String}.
+	 * @return the built automaton.
+	 */
+	public static Dawg build(String[] sortedWords)
+	{
+		return build(Arrays.asList(sortedWords));
+	}
+
+	private Dawg(int size, int root, IntBuffer stateIdx, IntBuffer counts, CharBuffer labels, IntBuffer targets, IntBuffer ranks)
+	{
+		this.size=size;
+		this.root=root;
+		this.stateIdx=stateIdx;
+		this.counts=counts;
+		this.labels=labels;
+		this.targets=targets;
+		this.ranks=ranks;
+	}
+
+	private boolean isFinal(int s)
+	{
+		return (counts.get(s)&1)!=0;
+	}
+
+	/**
+	 * Returns the transition of state {@code s} labeled {@code c}, or {@code -1} if absent.
+	 */
+	private int transition(int s, char c)
+	{
+		int lo=stateIdx.get(s);
+		int hi=stateIdx.get(s+1)-1;
+		while(lo<=hi)
+		{
+			int mid=(lo+hi)>>>1;
+			char label=labels.get(mid);
+			if(label<c)
+				lo=mid+1;
+			else if(label>c)
+				hi=mid-1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the number of words in this automaton.
+	 * 
+	 * @return the number of words.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the number of states, which is a measure of the memory used.
+	 * 
+	 * @return the number of states.
+	 */
+	public int stateCount()
+	{
+		return counts.limit();
+	}
+
+	/**
+	 * Returns the number of transitions, which is a measure of the memory used.
+	 * 
+	 * @return the number of transitions.
+	 */
+	public int transitionCount()
+	{
+		return targets.limit();
+	}
+
+	/**
+	 * Returns the id of the specified word, which is its rank in the natural order of {@link String} among all words in this automaton.
+	 * 
+	 * @param word the word.
+	 * @return the id of the word, or {@code -1} if the word is not in this automaton.
+	 */
+	public int getId(CharSequence word)
+	{
+		return word!=null ? getId(word, 0, word.length()) : -1;
+	}
+
+	/**
+	 * Returns the id of the word {@code text[begin, end)} without creating a substring.
+	 * 
+	 * @param text the text which contains the word.
+	 * @param begin the start offset of the word, inclusive.
+	 * @param end the end offset of the word, exclusive.
+	 * @return the id of the word, or {@code -1} if the word is not in this automaton.
+	 */
+	public int getId(CharSequence text, int begin, int end)
+	{
+		int s=root;
+		int id=0;
+		for(int i=begin; i<end; i++)
+		{
+			int t=transition(s, text.charAt(i));
+			if(t<0)
+				return -1;
+			id+=ranks.get(t);
+			s=targets.get(t);
+		}
+		return isFinal(s) ? id : -1;
+	}
+
+	/**
+	 * Returns the word of the specified id.
+	 * 
+	 * @param id the id in {@code [0, size())}.
+	 * @return the word.
+	 * @throws IndexOutOfBoundsException if the id is out of range.
+	 */
+	public String getWord(int id)
+	{
+		if(id<0 || id>=size)
+			throw new IndexOutOfBoundsException("Dawg::getWord: id "+id+" out of range [0, "+size+")!");
+		StringBuilder sb=new StringBuilder();
+		int s=root;
+		while(!isFinal(s) || id>0)
+		{
+			// the last transition whose rank is not greater than the id
+			int lo=stateIdx.get(s);
+			int hi=stateIdx.get(s+1)-1;
+			while(lo<hi)
+			{
+				int mid=(lo+hi+1)>>>1;
+				if(ranks.get(mid)<=id)
+					lo=mid;
+				else
+					hi=mid-1;
+			}
+			sb.append(labels.get(lo));
+			id-=ranks.get(lo);
+			s=targets.get(lo);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Finds the longest word which is a prefix of {@code text[offset, text.length())}.
+	 * The length and the id of the word are packed into one {@code long}, use {@link StaticDoubleArrayTrie#matchLength(long)} and {@link StaticDoubleArrayTrie#matchId(long)} to unpack it.
+	 * 
+	 * @param text the text to be matched.
+	 * @param offset the offset where the match starts.
+	 * @return the packed length and id of the longest matched word, or {@code -1} if none matches.
+	 */
+	public long longestPrefixMatch(CharSequence text, int offset)
+	{
+		long match=-1;
+		int s=root;
+		int id=0;
+		for(int i=offset; ; i++)
+		{
+			if(isFinal(s))
+				match=StaticDoubleArrayTrie.packMatch(i-offset, id);
+			if(i==text.length())
+				return match;
+			int t=transition(s, text.charAt(i));
+			if(t<0)
+				return match;
+			id+=ranks.get(t);
+			s=targets.get(t);
+		}
+	}
+
+	@Override
+	public void insert(String word)
+	{
+		throw new UnsupportedOperationException("Dawg::insert: this automaton is immutable!");
+	}
+
+	@Override
+	public void delete(String word)
+	{
+		throw new UnsupportedOperationException("Dawg::delete: this automaton is immutable!");
+	}
+
+	@Override
+	public boolean contains(String word)
+	{
+		if(word==null)
+			return false;
+		int s=root;
+		for(int i=0; i<word.length(); i++)
+		{
+			int t=transition(s, word.charAt(i));
+			if(t<0)
+				return false;
+			s=targets.get(t);
+		}
+		return isFinal(s);
+	}
+
+	@Override
+	public List<String> matchPrefix(String prefix, List<String> resultList)
+	{
+		matchPrefix(prefix, word -> {
+			resultList.add(word.toString());
+			return true;
+		});
+		return resultList;
+	}
+
+	@Override
+	public boolean matchPrefix(CharSequence prefix, TrieVisitor visitor)
+	{
+		if(prefix!=null)
+		{
+			int s=root;
+			for(int i=0; i<prefix.length(); i++)
+			{
+				int t=transition(s, prefix.charAt(i));
+				if(t<0)
+					return true;
+				s=targets.get(t);
+			}
+			return collect(s, new StringBuilder(prefix), visitor);
+		}
+		return true;
+	}
+
+	private boolean collect(int s, StringBuilder path, TrieVisitor visitor)
+	{
+		if(isFinal(s) && !visitor.visit(path))
+			return false;
+		int len=path.length();
+		for(int i=stateIdx.get(s); i<stateIdx.get(s+1); i++)
+		{
+			boolean res=collect(targets.get(i), path.append(labels.get(i)), visitor);
+			path.setLength(len);
+			if(!res)
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public List<String> getPrefixes(String word, List<String> resultList)
+	{
+		getPrefixes(word, prefix -> {
+			resultList.add(prefix.toString());
+			return true;
+		});
+		return resultList;
+	}
+
+	@Override
+	public boolean getPrefixes(CharSequence word, TrieVisitor visitor)
+	{
+		if(word!=null)
+		{
+			StringBuilder path=new StringBuilder();
+			int s=root;
+			for(int i=0; ; i++)
+			{
+				if(isFinal(s) && !visitor.visit(path))
+					return false;
+				if(i==word.length())
+					break;
+				int t=transition(s, word.charAt(i));
+				if(t<0)
+					break;
+				s=targets.get(t);
+				path.append(word.charAt(i));
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public List<Pair<String, Integer>> fuzzySearch(String query, int maxEdits, int limit)
+	{
+		if(query==null)
+			return new ArrayList<Pair<String, Integer>>();
+		FuzzySearcher searcher=new FuzzySearcher(query, maxEdits, limit);
+		fuzzySearch(root, searcher);
+		return searcher.results();
+	}
+
+	private void fuzzySearch(int s, FuzzySearcher searcher)
+	{
+		if(isFinal(s))
+			searcher.offer();
+		for(int i=stateIdx.get(s); i<stateIdx.get(s+1); i++)
+		{
+			if(searcher.push(labels.get(i)))
+				fuzzySearch(targets.get(i), searcher);
+			searcher.pop();
+		}
+	}
+
+	/**
+	 * Saves this automaton to a binary file which can be mapped by {@link #mapFromFile(String)}.
+	 * 
+	 * @param fileName the target file name.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void saveToFile(String fileName) throws IOException
+	{
+		try(FileChannel channel=FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			write(channel);
+		}
+	}
+
+	/**
+	 * Maps a file saved by {@link #saveToFile(String)} as a read-only automaton.
+	 * Nothing is loaded into the heap; all queries run against the mapped file.
+	 * 
+	 * @param fileName the file name.
+	 * @return the mapped automaton.
+	 * @throws IOException if the file is not a valid automaton file or an I/O error occurs.
+	 */
+	public static Dawg mapFromFile(String fileName) throws IOException
+	{
+		try(FileChannel channel=FileChannel.open(Paths.get(fileName), StandardOpenOption.READ))
+		{
+			return map(channel, 0);
+		}
+	}
+
+	/**
+	 * Writes this automaton at the current position of the channel.
+	 * 
+	 * @param channel the target channel.
+	 * @return the number of bytes written.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	long write(FileChannel channel) throws IOException
+	{
+		ByteBuffer header=MappedFileUtil.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(root).putInt(counts.limit()).putInt(targets.limit());
+		header.clear();
+		long len=MappedFileUtil.write(channel, header);
+		len+=MappedFileUtil.writeInts(channel, stateIdx);
+		len+=MappedFileUtil.writeInts(channel, counts);
+		len+=MappedFileUtil.writeInts(channel, targets);
+		len+=MappedFileUtil.writeInts(channel, ranks);
+		len+=MappedFileUtil.writeChars(channel, labels);
+		return len;
+	}
+
+	/**
+	 * Maps an automaton written by {@link #write(FileChannel)} at the given position of the channel.
+	 * 
+	 * @param channel the source channel.
+	 * @param position the position where the automaton starts.
+	 * @return the mapped automaton.
+	 * @throws IOException if the data is not a valid automaton or an I/O error occurs.
+	 */
+	static Dawg map(FileChannel channel, long position) throws IOException
+	{
+		ByteBuffer header=MappedFileUtil.map(channel, position, HEADER_SIZE);
+		if(header.getInt()!=MAGIC)
+			throw new IOException("Dawg::map: not a Dawg file!");
+		int version=header.getInt();
+		if(version>VERSION)
+			throw new IOException("Dawg::map: unsupported version "+version+"!");
+		int size=header.getInt();
+		int root=header.getInt();
+		int states=header.getInt();
+		int transitions=header.getInt();
+
+		long pos=position+HEADER_SIZE;
+		IntBuffer stateIdx=MappedFileUtil.mapInts(channel, pos, states+1);
+		pos+=MappedFileUtil.alignedLength((long)(states+1)*Integer.BYTES);
+		IntBuffer counts=MappedFileUtil.mapInts(channel, pos, states);
+		pos+=MappedFileUtil.alignedLength((long)states*Integer.BYTES);
+		IntBuffer targets=MappedFileUtil.mapInts(channel, pos, transitions);
+		pos+=MappedFileUtil.alignedLength((long)transitions*Integer.BYTES);
+		IntBuffer ranks=MappedFileUtil.mapInts(channel, pos, transitions);
+		pos+=MappedFileUtil.alignedLength((long)transitions*Integer.BYTES);
+		CharBuffer labels=MappedFileUtil.mapChars(channel, pos, transitions);
+		return new Dawg(size, root, stateIdx, counts, labels, targets, ranks);
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		out.defaultWriteObject();
+		out.writeObject(MappedFileUtil.toArray(stateIdx));
+		out.writeObject(MappedFileUtil.toArray(counts));
+		out.writeObject(MappedFileUtil.toArray(labels));
+		out.writeObject(MappedFileUtil.toArray(targets));
+		out.writeObject(MappedFileUtil.toArray(ranks));
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		stateIdx=IntBuffer.wrap((int[])in.readObject());
+		counts=IntBuffer.wrap((int[])in.readObject());
+		labels=CharBuffer.wrap((char[])in.readObject());
+		targets=IntBuffer.wrap((int[])in.readObject());
+		ranks=IntBuffer.wrap((int[])in.readObject());
+	}
+
+	/**
+	 * Builds the minimized automaton from sorted words.
+	 * The states on the path of the last added word are still open; when the next word diverges from the path, the open states below the divergence can not change any more, so each of them is replaced by an equivalent registered state or is registered itself, from the deepest one up.
+	 */
+	private static class Builder
+	{
+		/**
+		 * A state which may still get transitions. The target of its last transition is the next open state on the path.
+		 */
+		private static class OpenState
+		{
+			private boolean isFinal=false;
+			private StringBuilder labels=new StringBuilder();
+			private int[] targets=new int[4];
+
+			private void addTransition(char c)
+			{
+				if(labels.length()==targets.length)
+					targets=Arrays.copyOf(targets, targets.length*2);
+				labels.append(c);
+			}
+		}
+
+		/**
+		 * Registered states by their signature: the final flag followed by the label and the two halves of the target of every transition.
+		 */
+		private final Map<String, Integer> register=new HashMap<>();
+		private final List<OpenState> path=new ArrayList<>();
+		private final StringBuilder signature=new StringBuilder();
+		private String lastWord=null;
+		private int size=0;
+
+		private int[] stateIdx=new int[1024];
+		private int[] counts=new int[1024];
+		private int stateNum=0;
+		private char[] labels=new char[1024];
+		private int[] targets=new int[1024];
+		private int[] ranks=new int[1024];
+		private int transitionNum=0;
+
+		private Builder()
+		{
+			path.add(new OpenState());
+		}
+
+		private void add(CharSequence word)
+		{
+			String wordString=word.toString();
+			int common=0;
+			if(lastWord!=null)
+			{
+				if(lastWord.compareTo(wordString)>=0)
+					throw new IllegalArgumentException("Dawg::build: words must be distinct and sorted! Found '"+lastWord+"' before '"+wordString+"'.");
+				int len=Math.min(lastWord.length(), wordString.length());
+				while(common<len && lastWord.charAt(common)==wordString.charAt(common))
+				{
+					++common;
+				}
+			}
+			minimize(common);
+			for(int i=common; i<wordString.length(); i++)
+			{
+				path.get(i).addTransition(wordString.charAt(i));
+				path.add(new OpenState());
+			}
+			path.get(wordString.length()).isFinal=true;
+			lastWord=wordString;
+			++size;
+		}
+
+		/**
+		 * Closes the open states deeper than {@code depth}.
+		 */
+		private void minimize(int depth)
+		{
+			for(int d=path.size()-1; d>depth; d--)
+			{
+				OpenState parent=path.get(d-1);
+				parent.targets[parent.labels.length()-1]=close(path.remove(d));
+			}
+		}
+
+		private int close(OpenState state)
+		{
+			signature.setLength(0);
+			signature.append(state.isFinal ? '1' : '0');
+			int n=state.labels.length();
+			for(int i=0; i<n; i++)
+			{
+				int target=state.targets[i];
+				signature.append(state.labels.charAt(i)).append((char)(target>>>16)).append((char)target);
+			}
+			String key=signature.toString();
+			Integer registered=register.get(key);
+			if(registered!=null)
+				return registered;
+
+			int id=stateNum++;
+			if(stateNum+1>stateIdx.length)
+			{
+				stateIdx=Arrays.copyOf(stateIdx, stateIdx.length*2);
+				counts=Arrays.copyOf(counts, counts.length*2);
+			}
+			if(transitionNum+n>targets.length)
+			{
+				int newLength=Math.max(transitionNum+n, targets.length*2);
+				labels=Arrays.copyOf(labels, newLength);
+				targets=Arrays.copyOf(targets, newLength);
+				ranks=Arrays.copyOf(ranks, newLength);
+			}
+			stateIdx[id]=transitionNum;
+			long count=state.isFinal ? 1 : 0;
+			for(int i=0; i<n; i++)
+			{
+				labels[transitionNum]=state.labels.charAt(i);
+				targets[transitionNum]=state.targets[i];
+				ranks[transitionNum++]=(int)Math.min(count, Integer.MAX_VALUE);
+				count+=counts[state.targets[i]]>>>1;
+			}
+			if(count>Integer.MAX_VALUE>>>1)
+				throw new IllegalStateException("Dawg::build: too many words!");
+			counts[id]=(int)count<<1 | (state.isFinal ? 1 : 0);
+			register.put(key, id);
+			return id;
+		}
+
+		private Dawg build()
+		{
+			minimize(0);
+			int root=close(path.get(0));
+			stateIdx[stateNum]=transitionNum;
+			return new Dawg(size, root,
+					IntBuffer.wrap(Arrays.copyOf(stateIdx, stateNum+1)),
+					IntBuffer.wrap(Arrays.copyOf(counts, stateNum)),
+					CharBuffer.wrap(Arrays.copyOf(labels, transitionNum)),
+					IntBuffer.wrap(Arrays.copyOf(targets, transitionNum)),
+					IntBuffer.wrap(Arrays.copyOf(ranks, transitionNum)));
+		}
+	}
+}
@@ -5,10 +5,18 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import org.apache.commons.lang3.tuple.Pair;
 
 /**
  * A double-array Trie.
  * 
+ * <p>By default, the code of a character is its UTF-16 value, so the children of a node may spread over {@code 65536} cells.
+ * A Trie constructed with an alphabet remaps characters to dense codes instead, which keeps the arrays small and local for CJK words.
+ * In that mode words are visited in the order of the codes of their characters rather than in the natural order of {@link String}.
+ * 
  * @author weikun.zhong
  */
 public class DoubleArrayTrie implements Trie
@@ -16,6 +24,7 @@ public class DoubleArrayTrie implements Trie
 	private static final long serialVersionUID=5821768635376919780L;
 
 	private static final int DEFAULT_INITIAL_SIZE=Character.MAX_VALUE;
+	private static final int COMPACT_INITIAL_SIZE=1024;
 	private static final int DA_LIST_HEAD=0;
 	private static final int DA_POOL_HEAD=1;
 	private static final int DA_POOL_OFFSET=2;
@@ -27,7 +36,14 @@ public class DoubleArrayTrie implements Trie
 
 //	private Map<Character, Integer> charMap = new HashMap<Character, Integer>();
 //	private Set<Character> charSet = new HashSet<Character>();
+	/**
+	 * The character of each code {@code c} is {@code charList[c-1]}, only used with {@link #charCodes}.
+	 */
 	private List<Character> charList = new ArrayList<Character>();
+	/**
+	 * The code of each character, or {@code 0} if not assigned yet; {@code null} if the code of a character is its value.
+	 */
+	private char[] charCodes;
 
 	public DoubleArrayTrie()
 	{
@@ -48,6 +64,96 @@ public class DoubleArrayTrie implements Trie
 //		charList.add(null);
 	}
 
+	/**
+	 * Constructs an empty Trie which remaps characters to dense codes.
+	 * 
+	 * @param alphabet the expected characters, see {@link #DoubleArrayTrie(int, CharSequence)}.
+	 * 
+	 * @see #alphabetOf(Iterable)
+	 */
+	public DoubleArrayTrie(CharSequence alphabet)
+	{
+		this(COMPACT_INITIAL_SIZE, alphabet);
+	}
+
+	/**
+	 * Constructs an empty Trie which remaps characters to dense codes.
+	 * The characters of {@code alphabet} get codes {@code 1, 2, ...} in order, so it should list the expected characters by frequency descendingly; other characters get the next codes when first inserted.
+	 * 
+	 * @param initialSize the initial number of cells.
+	 * @param alphabet the expected characters, may be empty.
+	 * 
+	 * @see #alphabetOf(Iterable)
+	 */
+	public DoubleArrayTrie(int initialSize, CharSequence alphabet)
+	{
+		this(initialSize);
+		charCodes=new char[Character.MAX_VALUE+1];
+		for(int i=0; i<alphabet.length(); i++)
+		{
+			getAndAddCharCode(alphabet.charAt(i));
+		}
+	}
+
+	/**
+	 * Constructs a deep copy of the given Trie. The copy and the original can be modified independently.
+	 * 
+	 * @param other the Trie to be copied.
+	 */
+	public DoubleArrayTrie(DoubleArrayTrie other)
+	{
+		base=other.base.clone();
+		check=other.check.clone();
+		tail=other.tail.clone();
+		children=new StringBuilder[other.children.length];
+		for(int i=0; i<children.length; i++)
+		{
+			if(other.children[i]!=null)
+				children[i]=new StringBuilder(other.children[i]);
+		}
+		charList=new ArrayList<Character>(other.charList);
+		charCodes=other.charCodes!=null ? other.charCodes.clone() : null;
+	}
+
+	/**
+	 * Lists the distinct characters of the given words by frequency descendingly, as the alphabet of {@link #DoubleArrayTrie(CharSequence)}.
+	 * 
+	 * @param words the words, or a sample of them.
+	 * @return the alphabet.
+	 */
+	public static String alphabetOf(Iterable<? extends CharSequence> words)
+	{
+		return new String(StaticDoubleArrayTrie.alphabetOf(words));
+	}
+
+	/**
+	 * Constructs an immutable and compacted double-array Trie from the given words in one pass.
+	 * This is much faster and takes much less memory than inserting the words one by one, and is preferred for dictionaries which never change after loaded.
+	 * 
+	 * @param words the words to be contained.
+	 * @return the built Trie.
+	 * 
+	 * @see StaticDoubleArrayTrie#build(SortedSet)
+	 */
+	public static StaticDoubleArrayTrie build(SortedSet<String> words)
+	{
+		return StaticDoubleArrayTrie.build(words);
+	}
+
+	/**
+	 * Constructs an immutable and compacted double-array Trie with weights from the given words in one pass.
+	 * The built Trie supports finding the heaviest completions of a prefix by {@link StaticDoubleArrayTrie#topK(CharSequence, int)}.
+	 * 
+	 * @param weightedWords the words to be contained with their weights.
+	 * @return the built Trie.
+	 * 
+	 * @see StaticDoubleArrayTrie#build(SortedMap)
+	 */
+	public static StaticDoubleArrayTrie build(SortedMap<String, Long> weightedWords)
+	{
+		return StaticDoubleArrayTrie.build(weightedWords);
+	}
+
 	private void extendArray(int toLength)
 	{
 		if(toLength>base.length)
@@ -239,7 +345,7 @@ public class DoubleArrayTrie implements Trie
 		int baseValue=base[s];
 		int next;
 
-		if(baseValue>DA_LIST_HEAD)
+		if(baseValue>DA_LIST_HEAD && children[s]!=null)
 		{
 			next=baseValue+c;
 			
@@ -304,26 +410,32 @@ public class DoubleArrayTrie implements Trie
 
 	private int getAndAddCharCode(char c)
 	{
-//		if (!charMap.containsKey(c))
-//		{
-//			charMap.put(c, charMap.size()+1);
-//			charList.add(c);
-//		}
-//		return charMap.get(c);
-		int pos=Collections.binarySearch(charList, c);
-		if(pos<0)
-			charList.add(-pos-1, c);
-		return (int)c;
+		if(charCodes==null)
+			return (int)c;
+		int code=charCodes[c];
+		if(code==0)
+		{
+			if(charList.size()==Character.MAX_VALUE)
+				throw new IllegalStateException("DoubleArrayTrie::getAndAddCharCode: too many distinct characters!");
+			charList.add(c);
+			code=charList.size();
+			charCodes[c]=(char)code;
+		}
+		return code;
 	}
 
-//	private int getCharCode(char c)
-//	{
-//		if (charMap.containsKey(c))
-//		{
-//			return charMap.get(c);
-//		}
-//		return -1;
-//	}
+	/**
+	 * Returns the code of a character, or {@code 0} if the character has no code.
+	 */
+	private int getCharCode(char c)
+	{
+		return charCodes!=null ? charCodes[c] : (int)c;
+	}
+
+	private char getChar(int code)
+	{
+		return charCodes!=null ? charList.get(code-1) : (char)code;
+	}
 
 	@Override
 	public void insert(String word)
@@ -420,8 +532,7 @@ public class DoubleArrayTrie implements Trie
 			int i;
 			for(i=0; i<word.length(); i++)
 			{
-				//c=getCharCode(word.charAt(i));
-				c=(int)word.charAt(i);
+				c=getCharCode(word.charAt(i));
 				if(c>0)
 				{
 					int next=base[s]+c;
@@ -441,14 +552,14 @@ public class DoubleArrayTrie implements Trie
 				{
 					s=base[s]+(int)children[s].charAt(0);
 				}
-				if((tail[s]!=null && !tail[s].isEmpty()) || !hasChild(s))
+				if(s!=DA_POOL_HEAD && ((tail[s]!=null && !tail[s].isEmpty()) || !hasChild(s)))
 				{
 					StringBuilder theTail=new StringBuilder();
 					theTail.append(tail[s]);
 					int parent=check[s];
 					while(parent!=DA_POOL_HEAD && children[parent].length()==1 && tail[parent]==null)
 					{
-						char ch=(char)(s-base[parent]);
+						char ch=getChar(s-base[parent]);
 						theTail.insert(0, ch);
 						freeCell(s);
 						s=parent;
@@ -476,8 +587,7 @@ public class DoubleArrayTrie implements Trie
 			int i;
 			for(i=0; i<word.length(); i++)
 			{
-				//c=getCharCode(word.charAt(i));
-				c=(int)word.charAt(i);
+				c=getCharCode(word.charAt(i));
 				if(c>0)
 				{
 					int next=base[s]+c;
@@ -508,8 +618,7 @@ public class DoubleArrayTrie implements Trie
 			int i;
 			for(i=0; i<prefix.length(); i++)
 			{
-				//c=getCharCode(prefix.charAt(i));
-				c=(int)prefix.charAt(i);
+				c=getCharCode(prefix.charAt(i));
 				if(c>0)
 				{
 					int next=base[s]+c;
@@ -540,8 +649,7 @@ public class DoubleArrayTrie implements Trie
 					int parentC=cStack.peek();
 					--layerNum;
 					pos+=parentC;
-					//suffix.append(charList.get(parentC));
-					suffix.append((char)parentC);
+					suffix.append(getChar(parentC));
 					if(tail[pos]!=null)
 						resultList.add(prefix+suffix+tail[pos]);
 					if(hasChild(pos))
@@ -588,7 +696,7 @@ public class DoubleArrayTrie implements Trie
 			int i;
 			for(i=0; i<word.length(); i++)
 			{
-				c=(int)word.charAt(i);
+				c=getCharCode(word.charAt(i));
 				if(c>0)
 				{
 					int next=base[s]+c;
@@ -613,4 +721,131 @@ public class DoubleArrayTrie implements Trie
 		}
 		return resultList;
 	}
+
+	private static boolean regionMatches(CharSequence a, int aFrom, CharSequence b, int bFrom, int len)
+	{
+		for(int i=0; i<len; i++)
+		{
+			if(a.charAt(aFrom+i)!=b.charAt(bFrom+i))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean matchPrefix(CharSequence prefix, TrieVisitor visitor)
+	{
+		if(prefix!=null)
+		{
+			int s=DA_POOL_HEAD;
+			int i;
+			for(i=0; i<prefix.length(); i++)
+			{
+				int c=getCharCode(prefix.charAt(i));
+				if(c>0)
+				{
+					int next=base[s]+c;
+					if(next>DA_POOL_HEAD && next<check.length && check[next]==s)
+						s=next;
+					else
+						break;
+				}
+				else
+					break;
+			}
+			StringBuilder path=new StringBuilder(prefix);
+			if(i==prefix.length())
+				return collect(s, path, visitor);
+			int len=prefix.length()-i;
+			if(tail[s]!=null && tail[s].length()>=len && regionMatches(tail[s], 0, prefix, i, len))
+			{
+				path.setLength(i);
+				return visitor.visit(path.append(tail[s]));
+			}
+		}
+		return true;
+	}
+
+	private boolean collect(int s, StringBuilder path, TrieVisitor visitor)
+	{
+		int len=path.length();
+		if(tail[s]!=null)
+		{
+			boolean res=visitor.visit(path.append(tail[s]));
+			path.setLength(len);
+			if(!res)
+				return false;
+		}
+		if(children[s]!=null)
+		{
+			for(int i=0; i<children[s].length(); i++)
+			{
+				char c=children[s].charAt(i);
+				boolean res=collect(base[s]+c, path.append(getChar(c)), visitor);
+				path.setLength(len);
+				if(!res)
+					return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean getPrefixes(CharSequence word, TrieVisitor visitor)
+	{
+		if(word!=null)
+		{
+			StringBuilder path=new StringBuilder();
+			int s=DA_POOL_HEAD;
+			int i;
+			for(i=0; i<word.length(); i++)
+			{
+				int c=getCharCode(word.charAt(i));
+				if(c>0)
+				{
+					int next=base[s]+c;
+					if(next>DA_POOL_HEAD && next<check.length && check[next]==s)
+					{
+						if("".equals(tail[s]) && !visitor.visit(path))
+							return false;
+						s=next;
+						path.append(word.charAt(i));
+					}
+					else
+						break;
+				}
+				else
+					break;
+			}
+			if(tail[s]!=null && word.length()-i>=tail[s].length() && regionMatches(word, i, tail[s], 0, tail[s].length()))
+				return visitor.visit(path.append(tail[s]));
+		}
+		return true;
+	}
+
+	@Override
+	public List<Pair<String, Integer>> fuzzySearch(String query, int maxEdits, int limit)
+	{
+		if(query==null)
+			return new ArrayList<Pair<String, Integer>>();
+		FuzzySearcher searcher=new FuzzySearcher(query, maxEdits, limit);
+		fuzzySearch(DA_POOL_HEAD, searcher);
+		return searcher.results();
+	}
+
+	private void fuzzySearch(int s, FuzzySearcher searcher)
+	{
+		if(tail[s]!=null)
+			searcher.offer(tail[s], 0, tail[s].length());
+		if(children[s]!=null)
+		{
+			for(int i=0; i<children[s].length(); i++)
+			{
+				char c=children[s].charAt(i);
+				if(searcher.push(getChar(c)))
+					fuzzySearch(base[s]+c, searcher);
+				searcher.pop();
+			}
+		}
+	}
 }
@@ -0,0 +1,136 @@
+package com.eroelf.javaxsx.util.trie;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Advances the rows of the Levenshtein distance matrix against a query while a Trie is walked, one row per character of the current path.
+ * A subtree is pruned as soon as the minimum of the current row exceeds the threshold, since no word below can be closer.
+ * Keeps the best {@code limit} words ordered by the distance and then by the word, and tightens the threshold once {@code limit} words are found.
+ * 
+ * @author weikun.zhong
+ */
+final class FuzzySearcher
+{
+	static final Comparator<Pair<String, Integer>> ORDER=Comparator.comparing((Pair<String, Integer> p) -> p.getRight()).thenComparing(Pair::getLeft);
+
+	private final String query;
+	private final int maxEdits;
+	private final int limit;
+	private final int[][] rows;
+	private int depth=0;
+	private final StringBuilder path=new StringBuilder();
+	private final PriorityQueue<Pair<String, Integer>> heap=new PriorityQueue<>(ORDER.reversed());
+
+	/**
+	 * @param query the query word.
+	 * @param maxEdits the maximum Levenshtein distance.
+	 * @param limit the maximum number of results, non-positive values mean no limit.
+	 */
+	FuzzySearcher(String query, int maxEdits, int limit)
+	{
+		this.query=query;
+		this.maxEdits=maxEdits;
+		this.limit=limit>0 ? limit : Integer.MAX_VALUE;
+		rows=new int[query.length()+Math.max(maxEdits, 0)+2][];
+		rows[0]=new int[query.length()+1];
+		for(int j=0; j<rows[0].length; j++)
+		{
+			rows[0][j]=j;
+		}
+	}
+
+	private int threshold()
+	{
+		return heap.size()<limit ? maxEdits : heap.peek().getRight();
+	}
+
+	/**
+	 * Appends a character to the current path and computes its row.
+	 * Must be paired with {@link #pop()} whatever it returns.
+	 * 
+	 * @param c the character.
+	 * @return {@code true} if some word starting with the new path may be within the threshold.
+	 */
+	boolean push(char c)
+	{
+		int[] prev=rows[depth];
+		int[] cur=rows[depth+1];
+		if(cur==null)
+			cur=rows[depth+1]=new int[prev.length];
+		cur[0]=prev[0]+1;
+		int min=cur[0];
+		for(int j=1; j<cur.length; j++)
+		{
+			cur[j]=Math.min(Math.min(cur[j-1], prev[j])+1, prev[j-1]+(query.charAt(j-1)==c ? 0 : 1));
+			min=Math.min(min, cur[j]);
+		}
+		path.append(c);
+		++depth;
+		return min<=threshold();
+	}
+
+	void pop()
+	{
+		path.setLength(--depth);
+	}
+
+	/**
+	 * Offers the word of the current path.
+	 */
+	void offer()
+	{
+		int distance=rows[depth][query.length()];
+		if(distance<=maxEdits)
+		{
+			if(heap.size()<limit)
+				heap.add(Pair.of(path.toString(), distance));
+			else
+			{
+				Pair<String, Integer> candidate=Pair.of(path.toString(), distance);
+				if(ORDER.compare(candidate, heap.peek())<0)
+				{
+					heap.poll();
+					heap.add(candidate);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Offers the word of the current path followed by {@code tail[begin, end)}.
+	 */
+	void offer(CharSequence tail, int begin, int end)
+	{
+		int pushed=0;
+		boolean viable=true;
+		for(int i=begin; i<end && viable; i++)
+		{
+			viable=push(tail.charAt(i));
+			++pushed;
+		}
+		if(viable)
+			offer();
+		for(; pushed>0; pushed--)
+		{
+			pop();
+		}
+	}
+
+	/**
+	 * Returns the found words with their distances, ordered by the distance and then by the word.
+	 * 
+	 * @return the results.
+	 */
+	List<Pair<String, Integer>> results()
+	{
+		List<Pair<String, Integer>> resultList=new ArrayList<>(heap);
+		Collections.sort(resultList, ORDER);
+		return resultList;
+	}
+}
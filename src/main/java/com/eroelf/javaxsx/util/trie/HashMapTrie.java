@@ -1,5 +1,6 @@
 package com.eroelf.javaxsx.util.trie;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -7,6 +8,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
 
+import org.apache.commons.lang3.tuple.Pair;
+
 /**
  * An hash map Trie.
  * 
@@ -19,6 +22,23 @@ public class HashMapTrie implements Trie
 	private boolean isWord=false;
 	private Map<Character, HashMapTrie> children=new HashMap<Character, HashMapTrie>();
 
+	public HashMapTrie()
+	{}
+
+	/**
+	 * Constructs a deep copy of the given Trie. The copy and the original can be modified independently.
+	 * 
+	 * @param other the Trie to be copied.
+	 */
+	public HashMapTrie(HashMapTrie other)
+	{
+		isWord=other.isWord;
+		for(Entry<Character, HashMapTrie> entry : other.children.entrySet())
+		{
+			children.put(entry.getKey(), new HashMapTrie(entry.getValue()));
+		}
+	}
+
 	@Override
 	public void insert(String word)
 	{
@@ -148,4 +168,79 @@ public class HashMapTrie implements Trie
 		}
 		return resultList;
 	}
+
+	@Override
+	public boolean matchPrefix(CharSequence prefix, TrieVisitor visitor)
+	{
+		if(prefix!=null)
+		{
+			HashMapTrie currentNode=this;
+			for(int i=0; i<prefix.length(); i++)
+			{
+				currentNode=currentNode.children.get(prefix.charAt(i));
+				if(currentNode==null)
+					return true;
+			}
+			return currentNode.collect(new StringBuilder(prefix), visitor);
+		}
+		return true;
+	}
+
+	private boolean collect(StringBuilder path, TrieVisitor visitor)
+	{
+		if(isWord && !visitor.visit(path))
+			return false;
+		int len=path.length();
+		for(Entry<Character, HashMapTrie> entry : children.entrySet())
+		{
+			boolean res=entry.getValue().collect(path.append(entry.getKey().charValue()), visitor);
+			path.setLength(len);
+			if(!res)
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean getPrefixes(CharSequence word, TrieVisitor visitor)
+	{
+		if(word!=null)
+		{
+			StringBuilder path=new StringBuilder();
+			HashMapTrie currentNode=this;
+			for(int i=0; i<word.length(); i++)
+			{
+				char c=word.charAt(i);
+				currentNode=currentNode.children.get(c);
+				if(currentNode==null)
+					break;
+				path.append(c);
+				if(currentNode.isWord && !visitor.visit(path))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public List<Pair<String, Integer>> fuzzySearch(String query, int maxEdits, int limit)
+	{
+		if(query==null)
+			return new ArrayList<Pair<String, Integer>>();
+		FuzzySearcher searcher=new FuzzySearcher(query, maxEdits, limit);
+		fuzzySearch(searcher);
+		return searcher.results();
+	}
+
+	private void fuzzySearch(FuzzySearcher searcher)
+	{
+		if(isWord)
+			searcher.offer();
+		for(Entry<Character, HashMapTrie> entry : children.entrySet())
+		{
+			if(searcher.push(entry.getKey()))
+				entry.getValue().fuzzySearch(searcher);
+			searcher.pop();
+		}
+	}
 }
@@ -3,6 +3,7 @@ package com.eroelf.javaxsx.util.trie;
 import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -10,8 +11,17 @@ import java.io.Serializable;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -20,13 +30,21 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
+import java.util.function.IntUnaryOperator;
+
+import org.apache.commons.lang3.tuple.Pair;
 
 import com.eroelf.javaxsx.util.StdLoggers;
+import com.eroelf.javaxsx.util.io.MappedFileUtil;
 
 /**
  * An class used to split data into specified number of Tries.
@@ -37,10 +55,18 @@ public class IndexedTrie implements Serializable
 {
 	private static final long serialVersionUID=6187718942527593011L;
 
+	private static final int MAGIC=0x49445854;
+	private static final int VERSION=1;
+	private static final int HEADER_SIZE=24;
+
+	private static final int READ_BUFFER_SIZE=1<<20;
+	private static final int RANGES_PER_THREAD=4;
+	private static final long MIN_RANGE_SIZE=1<<20;
+
 	private Trie[] tries;
 	private int[][] indeses=new int[(int)Character.MAX_VALUE+1][];
 	private int avgTireSize;
-	private BiConsumer<? super Exception, String> loggerFunc;
+	private transient BiConsumer<? super Exception, String> loggerFunc;
 
 	public <T extends Trie> IndexedTrie(Class<T> trieClass) throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
 	{
@@ -79,9 +105,17 @@ public class IndexedTrie implements Serializable
 		}
 	}
 
-	private char getFirstCharacter(String s)
+	private IndexedTrie(Trie[] tries, int[][] indeses, int avgTireSize, BiConsumer<? super Exception, String> loggerFunc)
 	{
-		return s.isEmpty() ? Character.MIN_VALUE : s.charAt(0);
+		setLoggerFunc(loggerFunc);
+		this.tries=tries;
+		this.indeses=indeses;
+		this.avgTireSize=avgTireSize;
+	}
+
+	private char getFirstCharacter(CharSequence s)
+	{
+		return s.length()==0 ? Character.MIN_VALUE : s.charAt(0);
 	}
 
 	private void constructIndeses(String fileNameString, int fieldIdx, int residueThreshold)
@@ -117,7 +151,12 @@ public class IndexedTrie implements Serializable
 		{
 			loggerFunc.accept(e, null);
 		}
-		avgTireSize=(int)Math.ceil((double)avgTireSize/(double)tries.length);
+		constructIndeses(numMap, avgTireSize, residueThreshold, fileNameString);
+	}
+
+	private void constructIndeses(Map<Character, Integer> numMap, int wordNum, int residueThreshold, String fileNameString)
+	{
+		avgTireSize=(int)Math.ceil((double)wordNum/(double)tries.length);
 		if(residueThreshold<0)
 			residueThreshold=0;
 		else if(residueThreshold>avgTireSize)
@@ -205,6 +244,60 @@ public class IndexedTrie implements Serializable
 		loggerFunc.accept(null, "Indeses constructed.");
 	}
 
+	@FunctionalInterface
+	private static interface RoutedWordConsumer
+	{
+		public void accept(int trieIdx, String word) throws Exception;
+	}
+
+	/**
+	 * Reads the distinct words from a sorted file and dispatches each of them to the Trie index determined by {@link #indeses}.
+	 */
+	private void route(String fileNameString, int fieldIdx, String callerName, RoutedWordConsumer consumer) throws Exception
+	{
+		try(BufferedReader br=new BufferedReader(new InputStreamReader(new FileInputStream(fileNameString), "utf-8")))
+		{
+			String line;
+			String lastfield=null;
+			int lastFirstCharIntValue=Integer.MAX_VALUE;
+			int count=0;
+			int[] idxArray=null;
+			int charIdx=0;
+			int charSize=0;
+			while((line=br.readLine())!=null)
+			{
+				String field=fieldIdx>=0 ? line.split("\t")[fieldIdx] : line;
+				if(++count%100000==0)
+					loggerFunc.accept(null, callerName+"::count="+count);
+				if(!field.equals(lastfield))
+				{
+					lastfield=field;
+					char firstChar=getFirstCharacter(field);
+					if(firstChar!=lastFirstCharIntValue)
+					{
+						lastFirstCharIntValue=firstChar;
+						if(indeses[(int)getFirstCharacter(field)]==null)
+						{
+							int idx=(int)firstChar%tries.length;
+							indeses[(int)firstChar]=new int[1];
+							indeses[(int)firstChar][0]=idx;
+							loggerFunc.accept(null, callerName+"::Unindexed first character: "+getFirstCharacter(field)+", set to "+idx+".");
+						}
+						idxArray=indeses[(int)firstChar];
+						charIdx=0;
+						charSize=0;
+					}
+					consumer.accept(idxArray[charIdx], field);
+					if(++charSize>=avgTireSize && charIdx<idxArray.length-1)
+					{
+						++charIdx;
+						charSize=0;
+					}
+				}
+			}
+		}
+	}
+
 	public void batchAdd(String fileNameString, int fieldIdx, int residueThreshold)
 	{
 		constructIndeses(fileNameString, fieldIdx, residueThreshold);
@@ -267,46 +360,9 @@ public class IndexedTrie implements Serializable
 				es.execute(inserters[i]);
 			}
 
-			try(BufferedReader br=new BufferedReader(new InputStreamReader(new FileInputStream(fileNameString), "utf-8")))
+			try
 			{
-				String line;
-				String lastfield=null;
-				int lastFirstCharIntValue=Integer.MAX_VALUE;
-				int count=0;
-				int[] idxArray=null;
-				int charIdx=0;
-				int charSize=0;
-				while((line=br.readLine())!=null)
-				{
-					String field=fieldIdx>=0 ? line.split("\t")[fieldIdx] : line;
-					if(++count%100000==0)
-						loggerFunc.accept(null, "batchAdd::count="+count);
-					if(!field.equals(lastfield))
-					{
-						lastfield=field;
-						char firstChar=getFirstCharacter(field);
-						if(firstChar!=lastFirstCharIntValue)
-						{
-							lastFirstCharIntValue=firstChar;
-							if(indeses[(int)getFirstCharacter(field)]==null)
-							{
-								int idx=(int)firstChar%tries.length;
-								indeses[(int)firstChar]=new int[1];
-								indeses[(int)firstChar][0]=idx;
-								loggerFunc.accept(null, "batchAdd::Unindexed first character: "+getFirstCharacter(field)+", set to "+idx+".");
-							}
-							idxArray=indeses[(int)firstChar];
-							charIdx=0;
-							charSize=0;
-						}
-						inserters[idxArray[charIdx]].insertWord(field);
-						if(++charSize>=avgTireSize && charIdx<idxArray.length-1)
-						{
-							++charIdx;
-							charSize=0;
-						}
-					}
-				}
+				route(fileNameString, fieldIdx, "batchAdd", (idx, field) -> inserters[idx].insertWord(field));
 			}
 			finally
 			{
@@ -323,6 +379,347 @@ public class IndexedTrie implements Serializable
 		}
 	}
 
+	/**
+	 * Words and weights parsed from one byte range of the input file.
+	 */
+	private static class ParsedRange
+	{
+		private List<String> words=new ArrayList<String>();
+		private long[] weights;
+		private int[] charCounts=new int[(int)Character.MAX_VALUE+1];
+		/**
+		 * Word indexes ordered by the target Trie, the words of Trie {@code i} are at {@code order[trieStart[i], trieStart[i+1])}.
+		 */
+		private int[] order;
+		private int[] trieStart;
+
+		private ParsedRange(boolean weighted)
+		{
+			weights=weighted ? new long[1024] : null;
+		}
+
+		private void add(String word, long weight)
+		{
+			if(weights!=null)
+			{
+				if(words.size()==weights.length)
+					weights=Arrays.copyOf(weights, weights.length*2);
+				weights[words.size()]=weight;
+			}
+			words.add(word);
+			++charCounts[word.isEmpty() ? Character.MIN_VALUE : word.charAt(0)];
+		}
+	}
+
+	/**
+	 * Replaces all Tries by {@link StaticDoubleArrayTrie}s built from a sorted file, with the same division as {@link #batchAdd(String, int, int)}.
+	 * Uses as many threads as available processors.
+	 * 
+	 * @param fileNameString the file sorted by the word field.
+	 * @param fieldIdx the index of the word field in the tab-separated lines, or a negative value if the whole line is the word.
+	 * @param weightIdx the index of the weight field in the tab-separated lines, or a negative value to build Tries without weights.
+	 * @param residueThreshold same as {@link #batchAdd(String, int, int)}.
+	 * 
+	 * @see #batchBuild(String, int, int, int, int)
+	 */
+	public void batchBuild(String fileNameString, int fieldIdx, int weightIdx, int residueThreshold)
+	{
+		batchBuild(fileNameString, fieldIdx, weightIdx, residueThreshold, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Replaces all Tries by {@link StaticDoubleArrayTrie}s built from a sorted file, with the same division as {@link #batchAdd(String, int, int)}.
+	 * The file is read only once: it is split into byte ranges which are parsed in parallel without regular expressions, the parsed words are then partitioned into per-Trie batches, and all Tries are built in parallel from their batches.
+	 * 
+	 * @param fileNameString the UTF-8 file sorted by the word field.
+	 * @param fieldIdx the index of the word field in the tab-separated lines, or a negative value if the whole line is the word.
+	 * @param weightIdx the index of the weight field in the tab-separated lines, or a negative value to build Tries without weights.
+	 * @param residueThreshold same as {@link #batchAdd(String, int, int)}.
+	 * @param threadNum the number of threads.
+	 */
+	public void batchBuild(String fileNameString, int fieldIdx, int weightIdx, int residueThreshold, int threadNum)
+	{
+		ExecutorService es=Executors.newFixedThreadPool(Math.max(threadNum, 1));
+		try
+		{
+			long fileSize=Files.size(Paths.get(fileNameString));
+			int rangeNum=(int)Math.max(1, Math.min((long)Math.max(threadNum, 1)*RANGES_PER_THREAD, fileSize/MIN_RANGE_SIZE));
+			List<Callable<ParsedRange>> parsers=new ArrayList<>(rangeNum);
+			for(int i=0; i<rangeNum; i++)
+			{
+				long begin=fileSize*i/rangeNum;
+				long end=fileSize*(i+1)/rangeNum;
+				parsers.add(() -> parseRange(fileNameString, begin, end, fieldIdx, weightIdx));
+			}
+			List<Future<ParsedRange>> parsed=es.invokeAll(parsers);
+			ParsedRange[] ranges=new ParsedRange[rangeNum];
+			int wordNum=0;
+			for(int i=0; i<rangeNum; i++)
+			{
+				ranges[i]=parsed.get(i).get();
+				wordNum+=ranges[i].words.size();
+			}
+			loggerFunc.accept(null, "batchBuild::"+wordNum+" records parsed from "+rangeNum+" ranges.");
+
+			int[] charCounts=new int[(int)Character.MAX_VALUE+1];
+			int[][] charOffsets=new int[rangeNum][];
+			for(int i=0; i<rangeNum; i++)
+			{
+				charOffsets[i]=charCounts.clone();
+				for(int c=0; c<charCounts.length; c++)
+				{
+					charCounts[c]+=ranges[i].charCounts[c];
+				}
+				ranges[i].charCounts=null;
+			}
+			Map<Character, Integer> numMap=new HashMap<Character, Integer>();
+			for(int c=0; c<charCounts.length; c++)
+			{
+				if(charCounts[c]>0)
+					numMap.put((char)c, charCounts[c]);
+			}
+			indeses=new int[(int)Character.MAX_VALUE+1][];
+			constructIndeses(numMap, wordNum, residueThreshold, fileNameString);
+
+			List<Future<?>> futures=new ArrayList<>(rangeNum);
+			for(int i=0; i<rangeNum; i++)
+			{
+				ParsedRange range=ranges[i];
+				int[] offsets=charOffsets[i];
+				futures.add(es.submit(() -> partition(range, offsets)));
+			}
+			for(Future<?> future : futures)
+			{
+				future.get();
+			}
+
+			List<Future<StaticDoubleArrayTrie>> builders=new ArrayList<>(tries.length);
+			for(int i=0; i<tries.length; i++)
+			{
+				int trieIdx=i;
+				builders.add(es.submit(() -> buildTrie(ranges, trieIdx)));
+			}
+			Trie[] newTries=new Trie[tries.length];
+			for(int i=0; i<newTries.length; i++)
+			{
+				newTries[i]=builders.get(i).get();
+				loggerFunc.accept(null, String.format("batchBuild::Trie % 4d built with %d records.", i, ((StaticDoubleArrayTrie)newTries[i]).size()));
+			}
+			tries=newTries;
+			loggerFunc.accept(null, "batchBuild finished.");
+		}
+		catch(Exception e)
+		{
+			loggerFunc.accept(e, null);
+		}
+		finally
+		{
+			es.shutdown();
+		}
+	}
+
+	/**
+	 * Parses the lines which start in {@code [begin, end)} of the file. Consecutive duplicated words are skipped.
+	 */
+	private static ParsedRange parseRange(String fileNameString, long begin, long end, int fieldIdx, int weightIdx) throws IOException
+	{
+		ParsedRange range=new ParsedRange(weightIdx>=0);
+		try(FileChannel channel=FileChannel.open(Paths.get(fileNameString), StandardOpenOption.READ))
+		{
+			byte[] buf=new byte[READ_BUFFER_SIZE];
+			long bufPos=begin>0 ? begin-1 : 0;
+			boolean skipping=begin>0;
+			int filled=0;
+			int lineStart=0;
+			int scanned=0;
+			boolean eof=false;
+			String lastWord=null;
+			channel.position(bufPos);
+			while(true)
+			{
+				for(; scanned<filled; scanned++)
+				{
+					if(buf[scanned]=='\n')
+					{
+						if(skipping)
+							skipping=false;
+						else if(bufPos+lineStart>=end)
+							return range;
+						else
+							lastWord=parseLine(buf, lineStart, scanned, fieldIdx, weightIdx, lastWord, range);
+						lineStart=scanned+1;
+					}
+				}
+				if(eof)
+				{
+					if(!skipping && lineStart<filled && bufPos+lineStart<end)
+						parseLine(buf, lineStart, filled, fieldIdx, weightIdx, lastWord, range);
+					return range;
+				}
+
+				if(lineStart>0)
+				{
+					System.arraycopy(buf, lineStart, buf, 0, filled-lineStart);
+					bufPos+=lineStart;
+					filled-=lineStart;
+					scanned-=lineStart;
+					lineStart=0;
+				}
+				else if(filled==buf.length)
+					buf=Arrays.copyOf(buf, buf.length*2);
+				int n=channel.read(ByteBuffer.wrap(buf, filled, buf.length-filled));
+				if(n<0)
+					eof=true;
+				else
+					filled+=n;
+			}
+		}
+	}
+
+	private static String parseLine(byte[] buf, int begin, int end, int fieldIdx, int weightIdx, String lastWord, ParsedRange range) throws IOException
+	{
+		if(end>begin && buf[end-1]=='\r')
+			--end;
+		int wordBegin=fieldIdx>=0 ? -1 : begin;
+		int wordEnd=end;
+		int weightBegin=-1;
+		int weightEnd=-1;
+		if(fieldIdx>=0 || weightIdx>=0)
+		{
+			for(int i=begin, field=0, fieldBegin=begin; ; i++)
+			{
+				if(i==end || buf[i]=='\t')
+				{
+					if(field==fieldIdx)
+					{
+						wordBegin=fieldBegin;
+						wordEnd=i;
+					}
+					if(field==weightIdx)
+					{
+						weightBegin=fieldBegin;
+						weightEnd=i;
+					}
+					if(i==end)
+						break;
+					++field;
+					fieldBegin=i+1;
+				}
+			}
+			if(wordBegin<0 || (weightIdx>=0 && weightBegin<0))
+				throw new IOException("IndexedTrie::parseLine: missing fields in line: "+new String(buf, begin, end-begin, StandardCharsets.UTF_8));
+		}
+		String word=new String(buf, wordBegin, wordEnd-wordBegin, StandardCharsets.UTF_8);
+		if(!word.equals(lastWord))
+			range.add(word, weightIdx>=0 ? parseLong(buf, weightBegin, weightEnd) : 0);
+		return word;
+	}
+
+	private static long parseLong(byte[] buf, int begin, int end)
+	{
+		boolean negative=begin<end && buf[begin]=='-';
+		int i=negative || (begin<end && buf[begin]=='+') ? begin+1 : begin;
+		if(i==end)
+			throw new NumberFormatException("IndexedTrie::parseLong: invalid number: "+new String(buf, begin, end-begin, StandardCharsets.UTF_8));
+		long value=0;
+		for(; i<end; i++)
+		{
+			int digit=buf[i]-'0';
+			if(digit<0 || digit>9)
+				throw new NumberFormatException("IndexedTrie::parseLong: invalid number: "+new String(buf, begin, end-begin, StandardCharsets.UTF_8));
+			value=value*10+digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Assigns every word of the range to a Trie the same way as {@link #route(String, int, String, RoutedWordConsumer)}, given the number of words with each first character in the preceding ranges.
+	 */
+	private void partition(ParsedRange range, int[] charOffsets)
+	{
+		int[] trieOf=new int[range.words.size()];
+		int[] trieCounts=new int[tries.length];
+		for(int i=0; i<trieOf.length; i++)
+		{
+			char c=getFirstCharacter(range.words.get(i));
+			int[] idxArray=indeses[(int)c];
+			trieOf[i]=idxArray[Math.min(charOffsets[c]++/avgTireSize, idxArray.length-1)];
+			++trieCounts[trieOf[i]];
+		}
+		range.trieStart=new int[tries.length+1];
+		for(int i=0; i<tries.length; i++)
+		{
+			range.trieStart[i+1]=range.trieStart[i]+trieCounts[i];
+		}
+		int[] next=Arrays.copyOf(range.trieStart, tries.length);
+		range.order=new int[trieOf.length];
+		for(int i=0; i<trieOf.length; i++)
+		{
+			range.order[next[trieOf[i]]++]=i;
+		}
+	}
+
+	/**
+	 * Gathers the batch of a Trie from all ranges, sorts it if needed, removes duplicates, and builds the Trie.
+	 */
+	private static StaticDoubleArrayTrie buildTrie(ParsedRange[] ranges, int trieIdx)
+	{
+		int n=0;
+		for(ParsedRange range : ranges)
+		{
+			n+=range.trieStart[trieIdx+1]-range.trieStart[trieIdx];
+		}
+		boolean weighted=ranges[0].weights!=null;
+		String[] words=new String[n];
+		long[] weights=weighted ? new long[n] : null;
+		int k=0;
+		for(ParsedRange range : ranges)
+		{
+			for(int i=range.trieStart[trieIdx]; i<range.trieStart[trieIdx+1]; i++)
+			{
+				int idx=range.order[i];
+				words[k]=range.words.get(idx);
+				if(weighted)
+					weights[k]=range.weights[idx];
+				++k;
+			}
+		}
+
+		boolean sorted=true;
+		for(int i=1; i<n && sorted; i++)
+		{
+			sorted=words[i-1].compareTo(words[i])<0;
+		}
+		if(!sorted)
+		{
+			Integer[] order=new Integer[n];
+			for(int i=0; i<n; i++)
+			{
+				order[i]=i;
+			}
+			String[] unsortedWords=words;
+			Arrays.sort(order, (i1, i2) -> unsortedWords[i1].compareTo(unsortedWords[i2]));
+			words=new String[n];
+			long[] unsortedWeights=weights;
+			weights=weighted ? new long[n] : null;
+			k=0;
+			for(int i=0; i<n; i++)
+			{
+				String word=unsortedWords[order[i]];
+				if(k==0 || !word.equals(words[k-1]))
+				{
+					words[k]=word;
+					if(weighted)
+						weights[k]=unsortedWeights[order[i]];
+					++k;
+				}
+			}
+			words=Arrays.copyOf(words, k);
+			weights=weighted ? Arrays.copyOf(weights, k) : null;
+		}
+		return weighted ? StaticDoubleArrayTrie.build(words, weights) : StaticDoubleArrayTrie.build(words);
+	}
+
 	public boolean contains(String text)
 	{
 		int[] idxArray=indeses[(int)getFirstCharacter(text)];
@@ -396,6 +793,416 @@ public class IndexedTrie implements Serializable
 		}
 	}
 
+	/**
+	 * Visits all words which have the same specified prefix without materializing them.
+	 * 
+	 * @param text the specified prefix.
+	 * @param visitor receives the found words, and can stop the traversal by returning {@code false}.
+	 * @return {@code true} if all found words have been visited, {@code false} if the traversal was stopped by the visitor.
+	 * 
+	 * @see Trie#matchPrefix(CharSequence, TrieVisitor)
+	 */
+	public boolean matchPrefix(CharSequence text, TrieVisitor visitor)
+	{
+		int[] idxArray=indeses[(int)getFirstCharacter(text)];
+		if(idxArray!=null)
+		{
+			for(int idx : idxArray)
+			{
+				if(!tries[idx].matchPrefix(text, visitor))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Visits at most {@code limit} words which have the same specified prefix.
+	 * 
+	 * @param text the specified prefix.
+	 * @param limit the maximum number of words to visit, non-positive values mean no limit.
+	 * @param visitor receives the found words, and can stop the traversal by returning {@code false}.
+	 * @return {@code true} if all found words have been visited, {@code false} if the traversal was stopped by the limit or the visitor.
+	 */
+	public boolean matchPrefix(CharSequence text, int limit, TrieVisitor visitor)
+	{
+		return matchPrefix(text, TrieVisitor.limited(limit, visitor));
+	}
+
+	/**
+	 * Visits all words which can be a prefix of the specified word.
+	 * Except the empty word, all such words start with the same character as the specified word, so only the Tries of that character are involved,
+	 * and the Tries of the empty word are checked for the empty word only.
+	 * 
+	 * @param word the specified word.
+	 * @param visitor receives the found words, and can stop the traversal by returning {@code false}.
+	 * @return {@code true} if all found words have been visited, {@code false} if the traversal was stopped by the visitor.
+	 * 
+	 * @see Trie#getPrefixes(CharSequence, TrieVisitor)
+	 */
+	public boolean getPrefixes(CharSequence word, TrieVisitor visitor)
+	{
+		int[] idxArray=indeses[(int)getFirstCharacter(word)];
+		int[] emptyIdxArray=indeses[(int)Character.MIN_VALUE];
+		if(emptyIdxArray!=null && emptyIdxArray!=idxArray)
+		{
+			for(int idx : emptyIdxArray)
+			{
+				// a Trie shared with the first character of the word is visited below
+				if(!contains(idxArray, idx) && !tries[idx].getPrefixes("", visitor))
+					return false;
+			}
+		}
+		if(idxArray!=null)
+		{
+			for(int idx : idxArray)
+			{
+				if(!tries[idx].getPrefixes(word, visitor))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean contains(int[] idxArray, int idx)
+	{
+		if(idxArray!=null)
+		{
+			for(int i : idxArray)
+			{
+				if(i==idx)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the {@code k} heaviest words which have the specified prefix, ordered by the weight descendingly.
+	 * The candidates of every Trie the prefix may fall in are merged by a heap.
+	 * 
+	 * @param prefix the specified prefix.
+	 * @param k the maximum number of words to find.
+	 * @return the found words with their weights.
+	 * @throws UnsupportedOperationException if any involved Trie is not a {@link StaticDoubleArrayTrie} with weights.
+	 * 
+	 * @see StaticDoubleArrayTrie#topK(CharSequence, int)
+	 */
+	public List<Pair<String, Long>> topK(CharSequence prefix, int k)
+	{
+		if(prefix==null || k<=0)
+			return new ArrayList<Pair<String, Long>>();
+		int[] idxArray=indeses[(int)getFirstCharacter(prefix)];
+		if(idxArray==null)
+			return new ArrayList<Pair<String, Long>>();
+
+		List<List<Pair<String, Long>>> candidates=new ArrayList<>(idxArray.length);
+		for(int idx : idxArray)
+		{
+			if(!(tries[idx] instanceof StaticDoubleArrayTrie) || !((StaticDoubleArrayTrie)tries[idx]).isWeighted())
+				throw new UnsupportedOperationException("IndexedTrie::topK: Trie "+idx+" is not a StaticDoubleArrayTrie with weights!");
+			candidates.add(((StaticDoubleArrayTrie)tries[idx]).topK(prefix, k));
+		}
+		if(candidates.size()==1)
+			return candidates.get(0);
+
+		PriorityQueue<int[]> heap=new PriorityQueue<int[]>(candidates.size(), (c1, c2) -> Long.compare(candidates.get(c2[0]).get(c2[1]).getRight(), candidates.get(c1[0]).get(c1[1]).getRight()));
+		for(int i=0; i<candidates.size(); i++)
+		{
+			if(!candidates.get(i).isEmpty())
+				heap.add(new int[] {i, 0});
+		}
+		List<Pair<String, Long>> resultList=new ArrayList<>(k);
+		while(!heap.isEmpty() && resultList.size()<k)
+		{
+			int[] cursor=heap.poll();
+			List<Pair<String, Long>> list=candidates.get(cursor[0]);
+			resultList.add(list.get(cursor[1]));
+			if(++cursor[1]<list.size())
+				heap.add(cursor);
+		}
+		return resultList;
+	}
+
+	/**
+	 * Finds the words within the specified Levenshtein distance to the query.
+	 * Since an edit may change the first character, all Tries are searched and their results are merged.
+	 * 
+	 * @param query the query word.
+	 * @param maxEdits the maximum Levenshtein distance.
+	 * @param limit the maximum number of words to find, non-positive values mean no limit.
+	 * @return the closest words with their distances, ordered by the distance and then by the word.
+	 * 
+	 * @see Trie#fuzzySearch(String, int, int)
+	 */
+	public List<Pair<String, Integer>> fuzzySearch(String query, int maxEdits, int limit)
+	{
+		List<Pair<String, Integer>> resultList=new ArrayList<>();
+		for(Trie trie : tries)
+		{
+			resultList.addAll(trie.fuzzySearch(query, maxEdits, limit));
+		}
+		Collections.sort(resultList, FuzzySearcher.ORDER);
+		return limit>0 && resultList.size()>limit ? new ArrayList<>(resultList.subList(0, limit)) : resultList;
+	}
+
+	/**
+	 * The positions of a batch grouped by the Tries they fall in.
+	 * The entries of Trie {@code i} are {@code [start[i], start[i+1])}, and every entry is the position of a key in the batch.
+	 * A key whose first character is indexed by several Tries has one entry for each of them.
+	 */
+	private static class ShardGroups
+	{
+		private final int[] start;
+		private final int[] entries;
+
+		private ShardGroups(int[] start, int[] entries)
+		{
+			this.start=start;
+			this.entries=entries;
+		}
+	}
+
+	@FunctionalInterface
+	private static interface ShardTask
+	{
+		public void run(Trie trie, int from, int to);
+	}
+
+	/**
+	 * Groups the positions of a batch by a counting sort on the Tries their first characters fall in, so that every Trie is probed by one tight loop.
+	 * 
+	 * @param n the size of the batch.
+	 * @param firstChar gives the first character of the key at a position, or {@code -1} if the key falls in no Trie.
+	 */
+	private ShardGroups group(int n, IntUnaryOperator firstChar)
+	{
+		int[] start=new int[tries.length+1];
+		for(int i=0; i<n; i++)
+		{
+			int c=firstChar.applyAsInt(i);
+			int[] idxArray=c>=0 ? indeses[c] : null;
+			if(idxArray!=null)
+			{
+				for(int idx : idxArray)
+				{
+					++start[idx+1];
+				}
+			}
+		}
+		for(int i=0; i<tries.length; i++)
+		{
+			start[i+1]+=start[i];
+		}
+		int[] entries=new int[start[tries.length]];
+		int[] next=Arrays.copyOf(start, tries.length);
+		for(int i=0; i<n; i++)
+		{
+			int c=firstChar.applyAsInt(i);
+			int[] idxArray=c>=0 ? indeses[c] : null;
+			if(idxArray!=null)
+			{
+				for(int idx : idxArray)
+				{
+					entries[next[idx]++]=i;
+				}
+			}
+		}
+		return new ShardGroups(start, entries);
+	}
+
+	/**
+	 * Runs the task on the entries of every non-empty group, in the calling thread if {@code executor} is {@code null}, or one task per group on the executor.
+	 * Tasks on different groups write only the slots of their own entries, so they need no synchronization.
+	 */
+	private void forEachGroup(ShardGroups groups, ExecutorService executor, ShardTask task)
+	{
+		if(executor==null)
+		{
+			for(int i=0; i<tries.length; i++)
+			{
+				if(groups.start[i]<groups.start[i+1])
+					task.run(tries[i], groups.start[i], groups.start[i+1]);
+			}
+			return;
+		}
+		List<Future<?>> futures=new ArrayList<>(tries.length);
+		for(int i=0; i<tries.length; i++)
+		{
+			int trieIdx=i;
+			if(groups.start[i]<groups.start[i+1])
+				futures.add(executor.submit(() -> task.run(tries[trieIdx], groups.start[trieIdx], groups.start[trieIdx+1])));
+		}
+		try
+		{
+			for(Future<?> future : futures)
+			{
+				future.get();
+			}
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("IndexedTrie::forEachGroup: interrupted!", e);
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+			throw new IllegalStateException("IndexedTrie::forEachGroup: task failed!", e.getCause());
+		}
+	}
+
+	private static boolean contains(Trie trie, CharSequence key)
+	{
+		if(trie instanceof StaticDoubleArrayTrie)
+			return ((StaticDoubleArrayTrie)trie).getId(key)>=0;
+		if(trie instanceof Dawg)
+			return ((Dawg)trie).getId(key)>=0;
+		return trie.contains(key.toString());
+	}
+
+	/**
+	 * Tests a batch of keys at once.
+	 * 
+	 * @param keys the keys to be tested, {@code null} keys are never contained.
+	 * @param out bit {@code i} is set if {@code keys[i]} is contained and cleared otherwise, other bits are not changed.
+	 * 
+	 * @see #containsAll(CharSequence[], BitSet, ExecutorService)
+	 */
+	public void containsAll(CharSequence[] keys, BitSet out)
+	{
+		containsAll(keys, out, null);
+	}
+
+	/**
+	 * Tests a batch of keys at once.
+	 * The keys are grouped by the Tries they fall in, and every Trie is probed by its own group in one tight loop, which keeps the arrays of one Trie hot in the caches instead of jumping between Tries key by key.
+	 * Keys are not converted to {@link String} for Tries which can match a {@link CharSequence} directly.
+	 * 
+	 * @param keys the keys to be tested, {@code null} keys are never contained.
+	 * @param out bit {@code i} is set if {@code keys[i]} is contained and cleared otherwise, other bits are not changed.
+	 * @param executor runs the groups in parallel, e.g. {@link java.util.concurrent.ForkJoinPool#commonPool()}, or {@code null} to run them in the calling thread. It is not shut down.
+	 */
+	public void containsAll(CharSequence[] keys, BitSet out, ExecutorService executor)
+	{
+		ShardGroups groups=group(keys.length, i -> keys[i]!=null ? getFirstCharacter(keys[i]) : -1);
+		boolean[] found=new boolean[groups.entries.length];
+		forEachGroup(groups, executor, (trie, from, to) -> {
+			for(int k=from; k<to; k++)
+			{
+				found[k]=contains(trie, keys[groups.entries[k]]);
+			}
+		});
+		out.clear(0, keys.length);
+		for(int k=0; k<found.length; k++)
+		{
+			if(found[k])
+				out.set(groups.entries[k]);
+		}
+	}
+
+	/**
+	 * Views {@code text[offset, text.length())} without copying it.
+	 */
+	private static final class Suffix implements CharSequence
+	{
+		private final CharSequence text;
+		private final int offset;
+
+		private Suffix(CharSequence text, int offset)
+		{
+			this.text=text;
+			this.offset=offset;
+		}
+
+		@Override
+		public int length()
+		{
+			return text.length()-offset;
+		}
+
+		@Override
+		public char charAt(int index)
+		{
+			return text.charAt(offset+index);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end)
+		{
+			return text.subSequence(offset+start, offset+end);
+		}
+
+		@Override
+		public String toString()
+		{
+			return text.subSequence(offset, text.length()).toString();
+		}
+	}
+
+	private static int longestMatch(Trie trie, CharSequence text, int offset)
+	{
+		long match;
+		if(trie instanceof StaticDoubleArrayTrie)
+			match=((StaticDoubleArrayTrie)trie).longestPrefixMatch(text, offset);
+		else if(trie instanceof Dawg)
+			match=((Dawg)trie).longestPrefixMatch(text, offset);
+		else
+		{
+			int[] length={-1};
+			trie.getPrefixes(new Suffix(text, offset), prefix -> {
+				length[0]=Math.max(length[0], prefix.length());
+				return true;
+			});
+			return length[0];
+		}
+		return match>=0 ? StaticDoubleArrayTrie.matchLength(match) : -1;
+	}
+
+	/**
+	 * Finds the longest word starting at each of a batch of offsets in the text.
+	 * 
+	 * @param text the text to be matched.
+	 * @param starts the offsets where the matches start, in {@code [0, text.length()]}.
+	 * @param outLengths receives the length of the longest word starting at {@code starts[i]} in slot {@code i}, or {@code -1} if none matches.
+	 * 
+	 * @see #longestMatches(CharSequence, int[], int[], ExecutorService)
+	 */
+	public void longestMatches(CharSequence text, int[] starts, int[] outLengths)
+	{
+		longestMatches(text, starts, outLengths, null);
+	}
+
+	/**
+	 * Finds the longest word starting at each of a batch of offsets in the text, which are typically all candidate positions of a tokenizer.
+	 * The offsets are grouped by the Tries they fall in as {@link #containsAll(CharSequence[], BitSet, ExecutorService)} does, and the text is never copied.
+	 * 
+	 * @param text the text to be matched.
+	 * @param starts the offsets where the matches start, in {@code [0, text.length()]}.
+	 * @param outLengths receives the length of the longest word starting at {@code starts[i]} in slot {@code i}, or {@code -1} if none matches.
+	 * @param executor runs the groups in parallel, e.g. {@link java.util.concurrent.ForkJoinPool#commonPool()}, or {@code null} to run them in the calling thread. It is not shut down.
+	 */
+	public void longestMatches(CharSequence text, int[] starts, int[] outLengths, ExecutorService executor)
+	{
+		if(outLengths.length<starts.length)
+			throw new IllegalArgumentException("IndexedTrie::longestMatches: outLengths is shorter than starts!");
+		ShardGroups groups=group(starts.length, i -> starts[i]<text.length() ? text.charAt(starts[i]) : Character.MIN_VALUE);
+		int[] lengths=new int[groups.entries.length];
+		forEachGroup(groups, executor, (trie, from, to) -> {
+			for(int k=from; k<to; k++)
+			{
+				lengths[k]=longestMatch(trie, text, starts[groups.entries[k]]);
+			}
+		});
+		Arrays.fill(outLengths, 0, starts.length, -1);
+		for(int k=0; k<lengths.length; k++)
+		{
+			int i=groups.entries[k];
+			outLengths[i]=Math.max(outLengths[i], lengths[k]);
+		}
+	}
+
 	public void setLoggerFunc(BiConsumer<? super Exception, String> loggerFunc)
 	{
 		if(loggerFunc==null)
@@ -451,4 +1258,119 @@ public class IndexedTrie implements Serializable
 		}
 		return indexedDATrie;
 	}
+
+	/**
+	 * Saves this {@link IndexedTrie} to a versioned binary file which can be mapped by {@link #readFromMappedFile(String)}.
+	 * The file holds the first-character routing table followed by every Trie in the {@link StaticDoubleArrayTrie} layout. Tries of any other type are frozen into {@link StaticDoubleArrayTrie} before written.
+	 * 
+	 * @param fileNameString the target file name.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void saveToMappedFile(String fileNameString) throws IOException
+	{
+		try(FileChannel channel=FileChannel.open(Paths.get(fileNameString), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			int[] routeIdx=new int[indeses.length+1];
+			for(int i=0; i<indeses.length; i++)
+			{
+				routeIdx[i+1]=routeIdx[i]+(indeses[i]!=null ? indeses[i].length : 0);
+			}
+			int[] routes=new int[routeIdx[indeses.length]];
+			for(int i=0; i<indeses.length; i++)
+			{
+				if(indeses[i]!=null)
+					System.arraycopy(indeses[i], 0, routes, routeIdx[i], indeses[i].length);
+			}
+
+			ByteBuffer header=MappedFileUtil.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(0).putInt(tries.length).putInt(avgTireSize).putInt(routes.length);
+			header.clear();
+			long pos=MappedFileUtil.write(channel, header);
+			pos+=MappedFileUtil.writeInts(channel, IntBuffer.wrap(routeIdx));
+			pos+=MappedFileUtil.writeInts(channel, IntBuffer.wrap(routes));
+			long offsetsPos=pos;
+			long[] offsets=new long[tries.length];
+			pos+=MappedFileUtil.writeLongs(channel, LongBuffer.wrap(offsets));
+			for(int i=0; i<tries.length; i++)
+			{
+				offsets[i]=pos;
+				pos+=toStatic(tries[i]).write(channel);
+			}
+			channel.position(offsetsPos);
+			MappedFileUtil.writeLongs(channel, LongBuffer.wrap(offsets));
+		}
+	}
+
+	private static StaticDoubleArrayTrie toStatic(Trie trie)
+	{
+		if(trie instanceof StaticDoubleArrayTrie)
+			return (StaticDoubleArrayTrie)trie;
+		else
+			return StaticDoubleArrayTrie.build(new TreeSet<>(trie.matchPrefix("", new ArrayList<String>())));
+	}
+
+	/**
+	 * Maps a file saved by {@link #saveToMappedFile(String)}, and logs to stderr.
+	 * 
+	 * @param fileNameString the file name.
+	 * @return the mapped {@link IndexedTrie}.
+	 * @throws IOException if the file is not a valid {@link IndexedTrie} file or an I/O error occurs.
+	 * 
+	 * @see #readFromMappedFile(String, BiConsumer)
+	 */
+	public static IndexedTrie readFromMappedFile(String fileNameString) throws IOException
+	{
+		return readFromMappedFile(fileNameString, StdLoggers.STD_ERR_EXCEPTION_MSG_LOGGER);
+	}
+
+	/**
+	 * Maps a file saved by {@link #saveToMappedFile(String)}.
+	 * Only the fixed-size routing table is read into the heap, all Tries are served straight from the mapped file, so the loading time does not depend on the dictionary size.
+	 * The returned {@link IndexedTrie} is read-only.
+	 * 
+	 * @param fileNameString the file name.
+	 * @param loggerFunc a {@link BiConsumer} instance to process {@link Exception}s and error messages of the returned {@link IndexedTrie}.
+	 * @return the mapped {@link IndexedTrie}.
+	 * @throws IOException if the file is not a valid {@link IndexedTrie} file or an I/O error occurs.
+	 */
+	public static IndexedTrie readFromMappedFile(String fileNameString, BiConsumer<? super Exception, String> loggerFunc) throws IOException
+	{
+		try(FileChannel channel=FileChannel.open(Paths.get(fileNameString), StandardOpenOption.READ))
+		{
+			ByteBuffer header=MappedFileUtil.map(channel, 0, HEADER_SIZE);
+			if(header.getInt()!=MAGIC)
+				throw new IOException("IndexedTrie::readFromMappedFile: not an IndexedTrie file!");
+			int version=header.getInt();
+			if(version>VERSION)
+				throw new IOException("IndexedTrie::readFromMappedFile: unsupported version "+version+"!");
+			header.getInt();
+			int trieNum=header.getInt();
+			int avgTireSize=header.getInt();
+			int routeNum=header.getInt();
+
+			long pos=HEADER_SIZE;
+			int[][] indeses=new int[(int)Character.MAX_VALUE+1][];
+			IntBuffer routeIdx=MappedFileUtil.mapInts(channel, pos, indeses.length+1);
+			pos+=MappedFileUtil.alignedLength((long)(indeses.length+1)*Integer.BYTES);
+			IntBuffer routes=MappedFileUtil.mapInts(channel, pos, routeNum);
+			pos+=MappedFileUtil.alignedLength((long)routeNum*Integer.BYTES);
+			for(int i=0; i<indeses.length; i++)
+			{
+				int begin=routeIdx.get(i);
+				int end=routeIdx.get(i+1);
+				if(end>begin)
+				{
+					indeses[i]=new int[end-begin];
+					routes.get(begin, indeses[i]);
+				}
+			}
+			LongBuffer offsets=MappedFileUtil.mapLongs(channel, pos, trieNum);
+			Trie[] tries=new StaticDoubleArrayTrie[trieNum];
+			for(int i=0; i<trieNum; i++)
+			{
+				tries[i]=StaticDoubleArrayTrie.map(channel, offsets.get(i));
+			}
+			return new IndexedTrie(tries, indeses, avgTireSize, loggerFunc);
+		}
+	}
 }
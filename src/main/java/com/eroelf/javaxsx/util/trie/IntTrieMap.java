@@ -0,0 +1,156 @@
+package com.eroelf.javaxsx.util.trie;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * An immutable map from {@link String} keys to primitive {@code int} values, backed by a {@link StaticDoubleArrayTrie}.
+ * Works the same as {@link TrieMap} but without boxing, and the longest prefix match returns the length and the value packed into one {@code long}.
+ * 
+ * @author weikun.zhong
+ */
+public class IntTrieMap implements Serializable
+{
+	private static final long serialVersionUID=4410875297016393318L;
+
+	private final StaticDoubleArrayTrie trie;
+	private final int[] values;
+
+	/**
+	 * Constructs an IntTrieMap with the same mappings as the given map.
+	 * 
+	 * @param map the mappings to be contained.
+	 */
+	public IntTrieMap(Map<String, Integer> map)
+	{
+		SortedMap<String, Integer> sortedMap=map instanceof SortedMap && ((SortedMap<String, Integer>)map).comparator()==null ? (SortedMap<String, Integer>)map : new TreeMap<>(map);
+		String[] keys=new String[sortedMap.size()];
+		values=new int[keys.length];
+		int i=0;
+		for(Entry<String, Integer> entry : sortedMap.entrySet())
+		{
+			keys[i]=entry.getKey();
+			values[i++]=entry.getValue();
+		}
+		trie=StaticDoubleArrayTrie.build(keys);
+	}
+
+	/**
+	 * Constructs an IntTrieMap which maps every word to its ordinal id.
+	 * 
+	 * @param trie the Trie of keys.
+	 */
+	public IntTrieMap(StaticDoubleArrayTrie trie)
+	{
+		this.trie=trie;
+		values=new int[trie.size()];
+		for(int i=0; i<values.length; i++)
+		{
+			values[i]=i;
+		}
+	}
+
+	public int size()
+	{
+		return values.length;
+	}
+
+	public StaticDoubleArrayTrie getTrie()
+	{
+		return trie;
+	}
+
+	public int getId(CharSequence key)
+	{
+		return trie.getId(key);
+	}
+
+	public int getId(CharSequence text, int begin, int end)
+	{
+		return trie.getId(text, begin, end);
+	}
+
+	public int getValue(int id)
+	{
+		return values[id];
+	}
+
+	public boolean containsKey(CharSequence key)
+	{
+		return trie.getId(key)>=0;
+	}
+
+	/**
+	 * Returns the value of the key.
+	 * 
+	 * @param key the key.
+	 * @return the value of the key.
+	 * @throws NoSuchElementException if the key is not contained, use {@link #getOrDefault(CharSequence, int)} to avoid it.
+	 */
+	public int get(CharSequence key)
+	{
+		int id=trie.getId(key);
+		if(id>=0)
+			return values[id];
+		else
+			throw new NoSuchElementException("IntTrieMap::get: key '"+key+"' not found!");
+	}
+
+	/**
+	 * Returns the value of the key {@code text[begin, end)}.
+	 * 
+	 * @param text the text holding the key.
+	 * @param begin the beginning index of the key, inclusive.
+	 * @param end the ending index of the key, exclusive.
+	 * @return the value of the key.
+	 * @throws NoSuchElementException if the key is not contained, use {@link #getOrDefault(CharSequence, int, int, int)} to avoid it.
+	 */
+	public int get(CharSequence text, int begin, int end)
+	{
+		int id=trie.getId(text, begin, end);
+		if(id>=0)
+			return values[id];
+		else
+			throw new NoSuchElementException("IntTrieMap::get: key '"+text.subSequence(begin, end)+"' not found!");
+	}
+
+	public int getOrDefault(CharSequence key, int defaultValue)
+	{
+		int id=trie.getId(key);
+		return id>=0 ? values[id] : defaultValue;
+	}
+
+	public int getOrDefault(CharSequence text, int begin, int end, int defaultValue)
+	{
+		int id=trie.getId(text, begin, end);
+		return id>=0 ? values[id] : defaultValue;
+	}
+
+	/**
+	 * Finds the longest key which is a prefix of {@code text[offset, text.length())}.
+	 * The length and the value are packed into one {@code long} to avoid allocations, use {@link #matchLength(long)} and {@link #matchValue(long)} to unpack it.
+	 * 
+	 * @param text the text to be matched.
+	 * @param offset the offset where the match starts.
+	 * @return the packed length and value of the longest matched key, or {@code -1} if none matches.
+	 */
+	public long longestPrefixMatch(CharSequence text, int offset)
+	{
+		long match=trie.longestPrefixMatch(text, offset);
+		return match>=0 ? StaticDoubleArrayTrie.packMatch(StaticDoubleArrayTrie.matchLength(match), values[StaticDoubleArrayTrie.matchId(match)]) : -1;
+	}
+
+	public static int matchLength(long match)
+	{
+		return StaticDoubleArrayTrie.matchLength(match);
+	}
+
+	public static int matchValue(long match)
+	{
+		return StaticDoubleArrayTrie.matchId(match);
+	}
+}
@@ -0,0 +1,19 @@
+package com.eroelf.javaxsx.util.trie;
+
+/**
+ * Class to receive the matches of words in a text, reported by {@link AhoCorasick#scan(CharSequence, MatchListener)}, {@link StaticDoubleArrayTrie#prefixMatches(CharSequence, int, MatchListener)} and {@link Tokenizer#tokenize(CharSequence, MatchListener)}.
+ * 
+ * @author weikun.zhong
+ */
+@FunctionalInterface
+public interface MatchListener
+{
+	/**
+	 * Called for every occurrence of a word.
+	 * 
+	 * @param start the start offset of the occurrence in the text, inclusive.
+	 * @param end the end offset of the occurrence in the text, exclusive.
+	 * @param wordId the id of the matched word, which is its rank in the natural order of {@link String} among all words, see {@link AhoCorasick#getWord(int)}.
+	 */
+	public void onMatch(int start, int end, int wordId);
+}
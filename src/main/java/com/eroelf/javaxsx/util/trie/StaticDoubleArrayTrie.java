@@ -0,0 +1,1187 @@
+package com.eroelf.javaxsx.util.trie;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import com.eroelf.javaxsx.util.io.MappedFileUtil;
+
+/**
+ * An immutable double-array Trie constructed from sorted words in one pass.
+ * Cells are packed tightly, tails are stored in one shared {@code char} pool, and every word gets a dense id which equals its rank in the sorted input.
+ * 
+ * <p>The Trie can be saved to a versioned binary file by {@link #saveToFile(String)}, and be served straight from the memory-mapped file by {@link #mapFromFile(String)} without any deserialization.
+ * Processes which map the same file share the page cache.
+ * 
+ * <p>If built with weights, every cell also holds the maximum weight in its subtree, so that {@link #topK(CharSequence, int)} can find the heaviest completions of a prefix by a best-first search whose cost is bounded by {@code k} rather than by the number of completions.
+ * 
+ * <p>If built with a compact alphabet, the characters which occur in the words are remapped to dense codes, the most frequent character first, instead of using their UTF-16 values as codes.
+ * Siblings then lie within the size of the alphabet rather than within {@code 65536}, which makes the arrays much smaller and more local for CJK words, at the cost of one table lookup per character.
+ * Ids and the order of visited words are the same in both modes.
+ * 
+ * @author weikun.zhong
+ */
+public class StaticDoubleArrayTrie implements Trie
+{
+	private static final long serialVersionUID=-3380646920233935071L;
+
+	private static final int ROOT=0;
+	private static final int END_CODE=0;
+	private static final int NO_LABEL=-1;
+
+	private static final int MAGIC=0x44415452;
+	private static final int VERSION=2;
+	private static final int HEADER_SIZE=32;
+	private static final int FLAG_WEIGHTED=1;
+	private static final int FLAG_ALPHABET=2;
+	private static final int NO_CODE=-1;
+
+	/**
+	 * {@code base[s]>0} for a branch node; {@code -(id+1)} for a leaf node which holds the tail of the word {@code id}.
+	 */
+	private transient IntBuffer base;
+	/**
+	 * The parent cell of each cell, or a negative value for a free cell.
+	 */
+	private transient IntBuffer check;
+	/**
+	 * The start position in {@link #labels} of the ascending child codes of each branch node.
+	 */
+	private transient IntBuffer labelIdx;
+	/**
+	 * Child codes of all branch nodes, each list is terminated by {@link #NO_LABEL}.
+	 */
+	private transient IntBuffer labels;
+	/**
+	 * The tail of the word {@code id} is {@code tailPool[tailIdx[id], tailIdx[id+1])}.
+	 */
+	private transient IntBuffer tailIdx;
+	private transient CharBuffer tailPool;
+	/**
+	 * The maximum weight of the words in the subtree of each cell, or {@code null} if this Trie has no weights.
+	 */
+	private transient LongBuffer maxWeight;
+	/**
+	 * The character of each code {@code c} is {@code alphabet[c-1]}, or {@code null} if the code of a character is its value plus one.
+	 */
+	private transient CharBuffer alphabet;
+	/**
+	 * The code of each character, or {@code 0} if the character is not in {@link #alphabet}. Restored from {@link #alphabet}.
+	 */
+	private transient char[] codes;
+	private int size;
+
+	/**
+	 * Constructs an immutable Trie from the given words.
+	 * 
+	 * @param words the words to be contained. If the set is not ordered by the natural order of {@link String}, it will be re-sorted first.
+	 * @return the built Trie.
+	 */
+	public static StaticDoubleArrayTrie build(SortedSet<String> words)
+	{
+		if(words.comparator()!=null)
+			words=new TreeSet<>(words);
+		return build(words.toArray(new String[words.size()]));
+	}
+
+	/**
+	 * Constructs an immutable Trie from the given words.
+	 * 
+	 * @param sortedWords distinct words in the natural order of {@link String}.
+	 * @return the built Trie.
+	 */
+	public static StaticDoubleArrayTrie build(String[] sortedWords)
+	{
+		for(int i=1; i<sortedWords.length; i++)
+		{
+			if(sortedWords[i-1].compareTo(sortedWords[i])>=0)
+				throw new IllegalArgumentException("StaticDoubleArrayTrie::build: words must be distinct and sorted! Found '"+sortedWords[i-1]+"' before '"+sortedWords[i]+"'.");
+		}
+		return new Builder(sortedWords, null, false).build();
+	}
+
+	/**
+	 * Constructs an immutable Trie from the given words, optionally remapping the characters to dense codes by frequency.
+	 * 
+	 * @param sortedWords distinct words in the natural order of {@link String}.
+	 * @param compactAlphabet {@code true} to remap the characters, which is preferred for CJK words.
+	 * @return the built Trie.
+	 */
+	public static StaticDoubleArrayTrie build(String[] sortedWords, boolean compactAlphabet)
+	{
+		return build(sortedWords, null, compactAlphabet);
+	}
+
+	/**
+	 * Constructs an immutable Trie with weights from the given words.
+	 * 
+	 * @param weightedWords the words to be contained with their weights. If the map is not ordered by the natural order of {@link String}, it will be re-sorted first.
+	 * @return the built Trie.
+	 */
+	public static StaticDoubleArrayTrie build(SortedMap<String, Long> weightedWords)
+	{
+		if(weightedWords.comparator()!=null)
+			weightedWords=new TreeMap<>(weightedWords);
+		String[] words=new String[weightedWords.size()];
+		long[] weights=new long[words.length];
+		int i=0;
+		for(Entry<String, Long> entry : weightedWords.entrySet())
+		{
+			words[i]=entry.getKey();
+			weights[i++]=entry.getValue();
+		}
+		return build(words, weights);
+	}
+
+	/**
+	 * Constructs an immutable Trie with weights from the given words.
+	 * 
+	 * @param sortedWords distinct words in the natural order of {@link String}.
+	 * @param weights the weight of each word.
+	 * @return the built Trie.
+	 */
+	public static StaticDoubleArrayTrie build(String[] sortedWords, long[] weights)
+	{
+		return build(sortedWords, weights, false);
+	}
+
+	/**
+	 * Constructs an immutable Trie, with weights if given, from the given words, optionally remapping the characters to dense codes by frequency.
+	 * 
+	 * @param sortedWords distinct words in the natural order of {@link String}.
+	 * @param weights the weight of each word, or {@code null} to build the Trie without weights.
+	 * @param compactAlphabet {@code true} to remap the characters, which is preferred for CJK words.
+	 * @return the built Trie.
+	 */
+	public static StaticDoubleArrayTrie build(String[] sortedWords, long[] weights, boolean compactAlphabet)
+	{
+		if(weights!=null && weights.length!=sortedWords.length)
+			throw new IllegalArgumentException("StaticDoubleArrayTrie::build: the numbers of words and weights are different!");
+		for(int i=1; i<sortedWords.length; i++)
+		{
+			if(sortedWords[i-1].compareTo(sortedWords[i])>=0)
+				throw new IllegalArgumentException("StaticDoubleArrayTrie::build: words must be distinct and sorted! Found '"+sortedWords[i-1]+"' before '"+sortedWords[i]+"'.");
+		}
+		return new Builder(sortedWords, weights, compactAlphabet).build();
+	}
+
+	private StaticDoubleArrayTrie(int size, IntBuffer base, IntBuffer check, IntBuffer labelIdx, IntBuffer labels, IntBuffer tailIdx, CharBuffer tailPool, LongBuffer maxWeight, CharBuffer alphabet)
+	{
+		this.size=size;
+		this.base=base;
+		this.check=check;
+		this.labelIdx=labelIdx;
+		this.labels=labels;
+		this.tailIdx=tailIdx;
+		this.tailPool=tailPool;
+		this.maxWeight=maxWeight;
+		setAlphabet(alphabet);
+	}
+
+	private void setAlphabet(CharBuffer alphabet)
+	{
+		this.alphabet=alphabet;
+		codes=alphabet!=null ? codesOf(alphabet) : null;
+	}
+
+	private static char[] codesOf(CharSequence alphabet)
+	{
+		char[] codes=new char[Character.MAX_VALUE+1];
+		for(int i=0; i<alphabet.length(); i++)
+		{
+			codes[alphabet.charAt(i)]=(char)(i+1);
+		}
+		return codes;
+	}
+
+	/**
+	 * Counts the characters of the words, and orders the distinct ones by frequency descendingly.
+	 */
+	static char[] alphabetOf(Iterable<? extends CharSequence> words)
+	{
+		long[] counts=new long[Character.MAX_VALUE+1];
+		for(CharSequence word : words)
+		{
+			for(int i=0; i<word.length(); i++)
+			{
+				++counts[word.charAt(i)];
+			}
+		}
+		List<Character> chars=new ArrayList<>();
+		for(int c=0; c<counts.length; c++)
+		{
+			if(counts[c]>0)
+				chars.add((char)c);
+		}
+		chars.sort((c1, c2) -> counts[c1]!=counts[c2] ? Long.compare(counts[c2], counts[c1]) : Character.compare(c1, c2));
+		char[] alphabet=new char[chars.size()];
+		for(int i=0; i<alphabet.length; i++)
+		{
+			alphabet[i]=chars.get(i);
+		}
+		return alphabet;
+	}
+
+	private int codeOf(char c)
+	{
+		if(codes==null)
+			return c+1;
+		int code=codes[c];
+		return code!=0 ? code : NO_CODE;
+	}
+
+	private char charOf(int code)
+	{
+		return alphabet==null ? (char)(code-1) : alphabet.get(code-1);
+	}
+
+	private int child(int s, int code)
+	{
+		if(code==NO_CODE)
+			return -1;
+		int next=base.get(s)+code;
+		return next<check.limit() && check.get(next)==s ? next : -1;
+	}
+
+	private int tailLength(int id)
+	{
+		return tailIdx.get(id+1)-tailIdx.get(id);
+	}
+
+	private boolean tailMatches(int id, CharSequence text, int from, int to)
+	{
+		int begin=tailIdx.get(id);
+		int len=tailIdx.get(id+1)-begin;
+		if(to-from!=len)
+			return false;
+		for(int i=0; i<len; i++)
+		{
+			if(tailPool.get(begin+i)!=text.charAt(from+i))
+				return false;
+		}
+		return true;
+	}
+
+	private boolean tailStartsWith(int id, CharSequence text, int from, int to)
+	{
+		int begin=tailIdx.get(id);
+		int len=to-from;
+		if(tailLength(id)<len)
+			return false;
+		for(int i=0; i<len; i++)
+		{
+			if(tailPool.get(begin+i)!=text.charAt(from+i))
+				return false;
+		}
+		return true;
+	}
+
+	private boolean isTailOf(int id, CharSequence text, int from, int to)
+	{
+		int begin=tailIdx.get(id);
+		int len=tailLength(id);
+		if(to-from<len)
+			return false;
+		for(int i=0; i<len; i++)
+		{
+			if(tailPool.get(begin+i)!=text.charAt(from+i))
+				return false;
+		}
+		return true;
+	}
+
+	private boolean isReversedTailOf(int id, CharSequence text, int from)
+	{
+		int begin=tailIdx.get(id);
+		int len=tailLength(id);
+		if(from+1<len)
+			return false;
+		for(int i=0; i<len; i++)
+		{
+			if(tailPool.get(begin+i)!=text.charAt(from-i))
+				return false;
+		}
+		return true;
+	}
+
+	private int findLeaf(CharSequence text, int begin, int end)
+	{
+		int s=ROOT;
+		for(int i=begin; ; i++)
+		{
+			int b=base.get(s);
+			if(b<0)
+				return tailMatches(-b-1, text, i, end) ? s : -1;
+			if(i==end)
+			{
+				int t=child(s, END_CODE);
+				return t>=0 && base.get(t)<0 ? t : -1;
+			}
+			s=child(s, codeOf(text.charAt(i)));
+			if(s<0)
+				return -1;
+		}
+	}
+
+	/**
+	 * Returns the id of the specified word, which is its rank in the natural order of {@link String} among all words in this Trie.
+	 * 
+	 * @param word the word.
+	 * @return the id of the word, or {@code -1} if the word is not in this Trie.
+	 */
+	public int getId(CharSequence word)
+	{
+		return word!=null ? getId(word, 0, word.length()) : -1;
+	}
+
+	/**
+	 * Returns the id of the word {@code text[begin, end)} without creating a substring.
+	 * 
+	 * @param text the text which contains the word.
+	 * @param begin the start offset of the word, inclusive.
+	 * @param end the end offset of the word, exclusive.
+	 * @return the id of the word, or {@code -1} if the word is not in this Trie.
+	 */
+	public int getId(CharSequence text, int begin, int end)
+	{
+		int t=findLeaf(text, begin, end);
+		return t>=0 ? -base.get(t)-1 : -1;
+	}
+
+	/**
+	 * Finds the longest word which is a prefix of {@code text[offset, text.length())}.
+	 * The length and the id of the word are packed into one {@code long} to avoid allocations, use {@link #matchLength(long)} and {@link #matchId(long)} to unpack it.
+	 * 
+	 * @param text the text to be matched.
+	 * @param offset the offset where the match starts.
+	 * @return the packed length and id of the longest matched word, or {@code -1} if none matches.
+	 */
+	public long longestPrefixMatch(CharSequence text, int offset)
+	{
+		long match=-1;
+		int s=ROOT;
+		for(int i=offset; ; i++)
+		{
+			int b=base.get(s);
+			if(b<0)
+			{
+				if(isTailOf(-b-1, text, i, text.length()))
+					match=packMatch(i+tailLength(-b-1)-offset, -b-1);
+				return match;
+			}
+			int t=child(s, END_CODE);
+			if(t>=0)
+				match=packMatch(i-offset, -base.get(t)-1);
+			if(i==text.length())
+				return match;
+			s=child(s, codeOf(text.charAt(i)));
+			if(s<0)
+				return match;
+		}
+	}
+
+	/**
+	 * Reports every word which is a prefix of {@code text[offset, text.length())}, ordered by the length ascendingly.
+	 * The listener receives {@code offset}, the end offset of the word in the text and the id of the word. No object is allocated.
+	 * 
+	 * @param text the text to be matched.
+	 * @param offset the offset where the matches start.
+	 * @param listener the receiver of the matches.
+	 */
+	public void prefixMatches(CharSequence text, int offset, MatchListener listener)
+	{
+		int s=ROOT;
+		for(int i=offset; ; i++)
+		{
+			int b=base.get(s);
+			if(b<0)
+			{
+				if(isTailOf(-b-1, text, i, text.length()))
+					listener.onMatch(offset, i+tailLength(-b-1), -b-1);
+				return;
+			}
+			int t=child(s, END_CODE);
+			if(t>=0)
+				listener.onMatch(offset, i, -base.get(t)-1);
+			if(i==text.length())
+				return;
+			s=child(s, codeOf(text.charAt(i)));
+			if(s<0)
+				return;
+		}
+	}
+
+	/**
+	 * Finds the longest word which is a prefix of {@code text[0, end)} read backwards, char by char, for a Trie of reversed words.
+	 * 
+	 * @param text the text to be matched.
+	 * @param end the offset where the backward match starts, exclusive.
+	 * @return the packed length and id of the longest matched word, or {@code -1} if none matches.
+	 * 
+	 * @see #longestPrefixMatch(CharSequence, int)
+	 */
+	long longestReversedPrefixMatch(CharSequence text, int end)
+	{
+		long match=-1;
+		int s=ROOT;
+		for(int i=end-1; ; i--)
+		{
+			int b=base.get(s);
+			if(b<0)
+			{
+				if(isReversedTailOf(-b-1, text, i))
+					match=packMatch(end-1-i+tailLength(-b-1), -b-1);
+				return match;
+			}
+			int t=child(s, END_CODE);
+			if(t>=0)
+				match=packMatch(end-1-i, -base.get(t)-1);
+			if(i<0)
+				return match;
+			s=child(s, codeOf(text.charAt(i)));
+			if(s<0)
+				return match;
+		}
+	}
+
+	static long packMatch(int length, int value)
+	{
+		return (long)length<<32 | (value&0xFFFFFFFFL);
+	}
+
+	/**
+	 * Unpacks the length from the result of {@link #longestPrefixMatch(CharSequence, int)}.
+	 * 
+	 * @param match the packed result.
+	 * @return the length of the matched word.
+	 */
+	public static int matchLength(long match)
+	{
+		return (int)(match>>>32);
+	}
+
+	/**
+	 * Unpacks the id from the result of {@link #longestPrefixMatch(CharSequence, int)}.
+	 * 
+	 * @param match the packed result.
+	 * @return the id of the matched word.
+	 */
+	public static int matchId(long match)
+	{
+		return (int)match;
+	}
+
+	/**
+	 * Returns the number of words in this Trie.
+	 * 
+	 * @return the number of words.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public void insert(String word)
+	{
+		throw new UnsupportedOperationException("StaticDoubleArrayTrie::insert: this Trie is immutable!");
+	}
+
+	@Override
+	public void delete(String word)
+	{
+		throw new UnsupportedOperationException("StaticDoubleArrayTrie::delete: this Trie is immutable!");
+	}
+
+	@Override
+	public boolean contains(String word)
+	{
+		return getId(word)>=0;
+	}
+
+	@Override
+	public List<String> matchPrefix(String prefix, List<String> resultList)
+	{
+		matchPrefix(prefix, word -> {
+			resultList.add(word.toString());
+			return true;
+		});
+		return resultList;
+	}
+
+	@Override
+	public boolean matchPrefix(CharSequence prefix, TrieVisitor visitor)
+	{
+		if(prefix!=null)
+		{
+			StringBuilder path=new StringBuilder(prefix);
+			int s=ROOT;
+			for(int i=0; i<prefix.length(); i++)
+			{
+				int b=base.get(s);
+				if(b<0)
+				{
+					if(tailStartsWith(-b-1, prefix, i, prefix.length()))
+					{
+						path.setLength(i);
+						return visitor.visit(appendTail(path, -b-1));
+					}
+					return true;
+				}
+				s=child(s, codeOf(prefix.charAt(i)));
+				if(s<0)
+					return true;
+			}
+			return collect(s, path, visitor);
+		}
+		return true;
+	}
+
+	private StringBuilder appendTail(StringBuilder path, int id)
+	{
+		return path.append(tailPool, tailIdx.get(id), tailIdx.get(id+1));
+	}
+
+	private boolean collect(int s, StringBuilder path, TrieVisitor visitor)
+	{
+		int b=base.get(s);
+		int len=path.length();
+		if(b<0)
+		{
+			boolean res=visitor.visit(appendTail(path, -b-1));
+			path.setLength(len);
+			return res;
+		}
+		for(int i=labelIdx.get(s); labels.get(i)!=NO_LABEL; i++)
+		{
+			int c=labels.get(i);
+			if(c==END_CODE)
+			{
+				if(!visitor.visit(path))
+					return false;
+			}
+			else
+			{
+				path.append(charOf(c));
+				boolean res=collect(b+c, path, visitor);
+				path.setLength(len);
+				if(!res)
+					return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public List<String> getPrefixes(String word, List<String> resultList)
+	{
+		getPrefixes(word, prefix -> {
+			resultList.add(prefix.toString());
+			return true;
+		});
+		return resultList;
+	}
+
+	@Override
+	public boolean getPrefixes(CharSequence word, TrieVisitor visitor)
+	{
+		if(word!=null)
+		{
+			StringBuilder path=new StringBuilder();
+			int s=ROOT;
+			for(int i=0; ; i++)
+			{
+				int b=base.get(s);
+				if(b<0)
+					return isTailOf(-b-1, word, i, word.length()) ? visitor.visit(appendTail(path, -b-1)) : true;
+				if(child(s, END_CODE)>=0 && !visitor.visit(path))
+					return false;
+				if(i==word.length())
+					break;
+				s=child(s, codeOf(word.charAt(i)));
+				if(s<0)
+					break;
+				path.append(word.charAt(i));
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public List<Pair<String, Integer>> fuzzySearch(String query, int maxEdits, int limit)
+	{
+		if(query==null)
+			return new ArrayList<Pair<String, Integer>>();
+		FuzzySearcher searcher=new FuzzySearcher(query, maxEdits, limit);
+		fuzzySearch(ROOT, searcher);
+		return searcher.results();
+	}
+
+	private void fuzzySearch(int s, FuzzySearcher searcher)
+	{
+		int b=base.get(s);
+		if(b<0)
+		{
+			searcher.offer(tailPool, tailIdx.get(-b-1), tailIdx.get(-b));
+			return;
+		}
+		for(int i=labelIdx.get(s); labels.get(i)!=NO_LABEL; i++)
+		{
+			int c=labels.get(i);
+			if(c==END_CODE)
+				searcher.offer();
+			else
+			{
+				if(searcher.push(charOf(c)))
+					fuzzySearch(b+c, searcher);
+				searcher.pop();
+			}
+		}
+	}
+
+	/**
+	 * Checks if this Trie is built with weights.
+	 * 
+	 * @return {@code true} if this Trie has weights.
+	 */
+	public boolean isWeighted()
+	{
+		return maxWeight!=null;
+	}
+
+	/**
+	 * Checks if this Trie is built with a compact alphabet.
+	 * 
+	 * @return {@code true} if the characters are remapped to dense codes.
+	 */
+	public boolean hasCompactAlphabet()
+	{
+		return alphabet!=null;
+	}
+
+	/**
+	 * Returns the weight of the specified word.
+	 * 
+	 * @param word the word.
+	 * @param defaultValue the value to return if the word is not in this Trie.
+	 * @return the weight of the word, or {@code defaultValue} if the word is not in this Trie.
+	 * @throws IllegalStateException if this Trie has no weights.
+	 */
+	public long getWeight(String word, long defaultValue)
+	{
+		checkWeighted("getWeight");
+		int t=word!=null ? findLeaf(word, 0, word.length()) : -1;
+		return t>=0 ? maxWeight.get(t) : defaultValue;
+	}
+
+	private void checkWeighted(String methodName)
+	{
+		if(maxWeight==null)
+			throw new IllegalStateException("StaticDoubleArrayTrie::"+methodName+": this Trie has no weights!");
+	}
+
+	/**
+	 * Finds the {@code k} heaviest words which have the specified prefix, ordered by the weight descendingly.
+	 * 
+	 * @param prefix the specified prefix.
+	 * @param k the maximum number of words to find.
+	 * @return the found words with their weights.
+	 * @throws IllegalStateException if this Trie has no weights.
+	 */
+	public List<Pair<String, Long>> topK(CharSequence prefix, int k)
+	{
+		checkWeighted("topK");
+		List<Pair<String, Long>> resultList=new ArrayList<>();
+		if(prefix==null || k<=0)
+			return resultList;
+		int s=ROOT;
+		for(int i=0; i<prefix.length(); i++)
+		{
+			int b=base.get(s);
+			if(b<0)
+			{
+				if(tailStartsWith(-b-1, prefix, i, prefix.length()))
+					resultList.add(Pair.of(appendTail(new StringBuilder(i+tailLength(-b-1)).append(prefix, 0, i), -b-1).toString(), maxWeight.get(s)));
+				return resultList;
+			}
+			s=child(s, codeOf(prefix.charAt(i)));
+			if(s<0)
+				return resultList;
+		}
+
+		CellHeap heap=new CellHeap(Math.max(16, k));
+		heap.add(s, maxWeight.get(s));
+		while(heap.size>0 && resultList.size()<k)
+		{
+			long weight=heap.weights[0];
+			int t=heap.poll();
+			int b=base.get(t);
+			if(b<0)
+				resultList.add(Pair.of(wordOf(t, s, prefix), weight));
+			else
+			{
+				for(int i=labelIdx.get(t); labels.get(i)!=NO_LABEL; i++)
+				{
+					int child=b+labels.get(i);
+					heap.add(child, maxWeight.get(child));
+				}
+			}
+		}
+		return resultList;
+	}
+
+	/**
+	 * A binary max-heap of cells keyed by their maximum weights, held in primitive arrays so that {@link #topK(CharSequence, int)} boxes nothing.
+	 */
+	private static final class CellHeap
+	{
+		private int[] cells;
+		private long[] weights;
+		private int size;
+
+		private CellHeap(int capacity)
+		{
+			cells=new int[capacity];
+			weights=new long[capacity];
+		}
+
+		private void add(int cell, long weight)
+		{
+			if(size==cells.length)
+			{
+				cells=Arrays.copyOf(cells, size*2);
+				weights=Arrays.copyOf(weights, size*2);
+			}
+			int i=size++;
+			while(i>0)
+			{
+				int parent=(i-1)>>>1;
+				if(weights[parent]>=weight)
+					break;
+				cells[i]=cells[parent];
+				weights[i]=weights[parent];
+				i=parent;
+			}
+			cells[i]=cell;
+			weights[i]=weight;
+		}
+
+		private int poll()
+		{
+			int top=cells[0];
+			int cell=cells[--size];
+			long weight=weights[size];
+			int i=0;
+			int half=size>>>1;
+			while(i<half)
+			{
+				int child=2*i+1;
+				if(child+1<size && weights[child+1]>weights[child])
+					++child;
+				if(weight>=weights[child])
+					break;
+				cells[i]=cells[child];
+				weights[i]=weights[child];
+				i=child;
+			}
+			cells[i]=cell;
+			weights[i]=weight;
+			return top;
+		}
+	}
+
+	/**
+	 * Restores the word of a leaf cell by walking up from the leaf to the cell reached by the prefix.
+	 */
+	private String wordOf(int leaf, int from, CharSequence prefix)
+	{
+		StringBuilder path=new StringBuilder();
+		for(int t=leaf; t!=from; )
+		{
+			int parent=check.get(t);
+			int c=t-base.get(parent);
+			if(c!=END_CODE)
+				path.append(charOf(c));
+			t=parent;
+		}
+		path.reverse().insert(0, prefix);
+		return appendTail(path, -base.get(leaf)-1).toString();
+	}
+
+	/**
+	 * Saves this Trie to a binary file which can be mapped by {@link #mapFromFile(String)}.
+	 * 
+	 * @param fileName the target file name.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void saveToFile(String fileName) throws IOException
+	{
+		try(FileChannel channel=FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			write(channel);
+		}
+	}
+
+	/**
+	 * Maps a file saved by {@link #saveToFile(String)} as a read-only Trie.
+	 * Nothing is loaded into the heap; all queries run against the mapped file.
+	 * 
+	 * @param fileName the file name.
+	 * @return the mapped Trie.
+	 * @throws IOException if the file is not a valid Trie file or an I/O error occurs.
+	 */
+	public static StaticDoubleArrayTrie mapFromFile(String fileName) throws IOException
+	{
+		try(FileChannel channel=FileChannel.open(Paths.get(fileName), StandardOpenOption.READ))
+		{
+			return map(channel, 0);
+		}
+	}
+
+	/**
+	 * Writes this Trie at the current position of the channel.
+	 * 
+	 * @param channel the target channel.
+	 * @return the number of bytes written.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	long write(FileChannel channel) throws IOException
+	{
+		ByteBuffer header=MappedFileUtil.allocate(HEADER_SIZE);
+		int flags=(maxWeight!=null ? FLAG_WEIGHTED : 0) | (alphabet!=null ? FLAG_ALPHABET : 0);
+		header.putInt(MAGIC).putInt(VERSION).putInt(flags).putInt(size).putInt(base.limit()).putInt(labels.limit()).putInt(tailPool.limit()).putInt(alphabet!=null ? alphabet.limit() : 0);
+		header.clear();
+		long len=MappedFileUtil.write(channel, header);
+		len+=MappedFileUtil.writeInts(channel, base);
+		len+=MappedFileUtil.writeInts(channel, check);
+		len+=MappedFileUtil.writeInts(channel, labelIdx);
+		len+=MappedFileUtil.writeInts(channel, labels);
+		len+=MappedFileUtil.writeInts(channel, tailIdx);
+		len+=MappedFileUtil.writeChars(channel, tailPool);
+		if(maxWeight!=null)
+			len+=MappedFileUtil.writeLongs(channel, maxWeight);
+		if(alphabet!=null)
+			len+=MappedFileUtil.writeChars(channel, alphabet);
+		return len;
+	}
+
+	/**
+	 * Maps a Trie written by {@link #write(FileChannel)} at the given position of the channel.
+	 * 
+	 * @param channel the source channel.
+	 * @param position the position where the Trie starts.
+	 * @return the mapped Trie.
+	 * @throws IOException if the data is not a valid Trie or an I/O error occurs.
+	 */
+	static StaticDoubleArrayTrie map(FileChannel channel, long position) throws IOException
+	{
+		ByteBuffer header=MappedFileUtil.map(channel, position, HEADER_SIZE);
+		if(header.getInt()!=MAGIC)
+			throw new IOException("StaticDoubleArrayTrie::map: not a StaticDoubleArrayTrie file!");
+		int version=header.getInt();
+		if(version>VERSION)
+			throw new IOException("StaticDoubleArrayTrie::map: unsupported version "+version+"!");
+		int flags=header.getInt();
+		int size=header.getInt();
+		int cells=header.getInt();
+		int labelSize=header.getInt();
+		int poolSize=header.getInt();
+		int alphabetSize=header.getInt();
+
+		long pos=position+HEADER_SIZE;
+		IntBuffer base=MappedFileUtil.mapInts(channel, pos, cells);
+		pos+=MappedFileUtil.alignedLength((long)cells*Integer.BYTES);
+		IntBuffer check=MappedFileUtil.mapInts(channel, pos, cells);
+		pos+=MappedFileUtil.alignedLength((long)cells*Integer.BYTES);
+		IntBuffer labelIdx=MappedFileUtil.mapInts(channel, pos, cells);
+		pos+=MappedFileUtil.alignedLength((long)cells*Integer.BYTES);
+		IntBuffer labels=MappedFileUtil.mapInts(channel, pos, labelSize);
+		pos+=MappedFileUtil.alignedLength((long)labelSize*Integer.BYTES);
+		IntBuffer tailIdx=MappedFileUtil.mapInts(channel, pos, size+1);
+		pos+=MappedFileUtil.alignedLength((long)(size+1)*Integer.BYTES);
+		CharBuffer tailPool=MappedFileUtil.mapChars(channel, pos, poolSize);
+		pos+=MappedFileUtil.alignedLength((long)poolSize*Character.BYTES);
+		LongBuffer maxWeight=null;
+		if((flags&FLAG_WEIGHTED)!=0)
+		{
+			maxWeight=MappedFileUtil.mapLongs(channel, pos, cells);
+			pos+=MappedFileUtil.alignedLength((long)cells*Long.BYTES);
+		}
+		CharBuffer alphabet=(flags&FLAG_ALPHABET)!=0 ? MappedFileUtil.mapChars(channel, pos, alphabetSize) : null;
+		return new StaticDoubleArrayTrie(size, base, check, labelIdx, labels, tailIdx, tailPool, maxWeight, alphabet);
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		out.defaultWriteObject();
+		out.writeObject(MappedFileUtil.toArray(base));
+		out.writeObject(MappedFileUtil.toArray(check));
+		out.writeObject(MappedFileUtil.toArray(labelIdx));
+		out.writeObject(MappedFileUtil.toArray(labels));
+		out.writeObject(MappedFileUtil.toArray(tailIdx));
+		out.writeObject(MappedFileUtil.toArray(tailPool));
+		out.writeObject(maxWeight!=null ? MappedFileUtil.toArray(maxWeight) : null);
+		out.writeObject(alphabet!=null ? MappedFileUtil.toArray(alphabet) : null);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		base=IntBuffer.wrap((int[])in.readObject());
+		check=IntBuffer.wrap((int[])in.readObject());
+		labelIdx=IntBuffer.wrap((int[])in.readObject());
+		labels=IntBuffer.wrap((int[])in.readObject());
+		tailIdx=IntBuffer.wrap((int[])in.readObject());
+		tailPool=CharBuffer.wrap((char[])in.readObject());
+		long[] maxWeightArray=(long[])in.readObject();
+		maxWeight=maxWeightArray!=null ? LongBuffer.wrap(maxWeightArray) : null;
+		char[] alphabetArray=(char[])in.readObject();
+		setAlphabet(alphabetArray!=null ? CharBuffer.wrap(alphabetArray) : null);
+	}
+
+	/**
+	 * Builds the compacted arrays from sorted words.
+	 */
+	private static class Builder
+	{
+		private final String[] words;
+		private final long[] weights;
+		private int[] base;
+		private int[] check;
+		private int[] labelIdx;
+		private int[] labels;
+		private int labelSize=0;
+		private int[] tailIdx;
+		private char[] tailPool;
+		private int poolSize=0;
+		private long[] maxWeight;
+		private char[] alphabet;
+		private char[] codeTable;
+		private BitSet used=new BitSet();
+		/**
+		 * Cells before {@code searchFrom[k]} are known to be too dense for nodes with about {@code 2^k} children, so later searches for such nodes skip them.
+		 */
+		private int[] searchFrom=new int[Integer.SIZE];
+		private int nextCheckPos=1;
+		private int maxCell=ROOT;
+
+		private Builder(String[] words, long[] weights, boolean compactAlphabet)
+		{
+			this.words=words;
+			this.weights=weights;
+			if(compactAlphabet)
+			{
+				alphabet=alphabetOf(Arrays.asList(words));
+				// codes must fit in a char, which is impossible only if all characters occur
+				if(alphabet.length<=Character.MAX_VALUE)
+					codeTable=codesOf(CharBuffer.wrap(alphabet));
+				else
+					alphabet=null;
+			}
+			int initialSize=Math.max(words.length*2, 1024);
+			base=new int[initialSize];
+			check=new int[initialSize];
+			labelIdx=new int[initialSize];
+			Arrays.fill(check, -1);
+			labels=new int[initialSize];
+			tailIdx=new int[words.length+1];
+			tailPool=new char[initialSize];
+			if(weights!=null)
+			{
+				maxWeight=new long[initialSize];
+				maxWeight[ROOT]=Long.MIN_VALUE;
+			}
+		}
+
+		private StaticDoubleArrayTrie build()
+		{
+			check[ROOT]=ROOT;
+			used.set(ROOT);
+			if(words.length>0)
+				buildNode(ROOT, 0, words.length, 0);
+			else
+			{
+				base[ROOT]=1;
+				labelIdx[ROOT]=appendLabels(new int[0]);
+			}
+			tailIdx[words.length]=poolSize;
+
+			return new StaticDoubleArrayTrie(words.length,
+					IntBuffer.wrap(Arrays.copyOf(base, maxCell+1)),
+					IntBuffer.wrap(Arrays.copyOf(check, maxCell+1)),
+					IntBuffer.wrap(Arrays.copyOf(labelIdx, maxCell+1)),
+					IntBuffer.wrap(Arrays.copyOf(labels, labelSize)),
+					IntBuffer.wrap(tailIdx),
+					CharBuffer.wrap(Arrays.copyOf(tailPool, poolSize)),
+					maxWeight!=null ? LongBuffer.wrap(Arrays.copyOf(maxWeight, maxCell+1)) : null,
+					alphabet!=null ? CharBuffer.wrap(alphabet) : null);
+		}
+
+		private int code(String word, int depth)
+		{
+			if(depth>=word.length())
+				return END_CODE;
+			return codeTable!=null ? codeTable[word.charAt(depth)] : word.charAt(depth)+1;
+		}
+
+		private void buildNode(int s, int lo, int hi, int depth)
+		{
+			if(hi-lo==1)
+			{
+				base[s]=-lo-1;
+				appendTail(lo, depth);
+				if(maxWeight!=null)
+					maxWeight[s]=weights[lo];
+				return;
+			}
+
+			int n=1;
+			for(int i=lo+1; i<hi; i++)
+			{
+				if(code(words[i], depth)!=code(words[i-1], depth))
+					++n;
+			}
+			int[] codes=new int[n];
+			int[] bounds=new int[n+1];
+			codes[0]=code(words[lo], depth);
+			bounds[0]=lo;
+			for(int i=lo+1, k=0; i<hi; i++)
+			{
+				int c=code(words[i], depth);
+				if(c!=codes[k])
+				{
+					codes[++k]=c;
+					bounds[k]=i;
+				}
+			}
+			bounds[n]=hi;
+
+			int b=findBase(codes);
+			base[s]=b;
+			labelIdx[s]=appendLabels(codes);
+			for(int c : codes)
+			{
+				check[b+c]=s;
+				used.set(b+c);
+			}
+			maxCell=Math.max(maxCell, b+max(codes));
+			for(int k=0; k<n; k++)
+			{
+				buildNode(b+codes[k], bounds[k], bounds[k+1], depth+1);
+			}
+			if(maxWeight!=null)
+			{
+				long max=Long.MIN_VALUE;
+				for(int c : codes)
+				{
+					max=Math.max(max, maxWeight[b+c]);
+				}
+				maxWeight[s]=max;
+			}
+		}
+
+		/**
+		 * Finds a base for the child codes, which are ordered by the characters, so they are ascending only if the alphabet is not compacted.
+		 */
+		private int findBase(int[] codes)
+		{
+			int c0=min(codes);
+			int span=max(codes)-c0;
+			int bucket=31-Integer.numberOfLeadingZeros(codes.length);
+			nextCheckPos=used.nextClearBit(nextCheckPos);
+			int pos=used.nextClearBit(Math.max(Math.max(nextCheckPos, searchFrom[bucket]), c0+1));
+			while(true)
+			{
+				ensureCapacity(pos+span+1);
+				int b=pos-c0;
+				int i=0;
+				while(i<codes.length && !used.get(b+codes[i]))
+				{
+					++i;
+				}
+				if(i==codes.length)
+				{
+					searchFrom[bucket]=pos;
+					return b;
+				}
+				pos=used.nextClearBit(pos+1);
+			}
+		}
+
+		private static int min(int[] codes)
+		{
+			int min=codes[0];
+			for(int c : codes)
+			{
+				min=Math.min(min, c);
+			}
+			return min;
+		}
+
+		private static int max(int[] codes)
+		{
+			int max=codes[0];
+			for(int c : codes)
+			{
+				max=Math.max(max, c);
+			}
+			return max;
+		}
+
+		private void ensureCapacity(int length)
+		{
+			if(length>base.length)
+			{
+				int oldLength=base.length;
+				int newLength=Math.max(length, oldLength+(oldLength>>1));
+				base=Arrays.copyOf(base, newLength);
+				check=Arrays.copyOf(check, newLength);
+				labelIdx=Arrays.copyOf(labelIdx, newLength);
+				Arrays.fill(check, oldLength, newLength, -1);
+				if(maxWeight!=null)
+					maxWeight=Arrays.copyOf(maxWeight, newLength);
+			}
+		}
+
+		private int appendLabels(int[] codes)
+		{
+			if(labelSize+codes.length+1>labels.length)
+				labels=Arrays.copyOf(labels, Math.max(labelSize+codes.length+1, labels.length+(labels.length>>1)));
+			int idx=labelSize;
+			System.arraycopy(codes, 0, labels, labelSize, codes.length);
+			labelSize+=codes.length;
+			labels[labelSize++]=NO_LABEL;
+			return idx;
+		}
+
+		private void appendTail(int id, int depth)
+		{
+			String word=words[id];
+			int len=Math.max(word.length()-depth, 0);
+			if(poolSize+len>tailPool.length)
+				tailPool=Arrays.copyOf(tailPool, Math.max(poolSize+len, tailPool.length+(tailPool.length>>1)));
+			tailIdx[id]=poolSize;
+			if(len>0)
+				word.getChars(depth, word.length(), tailPool, poolSize);
+			poolSize+=len;
+		}
+	}
+}
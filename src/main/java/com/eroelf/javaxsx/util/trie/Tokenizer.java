@@ -0,0 +1,416 @@
+package com.eroelf.javaxsx.util.trie;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedMap;
+
+import com.eroelf.javaxsx.util.Strings;
+
+/**
+ * A dictionary based word segmenter for texts without spaces between words, such as Chinese and Japanese texts.
+ * Tokens are reported as offsets through a {@link MatchListener}, no object is allocated per token.
+ * 
+ * <p>Three modes are supported:
+ * <ul>
+ * <li>{@link Mode#FORWARD_MAXIMUM} takes the longest dictionary word from left to right.</li>
+ * <li>{@link Mode#BACKWARD_MAXIMUM} takes the longest dictionary word from right to left, by a second Trie of the reversed words.</li>
+ * <li>{@link Mode#MAX_PROBABILITY} builds the DAG of all dictionary words in the text and finds the path of the maximum probability by dynamic programming from right to left.
+ * The probability of a word is its weight divided by the total weight, so the dictionary should be a {@link StaticDoubleArrayTrie} with weights. Without weights, the path of the fewest tokens is found.</li>
+ * </ul>
+ * 
+ * <p>Characters which are not covered by any dictionary word are reported with the word id {@link #UNKNOWN}:
+ * a run of Japanese kana ({@link Strings#isJapaneseKana(char)}) or of other letters and digits is one token, every Chinese character ({@link Strings#isChinese(char)}) and every other character is one token, and white spaces are skipped.
+ * 
+ * <p>This class is immutable and thread-safe.
+ * 
+ * @author weikun.zhong
+ */
+public class Tokenizer implements Serializable
+{
+	private static final long serialVersionUID=-6871593037846153470L;
+
+	/**
+	 * The word id reported for tokens which are not dictionary words.
+	 */
+	public static final int UNKNOWN=-1;
+
+	public static enum Mode
+	{
+		FORWARD_MAXIMUM,
+		BACKWARD_MAXIMUM,
+		MAX_PROBABILITY,
+	}
+
+	private static final int SPACE=0;
+	private static final int HAN=1;
+	private static final int KANA=2;
+	private static final int ALPHANUMERIC=3;
+	private static final int OTHER=4;
+
+	private final StaticDoubleArrayTrie dictionary;
+	private final Mode mode;
+	/**
+	 * The reversed words of the dictionary, and the dictionary id of each of them, for {@link Mode#BACKWARD_MAXIMUM}.
+	 */
+	private final StaticDoubleArrayTrie reversed;
+	private final int[] reversedIds;
+	/**
+	 * The log probability of each word id, for {@link Mode#MAX_PROBABILITY} with weights.
+	 */
+	private final double[] logProbs;
+	private final double unknownLogProb;
+
+	/**
+	 * Constructs a tokenizer.
+	 * 
+	 * @param dictionary the dictionary, whose word ids are reported. The weights are used by {@link Mode#MAX_PROBABILITY} if exist.
+	 * @param mode the segmentation mode.
+	 */
+	public Tokenizer(StaticDoubleArrayTrie dictionary, Mode mode)
+	{
+		this.dictionary=dictionary;
+		this.mode=mode;
+		List<String> words=mode!=Mode.FORWARD_MAXIMUM ? dictionary.matchPrefix("", new ArrayList<String>()) : null;
+		if(mode==Mode.BACKWARD_MAXIMUM)
+		{
+			String[] reversedWords=new String[words.size()];
+			Integer[] order=new Integer[words.size()];
+			for(int i=0; i<reversedWords.length; i++)
+			{
+				reversedWords[i]=reverse(words.get(i));
+				order[i]=i;
+			}
+			Arrays.sort(order, Comparator.comparing((Integer i) -> reversedWords[i]));
+			String[] sortedWords=new String[order.length];
+			reversedIds=new int[order.length];
+			for(int i=0; i<order.length; i++)
+			{
+				sortedWords[i]=reversedWords[order[i]];
+				reversedIds[i]=dictionary.getId(words.get(order[i]));
+			}
+			reversed=StaticDoubleArrayTrie.build(sortedWords, dictionary.hasCompactAlphabet());
+		}
+		else
+		{
+			reversed=null;
+			reversedIds=null;
+		}
+		if(mode==Mode.MAX_PROBABILITY && dictionary.isWeighted())
+		{
+			long[] weights=new long[words.size()];
+			double total=0;
+			for(String word : words)
+			{
+				int id=dictionary.getId(word);
+				weights[id]=Math.max(dictionary.getWeight(word, 1), 1);
+				total+=weights[id];
+			}
+			logProbs=new double[weights.length];
+			for(int i=0; i<weights.length; i++)
+			{
+				logProbs[i]=Math.log(weights[i]/total);
+			}
+			unknownLogProb=Math.log(1/total);
+		}
+		else
+		{
+			logProbs=null;
+			unknownLogProb=-1;
+		}
+	}
+
+	/**
+	 * Constructs a tokenizer from words with their frequencies.
+	 * 
+	 * @param frequencies the words with their frequencies.
+	 * @param mode the segmentation mode.
+	 */
+	public Tokenizer(SortedMap<String, Long> frequencies, Mode mode)
+	{
+		this(StaticDoubleArrayTrie.build(frequencies), mode);
+	}
+
+	/**
+	 * Reverses the word char by char, so surrogate pairs are swapped as {@link StaticDoubleArrayTrie#longestReversedPrefixMatch(CharSequence, int)} reads them,
+	 * unlike {@link StringBuilder#reverse()}.
+	 */
+	private static String reverse(String word)
+	{
+		char[] chars=new char[word.length()];
+		for(int i=0; i<chars.length; i++)
+		{
+			chars[i]=word.charAt(chars.length-1-i);
+		}
+		return new String(chars);
+	}
+
+	public StaticDoubleArrayTrie getDictionary()
+	{
+		return dictionary;
+	}
+
+	public Mode getMode()
+	{
+		return mode;
+	}
+
+	private static int classOf(char c)
+	{
+		if(Character.isWhitespace(c) || Character.isSpaceChar(c))
+			return SPACE;
+		if(Strings.isChinese(c))
+			return HAN;
+		if(Strings.isJapaneseKana(c))
+			return KANA;
+		if(Character.isLetterOrDigit(c))
+			return ALPHANUMERIC;
+		return OTHER;
+	}
+
+	/**
+	 * Returns the length of the character at {@code i}, which is {@code 2} for a surrogate pair.
+	 */
+	private static int charLength(CharSequence text, int i)
+	{
+		return Character.isHighSurrogate(text.charAt(i)) && i+1<text.length() && Character.isLowSurrogate(text.charAt(i+1)) ? 2 : 1;
+	}
+
+	/**
+	 * Reports tokens in order, merging the adjacent unknown characters of the same mergeable class into one token.
+	 */
+	private static final class Emitter
+	{
+		private final CharSequence text;
+		private final MatchListener listener;
+		private int pendingStart=-1;
+		private int pendingEnd;
+		private int pendingClass;
+
+		private Emitter(CharSequence text, MatchListener listener)
+		{
+			this.text=text;
+			this.listener=listener;
+		}
+
+		private void word(int start, int end, int wordId)
+		{
+			flush();
+			listener.onMatch(start, end, wordId);
+		}
+
+		private void unknown(int start, int end)
+		{
+			int charClass=classOf(text.charAt(start));
+			if(pendingStart>=0 && pendingEnd==start && pendingClass==charClass && (charClass==KANA || charClass==ALPHANUMERIC))
+			{
+				pendingEnd=end;
+				return;
+			}
+			flush();
+			if(charClass!=SPACE)
+			{
+				pendingStart=start;
+				pendingEnd=end;
+				pendingClass=charClass;
+			}
+		}
+
+		private void flush()
+		{
+			if(pendingStart>=0)
+			{
+				listener.onMatch(pendingStart, pendingEnd, UNKNOWN);
+				pendingStart=-1;
+			}
+		}
+	}
+
+	/**
+	 * The working arrays of one thread, reused by all calls of the thread, so segmenting allocates no arrays in proportion to the text in the steady state.
+	 * A call made by a listener while the arrays are in use gets its own arrays.
+	 */
+	private static final class Buffers
+	{
+		private static final ThreadLocal<Buffers> BUFFERS=ThreadLocal.withInitial(Buffers::new);
+
+		private boolean inUse;
+		private int[] tokens=new int[64];
+		private double[] best=new double[64];
+		private int[] next=new int[64];
+		private int[] ids=new int[64];
+
+		private static Buffers acquire()
+		{
+			Buffers buffers=BUFFERS.get();
+			if(buffers.inUse)
+				buffers=new Buffers();
+			buffers.inUse=true;
+			return buffers;
+		}
+
+		private void release()
+		{
+			inUse=false;
+		}
+
+		private void ensureCapacity(int n)
+		{
+			if(best.length<n)
+			{
+				int capacity=Math.max(n, best.length*2);
+				best=new double[capacity];
+				next=new int[capacity];
+				ids=new int[capacity];
+			}
+		}
+	}
+
+	/**
+	 * Segments the text and reports the tokens in order.
+	 * The listener receives the start offset, the end offset and the dictionary id of every token, or {@link #UNKNOWN} for tokens which are not dictionary words.
+	 * 
+	 * @param text the text to be segmented.
+	 * @param listener the receiver of the tokens.
+	 */
+	public void tokenize(CharSequence text, MatchListener listener)
+	{
+		Emitter emitter=new Emitter(text, listener);
+		if(mode==Mode.FORWARD_MAXIMUM)
+			forwardMaximum(text, emitter);
+		else
+		{
+			Buffers buffers=Buffers.acquire();
+			try
+			{
+				if(mode==Mode.BACKWARD_MAXIMUM)
+					backwardMaximum(text, emitter, buffers);
+				else
+					maxProbability(text, emitter, buffers);
+			}
+			finally
+			{
+				buffers.release();
+			}
+		}
+		emitter.flush();
+	}
+
+	/**
+	 * Segments the text into words.
+	 * 
+	 * @param text the text to be segmented.
+	 * @return the tokens in order.
+	 * 
+	 * @see #tokenize(CharSequence, MatchListener)
+	 */
+	public List<String> segment(CharSequence text)
+	{
+		List<String> resultList=new ArrayList<String>();
+		tokenize(text, (start, end, wordId) -> {
+			resultList.add(text.subSequence(start, end).toString());
+		});
+		return resultList;
+	}
+
+	private void forwardMaximum(CharSequence text, Emitter emitter)
+	{
+		int i=0;
+		while(i<text.length())
+		{
+			long match=dictionary.longestPrefixMatch(text, i);
+			int length=match>=0 ? StaticDoubleArrayTrie.matchLength(match) : 0;
+			if(length>0)
+			{
+				emitter.word(i, i+length, StaticDoubleArrayTrie.matchId(match));
+				i+=length;
+			}
+			else
+			{
+				length=charLength(text, i);
+				emitter.unknown(i, i+length);
+				i+=length;
+			}
+		}
+	}
+
+	private void backwardMaximum(CharSequence text, Emitter emitter, Buffers buffers)
+	{
+		// tokens are found from right to left as pairs of the start and the id, and reported from left to right
+		int[] tokens=buffers.tokens;
+		int size=0;
+		int j=text.length();
+		while(j>0)
+		{
+			long match=reversed.longestReversedPrefixMatch(text, j);
+			int length=match>=0 ? StaticDoubleArrayTrie.matchLength(match) : 0;
+			int id;
+			if(length>0)
+				id=reversedIds[StaticDoubleArrayTrie.matchId(match)];
+			else
+			{
+				length=j>=2 && Character.isLowSurrogate(text.charAt(j-1)) && Character.isHighSurrogate(text.charAt(j-2)) ? 2 : 1;
+				id=UNKNOWN;
+			}
+			if(size+2>tokens.length)
+				tokens=buffers.tokens=Arrays.copyOf(tokens, tokens.length*2);
+			tokens[size++]=j-length;
+			tokens[size++]=id;
+			j-=length;
+		}
+		for(int k=size-2; k>=0; k-=2)
+		{
+			// the end of a token is the start of the token found before it
+			int end=k>=2 ? tokens[k-2] : text.length();
+			if(tokens[k+1]!=UNKNOWN)
+				emitter.word(tokens[k], end, tokens[k+1]);
+			else
+				emitter.unknown(tokens[k], end);
+		}
+	}
+
+	private double logProb(int wordId)
+	{
+		return logProbs!=null ? logProbs[wordId] : -1;
+	}
+
+	private void maxProbability(CharSequence text, Emitter emitter, Buffers buffers)
+	{
+		int n=text.length();
+		buffers.ensureCapacity(n+1);
+		double[] best=buffers.best;
+		int[] next=buffers.next;
+		int[] ids=buffers.ids;
+		best[n]=0;
+		MatchListener relaxer=(start, end, wordId) -> {
+			if(end>start)
+			{
+				double p=logProb(wordId)+best[end];
+				// words are reported by the length ascendingly, so longer words win ties
+				if(p>=best[start])
+				{
+					best[start]=p;
+					next[start]=end;
+					ids[start]=wordId;
+				}
+			}
+		};
+		for(int i=n-1; i>=0; i--)
+		{
+			int length=charLength(text, i);
+			best[i]=unknownLogProb+best[i+length];
+			next[i]=i+length;
+			ids[i]=UNKNOWN;
+			dictionary.prefixMatches(text, i, relaxer);
+		}
+		for(int i=0; i<n; i=next[i])
+		{
+			if(ids[i]!=UNKNOWN)
+				emitter.word(i, next[i], ids[i]);
+			else
+				emitter.unknown(i, next[i]);
+		}
+	}
+}
@@ -5,6 +5,8 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 
+import org.apache.commons.lang3.tuple.Pair;
+
 /**
  * An interface defines methods of a Trie.
  * 
@@ -52,6 +54,95 @@ public interface Trie extends Serializable
 	 */
 	public List<String> getPrefixes(String word, List<String> resultList);
 
+	/**
+	 * Visits all words which have the same specified prefix in the Trie without materializing them.
+	 * The default implementation falls back to {@link #matchPrefix(String, List)}; implementations should override it to avoid creating a {@link String} for every word.
+	 * 
+	 * @param prefix the specified prefix.
+	 * @param visitor receives the found words, and can stop the traversal by returning {@code false}.
+	 * @return {@code true} if all found words have been visited, {@code false} if the traversal was stopped by the visitor.
+	 */
+	default public boolean matchPrefix(CharSequence prefix, TrieVisitor visitor)
+	{
+		if(prefix!=null)
+		{
+			for(String word : matchPrefix(prefix.toString(), new ArrayList<String>()))
+			{
+				if(!visitor.visit(word))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Visits at most {@code limit} words which have the same specified prefix in the Trie.
+	 * 
+	 * @param prefix the specified prefix.
+	 * @param limit the maximum number of words to visit, non-positive values mean no limit.
+	 * @param visitor receives the found words, and can stop the traversal by returning {@code false}.
+	 * @return {@code true} if all found words have been visited, {@code false} if the traversal was stopped by the limit or the visitor.
+	 */
+	default public boolean matchPrefix(CharSequence prefix, int limit, TrieVisitor visitor)
+	{
+		return matchPrefix(prefix, TrieVisitor.limited(limit, visitor));
+	}
+
+	/**
+	 * Visits all words that can be a prefix of the specified word without materializing them.
+	 * The default implementation falls back to {@link #getPrefixes(String, List)}; implementations should override it to avoid creating a {@link String} for every prefix.
+	 * 
+	 * @param word the word to be checked.
+	 * @param visitor receives the found prefixes, and can stop the traversal by returning {@code false}.
+	 * @return {@code true} if all found prefixes have been visited, {@code false} if the traversal was stopped by the visitor.
+	 */
+	default public boolean getPrefixes(CharSequence word, TrieVisitor visitor)
+	{
+		if(word!=null)
+		{
+			for(String prefix : getPrefixes(word.toString(), new ArrayList<String>()))
+			{
+				if(!visitor.visit(prefix))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Visits at most {@code limit} words that can be a prefix of the specified word.
+	 * 
+	 * @param word the word to be checked.
+	 * @param limit the maximum number of prefixes to visit, non-positive values mean no limit.
+	 * @param visitor receives the found prefixes, and can stop the traversal by returning {@code false}.
+	 * @return {@code true} if all found prefixes have been visited, {@code false} if the traversal was stopped by the limit or the visitor.
+	 */
+	default public boolean getPrefixes(CharSequence word, int limit, TrieVisitor visitor)
+	{
+		return getPrefixes(word, TrieVisitor.limited(limit, visitor));
+	}
+
+	/**
+	 * Finds the words within the specified Levenshtein distance to the query.
+	 * The default implementation computes the distance of every word; implementations should override it to prune the subtrees which can not be within the distance.
+	 * 
+	 * @param query the query word.
+	 * @param maxEdits the maximum Levenshtein distance.
+	 * @param limit the maximum number of words to find, non-positive values mean no limit.
+	 * @return the closest words with their distances, ordered by the distance and then by the word.
+	 */
+	default public List<Pair<String, Integer>> fuzzySearch(String query, int maxEdits, int limit)
+	{
+		if(query==null)
+			return new ArrayList<Pair<String, Integer>>();
+		FuzzySearcher searcher=new FuzzySearcher(query, maxEdits, limit);
+		matchPrefix("", word -> {
+			searcher.offer(word, 0, word.length());
+			return true;
+		});
+		return searcher.results();
+	}
+
 	/**
 	 * Finds all words that can be a substring of the specified word.
 	 * 
@@ -0,0 +1,137 @@
+package com.eroelf.javaxsx.util.trie;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * An immutable map from {@link String} keys to values, backed by a {@link StaticDoubleArrayTrie}.
+ * Every key gets a dense ordinal id which equals its rank in the natural order of {@link String}, and values are stored in an array indexed by the ids, so no parallel hash map is needed.
+ * All lookups accept {@link CharSequence} windows and never create substrings.
+ * 
+ * @param <V> the type of values.
+ * 
+ * @see IntTrieMap
+ * 
+ * @author weikun.zhong
+ */
+public class TrieMap<V> implements Serializable
+{
+	private static final long serialVersionUID=-6021856389241473810L;
+
+	private final StaticDoubleArrayTrie trie;
+	private final Object[] values;
+
+	/**
+	 * Constructs a TrieMap with the same mappings as the given map.
+	 * 
+	 * @param map the mappings to be contained.
+	 */
+	public TrieMap(Map<String, ? extends V> map)
+	{
+		SortedMap<String, ? extends V> sortedMap=map instanceof SortedMap && ((SortedMap<String, ? extends V>)map).comparator()==null ? (SortedMap<String, ? extends V>)map : new TreeMap<>(map);
+		String[] keys=new String[sortedMap.size()];
+		values=new Object[keys.length];
+		int i=0;
+		for(Entry<String, ? extends V> entry : sortedMap.entrySet())
+		{
+			keys[i]=entry.getKey();
+			values[i++]=entry.getValue();
+		}
+		trie=StaticDoubleArrayTrie.build(keys);
+	}
+
+	/**
+	 * Returns the number of mappings.
+	 * 
+	 * @return the number of mappings.
+	 */
+	public int size()
+	{
+		return values.length;
+	}
+
+	/**
+	 * Returns the Trie which holds the keys, for prefix queries.
+	 * 
+	 * @return the Trie of keys.
+	 */
+	public StaticDoubleArrayTrie getTrie()
+	{
+		return trie;
+	}
+
+	/**
+	 * Returns the ordinal id of the specified key.
+	 * 
+	 * @param key the key.
+	 * @return the id in {@code [0, size())}, or {@code -1} if the key is absent.
+	 */
+	public int getId(CharSequence key)
+	{
+		return trie.getId(key);
+	}
+
+	/**
+	 * Returns the ordinal id of the key {@code text[begin, end)}.
+	 * 
+	 * @param text the text which contains the key.
+	 * @param begin the start offset of the key, inclusive.
+	 * @param end the end offset of the key, exclusive.
+	 * @return the id in {@code [0, size())}, or {@code -1} if the key is absent.
+	 */
+	public int getId(CharSequence text, int begin, int end)
+	{
+		return trie.getId(text, begin, end);
+	}
+
+	@SuppressWarnings("unchecked")
+	public V getValue(int id)
+	{
+		return (V)values[id];
+	}
+
+	public boolean containsKey(CharSequence key)
+	{
+		return trie.getId(key)>=0;
+	}
+
+	public V get(CharSequence key)
+	{
+		return getOrDefault(key, null);
+	}
+
+	public V getOrDefault(CharSequence key, V defaultValue)
+	{
+		int id=trie.getId(key);
+		return id>=0 ? getValue(id) : defaultValue;
+	}
+
+	public V get(CharSequence text, int begin, int end)
+	{
+		return getOrDefault(text, begin, end, null);
+	}
+
+	public V getOrDefault(CharSequence text, int begin, int end, V defaultValue)
+	{
+		int id=trie.getId(text, begin, end);
+		return id>=0 ? getValue(id) : defaultValue;
+	}
+
+	/**
+	 * Finds the longest key which is a prefix of {@code text[offset, text.length())}.
+	 * 
+	 * @param text the text to be matched.
+	 * @param offset the offset where the match starts.
+	 * @return the length of the matched key and its value, or {@code null} if none matches.
+	 */
+	public Pair<Integer, V> longestPrefixMatch(CharSequence text, int offset)
+	{
+		long match=trie.longestPrefixMatch(text, offset);
+		return match>=0 ? Pair.of(StaticDoubleArrayTrie.matchLength(match), getValue(StaticDoubleArrayTrie.matchId(match))) : null;
+	}
+}
@@ -0,0 +1,40 @@
+package com.eroelf.javaxsx.util.trie;
+
+/**
+ * Class to receive the words found by the visitor-style methods of {@link Trie}.
+ * 
+ * @author weikun.zhong
+ */
+@FunctionalInterface
+public interface TrieVisitor
+{
+	/**
+	 * Called for every found word.
+	 * The given {@link CharSequence} is a buffer reused by the Trie, it is only valid during this call and must be copied by {@code toString()} if needed later.
+	 * 
+	 * @param word the found word.
+	 * @return {@code true} to continue the traversal, {@code false} to stop it.
+	 */
+	public boolean visit(CharSequence word);
+
+	/**
+	 * Wraps a {@link TrieVisitor} to visit at most {@code limit} words.
+	 * The traversal is stopped only when one more word is found after {@code limit} visits, so a traversal which finds exactly {@code limit} words is still complete.
+	 * 
+	 * @param limit the maximum number of visits, non-positive values mean no limit.
+	 * @param visitor the wrapped visitor.
+	 * @return the limited visitor.
+	 */
+	public static TrieVisitor limited(int limit, TrieVisitor visitor)
+	{
+		if(limit<=0)
+			return visitor;
+		int[] count=new int[1];
+		return word -> {
+			if(count[0]>=limit)
+				return false;
+			++count[0];
+			return visitor.visit(word);
+		};
+	}
+}
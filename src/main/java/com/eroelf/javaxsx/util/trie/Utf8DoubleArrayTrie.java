@@ -0,0 +1,296 @@
+package com.eroelf.javaxsx.util.trie;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable double-array Trie over the UTF-8 bytes of words, which matches {@code byte[]} and {@link ByteBuffer} input directly without decoding it.
+ * Every byte is a transition, so the alphabet has at most {@code 256} codes and the arrays are dense whatever the script of the words is, and supplementary characters need no special care.
+ * 
+ * <p>The bytes are held by a {@link StaticDoubleArrayTrie} in which every {@code char} stands for one byte, so the file format is the same, and every word gets a dense id which equals its rank in the order of the UTF-8 bytes, i.e. the order of Unicode code points.
+ * The methods of {@link Trie} encode and decode words, use the byte methods in hot paths.
+ * 
+ * @author weikun.zhong
+ */
+public class Utf8DoubleArrayTrie implements Trie
+{
+	private static final long serialVersionUID=-2364823157704985730L;
+
+	private final StaticDoubleArrayTrie trie;
+
+	/**
+	 * Constructs an immutable Trie from the given words.
+	 * 
+	 * @param words the words to be contained, in any order, may contain duplicates.
+	 * @return the built Trie.
+	 */
+	public static Utf8DoubleArrayTrie build(Collection<String> words)
+	{
+		String[] byteWords=new String[words.size()];
+		int n=0;
+		for(String word : words)
+		{
+			byteWords[n++]=toByteString(word);
+		}
+		// the order of the byte strings is the unsigned order of the bytes
+		Arrays.sort(byteWords);
+		int k=0;
+		for(int i=0; i<n; i++)
+		{
+			if(k==0 || !byteWords[i].equals(byteWords[k-1]))
+				byteWords[k++]=byteWords[i];
+		}
+		return new Utf8DoubleArrayTrie(StaticDoubleArrayTrie.build(Arrays.copyOf(byteWords, k)));
+	}
+
+	private Utf8DoubleArrayTrie(StaticDoubleArrayTrie trie)
+	{
+		this.trie=trie;
+	}
+
+	/**
+	 * Converts a word to a {@link String} in which every {@code char} is one of its UTF-8 bytes.
+	 */
+	private static String toByteString(CharSequence word)
+	{
+		return new String(word.toString().getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+	}
+
+	private static String fromByteString(CharSequence byteWord)
+	{
+		byte[] bytes=new byte[byteWord.length()];
+		for(int i=0; i<bytes.length; i++)
+		{
+			bytes[i]=(byte)byteWord.charAt(i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static TrieVisitor decoding(TrieVisitor visitor)
+	{
+		return byteWord -> visitor.visit(fromByteString(byteWord));
+	}
+
+	/**
+	 * Views bytes as a {@link CharSequence} in which every {@code char} is one byte, without copying them.
+	 */
+	private static final class ByteSequence implements CharSequence
+	{
+		private final byte[] array;
+		private final ByteBuffer buffer;
+		private final int offset;
+		private final int length;
+
+		private ByteSequence(byte[] array, int offset, int length)
+		{
+			this.array=array;
+			this.buffer=null;
+			this.offset=offset;
+			this.length=length;
+		}
+
+		private ByteSequence(ByteBuffer buffer)
+		{
+			if(buffer.hasArray())
+			{
+				this.array=buffer.array();
+				this.buffer=null;
+				this.offset=buffer.arrayOffset()+buffer.position();
+			}
+			else
+			{
+				this.array=null;
+				this.buffer=buffer;
+				this.offset=buffer.position();
+			}
+			this.length=buffer.remaining();
+		}
+
+		@Override
+		public int length()
+		{
+			return length;
+		}
+
+		@Override
+		public char charAt(int index)
+		{
+			return (char)((array!=null ? array[offset+index] : buffer.get(offset+index))&0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end)
+		{
+			return array!=null ? new ByteSequence(array, offset+start, end-start) : new ByteSequence(buffer.slice(offset+start, end-start));
+		}
+
+		@Override
+		public String toString()
+		{
+			return new StringBuilder(this).toString();
+		}
+	}
+
+	/**
+	 * Returns the number of words in this Trie.
+	 * 
+	 * @return the number of words.
+	 */
+	public int size()
+	{
+		return trie.size();
+	}
+
+	/**
+	 * Returns the id of the word whose UTF-8 bytes are {@code bytes[offset, offset+length)}.
+	 * 
+	 * @param bytes the bytes which contain the word.
+	 * @param offset the start offset of the word.
+	 * @param length the number of bytes of the word.
+	 * @return the id of the word, or {@code -1} if the word is not in this Trie.
+	 */
+	public int getId(byte[] bytes, int offset, int length)
+	{
+		return trie.getId(new ByteSequence(bytes, offset, length));
+	}
+
+	/**
+	 * Returns the id of the word whose UTF-8 bytes are the remaining bytes of the buffer. The position of the buffer is not changed.
+	 * 
+	 * @param buffer the bytes of the word.
+	 * @return the id of the word, or {@code -1} if the word is not in this Trie.
+	 */
+	public int getId(ByteBuffer buffer)
+	{
+		return trie.getId(new ByteSequence(buffer));
+	}
+
+	/**
+	 * Returns the id of the specified word.
+	 * 
+	 * @param word the word.
+	 * @return the id of the word, or {@code -1} if the word is not in this Trie.
+	 */
+	public int getId(CharSequence word)
+	{
+		return word!=null ? trie.getId(toByteString(word)) : -1;
+	}
+
+	public boolean contains(byte[] bytes, int offset, int length)
+	{
+		return getId(bytes, offset, length)>=0;
+	}
+
+	public boolean contains(ByteBuffer buffer)
+	{
+		return getId(buffer)>=0;
+	}
+
+	/**
+	 * Finds the longest word whose UTF-8 bytes are a prefix of {@code bytes[offset, offset+length)}.
+	 * The length in bytes and the id of the word are packed into one {@code long}, use {@link StaticDoubleArrayTrie#matchLength(long)} and {@link StaticDoubleArrayTrie#matchId(long)} to unpack it.
+	 * 
+	 * @param bytes the bytes to be matched.
+	 * @param offset the offset where the match starts.
+	 * @param length the maximum number of bytes to match.
+	 * @return the packed length and id of the longest matched word, or {@code -1} if none matches.
+	 */
+	public long longestPrefixMatch(byte[] bytes, int offset, int length)
+	{
+		return trie.longestPrefixMatch(new ByteSequence(bytes, offset, length), 0);
+	}
+
+	/**
+	 * Finds the longest word whose UTF-8 bytes are a prefix of the remaining bytes of the buffer. The position of the buffer is not changed.
+	 * 
+	 * @param buffer the bytes to be matched.
+	 * @return the packed length and id of the longest matched word, or {@code -1} if none matches.
+	 * 
+	 * @see #longestPrefixMatch(byte[], int, int)
+	 */
+	public long longestPrefixMatch(ByteBuffer buffer)
+	{
+		return trie.longestPrefixMatch(new ByteSequence(buffer), 0);
+	}
+
+	@Override
+	public void insert(String word)
+	{
+		throw new UnsupportedOperationException("Utf8DoubleArrayTrie::insert: this Trie is immutable!");
+	}
+
+	@Override
+	public void delete(String word)
+	{
+		throw new UnsupportedOperationException("Utf8DoubleArrayTrie::delete: this Trie is immutable!");
+	}
+
+	@Override
+	public boolean contains(String word)
+	{
+		return getId(word)>=0;
+	}
+
+	@Override
+	public List<String> matchPrefix(String prefix, List<String> resultList)
+	{
+		matchPrefix(prefix, word -> {
+			resultList.add(word.toString());
+			return true;
+		});
+		return resultList;
+	}
+
+	@Override
+	public boolean matchPrefix(CharSequence prefix, TrieVisitor visitor)
+	{
+		return prefix==null || trie.matchPrefix(toByteString(prefix), decoding(visitor));
+	}
+
+	@Override
+	public List<String> getPrefixes(String word, List<String> resultList)
+	{
+		getPrefixes(word, prefix -> {
+			resultList.add(prefix.toString());
+			return true;
+		});
+		return resultList;
+	}
+
+	@Override
+	public boolean getPrefixes(CharSequence word, TrieVisitor visitor)
+	{
+		return word==null || trie.getPrefixes(toByteString(word), decoding(visitor));
+	}
+
+	/**
+	 * Saves this Trie to a binary file which can be mapped by {@link #mapFromFile(String)}.
+	 * 
+	 * @param fileName the target file name.
+	 * @throws IOException if an I/O error occurs.
+	 * 
+	 * @see StaticDoubleArrayTrie#saveToFile(String)
+	 */
+	public void saveToFile(String fileName) throws IOException
+	{
+		trie.saveToFile(fileName);
+	}
+
+	/**
+	 * Maps a file saved by {@link #saveToFile(String)} as a read-only Trie.
+	 * 
+	 * @param fileName the file name.
+	 * @return the mapped Trie.
+	 * @throws IOException if the file is not a valid Trie file or an I/O error occurs.
+	 * 
+	 * @see StaticDoubleArrayTrie#mapFromFile(String)
+	 */
+	public static Utf8DoubleArrayTrie mapFromFile(String fileName) throws IOException
+	{
+		return new Utf8DoubleArrayTrie(StaticDoubleArrayTrie.mapFromFile(fileName));
+	}
+}